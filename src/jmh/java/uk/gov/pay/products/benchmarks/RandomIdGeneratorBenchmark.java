@@ -0,0 +1,59 @@
+package uk.gov.pay.products.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import uk.gov.pay.products.util.RandomIdGenerator;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput and allocation per operation of {@link RandomIdGenerator} when 1 to 64 threads create payments and
+ * products at the same time.
+ * <p>
+ * Run with {@code mvn -Pbenchmarks test-compile exec:java}
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RandomIdGeneratorBenchmark {
+
+    private static final int[] THREADS = {1, 4, 16, 64};
+
+    @Benchmark
+    public String randomUserFriendlyReference() {
+        return RandomIdGenerator.randomUserFriendlyReference();
+    }
+
+    @Benchmark
+    public String randomUuid() {
+        return RandomIdGenerator.randomUuid();
+    }
+
+    @Benchmark
+    public Integer randomInt() {
+        return RandomIdGenerator.randomInt();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int threads : THREADS) {
+            Options options = new OptionsBuilder()
+                    .include(RandomIdGeneratorBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .addProfiler(GCProfiler.class)
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
@@ -9,6 +9,7 @@ import io.dropwizard.core.setup.Bootstrap;
 import io.dropwizard.core.setup.Environment;
 import io.dropwizard.db.DataSourceFactory;
 import io.dropwizard.jersey.setup.JerseyEnvironment;
+import io.dropwizard.lifecycle.Managed;
 import io.dropwizard.migrations.MigrationsBundle;
 import io.prometheus.client.CollectorRegistry;
 import io.prometheus.client.dropwizard.DropwizardExports;
@@ -16,28 +17,44 @@ import io.prometheus.client.servlet.jakarta.exporter.MetricsServlet;
 import org.dhatim.dropwizard.sentry.logging.SentryAppenderFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import uk.gov.pay.products.client.publicapi.PublicApiCircuitBreaker;
 import uk.gov.pay.products.config.PersistenceServiceInitialiser;
 import uk.gov.pay.products.config.ProductsConfiguration;
 import uk.gov.pay.products.config.ProductsModule;
 import uk.gov.pay.products.exception.mapper.BadPaymentRequestExceptionMapper;
+import uk.gov.pay.products.exception.mapper.IdempotencyKeyConflictExceptionMapper;
 import uk.gov.pay.products.exception.mapper.MetadataNotFoundExceptionMapper;
 import uk.gov.pay.products.exception.mapper.PaymentCreationExceptionMapper;
 import uk.gov.pay.products.exception.mapper.PaymentCreatorNotFoundExceptionMapper;
+import uk.gov.pay.products.exception.mapper.PaymentRateLimitExceededExceptionMapper;
 import uk.gov.pay.products.exception.mapper.ProductNotFoundExceptionMapper;
 import uk.gov.pay.products.exception.mapper.ValidationExceptionMapper;
 import uk.gov.pay.products.filters.LoggingMDCRequestFilter;
 import uk.gov.pay.products.filters.LoggingMDCResponseFilter;
 import uk.gov.pay.products.healthchecks.DependentResourceWaitCommand;
+import uk.gov.pay.products.healthchecks.PaymentPartitionsHealthCheck;
 import uk.gov.pay.products.healthchecks.Ping;
+import uk.gov.pay.products.healthchecks.PublicApiCircuitBreakerHealthCheck;
 import uk.gov.pay.products.resources.HealthCheckResource;
 import uk.gov.pay.products.resources.PaymentResource;
 import uk.gov.pay.products.resources.ProductResource;
+import uk.gov.pay.products.service.PaymentCreationOutbox;
+import uk.gov.pay.products.service.PaymentCreator;
+import uk.gov.pay.products.service.PaymentFactory;
+import uk.gov.pay.products.service.PaymentIdempotencyKeys;
+import uk.gov.pay.products.service.PaymentRateLimiter;
+import uk.gov.pay.products.service.PaymentPartitionManager;
+import uk.gov.pay.products.service.PaymentStatusReconciler;
+import uk.gov.pay.products.service.ProductPathIndex;
+import uk.gov.pay.products.service.ProductUsageStatsRecorder;
+import uk.gov.pay.products.service.ReferenceNumberPool;
 import uk.gov.service.payments.commons.utils.healthchecks.DatabaseHealthCheck;
 import uk.gov.service.payments.commons.utils.metrics.DatabaseMetricsService;
 import uk.gov.service.payments.logging.GovUkPayDropwizardRequestJsonLogLayoutFactory;
 import uk.gov.service.payments.logging.LoggingFilter;
 import uk.gov.service.payments.logging.LogstashConsoleAppenderFactory;
 
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 import static java.util.EnumSet.of;
@@ -82,12 +99,25 @@ public class ProductsApplication extends Application<ProductsConfiguration> {
         injector.getInstance(PersistenceServiceInitialiser.class);
 
         initialiseMetrics(configuration, environment);
+        initialiseProductPathIndex(configuration, environment, injector.getInstance(ProductPathIndex.class));
+        initialisePaymentPartitions(configuration, environment, injector.getInstance(PaymentPartitionManager.class));
+        initialiseReferenceNumberPool(configuration, environment, injector.getInstance(ReferenceNumberPool.class));
+        initialisePaymentCreationOutbox(configuration, environment, injector.getInstance(PaymentCreationOutbox.class),
+                injector.getInstance(PaymentFactory.class).paymentCreator());
+        initialisePaymentStatusReconciler(configuration, environment, injector.getInstance(PaymentStatusReconciler.class));
+        initialisePaymentIdempotencyKeys(configuration, environment, injector.getInstance(PaymentIdempotencyKeys.class));
+        initialisePaymentRateLimiter(configuration, environment, injector.getInstance(PaymentRateLimiter.class));
+        initialiseProductUsageStats(configuration, environment, injector.getInstance(ProductUsageStatsRecorder.class));
         environment.servlets().addFilter("LoggingFilter", new LoggingFilter())
                 .addMappingForUrlPatterns(of(REQUEST), true, "/v1/*", "/v2/*");
         environment.jersey().register(injector.getInstance(LoggingMDCRequestFilter.class));
         environment.jersey().register(injector.getInstance(LoggingMDCResponseFilter.class));
         environment.healthChecks().register("ping", new Ping());
         environment.healthChecks().register("database", new DatabaseHealthCheck(configuration.getDataSourceFactory()));
+        environment.healthChecks().register("publicApiCircuitBreaker",
+                new PublicApiCircuitBreakerHealthCheck(injector.getInstance(PublicApiCircuitBreaker.class)));
+        environment.healthChecks().register("paymentPartitions",
+                new PaymentPartitionsHealthCheck(injector.getInstance(PaymentPartitionManager.class)));
         environment.jersey().register(injector.getInstance(HealthCheckResource.class));
         environment.jersey().register(injector.getInstance(ProductResource.class));
         environment.jersey().register(injector.getInstance(PaymentResource.class));
@@ -110,10 +140,130 @@ public class ProductsApplication extends Application<ProductsConfiguration> {
         environment.admin().addServlet("prometheusMetrics", new MetricsServlet(collectorRegistry)).addMapping("/metrics");
     }
 
+    private void initialiseProductPathIndex(ProductsConfiguration configuration, Environment environment, ProductPathIndex productPathIndex) {
+        if (!productPathIndex.isEnabled()) {
+            return;
+        }
+
+        // refreshes only pick up products created since the previous one, except every fullRefreshInterval when the whole index is reloaded
+        environment
+                .lifecycle()
+                .scheduledExecutorService("productpathindex")
+                .threads(1)
+                .build()
+                .scheduleWithFixedDelay(productPathIndex::refresh, 0,
+                        configuration.getProductPathIndexConfig().getRefreshInterval().toSeconds(), TimeUnit.SECONDS);
+    }
+
+    private void initialisePaymentPartitions(ProductsConfiguration configuration, Environment environment, PaymentPartitionManager paymentPartitionManager) {
+        // payment inserts fail once a month has no partition, so an instance that cannot create them does not start
+        paymentPartitionManager.ensureMonthlyPartitions();
+
+        long creationInterval = configuration.getPaymentPartitionConfig().getCreationInterval().toSeconds();
+        environment
+                .lifecycle()
+                .scheduledExecutorService("paymentpartitions")
+                .threads(1)
+                .build()
+                .scheduleWithFixedDelay(paymentPartitionManager::createMonthlyPartitions, creationInterval, creationInterval, TimeUnit.SECONDS);
+    }
+
+    private void initialiseReferenceNumberPool(ProductsConfiguration configuration, Environment environment, ReferenceNumberPool referenceNumberPool) {
+        if (!referenceNumberPool.isEnabled()) {
+            return;
+        }
+
+        environment
+                .lifecycle()
+                .scheduledExecutorService("referencenumberpool")
+                .threads(1)
+                .build()
+                .scheduleWithFixedDelay(referenceNumberPool::refill, 0,
+                        configuration.getReferenceNumberPoolConfig().getRefillInterval().toMilliseconds(), TimeUnit.MILLISECONDS);
+
+        environment.lifecycle().manage(new Managed() {
+            @Override
+            public void stop() {
+                referenceNumberPool.releaseAll();
+            }
+        });
+    }
+
+    private void initialisePaymentCreationOutbox(ProductsConfiguration configuration, Environment environment,
+                                                 PaymentCreationOutbox paymentCreationOutbox, PaymentCreator paymentCreator) {
+        if (!paymentCreationOutbox.isEnabled()) {
+            return;
+        }
+
+        // every worker claims its own batch of outbox rows, so they never create the same payment at the same time
+        int numberOfWorkers = configuration.getPaymentCreationOutboxConfig().getNumberOfWorkers();
+        ScheduledExecutorService paymentCreationWorkers = environment
+                .lifecycle()
+                .scheduledExecutorService("paymentcreationworker")
+                .threads(numberOfWorkers)
+                .build();
+        for (int i = 0; i < numberOfWorkers; i++) {
+            paymentCreationWorkers.scheduleWithFixedDelay(paymentCreator::createOutboxedPayments, 0,
+                    configuration.getPaymentCreationOutboxConfig().getPollInterval().toMilliseconds(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void initialisePaymentStatusReconciler(ProductsConfiguration configuration, Environment environment,
+                                                   PaymentStatusReconciler paymentStatusReconciler) {
+        if (!paymentStatusReconciler.isEnabled()) {
+            return;
+        }
+
+        environment
+                .lifecycle()
+                .scheduledExecutorService("paymentstatusreconciler")
+                .threads(1)
+                .build()
+                .scheduleWithFixedDelay(paymentStatusReconciler::reconcile, 0,
+                        configuration.getPaymentStatusReconcilerConfig().getInterval().toMilliseconds(), TimeUnit.MILLISECONDS);
+    }
+
+    private void initialisePaymentIdempotencyKeys(ProductsConfiguration configuration, Environment environment,
+                                                  PaymentIdempotencyKeys paymentIdempotencyKeys) {
+        environment
+                .lifecycle()
+                .scheduledExecutorService("paymentidempotencykeys")
+                .threads(1)
+                .build()
+                .scheduleWithFixedDelay(paymentIdempotencyKeys::deleteExpired, 0,
+                        configuration.getPaymentIdempotencyKeyConfig().getCleanupInterval().toSeconds(), TimeUnit.SECONDS);
+    }
+
+    private void initialisePaymentRateLimiter(ProductsConfiguration configuration, Environment environment,
+                                              PaymentRateLimiter paymentRateLimiter) {
+        if (paymentRateLimiter.isEnabled()) {
+            long idleBucketExpiry = configuration.getPaymentRateLimitConfig().getIdleBucketExpiry().toSeconds();
+            environment
+                    .lifecycle()
+                    .scheduledExecutorService("paymentratelimiter")
+                    .threads(1)
+                    .build()
+                    .scheduleWithFixedDelay(paymentRateLimiter::evictIdleBuckets, idleBucketExpiry, idleBucketExpiry, TimeUnit.SECONDS);
+        }
+    }
+
+    private void initialiseProductUsageStats(ProductsConfiguration configuration, Environment environment,
+                                             ProductUsageStatsRecorder productUsageStatsRecorder) {
+        long foldInterval = configuration.getProductUsageStatsConfig().getFoldInterval().toMilliseconds();
+        environment
+                .lifecycle()
+                .scheduledExecutorService("productusagestats")
+                .threads(1)
+                .build()
+                .scheduleWithFixedDelay(productUsageStatsRecorder::fold, foldInterval, foldInterval, TimeUnit.MILLISECONDS);
+    }
+
     private void attachExceptionMappersTo(JerseyEnvironment jersey) {
         jersey.register(PaymentCreationExceptionMapper.class);
         jersey.register(PaymentCreatorNotFoundExceptionMapper.class);
         jersey.register(BadPaymentRequestExceptionMapper.class);
+        jersey.register(PaymentRateLimitExceededExceptionMapper.class);
+        jersey.register(IdempotencyKeyConflictExceptionMapper.class);
         jersey.register(ProductNotFoundExceptionMapper.class);
         jersey.register(MetadataNotFoundExceptionMapper.class);
         jersey.register(ValidationExceptionMapper.class);
@@ -1,5 +1,20 @@
 package uk.gov.pay.products.client;
 
+import io.prometheus.client.Gauge;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.glassfish.jersey.apache.connector.ApacheClientProperties;
+import org.glassfish.jersey.apache.connector.ApacheConnectorProvider;
+import org.glassfish.jersey.apache.connector.ApacheHttpClientBuilderConfigurator;
+import org.glassfish.jersey.client.ClientConfig;
+import org.glassfish.jersey.client.ClientProperties;
+import org.glassfish.jersey.client.RequestEntityProcessing;
 import uk.gov.pay.products.config.RestClientConfiguration;
 import uk.gov.service.payments.logging.RestClientLoggingFilter;
 
@@ -8,25 +23,36 @@ import jakarta.ws.rs.client.Client;
 import jakarta.ws.rs.client.ClientBuilder;
 import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.Executors;
+import java.util.function.ToIntFunction;
 
 import static java.lang.String.format;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
 public class RestClientFactory {
     private static final String TLSV1_2 = "TLSv1.2";
 
-    public static Client buildClient(RestClientConfiguration clientConfig) {
-        ClientBuilder clientBuilder = ClientBuilder.newBuilder();
+    private static final Gauge connectionsMetric = Gauge.build()
+            .name("rest_client_connections")
+            .help("Number of pooled HTTP client connections by client and state (leased, idle, pending or max)")
+            .labelNames("client", "state")
+            .register();
+
+    /**
+     * Builds a client with its own pool of connections, whose metrics are labelled with the given client name
+     */
+    public static Client buildClient(String clientName, RestClientConfiguration clientConfig) {
+        SSLContext sslContext = clientConfig.isDisabledSecureConnection() ? null : tlsContext();
+
+        // the pooled connector config goes first, as it replaces any properties already set on the builder
+        ClientBuilder clientBuilder = ClientBuilder.newBuilder().withConfig(pooledConnectorConfig(clientName, clientConfig, sslContext));
         clientBuilder.connectTimeout(clientConfig.getConnectTimeout().getQuantity(), clientConfig.getConnectTimeout().getUnit());
         clientBuilder.readTimeout(clientConfig.getReadTimeout().getQuantity(), clientConfig.getReadTimeout().getUnit());
+        // async requests wait for the (blocking) connector on a virtual thread each rather than on a fixed size pool
+        clientBuilder.executorService(Executors.newVirtualThreadPerTaskExecutor());
 
-        if (!clientConfig.isDisabledSecureConnection()) {
-            try {
-                SSLContext sslContext = SSLContext.getInstance(TLSV1_2);
-                sslContext.init(null, null, null);
-                clientBuilder = clientBuilder.sslContext(sslContext);
-            } catch (NoSuchAlgorithmException | KeyManagementException e) {
-                throw new RuntimeException(format("Unable to create an SSL context for %s", TLSV1_2), e);
-            }
+        if (sslContext != null) {
+            clientBuilder = clientBuilder.sslContext(sslContext);
         }
 
         Client client = clientBuilder.build();
@@ -34,6 +60,72 @@ public class RestClientFactory {
         return client;
     }
 
+    private static SSLContext tlsContext() {
+        try {
+            SSLContext sslContext = SSLContext.getInstance(TLSV1_2);
+            sslContext.init(null, null, null);
+            return sslContext;
+        } catch (NoSuchAlgorithmException | KeyManagementException e) {
+            throw new RuntimeException(format("Unable to create an SSL context for %s", TLSV1_2), e);
+        }
+    }
+
+    /*
+    Keeps connections to public API open between requests, so a burst of payments does not pay for a TCP and TLS
+    handshake each. All connections share the one SSL context, whose session cache lets new connections resume an
+    earlier TLS session. Idle connections are closed before load balancers drop them.
+     */
+    private static ClientConfig pooledConnectorConfig(String clientName, RestClientConfiguration clientConfig, SSLContext sslContext) {
+        Registry<ConnectionSocketFactory> socketFactoryRegistry = RegistryBuilder.<ConnectionSocketFactory>create()
+                .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                .register("https", sslContext == null ?
+                        SSLConnectionSocketFactory.getSocketFactory() :
+                        new SSLConnectionSocketFactory(sslContext))
+                .build();
+
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(socketFactoryRegistry,
+                null, null, null, clientConfig.getConnectionTimeToLive().toMilliseconds(), MILLISECONDS);
+        connectionManager.setMaxTotal(clientConfig.getMaxConnections());
+        connectionManager.setDefaultMaxPerRoute(clientConfig.getMaxConnectionsPerRoute());
+        connectionManager.setValidateAfterInactivity(Math.toIntExact(clientConfig.getValidateAfterInactivity().toMilliseconds()));
+        registerConnectionMetrics(clientName, connectionManager);
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectionRequestTimeout(Math.toIntExact(clientConfig.getConnectionRequestTimeout().toMilliseconds()))
+                .build();
+        long idleConnectionTimeoutMillis = clientConfig.getIdleConnectionTimeout().toMilliseconds();
+
+        return new ClientConfig()
+                .connectorProvider(new ApacheConnectorProvider())
+                .property(ApacheClientProperties.CONNECTION_MANAGER, connectionManager)
+                .property(ApacheClientProperties.REQUEST_CONFIG, requestConfig)
+                // send a Content-Length rather than chunking request bodies, as the JDK connector did
+                .property(ClientProperties.REQUEST_ENTITY_PROCESSING, RequestEntityProcessing.BUFFERED)
+                .register((ApacheHttpClientBuilderConfigurator) httpClientBuilder -> httpClientBuilder
+                        .evictExpiredConnections()
+                        .evictIdleConnections(idleConnectionTimeoutMillis, MILLISECONDS));
+    }
+
+    /*
+    A client built again under the same name, as in tests, takes over its metrics from the one built before it.
+     */
+    private static void registerConnectionMetrics(String clientName, PoolingHttpClientConnectionManager connectionManager) {
+        registerConnectionMetric(clientName, "leased", connectionManager, PoolStats::getLeased);
+        registerConnectionMetric(clientName, "idle", connectionManager, PoolStats::getAvailable);
+        registerConnectionMetric(clientName, "pending", connectionManager, PoolStats::getPending);
+        registerConnectionMetric(clientName, "max", connectionManager, PoolStats::getMax);
+    }
+
+    private static void registerConnectionMetric(String clientName, String state, PoolingHttpClientConnectionManager connectionManager,
+                                                 ToIntFunction<PoolStats> statistic) {
+        connectionsMetric.setChild(new Gauge.Child() {
+            @Override
+            public double get() {
+                return statistic.applyAsInt(connectionManager.getTotalStats());
+            }
+        }, clientName, state);
+    }
+
     private RestClientFactory() {
     }
 }
@@ -0,0 +1,95 @@
+package uk.gov.pay.products.client.publicapi;
+
+import io.prometheus.client.Counter;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Lets concurrent lookups of the same payment share one call to public API, so a burst of reads of one payment (a
+ * polling page, retries) does not turn into a burst of identical requests.
+ * <p>
+ * A lookup made while another lookup of the same payment with the same API token is in flight waits for that call and
+ * gets its result, or its error, instead of calling public API itself. Nothing is cached: the first lookup after the
+ * call completes calls public API again.
+ */
+public class PaymentLookupCoalescer {
+
+    private static final Counter paymentLookupsMetric = Counter.build()
+            .name("publicapi_payment_lookups")
+            .help("Number of payment lookups that called public API (called) or shared a call already in flight (coalesced)")
+            .labelNames("outcome")
+            .register();
+
+    private final Map<Map.Entry<String, String>, CompletableFuture<Optional<PaymentResponse>>> inFlightLookups =
+            new ConcurrentHashMap<>();
+
+    public Optional<PaymentResponse> lookUp(String apiToken, String paymentId, Supplier<Optional<PaymentResponse>> publicApiCall) {
+        Map.Entry<String, String> key = Map.entry(apiToken, paymentId);
+        CompletableFuture<Optional<PaymentResponse>> lookup = new CompletableFuture<>();
+        CompletableFuture<Optional<PaymentResponse>> inFlightLookup = inFlightLookups.putIfAbsent(key, lookup);
+        if (inFlightLookup != null) {
+            paymentLookupsMetric.labels("coalesced").inc();
+            return join(inFlightLookup);
+        }
+
+        paymentLookupsMetric.labels("called").inc();
+        try {
+            Optional<PaymentResponse> paymentResponse = publicApiCall.get();
+            inFlightLookups.remove(key, lookup);
+            lookup.complete(paymentResponse);
+            return paymentResponse;
+        } catch (RuntimeException e) {
+            inFlightLookups.remove(key, lookup);
+            lookup.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Every caller gets its own copy of the shared future, so a caller that gives up waiting and cancels it does not
+     * cancel the lookup for everyone else.
+     */
+    public CompletableFuture<Optional<PaymentResponse>> lookUpAsync(String apiToken, String paymentId,
+                                                                    Supplier<CompletableFuture<Optional<PaymentResponse>>> publicApiCall) {
+        Map.Entry<String, String> key = Map.entry(apiToken, paymentId);
+        CompletableFuture<Optional<PaymentResponse>> lookup = new CompletableFuture<>();
+        CompletableFuture<Optional<PaymentResponse>> inFlightLookup = inFlightLookups.putIfAbsent(key, lookup);
+        if (inFlightLookup != null) {
+            paymentLookupsMetric.labels("coalesced").inc();
+            return inFlightLookup.copy();
+        }
+
+        paymentLookupsMetric.labels("called").inc();
+        try {
+            publicApiCall.get().whenComplete((paymentResponse, throwable) -> {
+                inFlightLookups.remove(key, lookup);
+                if (throwable == null) {
+                    lookup.complete(paymentResponse);
+                } else {
+                    lookup.completeExceptionally(throwable instanceof CompletionException && throwable.getCause() != null ?
+                            throwable.getCause() : throwable);
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlightLookups.remove(key, lookup);
+            lookup.completeExceptionally(e);
+        }
+        return lookup.copy();
+    }
+
+    private static Optional<PaymentResponse> join(CompletableFuture<Optional<PaymentResponse>> inFlightLookup) {
+        try {
+            return inFlightLookup.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
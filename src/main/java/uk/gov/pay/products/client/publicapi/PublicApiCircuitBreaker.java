@@ -0,0 +1,153 @@
+package uk.gov.pay.products.client.publicapi;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.prometheus.client.Counter;
+import io.prometheus.client.Gauge;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.gov.pay.products.config.PublicApiCircuitBreakerConfig;
+import uk.gov.pay.products.exception.PublicApiResponseErrorException;
+import uk.gov.pay.products.exception.PublicApiUnavailableException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
+
+import static java.lang.String.format;
+import static net.logstash.logback.argument.StructuredArguments.kv;
+
+/**
+ * Guards calls to public API with a circuit breaker and a bulkhead, so a slow or failing public API cannot tie up
+ * every request thread for the whole read timeout.
+ * <p>
+ * The circuit breaker opens once too many of the recent calls failed or were slow, fails every call straight away
+ * while it is open, and lets a few probe calls through once waitDurationInOpenState has passed to find out whether
+ * public API has recovered. Error responses other than 5xx are the caller's fault and do not count as failures. The
+ * bulkhead fails calls straight away once maxConcurrentCalls calls are already in progress. Either way the call fails
+ * with a {@link PublicApiUnavailableException}.
+ */
+public class PublicApiCircuitBreaker {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PublicApiCircuitBreaker.class);
+
+    private static final String NAME = "publicapi";
+
+    private static final Gauge stateMetric = Gauge.build()
+            .name("publicapi_circuit_breaker_state")
+            .help("Whether the public API circuit breaker is in the state (1) or not (0)")
+            .labelNames("state")
+            .register();
+
+    private static final Gauge failureRateMetric = Gauge.build()
+            .name("publicapi_circuit_breaker_failure_rate")
+            .help("Percentage of recent public API calls that failed, or -1 if there have not been enough calls yet")
+            .register();
+
+    private static final Gauge slowCallRateMetric = Gauge.build()
+            .name("publicapi_circuit_breaker_slow_call_rate")
+            .help("Percentage of recent public API calls that were slow, or -1 if there have not been enough calls yet")
+            .register();
+
+    private static final Gauge availableConcurrentCallsMetric = Gauge.build()
+            .name("publicapi_bulkhead_available_concurrent_calls")
+            .help("Number of further public API calls that can be made at the same time")
+            .register();
+
+    private static final Counter rejectedCallsMetric = Counter.build()
+            .name("publicapi_rejected_calls")
+            .help("Number of public API calls failed straight away, by reason")
+            .labelNames("reason")
+            .register();
+
+    private final CircuitBreaker circuitBreaker;
+    private final Bulkhead bulkhead;
+
+    public PublicApiCircuitBreaker(PublicApiCircuitBreakerConfig config) {
+        this.circuitBreaker = CircuitBreaker.of(NAME, CircuitBreakerConfig.custom()
+                .failureRateThreshold(config.getFailureRateThreshold())
+                .slowCallRateThreshold(config.getSlowCallRateThreshold())
+                .slowCallDurationThreshold(config.getSlowCallDurationThreshold().toJavaDuration())
+                .slidingWindowType(CircuitBreakerConfig.SlidingWindowType.COUNT_BASED)
+                .slidingWindowSize(config.getSlidingWindowSize())
+                .minimumNumberOfCalls(config.getMinimumNumberOfCalls())
+                .waitDurationInOpenState(config.getWaitDurationInOpenState().toJavaDuration())
+                .permittedNumberOfCallsInHalfOpenState(config.getPermittedNumberOfCallsInHalfOpenState())
+                .automaticTransitionFromOpenToHalfOpenEnabled(true)
+                .recordException(PublicApiCircuitBreaker::isFailure)
+                .build());
+        this.bulkhead = Bulkhead.of(NAME, BulkheadConfig.custom()
+                .maxConcurrentCalls(config.getMaxConcurrentCalls())
+                .maxWaitDuration(config.getMaxWaitForConcurrentCall().toJavaDuration())
+                .build());
+
+        circuitBreaker.getEventPublisher()
+                .onStateTransition(event -> LOGGER.warn(format("Public API circuit breaker went from %s to %s",
+                                event.getStateTransition().getFromState(), event.getStateTransition().getToState()),
+                        kv("circuit_breaker_state", event.getStateTransition().getToState().name())))
+                .onCallNotPermitted(event -> rejectedCallsMetric.labels("circuit_breaker_open").inc());
+        bulkhead.getEventPublisher()
+                .onCallRejected(event -> rejectedCallsMetric.labels("bulkhead_full").inc());
+        registerMetrics();
+    }
+
+    public CircuitBreaker.State getState() {
+        return circuitBreaker.getState();
+    }
+
+    public <T> T call(Supplier<T> publicApiCall) {
+        try {
+            return Bulkhead.decorateSupplier(bulkhead, CircuitBreaker.decorateSupplier(circuitBreaker, publicApiCall)).get();
+        } catch (CallNotPermittedException | BulkheadFullException e) {
+            throw new PublicApiUnavailableException(e);
+        }
+    }
+
+    public <T> CompletableFuture<T> callAsync(Supplier<CompletionStage<T>> publicApiCall) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Bulkhead.decorateCompletionStage(bulkhead, CircuitBreaker.decorateCompletionStage(circuitBreaker, publicApiCall))
+                .get()
+                .whenComplete((value, throwable) -> {
+                    if (throwable == null) {
+                        result.complete(value);
+                    } else {
+                        Throwable cause = unwrap(throwable);
+                        result.completeExceptionally(cause instanceof CallNotPermittedException || cause instanceof BulkheadFullException ?
+                                new PublicApiUnavailableException(cause) : cause);
+                    }
+                });
+        return result;
+    }
+
+    private static boolean isFailure(Throwable throwable) {
+        return !(unwrap(throwable) instanceof PublicApiResponseErrorException e) || e.getErrorStatus() >= 500;
+    }
+
+    private static Throwable unwrap(Throwable throwable) {
+        return throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+    }
+
+    private void registerMetrics() {
+        for (CircuitBreaker.State state : CircuitBreaker.State.values()) {
+            registerMetric(stateMetric, () -> circuitBreaker.getState() == state ? 1 : 0, state.name().toLowerCase());
+        }
+        registerMetric(failureRateMetric, () -> circuitBreaker.getMetrics().getFailureRate());
+        registerMetric(slowCallRateMetric, () -> circuitBreaker.getMetrics().getSlowCallRate());
+        registerMetric(availableConcurrentCallsMetric, () -> bulkhead.getMetrics().getAvailableConcurrentCalls());
+    }
+
+    private static void registerMetric(Gauge gauge, DoubleSupplier value, String... labelValues) {
+        gauge.setChild(new Gauge.Child() {
+            @Override
+            public double get() {
+                return value.getAsDouble();
+            }
+        }, labelValues);
+    }
+}
@@ -5,13 +5,16 @@ import org.eclipse.jetty.http.HttpStatus;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import uk.gov.pay.products.exception.PublicApiResponseErrorException;
+import uk.gov.pay.products.exception.PublicApiUnavailableException;
 
 import jakarta.ws.rs.client.Client;
 import jakarta.ws.rs.client.Entity;
+import jakarta.ws.rs.client.Invocation;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.UriBuilder;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 import static java.lang.String.format;
 import static jakarta.ws.rs.core.HttpHeaders.AUTHORIZATION;
@@ -26,64 +29,124 @@ public class PublicApiRestClient {
 
     private final Client client;
     private final String publicApiUrl;
+    private final PublicApiCircuitBreaker publicApiCircuitBreaker;
+    private final PaymentLookupCoalescer paymentLookupCoalescer = new PaymentLookupCoalescer();
 
     @Inject
-    public PublicApiRestClient(Client client, String publicApiUrl) {
+    public PublicApiRestClient(Client client, String publicApiUrl, PublicApiCircuitBreaker publicApiCircuitBreaker) {
         this.client = client;
         this.publicApiUrl = publicApiUrl;
+        this.publicApiCircuitBreaker = publicApiCircuitBreaker;
     }
 
+    /**
+     * Creates a payment in public API, or throws a {@link PublicApiUnavailableException} straight away while the public
+     * API circuit breaker is open.
+     */
     public PaymentResponse createPayment(String apiToken, PaymentRequest paymentRequest) {
         logger.info("Public API client requested creation of payment - [ {} ]", paymentRequest);
 
-        Response response = client
-                .target(buildAbsoluteUrl(PAYMENTS_PATH))
-                .request()
-                .header(AUTHORIZATION, constructBearerToken(apiToken))
-                .post(Entity.entity(paymentRequest, MediaType.APPLICATION_JSON));
-
-        if (response.getStatus() == HttpStatus.CREATED_201) {
-            PaymentResponse paymentResponse = response.readEntity(PaymentResponse.class);
-            logger.info(
-                    "Public API client returned payment created",
-                    kv(PAYMENT_EXTERNAL_ID, paymentResponse.getPaymentId())
-            );
-            return paymentResponse;
-        }
+        return publicApiCircuitBreaker.call(() -> toCreatedPayment(paymentsRequest(apiToken)
+                .post(Entity.entity(paymentRequest, MediaType.APPLICATION_JSON))));
+    }
+
+    /**
+     * Same as {@link #createPayment(String, PaymentRequest)} without holding the calling thread for the round trip. An
+     * error response from public API completes the future exceptionally with a {@link PublicApiResponseErrorException}.
+     */
+    public CompletableFuture<PaymentResponse> createPaymentAsync(String apiToken, PaymentRequest paymentRequest) {
+        logger.info("Public API client requested creation of payment - [ {} ]", paymentRequest);
 
-        PublicApiResponseErrorException publicApiResponseErrorException = new PublicApiResponseErrorException(response);
-        logger.warn("Public API client returned an error - [ {} ]", publicApiResponseErrorException.getMessage());
-        throw publicApiResponseErrorException;
+        return publicApiCircuitBreaker.callAsync(() -> paymentsRequest(apiToken)
+                .rx()
+                .post(Entity.entity(paymentRequest, MediaType.APPLICATION_JSON))
+                .thenApply(this::toCreatedPayment));
     }
 
+    /**
+     * Finds a payment in public API. Concurrent lookups of the same payment share one call, see
+     * {@link PaymentLookupCoalescer}.
+     */
     public Optional<PaymentResponse> getPayment(String apiToken, String paymentId) {
         logger.info("Public API client requested finding payment",
                 kv(PAYMENT_EXTERNAL_ID, paymentId)
         );
 
-        Response response = client
+        return paymentLookupCoalescer.lookUp(apiToken, paymentId,
+                () -> publicApiCircuitBreaker.call(() -> toFoundPayment(paymentRequest(apiToken, paymentId)
+                        .get())));
+    }
+
+    /**
+     * Same as {@link #getPayment(String, String)} without holding the calling thread for the round trip. An error
+     * response from public API completes the future exceptionally with a {@link PublicApiResponseErrorException}.
+     */
+    public CompletableFuture<Optional<PaymentResponse>> getPaymentAsync(String apiToken, String paymentId) {
+        logger.info("Public API client requested finding payment",
+                kv(PAYMENT_EXTERNAL_ID, paymentId)
+        );
+
+        return paymentLookupCoalescer.lookUpAsync(apiToken, paymentId,
+                () -> publicApiCircuitBreaker.callAsync(() -> paymentRequest(apiToken, paymentId)
+                        .rx()
+                        .get()
+                        .thenApply(this::toFoundPayment)));
+    }
+
+    private Invocation.Builder paymentsRequest(String apiToken) {
+        return client
+                .target(buildAbsoluteUrl(PAYMENTS_PATH))
+                .request()
+                .header(AUTHORIZATION, constructBearerToken(apiToken));
+    }
+
+    private Invocation.Builder paymentRequest(String apiToken, String paymentId) {
+        return client
                 .target(buildAbsoluteUrl(format(PAYMENT_PATH, paymentId)))
                 .request()
-                .header(AUTHORIZATION, constructBearerToken(apiToken))
-                .get();
-
-        if (response.getStatus() == HttpStatus.OK_200) {
-            PaymentResponse paymentResponse = response.readEntity(PaymentResponse.class);
-            logger.info(
-                    "Public API client returned payment found",
-                    kv(PAYMENT_EXTERNAL_ID, paymentResponse.getPaymentId())
-            );
-            return Optional.of(paymentResponse);
-        }
+                .header(AUTHORIZATION, constructBearerToken(apiToken));
+    }
 
-        if (response.getStatus() == HttpStatus.NOT_FOUND_404) {
-            logger.info("Public API client returned payment not found");
-            return Optional.empty();
+    /*
+    Every response is closed once read, so its connection goes back to the pool even when its body is never read.
+     */
+    private PaymentResponse toCreatedPayment(Response response) {
+        try (response) {
+            if (response.getStatus() == HttpStatus.CREATED_201) {
+                PaymentResponse paymentResponse = response.readEntity(PaymentResponse.class);
+                logger.info(
+                        "Public API client returned payment created",
+                        kv(PAYMENT_EXTERNAL_ID, paymentResponse.getPaymentId())
+                );
+                return paymentResponse;
+            }
+
+            PublicApiResponseErrorException publicApiResponseErrorException = new PublicApiResponseErrorException(response);
+            logger.warn("Public API client returned an error - [ {} ]", publicApiResponseErrorException.getMessage());
+            throw publicApiResponseErrorException;
         }
+    }
 
-        PublicApiResponseErrorException publicApiResponseErrorException = new PublicApiResponseErrorException(response);
-        logger.error("Public API client returned an error - [ {} ]", publicApiResponseErrorException.getMessage());
-        throw publicApiResponseErrorException;
+    private Optional<PaymentResponse> toFoundPayment(Response response) {
+        try (response) {
+            if (response.getStatus() == HttpStatus.OK_200) {
+                PaymentResponse paymentResponse = response.readEntity(PaymentResponse.class);
+                logger.info(
+                        "Public API client returned payment found",
+                        kv(PAYMENT_EXTERNAL_ID, paymentResponse.getPaymentId())
+                );
+                return Optional.of(paymentResponse);
+            }
+
+            if (response.getStatus() == HttpStatus.NOT_FOUND_404) {
+                logger.info("Public API client returned payment not found");
+                return Optional.empty();
+            }
+
+            PublicApiResponseErrorException publicApiResponseErrorException = new PublicApiResponseErrorException(response);
+            logger.error("Public API client returned an error - [ {} ]", publicApiResponseErrorException.getMessage());
+            throw publicApiResponseErrorException;
+        }
     }
 
     private String buildAbsoluteUrl(String relativeUrl) {
@@ -1,5 +1,6 @@
 package uk.gov.pay.products.config;
 
+import io.dropwizard.util.Duration;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotNull;
 
@@ -16,6 +17,35 @@ public class ExpungeHistoricalDataConfig {
     @Min(value = 0L)
     private int numberOfPaymentsToExpunge;
 
+    @NotNull
+    private boolean dryRun;
+
+    @NotNull
+    private boolean dropExpiredPartitions;
+
+    @NotNull
+    private boolean expungeInChunks;
+
+    @NotNull
+    @Min(value = 1L)
+    private int chunkSize = 500;
+
+    @NotNull
+    private Duration maxRunDuration = Duration.minutes(1L);
+
+    @NotNull
+    private Duration pauseBetweenChunks = Duration.milliseconds(0L);
+
+    @NotNull
+    private Duration maxReplicationLag = Duration.seconds(30L);
+
+    @NotNull
+    @Min(value = 0L)
+    private int maxSessionsWaitingForLocks = 0;
+
+    @NotNull
+    private Duration pauseWhenDatabaseBusy = Duration.seconds(5L);
+
     public boolean isExpungeHistoricalDataEnabled() {
         return expungeHistoricalDataEnabled;
     }
@@ -27,4 +57,40 @@ public class ExpungeHistoricalDataConfig {
     public int getNumberOfPaymentsToExpunge() {
         return numberOfPaymentsToExpunge;
     }
+
+    public boolean isDryRun() {
+        return dryRun;
+    }
+
+    public boolean isDropExpiredPartitions() {
+        return dropExpiredPartitions;
+    }
+
+    public boolean isExpungeInChunks() {
+        return expungeInChunks;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public Duration getMaxRunDuration() {
+        return maxRunDuration;
+    }
+
+    public Duration getPauseBetweenChunks() {
+        return pauseBetweenChunks;
+    }
+
+    public Duration getMaxReplicationLag() {
+        return maxReplicationLag;
+    }
+
+    public int getMaxSessionsWaitingForLocks() {
+        return maxSessionsWaitingForLocks;
+    }
+
+    public Duration getPauseWhenDatabaseBusy() {
+        return pauseWhenDatabaseBusy;
+    }
 }
@@ -0,0 +1,60 @@
+package uk.gov.pay.products.config;
+
+import io.dropwizard.util.Duration;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+
+public class PaymentCreationOutboxConfig {
+
+    @NotNull
+    private boolean enabled;
+
+    @NotNull
+    @Min(value = 1L)
+    private int numberOfWorkers = 4;
+
+    @NotNull
+    @Min(value = 1L)
+    private int batchSize = 10;
+
+    @NotNull
+    private Duration pollInterval = Duration.milliseconds(100L);
+
+    @NotNull
+    private Duration claimDuration = Duration.minutes(2L);
+
+    @NotNull
+    @Min(value = 1L)
+    private int maxAttempts = 3;
+
+    @NotNull
+    private Duration maxWaitForPaymentCreation = Duration.seconds(10L);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getNumberOfWorkers() {
+        return numberOfWorkers;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public Duration getPollInterval() {
+        return pollInterval;
+    }
+
+    public Duration getClaimDuration() {
+        return claimDuration;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public Duration getMaxWaitForPaymentCreation() {
+        return maxWaitForPaymentCreation;
+    }
+}
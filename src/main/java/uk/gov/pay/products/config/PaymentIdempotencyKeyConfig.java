@@ -0,0 +1,21 @@
+package uk.gov.pay.products.config;
+
+import io.dropwizard.util.Duration;
+import jakarta.validation.constraints.NotNull;
+
+public class PaymentIdempotencyKeyConfig {
+
+    @NotNull
+    private Duration keyTtl = Duration.hours(24L);
+
+    @NotNull
+    private Duration cleanupInterval = Duration.hours(1L);
+
+    public Duration getKeyTtl() {
+        return keyTtl;
+    }
+
+    public Duration getCleanupInterval() {
+        return cleanupInterval;
+    }
+}
@@ -0,0 +1,37 @@
+package uk.gov.pay.products.config;
+
+import io.dropwizard.util.Duration;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+
+public class PaymentPartitionConfig {
+
+    @NotNull
+    @Min(value = 1L)
+    private int monthsToCreateAhead = 3;
+
+    @NotNull
+    private Duration creationInterval = Duration.hours(6L);
+
+    @NotNull
+    private Duration detachLockTimeout = Duration.seconds(5L);
+
+    @NotNull
+    private Duration detachStatementTimeout = Duration.minutes(10L);
+
+    public int getMonthsToCreateAhead() {
+        return monthsToCreateAhead;
+    }
+
+    public Duration getCreationInterval() {
+        return creationInterval;
+    }
+
+    public Duration getDetachLockTimeout() {
+        return detachLockTimeout;
+    }
+
+    public Duration getDetachStatementTimeout() {
+        return detachStatementTimeout;
+    }
+}
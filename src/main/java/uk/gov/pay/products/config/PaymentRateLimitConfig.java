@@ -0,0 +1,54 @@
+package uk.gov.pay.products.config;
+
+import io.dropwizard.util.Duration;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+
+public class PaymentRateLimitConfig {
+
+    @NotNull
+    private boolean enabled;
+
+    @NotNull
+    @Min(value = 1L)
+    private int requestsPerSecondPerProduct = 10;
+
+    @NotNull
+    @Min(value = 1L)
+    private int burstPerProduct = 20;
+
+    @NotNull
+    @Min(value = 1L)
+    private int requestsPerSecondPerGatewayAccount = 50;
+
+    @NotNull
+    @Min(value = 1L)
+    private int burstPerGatewayAccount = 100;
+
+    @NotNull
+    private Duration idleBucketExpiry = Duration.minutes(10L);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getRequestsPerSecondPerProduct() {
+        return requestsPerSecondPerProduct;
+    }
+
+    public int getBurstPerProduct() {
+        return burstPerProduct;
+    }
+
+    public int getRequestsPerSecondPerGatewayAccount() {
+        return requestsPerSecondPerGatewayAccount;
+    }
+
+    public int getBurstPerGatewayAccount() {
+        return burstPerGatewayAccount;
+    }
+
+    public Duration getIdleBucketExpiry() {
+        return idleBucketExpiry;
+    }
+}
@@ -0,0 +1,23 @@
+package uk.gov.pay.products.config;
+
+import io.dropwizard.util.Duration;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+
+public class PaymentStatusLookupConfig {
+
+    @NotNull
+    @Min(value = 1L)
+    private int maxConcurrentLookups = 10;
+
+    @NotNull
+    private Duration maxLookupDuration = Duration.seconds(5L);
+
+    public int getMaxConcurrentLookups() {
+        return maxConcurrentLookups;
+    }
+
+    public Duration getMaxLookupDuration() {
+        return maxLookupDuration;
+    }
+}
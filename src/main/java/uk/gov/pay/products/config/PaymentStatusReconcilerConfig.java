@@ -0,0 +1,74 @@
+package uk.gov.pay.products.config;
+
+import io.dropwizard.util.Duration;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+
+public class PaymentStatusReconcilerConfig {
+
+    @NotNull
+    private boolean enabled = false;
+
+    @NotNull
+    private Duration interval = Duration.seconds(10L);
+
+    @NotNull
+    @Min(value = 1L)
+    private int batchSize = 100;
+
+    @NotNull
+    @Min(value = 1L)
+    private int maxConcurrentLookupsPerApiToken = 2;
+
+    @NotNull
+    private Duration maxRunDuration = Duration.minutes(1L);
+
+    @NotNull
+    private Duration maxPaymentAge = Duration.days(7L);
+
+    @NotNull
+    @Min(value = 1L)
+    private int recheckAgeDivisor = 10;
+
+    @NotNull
+    private Duration minRecheckInterval = Duration.seconds(30L);
+
+    @NotNull
+    private Duration maxRecheckInterval = Duration.hours(6L);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Duration getInterval() {
+        return interval;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public int getMaxConcurrentLookupsPerApiToken() {
+        return maxConcurrentLookupsPerApiToken;
+    }
+
+    public Duration getMaxRunDuration() {
+        return maxRunDuration;
+    }
+
+    public Duration getMaxPaymentAge() {
+        return maxPaymentAge;
+    }
+
+    public int getRecheckAgeDivisor() {
+        return recheckAgeDivisor;
+    }
+
+    public Duration getMinRecheckInterval() {
+        return minRecheckInterval;
+    }
+
+    public Duration getMaxRecheckInterval() {
+        return maxRecheckInterval;
+    }
+}
@@ -0,0 +1,30 @@
+package uk.gov.pay.products.config;
+
+import io.dropwizard.util.Duration;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+
+public class ProductCacheConfig {
+
+    @NotNull
+    private boolean enabled;
+
+    @NotNull
+    @Min(value = 1L)
+    private long maximumSize = 10000L;
+
+    @NotNull
+    private Duration expireAfterWrite = Duration.seconds(30L);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long getMaximumSize() {
+        return maximumSize;
+    }
+
+    public Duration getExpireAfterWrite() {
+        return expireAfterWrite;
+    }
+}
@@ -0,0 +1,44 @@
+package uk.gov.pay.products.config;
+
+import io.dropwizard.util.Duration;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+
+public class ProductPathIndexConfig {
+
+    @NotNull
+    private boolean enabled;
+
+    @NotNull
+    private Duration refreshInterval = Duration.seconds(30L);
+
+    @NotNull
+    private Duration fullRefreshInterval = Duration.minutes(10L);
+
+    @NotNull
+    @Min(value = 1L)
+    private long maximumMissingPaths = 100000L;
+
+    @NotNull
+    private Duration expireMissingPathsAfter = Duration.minutes(10L);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Duration getRefreshInterval() {
+        return refreshInterval;
+    }
+
+    public Duration getFullRefreshInterval() {
+        return fullRefreshInterval;
+    }
+
+    public long getMaximumMissingPaths() {
+        return maximumMissingPaths;
+    }
+
+    public Duration getExpireMissingPathsAfter() {
+        return expireMissingPathsAfter;
+    }
+}
@@ -0,0 +1,14 @@
+package uk.gov.pay.products.config;
+
+import io.dropwizard.util.Duration;
+import jakarta.validation.constraints.NotNull;
+
+public class ProductUsageStatsConfig {
+
+    @NotNull
+    private Duration foldInterval = Duration.seconds(1L);
+
+    public Duration getFoldInterval() {
+        return foldInterval;
+    }
+}
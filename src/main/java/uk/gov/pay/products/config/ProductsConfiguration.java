@@ -1,8 +1,10 @@
 package uk.gov.pay.products.config;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import io.dropwizard.core.Configuration;
 import io.dropwizard.db.DataSourceFactory;
+import io.dropwizard.validation.ValidationMethod;
 
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotNull;
@@ -15,6 +17,61 @@ public class ProductsConfiguration extends Configuration {
     @NotNull
     @JsonProperty("expungeHistoricalDataConfig")
     private ExpungeHistoricalDataConfig expungeHistoricalDataConfig;
+
+    @Valid
+    @NotNull
+    @JsonProperty("productCacheConfig")
+    private ProductCacheConfig productCacheConfig;
+
+    @Valid
+    @NotNull
+    @JsonProperty("productPathIndexConfig")
+    private ProductPathIndexConfig productPathIndexConfig;
+
+    @Valid
+    @NotNull
+    @JsonProperty("paymentPartitionConfig")
+    private PaymentPartitionConfig paymentPartitionConfig;
+
+    @Valid
+    @NotNull
+    @JsonProperty("referenceNumberPoolConfig")
+    private ReferenceNumberPoolConfig referenceNumberPoolConfig;
+
+    @Valid
+    @NotNull
+    @JsonProperty("paymentCreationOutboxConfig")
+    private PaymentCreationOutboxConfig paymentCreationOutboxConfig;
+
+    @Valid
+    @NotNull
+    @JsonProperty("paymentStatusLookupConfig")
+    private PaymentStatusLookupConfig paymentStatusLookupConfig;
+
+    @Valid
+    @NotNull
+    @JsonProperty("paymentStatusReconcilerConfig")
+    private PaymentStatusReconcilerConfig paymentStatusReconcilerConfig;
+
+    @Valid
+    @NotNull
+    @JsonProperty("publicApiCircuitBreakerConfig")
+    private PublicApiCircuitBreakerConfig publicApiCircuitBreakerConfig;
+
+    @Valid
+    @NotNull
+    @JsonProperty("paymentIdempotencyKeyConfig")
+    private PaymentIdempotencyKeyConfig paymentIdempotencyKeyConfig;
+
+    @Valid
+    @NotNull
+    @JsonProperty("paymentRateLimitConfig")
+    private PaymentRateLimitConfig paymentRateLimitConfig;
+
+    @Valid
+    @NotNull
+    @JsonProperty("productUsageStatsConfig")
+    private ProductUsageStatsConfig productUsageStatsConfig;
     
     @Valid
     @NotNull
@@ -103,4 +160,67 @@ public class ProductsConfiguration extends Configuration {
     public ExpungeHistoricalDataConfig getExpungeHistoricalDataConfig() {
         return expungeHistoricalDataConfig;
     }
+
+    public ProductCacheConfig getProductCacheConfig() {
+        return productCacheConfig;
+    }
+
+    public ProductPathIndexConfig getProductPathIndexConfig() {
+        return productPathIndexConfig;
+    }
+
+    public PaymentPartitionConfig getPaymentPartitionConfig() {
+        return paymentPartitionConfig;
+    }
+
+    public ReferenceNumberPoolConfig getReferenceNumberPoolConfig() {
+        return referenceNumberPoolConfig;
+    }
+
+    public PaymentCreationOutboxConfig getPaymentCreationOutboxConfig() {
+        return paymentCreationOutboxConfig;
+    }
+
+    public PaymentStatusLookupConfig getPaymentStatusLookupConfig() {
+        return paymentStatusLookupConfig;
+    }
+
+    public PaymentStatusReconcilerConfig getPaymentStatusReconcilerConfig() {
+        return paymentStatusReconcilerConfig;
+    }
+
+    public PublicApiCircuitBreakerConfig getPublicApiCircuitBreakerConfig() {
+        return publicApiCircuitBreakerConfig;
+    }
+
+    public PaymentIdempotencyKeyConfig getPaymentIdempotencyKeyConfig() {
+        return paymentIdempotencyKeyConfig;
+    }
+
+    public PaymentRateLimitConfig getPaymentRateLimitConfig() {
+        return paymentRateLimitConfig;
+    }
+
+    public ProductUsageStatsConfig getProductUsageStatsConfig() {
+        return productUsageStatsConfig;
+    }
+
+    /*
+    A payment creation worker's claim on a payment must outlast the longest call to public API it can make, or another
+    worker could create the same payment again while the first is still waiting for public API.
+     */
+    @JsonIgnore
+    @ValidationMethod(message = "paymentCreationOutboxConfig.claimDuration must be longer than the jerseyClientConfiguration " +
+            "connectionRequestTimeout, connectTimeout and readTimeout and the publicApiCircuitBreakerConfig " +
+            "maxWaitForConcurrentCall added together")
+    public boolean isPaymentCreationOutboxClaimLongerThanPublicApiCalls() {
+        if (paymentCreationOutboxConfig == null || restClientConfiguration == null || publicApiCircuitBreakerConfig == null) {
+            return true;
+        }
+        long longestPublicApiCallMillis = restClientConfiguration.getConnectionRequestTimeout().toMilliseconds()
+                + restClientConfiguration.getConnectTimeout().toMilliseconds()
+                + restClientConfiguration.getReadTimeout().toMilliseconds()
+                + publicApiCircuitBreakerConfig.getMaxWaitForConcurrentCall().toMilliseconds();
+        return paymentCreationOutboxConfig.getClaimDuration().toMilliseconds() > longestPublicApiCallMillis;
+    }
 }
@@ -8,13 +8,21 @@ import com.google.inject.assistedinject.FactoryModuleBuilder;
 import com.google.inject.persist.jpa.JpaPersistModule;
 import io.dropwizard.core.setup.Environment;
 import io.dropwizard.db.DataSourceFactory;
+import io.dropwizard.db.ManagedDataSource;
 import uk.gov.pay.products.client.RestClientFactory;
+import uk.gov.pay.products.client.publicapi.PublicApiCircuitBreaker;
 import uk.gov.pay.products.client.publicapi.PublicApiRestClient;
 import uk.gov.pay.products.service.LinksDecorator;
+import uk.gov.pay.products.service.PaymentCreationOutbox;
 import uk.gov.pay.products.service.PaymentFactory;
 import uk.gov.pay.products.service.PaymentFinder;
+import uk.gov.pay.products.service.PaymentRateLimiter;
+import uk.gov.pay.products.service.ProductCache;
 import uk.gov.pay.products.service.ProductFactory;
 import uk.gov.pay.products.service.ProductFinder;
+import uk.gov.pay.products.service.ProductPathIndex;
+import uk.gov.pay.products.service.ProductUsageStatsRecorder;
+import uk.gov.pay.products.service.ReferenceNumberPool;
 import uk.gov.pay.products.validations.ProductRequestValidator;
 import uk.gov.pay.products.validations.RequestValidations;
 
@@ -34,7 +42,7 @@ public class ProductsModule extends AbstractModule {
 
     @Override
     protected void configure() {
-        final Client client = RestClientFactory.buildClient(configuration.getRestClientConfiguration());
+        final Client client = RestClientFactory.buildClient("publicapi", configuration.getRestClientConfiguration());
 
         bind(Client.class).toInstance(client);
         bind(ProductsConfiguration.class).toInstance(configuration);
@@ -49,11 +57,19 @@ public class ProductsModule extends AbstractModule {
                         configuration.getBaseUrl(),
                         configuration.getProductsUiPayUrl(),
                         configuration.getFriendlyBaseUri()));
+        bind(ProductCache.class).in(Singleton.class);
+        bind(ProductPathIndex.class).in(Singleton.class);
+        bind(ReferenceNumberPool.class).in(Singleton.class);
+        bind(PaymentCreationOutbox.class).in(Singleton.class);
+        bind(PaymentRateLimiter.class).in(Singleton.class);
+        bind(ProductUsageStatsRecorder.class).in(Singleton.class);
         bind(ProductFinder.class).in(Singleton.class);
         bind(PaymentFinder.class).in(Singleton.class);
 
+        PublicApiCircuitBreaker publicApiCircuitBreaker = new PublicApiCircuitBreaker(configuration.getPublicApiCircuitBreakerConfig());
+        bind(PublicApiCircuitBreaker.class).toInstance(publicApiCircuitBreaker);
         bind(PublicApiRestClient.class).toInstance(
-                new PublicApiRestClient(client, configuration.getPublicApiUrl()));
+                new PublicApiRestClient(client, configuration.getPublicApiUrl(), publicApiCircuitBreaker));
 
         install(jpaModule(configuration));
         install(new FactoryModuleBuilder().build(ProductFactory.class));
@@ -91,4 +107,76 @@ public class ProductsModule extends AbstractModule {
     public ExpungeHistoricalDataConfig expungeHistoricalDataConfig() {
         return configuration.getExpungeHistoricalDataConfig();
     }
+
+    @Provides
+    @Singleton
+    public ProductCacheConfig productCacheConfig() {
+        return configuration.getProductCacheConfig();
+    }
+
+    @Provides
+    @Singleton
+    public ProductPathIndexConfig productPathIndexConfig() {
+        return configuration.getProductPathIndexConfig();
+    }
+
+    @Provides
+    @Singleton
+    public PaymentPartitionConfig paymentPartitionConfig() {
+        return configuration.getPaymentPartitionConfig();
+    }
+
+    @Provides
+    @Singleton
+    public ReferenceNumberPoolConfig referenceNumberPoolConfig() {
+        return configuration.getReferenceNumberPoolConfig();
+    }
+
+    @Provides
+    @Singleton
+    public PaymentCreationOutboxConfig paymentCreationOutboxConfig() {
+        return configuration.getPaymentCreationOutboxConfig();
+    }
+
+    @Provides
+    @Singleton
+    public PaymentStatusLookupConfig paymentStatusLookupConfig() {
+        return configuration.getPaymentStatusLookupConfig();
+    }
+
+    @Provides
+    @Singleton
+    public PaymentStatusReconcilerConfig paymentStatusReconcilerConfig() {
+        return configuration.getPaymentStatusReconcilerConfig();
+    }
+
+    @Provides
+    @Singleton
+    public PaymentIdempotencyKeyConfig paymentIdempotencyKeyConfig() {
+        return configuration.getPaymentIdempotencyKeyConfig();
+    }
+
+    @Provides
+    @Singleton
+    public PaymentRateLimitConfig paymentRateLimitConfig() {
+        return configuration.getPaymentRateLimitConfig();
+    }
+
+    @Provides
+    @Singleton
+    public ProductUsageStatsConfig productUsageStatsConfig() {
+        return configuration.getProductUsageStatsConfig();
+    }
+
+    /*
+    Pooled connections for statements that cannot run through JPA, such as DETACH PARTITION CONCURRENTLY, which
+    cannot run in a transaction. The pool has the settings and metrics of the configured database.
+     */
+    @Provides
+    @Singleton
+    public ManagedDataSource managedDataSource() {
+        ManagedDataSource dataSource = configuration.getDataSourceFactory().build(environment.metrics(), "products");
+        environment.lifecycle().manage(dataSource);
+        return dataSource;
+    }
 }
@@ -0,0 +1,80 @@
+package uk.gov.pay.products.config;
+
+import io.dropwizard.util.Duration;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+
+public class PublicApiCircuitBreakerConfig {
+
+    @NotNull
+    @Min(value = 1L)
+    @Max(value = 100L)
+    private int failureRateThreshold = 50;
+
+    @NotNull
+    @Min(value = 1L)
+    @Max(value = 100L)
+    private int slowCallRateThreshold = 80;
+
+    @NotNull
+    private Duration slowCallDurationThreshold = Duration.seconds(10L);
+
+    @NotNull
+    @Min(value = 1L)
+    private int slidingWindowSize = 100;
+
+    @NotNull
+    @Min(value = 1L)
+    private int minimumNumberOfCalls = 20;
+
+    @NotNull
+    private Duration waitDurationInOpenState = Duration.seconds(30L);
+
+    @NotNull
+    @Min(value = 1L)
+    private int permittedNumberOfCallsInHalfOpenState = 5;
+
+    @NotNull
+    @Min(value = 1L)
+    private int maxConcurrentCalls = 100;
+
+    @NotNull
+    private Duration maxWaitForConcurrentCall = Duration.milliseconds(0L);
+
+    public int getFailureRateThreshold() {
+        return failureRateThreshold;
+    }
+
+    public int getSlowCallRateThreshold() {
+        return slowCallRateThreshold;
+    }
+
+    public Duration getSlowCallDurationThreshold() {
+        return slowCallDurationThreshold;
+    }
+
+    public int getSlidingWindowSize() {
+        return slidingWindowSize;
+    }
+
+    public int getMinimumNumberOfCalls() {
+        return minimumNumberOfCalls;
+    }
+
+    public Duration getWaitDurationInOpenState() {
+        return waitDurationInOpenState;
+    }
+
+    public int getPermittedNumberOfCallsInHalfOpenState() {
+        return permittedNumberOfCallsInHalfOpenState;
+    }
+
+    public int getMaxConcurrentCalls() {
+        return maxConcurrentCalls;
+    }
+
+    public Duration getMaxWaitForConcurrentCall() {
+        return maxWaitForConcurrentCall;
+    }
+}
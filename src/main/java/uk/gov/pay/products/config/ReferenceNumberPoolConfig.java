@@ -0,0 +1,60 @@
+package uk.gov.pay.products.config;
+
+import io.dropwizard.util.Duration;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+
+public class ReferenceNumberPoolConfig {
+
+    @NotNull
+    private boolean enabled;
+
+    @NotNull
+    @Min(value = 1L)
+    private int referenceNumbersPerGatewayAccount = 20;
+
+    @NotNull
+    @Min(value = 1L)
+    private long maximumGatewayAccounts = 1000L;
+
+    @NotNull
+    @Min(value = 1L)
+    private int minimumPaymentsPerWindow = 60;
+
+    @NotNull
+    private Duration paymentRateWindow = Duration.minutes(1L);
+
+    @NotNull
+    private Duration refillInterval = Duration.seconds(1L);
+
+    @NotNull
+    private Duration expireIdleGatewayAccountsAfter = Duration.minutes(10L);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getReferenceNumbersPerGatewayAccount() {
+        return referenceNumbersPerGatewayAccount;
+    }
+
+    public long getMaximumGatewayAccounts() {
+        return maximumGatewayAccounts;
+    }
+
+    public int getMinimumPaymentsPerWindow() {
+        return minimumPaymentsPerWindow;
+    }
+
+    public Duration getPaymentRateWindow() {
+        return paymentRateWindow;
+    }
+
+    public Duration getRefillInterval() {
+        return refillInterval;
+    }
+
+    public Duration getExpireIdleGatewayAccountsAfter() {
+        return expireIdleGatewayAccountsAfter;
+    }
+}
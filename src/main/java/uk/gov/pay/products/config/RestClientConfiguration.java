@@ -3,6 +3,7 @@ package uk.gov.pay.products.config;
 import io.dropwizard.core.Configuration;
 import io.dropwizard.util.Duration;
 
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotNull;
 
 public class RestClientConfiguration extends Configuration {
@@ -14,6 +15,26 @@ public class RestClientConfiguration extends Configuration {
     @NotNull
     private Duration readTimeout = Duration.seconds(50L);
 
+    @NotNull
+    @Min(value = 1L)
+    private int maxConnections = 100;
+
+    @NotNull
+    @Min(value = 1L)
+    private int maxConnectionsPerRoute = 50;
+
+    @NotNull
+    private Duration connectionRequestTimeout = Duration.seconds(5L);
+
+    @NotNull
+    private Duration connectionTimeToLive = Duration.minutes(15L);
+
+    @NotNull
+    private Duration idleConnectionTimeout = Duration.seconds(30L);
+
+    @NotNull
+    private Duration validateAfterInactivity = Duration.seconds(2L);
+
     public Boolean isDisabledSecureConnection() {
         return "true".equals(disabledSecureConnection);
     }
@@ -25,4 +46,28 @@ public class RestClientConfiguration extends Configuration {
     public Duration getReadTimeout() {
         return readTimeout;
     }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public int getMaxConnectionsPerRoute() {
+        return maxConnectionsPerRoute;
+    }
+
+    public Duration getConnectionRequestTimeout() {
+        return connectionRequestTimeout;
+    }
+
+    public Duration getConnectionTimeToLive() {
+        return connectionTimeToLive;
+    }
+
+    public Duration getIdleConnectionTimeout() {
+        return idleConnectionTimeout;
+    }
+
+    public Duration getValidateAfterInactivity() {
+        return validateAfterInactivity;
+    }
 }
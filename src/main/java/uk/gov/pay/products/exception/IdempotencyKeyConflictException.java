@@ -0,0 +1,8 @@
+package uk.gov.pay.products.exception;
+
+public class IdempotencyKeyConflictException extends RuntimeException {
+
+    public IdempotencyKeyConflictException(String message) {
+        super(message);
+    }
+}
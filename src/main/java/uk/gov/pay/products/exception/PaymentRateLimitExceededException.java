@@ -0,0 +1,15 @@
+package uk.gov.pay.products.exception;
+
+public class PaymentRateLimitExceededException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public PaymentRateLimitExceededException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
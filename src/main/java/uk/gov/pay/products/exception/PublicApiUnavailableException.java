@@ -0,0 +1,14 @@
+package uk.gov.pay.products.exception;
+
+/**
+ * Thrown instead of calling public API while the public API circuit breaker is open or too many calls to public API
+ * are already in progress.
+ */
+public class PublicApiUnavailableException extends RuntimeException {
+
+    public static final String PUBLIC_API_UNAVAILABLE = "PUBLIC_API_UNAVAILABLE";
+
+    public PublicApiUnavailableException(Throwable cause) {
+        super(cause.getMessage(), cause);
+    }
+}
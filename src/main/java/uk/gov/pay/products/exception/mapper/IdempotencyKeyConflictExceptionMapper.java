@@ -0,0 +1,23 @@
+package uk.gov.pay.products.exception.mapper;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.gov.pay.products.exception.IdempotencyKeyConflictException;
+import uk.gov.pay.products.util.Errors;
+
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.ext.ExceptionMapper;
+
+public class IdempotencyKeyConflictExceptionMapper implements ExceptionMapper<IdempotencyKeyConflictException> {
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    @Override
+    public Response toResponse(IdempotencyKeyConflictException exception) {
+        logger.info("IdempotencyKeyConflictException thrown: {}", exception.getMessage());
+        return Response
+                .status(Response.Status.CONFLICT)
+                .entity(Errors.from(exception.getMessage()))
+                .build();
+    }
+}
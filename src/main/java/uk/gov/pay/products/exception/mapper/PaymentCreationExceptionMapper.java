@@ -11,6 +11,7 @@ import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.ext.ExceptionMapper;
 
 import static java.lang.String.format;
+import static uk.gov.pay.products.exception.PublicApiUnavailableException.PUBLIC_API_UNAVAILABLE;
 import static uk.gov.pay.products.util.PublicAPIErrorCodes.ACCOUNT_NOT_LINKED_WITH_PSP;
 import static uk.gov.pay.products.util.PublicAPIErrorCodes.CREATE_PAYMENT_CARD_NUMBER_IN_PAYMENT_LINK_REFERENCE_ERROR;
 import static uk.gov.pay.products.util.PublicAPIErrorCodes.CREATE_PAYMENT_VALIDATION_ERROR;
@@ -49,6 +50,9 @@ public class PaymentCreationExceptionMapper implements ExceptionMapper<PaymentCr
                 logger.info(format("%s thrown due to %s. Reason: %s", PaymentCreationException.class.getName(), 
                         CREATE_PAYMENT_VALIDATION_ERROR, exception.getMessage()));
             }
+            case PUBLIC_API_UNAVAILABLE ->
+                logger.warn(format("PaymentCreationException thrown due to %s. Reason: %s", PUBLIC_API_UNAVAILABLE,
+                        exception.getMessage()));
             default -> logger.error("PaymentCreationException thrown.", exception);
         }
 
@@ -62,6 +66,7 @@ public class PaymentCreationExceptionMapper implements ExceptionMapper<PaymentCr
         return switch (exception.getErrorCode()) {
             case CREATE_PAYMENT_CARD_NUMBER_IN_PAYMENT_LINK_REFERENCE_ERROR -> HttpStatus.BAD_REQUEST_400;
             case CREATE_PAYMENT_VALIDATION_ERROR -> HttpStatus.UNPROCESSABLE_ENTITY_422;
+            case PUBLIC_API_UNAVAILABLE -> HttpStatus.SERVICE_UNAVAILABLE_503;
             default -> exception.getErrorStatusCode() == HttpStatus.FORBIDDEN_403 ? HttpStatus.FORBIDDEN_403 : HttpStatus.INTERNAL_SERVER_ERROR_500;
         };
     }
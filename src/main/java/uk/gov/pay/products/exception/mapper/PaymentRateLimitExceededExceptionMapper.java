@@ -0,0 +1,25 @@
+package uk.gov.pay.products.exception.mapper;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.gov.pay.products.exception.PaymentRateLimitExceededException;
+import uk.gov.pay.products.util.Errors;
+
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.ext.ExceptionMapper;
+
+public class PaymentRateLimitExceededExceptionMapper implements ExceptionMapper<PaymentRateLimitExceededException> {
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    @Override
+    public Response toResponse(PaymentRateLimitExceededException exception) {
+        logger.info("PaymentRateLimitExceededException thrown: {}", exception.getMessage());
+        return Response
+                .status(Response.Status.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, exception.getRetryAfterSeconds())
+                .entity(Errors.from(exception.getMessage()))
+                .build();
+    }
+}
@@ -0,0 +1,31 @@
+package uk.gov.pay.products.healthchecks;
+
+import com.codahale.metrics.health.HealthCheck;
+import uk.gov.pay.products.service.PaymentPartitionManager;
+
+import java.time.YearMonth;
+import java.util.List;
+
+import static java.lang.String.format;
+
+/**
+ * Reports whether the payments table has partitions for this month and next month. Payments cannot be created without
+ * a partition for their month, so a missing partition makes the instance unhealthy a month before that happens.
+ */
+public class PaymentPartitionsHealthCheck extends HealthCheck {
+
+    private final PaymentPartitionManager paymentPartitionManager;
+
+    public PaymentPartitionsHealthCheck(PaymentPartitionManager paymentPartitionManager) {
+        this.paymentPartitionManager = paymentPartitionManager;
+    }
+
+    @Override
+    protected Result check() {
+        List<YearMonth> monthsWithoutPartition = paymentPartitionManager.findMonthsWithoutPartition();
+        if (!monthsWithoutPartition.isEmpty()) {
+            return Result.unhealthy(format("No payments partition for %s", monthsWithoutPartition));
+        }
+        return Result.healthy();
+    }
+}
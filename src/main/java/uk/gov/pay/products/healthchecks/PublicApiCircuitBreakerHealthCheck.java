@@ -0,0 +1,24 @@
+package uk.gov.pay.products.healthchecks;
+
+import com.codahale.metrics.health.HealthCheck;
+import uk.gov.pay.products.client.publicapi.PublicApiCircuitBreaker;
+
+import static java.lang.String.format;
+
+/**
+ * Reports the state of the public API circuit breaker. It is always healthy, as an open circuit breaker means public
+ * API is unwell, not this instance, and restarting it would not help.
+ */
+public class PublicApiCircuitBreakerHealthCheck extends HealthCheck {
+
+    private final PublicApiCircuitBreaker publicApiCircuitBreaker;
+
+    public PublicApiCircuitBreakerHealthCheck(PublicApiCircuitBreaker publicApiCircuitBreaker) {
+        this.publicApiCircuitBreaker = publicApiCircuitBreaker;
+    }
+
+    @Override
+    protected Result check() {
+        return Result.healthy(format("Circuit breaker is %s", publicApiCircuitBreaker.getState()));
+    }
+}
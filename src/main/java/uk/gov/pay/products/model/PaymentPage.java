@@ -0,0 +1,23 @@
+package uk.gov.pay.products.model;
+
+import java.util.List;
+import java.util.Optional;
+
+public class PaymentPage {
+
+    private final List<Payment> payments;
+    private final PaymentPageCursor nextCursor;
+
+    public PaymentPage(List<Payment> payments, PaymentPageCursor nextCursor) {
+        this.payments = payments;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Payment> getPayments() {
+        return payments;
+    }
+
+    public Optional<PaymentPageCursor> getNextCursor() {
+        return Optional.ofNullable(nextCursor);
+    }
+}
@@ -0,0 +1,54 @@
+package uk.gov.pay.products.model;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Optional;
+
+/**
+ * Position of the last payment on a page of payments ordered by date created and id, both descending.
+ * Serialised as {@code <date created as ISO-8601 instant>_<payment id>} for use in next page links.
+ */
+public class PaymentPageCursor {
+
+    private static final char SEPARATOR = '_';
+
+    private final ZonedDateTime dateCreated;
+    private final Integer paymentId;
+
+    public PaymentPageCursor(ZonedDateTime dateCreated, Integer paymentId) {
+        this.dateCreated = dateCreated;
+        this.paymentId = paymentId;
+    }
+
+    public static Optional<PaymentPageCursor> parse(String cursor) {
+        if (cursor == null) {
+            return Optional.empty();
+        }
+        int separatorIndex = cursor.lastIndexOf(SEPARATOR);
+        if (separatorIndex < 1) {
+            return Optional.empty();
+        }
+        try {
+            Instant dateCreated = Instant.parse(cursor.substring(0, separatorIndex));
+            int paymentId = Integer.parseInt(cursor.substring(separatorIndex + 1));
+            return Optional.of(new PaymentPageCursor(dateCreated.atZone(ZoneOffset.UTC), paymentId));
+        } catch (DateTimeParseException | NumberFormatException e) {
+            return Optional.empty();
+        }
+    }
+
+    public ZonedDateTime getDateCreated() {
+        return dateCreated;
+    }
+
+    public Integer getPaymentId() {
+        return paymentId;
+    }
+
+    @Override
+    public String toString() {
+        return dateCreated.toInstant().toString() + SEPARATOR + paymentId;
+    }
+}
@@ -0,0 +1,23 @@
+package uk.gov.pay.products.model;
+
+import java.util.List;
+import java.util.Optional;
+
+public class ProductPage {
+
+    private final List<Product> products;
+    private final Integer nextAfterId;
+
+    public ProductPage(List<Product> products, Integer nextAfterId) {
+        this.products = products;
+        this.nextAfterId = nextAfterId;
+    }
+
+    public List<Product> getProducts() {
+        return products;
+    }
+
+    public Optional<Integer> getNextAfterId() {
+        return Optional.ofNullable(nextAfterId);
+    }
+}
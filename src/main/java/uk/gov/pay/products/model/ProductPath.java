@@ -0,0 +1,42 @@
+package uk.gov.pay.products.model;
+
+public class ProductPath {
+
+    private final Integer productId;
+    private final String productExternalId;
+    private final String serviceNamePath;
+    private final String productNamePath;
+
+    public ProductPath(Integer productId, String productExternalId, String serviceNamePath, String productNamePath) {
+        this.productId = productId;
+        this.productExternalId = productExternalId;
+        this.serviceNamePath = serviceNamePath;
+        this.productNamePath = productNamePath;
+    }
+
+    public Integer getProductId() {
+        return productId;
+    }
+
+    public String getProductExternalId() {
+        return productExternalId;
+    }
+
+    public String getServiceNamePath() {
+        return serviceNamePath;
+    }
+
+    public String getProductNamePath() {
+        return productNamePath;
+    }
+
+    @Override
+    public String toString() {
+        return "ProductPath{" +
+                "productId=" + productId +
+                ", productExternalId='" + productExternalId + '\'' +
+                ", serviceNamePath='" + serviceNamePath + '\'' +
+                ", productNamePath='" + productNamePath + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,60 @@
+package uk.gov.pay.products.model.product;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+import io.swagger.v3.oas.annotations.media.Schema;
+import uk.gov.pay.products.model.Product;
+import uk.gov.pay.products.util.Errors;
+
+import java.util.List;
+
+import static jakarta.ws.rs.core.Response.Status.BAD_REQUEST;
+import static jakarta.ws.rs.core.Response.Status.CONFLICT;
+import static jakarta.ws.rs.core.Response.Status.CREATED;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+public class BulkCreateProductResult {
+
+    @JsonProperty
+    @Schema(description = "Status the product would have been given by a single create request", example = "201")
+    private final int status;
+    @JsonProperty
+    private final Product product;
+    @JsonProperty
+    @Schema(example = "[\"Field [name] is required\"]")
+    private final List<String> errors;
+
+    private BulkCreateProductResult(int status, Product product, List<String> errors) {
+        this.status = status;
+        this.product = product;
+        this.errors = errors;
+    }
+
+    public static BulkCreateProductResult created(Product product) {
+        return new BulkCreateProductResult(CREATED.getStatusCode(), product, null);
+    }
+
+    public static BulkCreateProductResult invalid(Errors errors) {
+        return new BulkCreateProductResult(BAD_REQUEST.getStatusCode(), null, errors.getErrors());
+    }
+
+    public static BulkCreateProductResult conflict() {
+        return new BulkCreateProductResult(CONFLICT.getStatusCode(), null,
+                List.of("A product with this service_name_path and product_name_path already exists"));
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public Product getProduct() {
+        return product;
+    }
+
+    public List<String> getErrors() {
+        return errors;
+    }
+}
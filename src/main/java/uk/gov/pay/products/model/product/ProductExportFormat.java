@@ -0,0 +1,31 @@
+package uk.gov.pay.products.model.product;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+public enum ProductExportFormat {
+    NDJSON("application/x-ndjson", "ndjson"),
+    CSV("text/csv", "csv");
+
+    private final String mediaType;
+    private final String fileExtension;
+
+    ProductExportFormat(String mediaType, String fileExtension) {
+        this.mediaType = mediaType;
+        this.fileExtension = fileExtension;
+    }
+
+    public String getMediaType() {
+        return mediaType;
+    }
+
+    public String getFileExtension() {
+        return fileExtension;
+    }
+
+    public static Optional<ProductExportFormat> from(String format) {
+        return Arrays.stream(values())
+                .filter(exportFormat -> exportFormat.fileExtension.equalsIgnoreCase(format))
+                .findFirst();
+    }
+}
@@ -0,0 +1,112 @@
+package uk.gov.pay.products.model.product;
+
+import java.time.ZonedDateTime;
+
+public class ProductExportRow {
+
+    private final int id;
+    private final String externalId;
+    private final String name;
+    private final String description;
+    private final Long price;
+    private final String status;
+    private final String type;
+    private final String language;
+    private final String serviceNamePath;
+    private final String productNamePath;
+    private final boolean referenceEnabled;
+    private final String referenceLabel;
+    private final ZonedDateTime dateCreated;
+    private final long paymentCount;
+    private final ZonedDateTime lastPaymentDate;
+    private final String metadataJson;
+
+    public ProductExportRow(int id, String externalId, String name, String description, Long price, String status,
+                            String type, String language, String serviceNamePath, String productNamePath, boolean referenceEnabled,
+                            String referenceLabel, ZonedDateTime dateCreated, long paymentCount,
+                            ZonedDateTime lastPaymentDate, String metadataJson) {
+        this.id = id;
+        this.externalId = externalId;
+        this.name = name;
+        this.description = description;
+        this.price = price;
+        this.status = status;
+        this.type = type;
+        this.language = language;
+        this.serviceNamePath = serviceNamePath;
+        this.productNamePath = productNamePath;
+        this.referenceEnabled = referenceEnabled;
+        this.referenceLabel = referenceLabel;
+        this.dateCreated = dateCreated;
+        this.paymentCount = paymentCount;
+        this.lastPaymentDate = lastPaymentDate;
+        this.metadataJson = metadataJson;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getExternalId() {
+        return externalId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public Long getPrice() {
+        return price;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getLanguage() {
+        return language;
+    }
+
+    public String getServiceNamePath() {
+        return serviceNamePath;
+    }
+
+    public String getProductNamePath() {
+        return productNamePath;
+    }
+
+    public boolean isReferenceEnabled() {
+        return referenceEnabled;
+    }
+
+    public String getReferenceLabel() {
+        return referenceLabel;
+    }
+
+    public ZonedDateTime getDateCreated() {
+        return dateCreated;
+    }
+
+    public long getPaymentCount() {
+        return paymentCount;
+    }
+
+    public ZonedDateTime getLastPaymentDate() {
+        return lastPaymentDate;
+    }
+
+    /**
+     * @return the product's metadata as a JSON object, or null if it has none
+     */
+    public String getMetadataJson() {
+        return metadataJson;
+    }
+}
@@ -0,0 +1,40 @@
+package uk.gov.pay.products.persistence.dao;
+
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.persist.Transactional;
+import jakarta.persistence.EntityManager;
+
+import java.time.Duration;
+
+/*
+Reads the load on the database from the Postgres statistics views, so that long running maintenance jobs can back off
+while replicas are behind or other sessions are waiting for locks. Sessions belonging to other users are only visible
+with the pg_read_all_stats role, otherwise their waits and lag read as nothing.
+ */
+@Transactional
+public class DatabaseActivityDao {
+
+    private final Provider<EntityManager> entityManager;
+
+    @Inject
+    public DatabaseActivityDao(Provider<EntityManager> entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    public Duration findMaxReplicationLag() {
+        String query = "SELECT COALESCE(CAST(EXTRACT(EPOCH FROM MAX(replay_lag)) * 1000 AS BIGINT), 0) " +
+                "FROM pg_stat_replication";
+
+        Number replicationLagMillis = (Number) entityManager.get().createNativeQuery(query).getSingleResult();
+        return Duration.ofMillis(replicationLagMillis.longValue());
+    }
+
+    public long countSessionsWaitingForLocks() {
+        String query = "SELECT COUNT(1) FROM pg_stat_activity " +
+                "WHERE datname = current_database() AND wait_event_type = 'Lock'";
+
+        Number sessionsWaitingForLocks = (Number) entityManager.get().createNativeQuery(query).getSingleResult();
+        return sessionsWaitingForLocks.longValue();
+    }
+}
@@ -0,0 +1,72 @@
+package uk.gov.pay.products.persistence.dao;
+
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import org.eclipse.persistence.config.HintValues;
+import org.eclipse.persistence.config.QueryHints;
+import uk.gov.pay.products.persistence.entity.PaymentCreationOutboxEntity;
+
+import jakarta.persistence.EntityManager;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.List;
+
+import static java.util.Comparator.comparing;
+
+public class PaymentCreationOutboxDao extends JpaDao<PaymentCreationOutboxEntity> {
+
+    @Inject
+    public PaymentCreationOutboxDao(Provider<EntityManager> entityManager) {
+        super(entityManager);
+    }
+
+    /*
+    Claims up to maxNumberOfPayments unclaimed (or no longer claimed) outbox rows, oldest first. A worker creates the
+    payments it has claimed one after the other, so each is claimed for one more claimDuration than the one before it:
+    the first until now plus claimDuration, the second until now plus twice claimDuration and so on. Rows that another
+    worker is claiming at the same moment are skipped rather than waited for. The claimed rows are refreshed so their
+    attempts are never read from an earlier copy in the persistence context.
+     */
+    @SuppressWarnings("unchecked")
+    public List<PaymentCreationOutboxEntity> claim(ZonedDateTime now, Duration claimDuration, int maxNumberOfPayments) {
+        String query = "UPDATE payment_creation_outbox " +
+                "SET claimed_until = CAST(?1 AS TIMESTAMP WITH TIME ZONE) + claimed.turn * ?2 * INTERVAL '1 millisecond', attempts = attempts + 1 " +
+                "FROM (SELECT id, row_number() OVER (ORDER BY id) AS turn FROM (" +
+                "SELECT id FROM payment_creation_outbox " +
+                "WHERE claimed_until IS NULL OR claimed_until < ?1 " +
+                "ORDER BY id LIMIT ?3 FOR UPDATE SKIP LOCKED) unclaimed) claimed " +
+                "WHERE payment_creation_outbox.id = claimed.id " +
+                "RETURNING payment_creation_outbox.*";
+
+        List<PaymentCreationOutboxEntity> claimed = entityManager.get().createNativeQuery(query, PaymentCreationOutboxEntity.class)
+                .setParameter(1, Timestamp.from(now.toInstant()))
+                .setParameter(2, claimDuration.toMillis())
+                .setParameter(3, maxNumberOfPayments)
+                .setHint(QueryHints.REFRESH, HintValues.TRUE)
+                .getResultList();
+        return claimed.stream()
+                .sorted(comparing(PaymentCreationOutboxEntity::getId))
+                .toList();
+    }
+
+    public boolean existsByPaymentExternalId(String paymentExternalId) {
+        String query = "SELECT COUNT(outbox) FROM PaymentCreationOutboxEntity outbox " +
+                "WHERE outbox.paymentExternalId = :paymentExternalId";
+
+        return entityManager.get()
+                .createQuery(query, Long.class)
+                .setParameter("paymentExternalId", paymentExternalId)
+                .getSingleResult() > 0;
+    }
+
+    public int deleteByPaymentExternalId(String paymentExternalId) {
+        String query = "DELETE FROM PaymentCreationOutboxEntity outbox " +
+                "WHERE outbox.paymentExternalId = :paymentExternalId";
+
+        return entityManager.get()
+                .createQuery(query)
+                .setParameter("paymentExternalId", paymentExternalId)
+                .executeUpdate();
+    }
+}
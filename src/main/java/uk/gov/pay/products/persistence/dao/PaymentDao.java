@@ -2,13 +2,22 @@ package uk.gov.pay.products.persistence.dao;
 
 import com.google.inject.Inject;
 import com.google.inject.Provider;
+import org.eclipse.persistence.config.HintValues;
+import org.eclipse.persistence.config.QueryHints;
+import uk.gov.pay.products.model.PaymentPageCursor;
 import uk.gov.pay.products.persistence.entity.PaymentEntity;
+import uk.gov.pay.products.util.PaymentStatus;
 
 import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
 import java.sql.Timestamp;
+import java.time.Duration;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 public class PaymentDao extends JpaDao<PaymentEntity> {
 
@@ -36,6 +45,50 @@ public class PaymentDao extends JpaDao<PaymentEntity> {
                 .getResultList();
     }
     
+    /*
+    Keyset pagination over payments_product_id_date_created_idx, newest first. The payment id breaks ties between
+    payments created at the same time so that no payment is skipped or repeated between pages.
+     */
+    public List<PaymentEntity> findByProductExternalIdBefore(String productExternalId, PaymentStatus status,
+                                                             ZonedDateTime fromDate, ZonedDateTime toDate,
+                                                             PaymentPageCursor before, int maxResults) {
+        List<Object> parameters = new ArrayList<>();
+        parameters.add(productExternalId);
+        StringBuilder query = new StringBuilder("SELECT payment.* FROM payments payment " +
+                "JOIN products product ON payment.product_id = product.id " +
+                "WHERE product.external_id = ?1 ");
+
+        if (status != null) {
+            parameters.add(status.name());
+            query.append("AND payment.status = ?").append(parameters.size()).append(" ");
+        }
+        if (fromDate != null) {
+            parameters.add(Timestamp.from(fromDate.toInstant()));
+            query.append("AND payment.date_created >= ?").append(parameters.size()).append(" ");
+        }
+        if (toDate != null) {
+            parameters.add(Timestamp.from(toDate.toInstant()));
+            query.append("AND payment.date_created < ?").append(parameters.size()).append(" ");
+        }
+        if (before != null) {
+            parameters.add(Timestamp.from(before.getDateCreated().toInstant()));
+            parameters.add(before.getPaymentId());
+            query.append("AND (payment.date_created, payment.id) < (?").append(parameters.size() - 1)
+                    .append(", ?").append(parameters.size()).append(") ");
+        }
+        parameters.add(maxResults);
+        query.append("ORDER BY payment.date_created DESC, payment.id DESC LIMIT ?").append(parameters.size());
+
+        Query queryBuilder = entityManager.get().createNativeQuery(query.toString(), PaymentEntity.class);
+        for (int i = 0; i < parameters.size(); i++) {
+            queryBuilder.setParameter(i + 1, parameters.get(i));
+        }
+
+        @SuppressWarnings("unchecked")
+        List<PaymentEntity> payments = queryBuilder.getResultList();
+        return payments;
+    }
+
     public Optional<PaymentEntity> findByGatewayAccountIdAndReferenceNumber(Integer gatewayAccountId, String referenceNumber) {
         String query = "SELECT payment FROM PaymentEntity payment " +
                 "WHERE payment.gatewayAccountId = :gatewayAccountId " +
@@ -60,14 +113,169 @@ public class PaymentDao extends JpaDao<PaymentEntity> {
                 .getResultList().stream().findFirst();
     }
 
+    /*
+    System generated reference numbers are reserved in payment_reference_numbers, whose primary key keeps them unique
+    per gateway account. Returns false if the reference number has already been taken.
+     */
+    public boolean reserveReferenceNumber(Integer gatewayAccountId, String referenceNumber) {
+        String query = "INSERT INTO payment_reference_numbers (gateway_account_id, reference_number) " +
+                "VALUES (?1, ?2) " +
+                "ON CONFLICT DO NOTHING " +
+                "RETURNING reference_number";
+
+        return !entityManager.get().createNativeQuery(query)
+                .setParameter(1, gatewayAccountId)
+                .setParameter(2, referenceNumber)
+                .getResultList().isEmpty();
+    }
+
+    /*
+    Reserves as many of the reference numbers as are still free for the reference number pool in one statement and
+    returns those that were reserved. They are marked as pooled, so they can be released if they are never used.
+     */
+    public List<String> reserveReferenceNumbers(Integer gatewayAccountId, List<String> referenceNumbers) {
+        String values = IntStream.range(0, referenceNumbers.size())
+                .mapToObj(i -> "(?1, ?" + (i + 2) + ", true)")
+                .collect(Collectors.joining(", "));
+        String query = "INSERT INTO payment_reference_numbers (gateway_account_id, reference_number, pooled) " +
+                "VALUES " + values + " " +
+                "ON CONFLICT DO NOTHING " +
+                "RETURNING reference_number";
+
+        Query reserveQuery = entityManager.get().createNativeQuery(query)
+                .setParameter(1, gatewayAccountId);
+        for (int i = 0; i < referenceNumbers.size(); i++) {
+            reserveQuery.setParameter(i + 2, referenceNumbers.get(i));
+        }
+        List<?> reservedReferenceNumbers = reserveQuery.getResultList();
+        return reservedReferenceNumbers.stream()
+                .map(Object::toString)
+                .toList();
+    }
+
+    /*
+    Releases pooled reference numbers that were never used.
+     */
+    public int releaseReferenceNumbers(Integer gatewayAccountId, List<String> referenceNumbers) {
+        String parameters = IntStream.range(0, referenceNumbers.size())
+                .mapToObj(i -> "?" + (i + 2))
+                .collect(Collectors.joining(", "));
+        String query = "DELETE FROM payment_reference_numbers " +
+                "WHERE gateway_account_id = ?1 AND pooled AND reference_number IN (" + parameters + ")";
+
+        Query releaseQuery = entityManager.get().createNativeQuery(query)
+                .setParameter(1, gatewayAccountId);
+        for (int i = 0; i < referenceNumbers.size(); i++) {
+            releaseQuery.setParameter(i + 2, referenceNumbers.get(i));
+        }
+        return releaseQuery.executeUpdate();
+    }
+
+    /*
+    Deletes pooled reference numbers reserved before maxDate, whether or not they were used. A pool hands out its
+    reference numbers within minutes of reserving them, so any payment using one was created before maxDate too. This
+    releases those left behind by an instance that stopped without releasing its pools.
+     */
+    public int deletePooledReferenceNumbers(ZonedDateTime maxDate, int maxNumberOfReferenceNumbers) {
+        String query = "DELETE FROM payment_reference_numbers WHERE (gateway_account_id, reference_number) IN " +
+                "(SELECT gateway_account_id, reference_number FROM payment_reference_numbers " +
+                "WHERE pooled AND date_created < ?1 LIMIT ?2)";
+
+        return entityManager.get().createNativeQuery(query)
+                .setParameter(1, Timestamp.from(maxDate.toInstant()))
+                .setParameter(2, maxNumberOfReferenceNumbers)
+                .executeUpdate();
+    }
+
+    /*
+    Stores the govuk status of the payment last reported by public API. Once it is finished it is read from here
+    instead of public API from now on.
+     */
+    public void updateGovukStatus(String externalId, String govukStatus, boolean finished, ZonedDateTime checkedAt) {
+        String query = "UPDATE payments SET govuk_status = ?1, govuk_status_finished = ?2, govuk_status_checked_at = ?3 " +
+                "WHERE external_id = ?4";
+
+        entityManager.get().createNativeQuery(query)
+                .setParameter(1, govukStatus)
+                .setParameter(2, finished)
+                .setParameter(3, Timestamp.from(checkedAt.toInstant()))
+                .setParameter(4, externalId)
+                .executeUpdate();
+    }
+
+    /*
+    Claims up to maxNumberOfPayments SUBMITTED payments whose govuk status is not finished and is due to be checked,
+    oldest first, by setting their govuk_status_checked_at to now. A payment is due once a recheckAgeDivisor-th of its
+    age has passed since it was last checked, but never sooner than minRecheckInterval or later than
+    maxRecheckInterval, so older payments are checked less often. Payments created before recheckCreatedAfter are only
+    due while public API has not reported a status for them yet, so no payment is left without a status however old.
+    Payments that another reconciler is claiming at the same moment are skipped rather than waited for.
+     */
+    @SuppressWarnings("unchecked")
+    public List<PaymentEntity> claimForGovukStatusCheck(ZonedDateTime now, ZonedDateTime recheckCreatedAfter, int recheckAgeDivisor,
+                                                        Duration minRecheckInterval, Duration maxRecheckInterval,
+                                                        int maxNumberOfPayments) {
+        String query = "UPDATE payments SET govuk_status_checked_at = ?1 " +
+                "WHERE (id, date_created) IN (" +
+                "SELECT id, date_created FROM payments " +
+                "WHERE status = 'SUBMITTED' AND NOT govuk_status_finished " +
+                "AND (govuk_status IS NULL OR date_created >= ?2) " +
+                "AND (govuk_status_checked_at IS NULL OR govuk_status_checked_at <= ?1 - " +
+                "LEAST(GREATEST((?1 - date_created) / ?3, make_interval(secs => ?4)), make_interval(secs => ?5))) " +
+                "ORDER BY date_created LIMIT ?6 FOR UPDATE SKIP LOCKED) " +
+                "RETURNING *";
+
+        return entityManager.get().createNativeQuery(query, PaymentEntity.class)
+                .setParameter(1, Timestamp.from(now.toInstant()))
+                .setParameter(2, Timestamp.from(recheckCreatedAfter.toInstant()))
+                .setParameter(3, recheckAgeDivisor)
+                .setParameter(4, (double) minRecheckInterval.toSeconds())
+                .setParameter(5, (double) maxRecheckInterval.toSeconds())
+                .setParameter(6, maxNumberOfPayments)
+                .setHint(QueryHints.REFRESH, HintValues.TRUE)
+                .getResultList();
+    }
+
+    public int countPaymentsCreatedBefore(ZonedDateTime maxDate, int maxNumberOfPayments) {
+        String query = "SELECT COUNT(1) FROM " +
+                "(SELECT 1 FROM payments WHERE payments.date_created < ?1 LIMIT ?2) payments_to_delete";
+
+        Number numberOfPayments = (Number) entityManager.get().createNativeQuery(query)
+                .setParameter(1, Timestamp.from(maxDate.toInstant()))
+                .setParameter(2, maxNumberOfPayments)
+                .getSingleResult();
+        return numberOfPayments.intValue();
+    }
+
+    /*
+    Deletes the payments, takes them off the product usage stats and releases their system generated reference numbers
+    in the same statement. The oldest payments are deleted first, so the last payment date of a product only changes
+    when none of its payments are left.
+     */
     public int deletePayments(ZonedDateTime maxDate, int maxNumberOfPayments) {
-        String query = "DELETE FROM payments WHERE external_id IN " +
+        String query = "WITH deleted_payments AS (" +
+                "DELETE FROM payments WHERE external_id IN " +
                 "(SELECT payments.external_id FROM payments WHERE payments.date_created < ?1 " +
-                "ORDER BY payments.date_created ASC LIMIT ?2)";
-        
-        return entityManager.get().createNativeQuery(query)
+                "ORDER BY payments.date_created ASC LIMIT ?2) " +
+                "RETURNING product_id, gateway_account_id, reference_number), " +
+                "released_reference_numbers AS (" +
+                "DELETE FROM payment_reference_numbers reference_numbers " +
+                "USING deleted_payments JOIN products ON products.id = deleted_payments.product_id " +
+                "WHERE NOT products.reference_enabled " +
+                "AND reference_numbers.gateway_account_id = deleted_payments.gateway_account_id " +
+                "AND reference_numbers.reference_number = deleted_payments.reference_number), " +
+                "deleted_payment_counts AS (" +
+                "SELECT product_id, COUNT(1) AS no_of_payments FROM deleted_payments GROUP BY product_id), " +
+                "recorded_deltas AS (" +
+                "INSERT INTO product_usage_deltas (product_id, payment_count) " +
+                "SELECT product_id, -no_of_payments FROM deleted_payment_counts " +
+                "RETURNING product_id) " +
+                "SELECT COUNT(1) FROM deleted_payments";
+
+        Number numberOfDeletedPayments = (Number) entityManager.get().createNativeQuery(query)
                 .setParameter(1, Timestamp.from(maxDate.toInstant()))
                 .setParameter(2, maxNumberOfPayments)
-                .executeUpdate();
+                .getSingleResult();
+        return numberOfDeletedPayments.intValue();
     }
 }
@@ -0,0 +1,110 @@
+package uk.gov.pay.products.persistence.dao;
+
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.persist.Transactional;
+import jakarta.persistence.EntityManager;
+
+import java.sql.Timestamp;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/*
+Idempotency keys are unique per product. A key maps to the payment created for the first request made with it until
+its expiry date, after which the key can be claimed again.
+ */
+@Transactional
+public class PaymentIdempotencyKeyDao {
+
+    private final Provider<EntityManager> entityManager;
+
+    @Inject
+    public PaymentIdempotencyKeyDao(Provider<EntityManager> entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    public Optional<ClaimedIdempotencyKey> findClaimedKey(String productExternalId, String idempotencyKey, ZonedDateTime now) {
+        String query = "SELECT payment_external_id, request_fingerprint FROM payment_idempotency_keys " +
+                "WHERE product_external_id = ?1 AND idempotency_key = ?2 AND expiry_date > ?3";
+
+        List<?> claimedKeys = entityManager.get().createNativeQuery(query)
+                .setParameter(1, productExternalId)
+                .setParameter(2, idempotencyKey)
+                .setParameter(3, Timestamp.from(now.toInstant()))
+                .getResultList();
+        return claimedKeys.stream().findFirst().map(row -> {
+            Object[] columns = (Object[]) row;
+            return new ClaimedIdempotencyKey((String) columns[0], (String) columns[1]);
+        });
+    }
+
+    /*
+    Maps the key to the payment unless it already maps to another payment and has not expired. A concurrent claim of the
+    same key waits for the transaction of the first one to finish, so only one of them can succeed. Returns false if the
+    key has already been claimed.
+     */
+    public boolean claim(String productExternalId, String idempotencyKey, String paymentExternalId, String requestFingerprint,
+                         ZonedDateTime now, ZonedDateTime expiryDate) {
+        String query = "INSERT INTO payment_idempotency_keys " +
+                "(product_external_id, idempotency_key, payment_external_id, request_fingerprint, date_created, expiry_date) " +
+                "VALUES (?1, ?2, ?3, ?6, ?4, ?5) " +
+                "ON CONFLICT (product_external_id, idempotency_key) DO UPDATE SET " +
+                "payment_external_id = EXCLUDED.payment_external_id, " +
+                "request_fingerprint = EXCLUDED.request_fingerprint, " +
+                "date_created = EXCLUDED.date_created, " +
+                "expiry_date = EXCLUDED.expiry_date " +
+                "WHERE payment_idempotency_keys.expiry_date <= ?4 " +
+                "RETURNING payment_external_id";
+
+        return !entityManager.get().createNativeQuery(query)
+                .setParameter(1, productExternalId)
+                .setParameter(2, idempotencyKey)
+                .setParameter(3, paymentExternalId)
+                .setParameter(4, Timestamp.from(now.toInstant()))
+                .setParameter(5, Timestamp.from(expiryDate.toInstant()))
+                .setParameter(6, requestFingerprint)
+                .getResultList().isEmpty();
+    }
+
+    public int release(String productExternalId, String idempotencyKey, String paymentExternalId) {
+        String query = "DELETE FROM payment_idempotency_keys " +
+                "WHERE product_external_id = ?1 AND idempotency_key = ?2 AND payment_external_id = ?3";
+
+        return entityManager.get().createNativeQuery(query)
+                .setParameter(1, productExternalId)
+                .setParameter(2, idempotencyKey)
+                .setParameter(3, paymentExternalId)
+                .executeUpdate();
+    }
+
+    public int deleteExpired(ZonedDateTime now) {
+        String query = "DELETE FROM payment_idempotency_keys WHERE expiry_date <= ?1";
+
+        return entityManager.get().createNativeQuery(query)
+                .setParameter(1, Timestamp.from(now.toInstant()))
+                .executeUpdate();
+    }
+
+    public static class ClaimedIdempotencyKey {
+        private final String paymentExternalId;
+        private final String requestFingerprint;
+
+        public ClaimedIdempotencyKey(String paymentExternalId, String requestFingerprint) {
+            this.paymentExternalId = paymentExternalId;
+            this.requestFingerprint = requestFingerprint;
+        }
+
+        public String getPaymentExternalId() {
+            return paymentExternalId;
+        }
+
+        /**
+         * @return the fingerprint of the request that claimed the key, or null if it was claimed before fingerprints
+         * were stored
+         */
+        public String getRequestFingerprint() {
+            return requestFingerprint;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package uk.gov.pay.products.persistence.dao;
+
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.persist.Transactional;
+import io.dropwizard.db.ManagedDataSource;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceException;
+import uk.gov.pay.products.config.PaymentPartitionConfig;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static java.time.ZoneOffset.UTC;
+
+/*
+The payments table is range partitioned by date_created. Payments created before the table was partitioned live in
+payments_legacy; every later month has its own partition named payments_pYYYYMM, bounded in UTC. There is no default
+partition, so a payment can only be created when the partition for its month exists.
+ */
+public class PaymentPartitionDao {
+
+    private static final String MONTHLY_PARTITION_PREFIX = "payments_p";
+    private static final DateTimeFormatter MONTHLY_PARTITION_SUFFIX_FORMATTER = DateTimeFormatter.ofPattern("yyyyMM");
+    private static final Pattern MONTHLY_PARTITION_NAME = Pattern.compile(MONTHLY_PARTITION_PREFIX + "(\\d{6})");
+
+    private final Provider<EntityManager> entityManager;
+    private final ManagedDataSource dataSource;
+    private final PaymentPartitionConfig paymentPartitionConfig;
+
+    @Inject
+    public PaymentPartitionDao(Provider<EntityManager> entityManager, ManagedDataSource dataSource,
+                               PaymentPartitionConfig paymentPartitionConfig) {
+        this.entityManager = entityManager;
+        this.dataSource = dataSource;
+        this.paymentPartitionConfig = paymentPartitionConfig;
+    }
+
+    /*
+    Finds monthly partitions by name, so a partition that was detached but not dropped is still found and can be dropped.
+     */
+    @Transactional
+    public List<YearMonth> findMonthlyPartitions() {
+        String query = "SELECT relname FROM pg_class " +
+                "WHERE relkind = 'r' AND relname ~ '^payments_p[0-9]{6}$' AND pg_table_is_visible(oid)";
+
+        List<?> partitionNames = entityManager.get().createNativeQuery(query).getResultList();
+        return partitionNames.stream()
+                .map(partitionName -> MONTHLY_PARTITION_NAME.matcher(partitionName.toString()))
+                .filter(Matcher::matches)
+                .map(matcher -> YearMonth.parse(matcher.group(1), MONTHLY_PARTITION_SUFFIX_FORMATTER))
+                .sorted()
+                .toList();
+    }
+
+    @Transactional
+    public void createMonthlyPartition(YearMonth month) {
+        String query = "CREATE TABLE IF NOT EXISTS " + partitionName(month) + " PARTITION OF payments " +
+                "FOR VALUES FROM ('" + startOf(month) + "') TO ('" + startOf(month.plusMonths(1)) + "')";
+
+        entityManager.get().createNativeQuery(query).executeUpdate();
+    }
+
+    /*
+    Detaches the partition without blocking payments being read or created, then takes its payments off the product usage
+    stats, releases their system generated reference numbers and drops it. Returns the number of payments that were
+    dropped with it.
+     */
+    public int dropMonthlyPartition(YearMonth month) {
+        detachMonthlyPartition(month);
+        return dropDetachedMonthlyPartition(month);
+    }
+
+    /*
+    DETACH PARTITION CONCURRENTLY cannot run in a transaction, so it runs on an autocommit connection of the pool outside
+    JPA. It gives up after detachLockTimeout waiting for a lock and after detachStatementTimeout in all, and the timeouts
+    are reset before the connection goes back to the pool. A detach that was interrupted leaves the partition pending
+    detach, and is finished instead.
+     */
+    void detachMonthlyPartition(YearMonth month) {
+        String partitionName = partitionName(month);
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement findPartition = connection.prepareStatement(
+                     "SELECT inhdetachpending FROM pg_inherits WHERE inhrelid = to_regclass(?)");
+             PreparedStatement setTimeouts = connection.prepareStatement(
+                     "SELECT set_config('lock_timeout', ?, false), set_config('statement_timeout', ?, false)");
+             Statement detachPartition = connection.createStatement()) {
+            connection.setAutoCommit(true);
+            findPartition.setString(1, partitionName);
+            boolean detachPending;
+            try (ResultSet resultSet = findPartition.executeQuery()) {
+                if (!resultSet.next()) {
+                    return;
+                }
+                detachPending = resultSet.getBoolean(1);
+            }
+            setTimeouts.setString(1, paymentPartitionConfig.getDetachLockTimeout().toMilliseconds() + "ms");
+            setTimeouts.setString(2, paymentPartitionConfig.getDetachStatementTimeout().toMilliseconds() + "ms");
+            setTimeouts.execute();
+            try {
+                detachPartition.execute("ALTER TABLE payments DETACH PARTITION " + partitionName +
+                        (detachPending ? " FINALIZE" : " CONCURRENTLY"));
+            } finally {
+                detachPartition.execute("RESET lock_timeout; RESET statement_timeout");
+            }
+        } catch (SQLException e) {
+            throw new PersistenceException("Failed to detach payments partition " + partitionName, e);
+        }
+    }
+
+    @Transactional
+    int dropDetachedMonthlyPartition(YearMonth month) {
+        String partitionName = partitionName(month);
+        String query = "WITH partition_payment_counts AS (" +
+                "SELECT product_id, COUNT(1) AS no_of_payments FROM " + partitionName + " GROUP BY product_id), " +
+                "recorded_deltas AS (" +
+                "INSERT INTO product_usage_deltas (product_id, payment_count) " +
+                "SELECT product_id, -no_of_payments FROM partition_payment_counts " +
+                "RETURNING product_id) " +
+                "SELECT COALESCE(SUM(no_of_payments), 0) FROM partition_payment_counts";
+
+        Number numberOfDroppedPayments = (Number) entityManager.get().createNativeQuery(query).getSingleResult();
+        // dropping a table fires no delete triggers, so the external ids of its payments are released here
+        entityManager.get().createNativeQuery("DELETE FROM payment_external_ids " +
+                "WHERE external_id IN (SELECT external_id FROM " + partitionName + ")").executeUpdate();
+        entityManager.get().createNativeQuery("DELETE FROM payment_reference_numbers reference_numbers " +
+                "USING " + partitionName + " partition_payments JOIN products ON products.id = partition_payments.product_id " +
+                "WHERE NOT products.reference_enabled " +
+                "AND reference_numbers.gateway_account_id = partition_payments.gateway_account_id " +
+                "AND reference_numbers.reference_number = partition_payments.reference_number").executeUpdate();
+        entityManager.get().createNativeQuery("DROP TABLE " + partitionName).executeUpdate();
+        return numberOfDroppedPayments.intValue();
+    }
+
+    private static String partitionName(YearMonth month) {
+        return MONTHLY_PARTITION_PREFIX + month.format(MONTHLY_PARTITION_SUFFIX_FORMATTER);
+    }
+
+    private static String startOf(YearMonth month) {
+        return month.atDay(1).atStartOfDay(UTC).toInstant().toString();
+    }
+}
@@ -3,17 +3,62 @@ package uk.gov.pay.products.persistence.dao;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
 import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceException;
 import jakarta.persistence.TypedQuery;
+import org.eclipse.persistence.annotations.BatchFetchType;
+import org.eclipse.persistence.config.QueryHints;
+import uk.gov.pay.products.model.ProductPath;
 import uk.gov.pay.products.model.ProductUsageStat;
+import uk.gov.pay.products.model.product.ProductExportRow;
 import uk.gov.pay.products.persistence.entity.ProductEntity;
+import uk.gov.pay.products.persistence.entity.ProductMetadataEntity;
+import uk.gov.pay.products.persistence.entity.ProductUsageStatsEntity;
 import uk.gov.pay.products.util.ProductStatus;
 import uk.gov.pay.products.util.ProductType;
+import uk.gov.service.payments.commons.model.SupportedLanguageJpaConverter;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 public class ProductDao extends JpaDao<ProductEntity> {
 
+    private static final int INSERT_BATCH_SIZE = 500;
+
+    private static final String INSERT_PRODUCT = "INSERT INTO products " +
+            "(external_id, name, description, pay_api_token, price, status, date_created, gateway_account_id, type, " +
+            "return_url, service_name_path, product_name_path, reference_enabled, reference_label, reference_hint, " +
+            "amount_hint, language, require_captcha) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+            "ON CONFLICT (service_name_path, product_name_path) DO NOTHING";
+
+    private static final String INSERT_PRODUCT_METADATA = "INSERT INTO products_metadata " +
+            "(product_id, metadata_key, metadata_value) " +
+            "SELECT id, ?, ? FROM products WHERE external_id = ?";
+
+    private static final SupportedLanguageJpaConverter supportedLanguageConverter = new SupportedLanguageJpaConverter();
+
+    private static final String EXPORT_PRODUCTS_AND_USAGE = "SELECT p.id, p.external_id, p.name, p.description, p.price, p.status, " +
+            "p.type, p.language, p.service_name_path, p.product_name_path, p.reference_enabled, p.reference_label, " +
+            "p.date_created, COALESCE(s.payment_count, 0), s.last_payment_date, " +
+            "(SELECT json_object_agg(m.metadata_key, m.metadata_value ORDER BY m.metadata_key) " +
+            "FROM products_metadata m WHERE m.product_id = p.id)::text " +
+            "FROM products p LEFT JOIN product_usage_stats s ON s.product_id = p.id " +
+            "WHERE p.gateway_account_id = ? AND p.id > ? " +
+            "ORDER BY p.id " +
+            "LIMIT ?";
+
     @Inject
     protected ProductDao(Provider<EntityManager> entityManager) {
         super(entityManager);
@@ -56,8 +101,8 @@ public class ProductDao extends JpaDao<ProductEntity> {
                 "WHERE product.gatewayAccountId = :gatewayAccountId " +
                 "AND product.status = :status";
 
-        return entityManager.get()
-                .createQuery(query, ProductEntity.class)
+        return withMetadataBatchFetch(entityManager.get()
+                .createQuery(query, ProductEntity.class))
                 .setParameter("gatewayAccountId", gatewayAccountId)
                 .setParameter("status", ProductStatus.ACTIVE)
                 .getResultList();
@@ -69,14 +114,39 @@ public class ProductDao extends JpaDao<ProductEntity> {
                 "AND product.type = :type " +
                 "AND product.status = :status";
 
-        return entityManager.get()
-                .createQuery(query, ProductEntity.class)
+        return withMetadataBatchFetch(entityManager.get()
+                .createQuery(query, ProductEntity.class))
                 .setParameter("gatewayAccountId", gatewayAccountId)
                 .setParameter("type", type)
                 .setParameter("status", ProductStatus.ACTIVE)
                 .getResultList();
     }
 
+    public List<ProductEntity> findByGatewayAccountIdAndTypeAfterId(Integer gatewayAccountId, ProductType type, Integer afterId, int maxResults) {
+        boolean shouldFilterType = type != null;
+        String conditionalFilter = shouldFilterType ?
+                "AND product.type = :type " :
+                "";
+        String query = "SELECT product FROM ProductEntity product " +
+                "WHERE product.gatewayAccountId = :gatewayAccountId " +
+                "AND product.status = :status " +
+                conditionalFilter +
+                "AND product.id > :afterId " +
+                "ORDER BY product.id";
+
+        TypedQuery<ProductEntity> queryBuilder = withMetadataBatchFetch(entityManager.get()
+                .createQuery(query, ProductEntity.class))
+                .setParameter("gatewayAccountId", gatewayAccountId)
+                .setParameter("status", ProductStatus.ACTIVE)
+                .setParameter("afterId", afterId)
+                .setMaxResults(maxResults);
+
+        if (shouldFilterType) {
+            queryBuilder.setParameter("type", type);
+        }
+        return queryBuilder.getResultList();
+    }
+
     public Optional<ProductEntity> findByProductPath(String serviceNamePath, String productNamePath) {
         String query = "SELECT product FROM ProductEntity product " +
                 "WHERE product.serviceNamePath = :serviceNamePath " +
@@ -89,32 +159,79 @@ public class ProductDao extends JpaDao<ProductEntity> {
                 .getResultList().stream().findFirst();
     }
 
+    public List<ProductPath> findProductPathsWithIdGreaterThan(Integer id, int maxResults) {
+        String query = "SELECT new uk.gov.pay.products.model.ProductPath(" +
+                "product.id," +
+                "product.externalId," +
+                "product.serviceNamePath," +
+                "product.productNamePath) " +
+                "FROM ProductEntity product " +
+                "WHERE product.id > :id " +
+                "AND product.serviceNamePath IS NOT NULL " +
+                "AND product.productNamePath IS NOT NULL " +
+                "ORDER BY product.id";
+
+        return entityManager.get()
+                .createQuery(query, ProductPath.class)
+                .setParameter("id", id)
+                .setMaxResults(maxResults)
+                .getResultList();
+    }
+
     public List<ProductUsageStat> findProductsAndUsage(Integer gatewayAccountId) {
         return findProductsAndUsageQuery(gatewayAccountId);
     }
 
     private List<ProductUsageStat> findProductsAndUsageQuery(Integer gatewayAccountId) {
-        Boolean shouldFilterGatewayAccount = gatewayAccountId != null;
+        boolean shouldFilterGatewayAccount = gatewayAccountId != null;
         String conditionalFilter = shouldFilterGatewayAccount ?
-                "AND payments.product.gatewayAccountId = :gatewayAccountId " :
+                "AND product.gatewayAccountId = :gatewayAccountId " :
                 "";
-        String query = "SELECT new uk.gov.pay.products.model.ProductUsageStat(" +
-                "COUNT(1)," +
-                "MAX(payments.dateCreated)," +
-                "payments.product) " +
-                "FROM PaymentEntity payments " +
-                "WHERE payments.product.type = :type " +
+
+        // usage is read from product_usage_stats, which is kept up to date as payments are created and deleted
+        String productsQuery = "SELECT product FROM ProductEntity product " +
+                "WHERE product.type = :type " +
                 conditionalFilter +
-                "GROUP BY payments.product";
+                "AND EXISTS (SELECT stats FROM ProductUsageStatsEntity stats " +
+                "WHERE stats.productId = product.id AND stats.paymentCount > 0) " +
+                "ORDER BY product.id";
 
-        TypedQuery<ProductUsageStat> queryBuilder = entityManager.get()
-                .createQuery(query, ProductUsageStat.class)
+        TypedQuery<ProductEntity> productsQueryBuilder = withMetadataBatchFetch(entityManager.get()
+                .createQuery(productsQuery, ProductEntity.class))
                 .setParameter("type", ProductType.ADHOC);
+        if (shouldFilterGatewayAccount) {
+            productsQueryBuilder.setParameter("gatewayAccountId", gatewayAccountId);
+        }
+        List<ProductEntity> products = productsQueryBuilder.getResultList();
+        if (products.isEmpty()) {
+            return List.of();
+        }
 
+        String usageQuery = "SELECT stats FROM ProductUsageStatsEntity stats, ProductEntity product " +
+                "WHERE stats.productId = product.id " +
+                "AND product.type = :type " +
+                conditionalFilter +
+                "AND stats.paymentCount > 0";
+
+        TypedQuery<ProductUsageStatsEntity> usageQueryBuilder = entityManager.get()
+                .createQuery(usageQuery, ProductUsageStatsEntity.class)
+                .setParameter("type", ProductType.ADHOC);
         if (shouldFilterGatewayAccount) {
-            queryBuilder.setParameter("gatewayAccountId", gatewayAccountId);
+            usageQueryBuilder.setParameter("gatewayAccountId", gatewayAccountId);
         }
-        return queryBuilder.getResultList();
+        Map<Integer, ProductUsageStatsEntity> usageByProductId = usageQueryBuilder.getResultList()
+                .stream()
+                .collect(Collectors.toMap(ProductUsageStatsEntity::getProductId, Function.identity()));
+
+        // payments can be deleted between the two queries, so skip any product that no longer has usage
+        return products
+                .stream()
+                .filter(product -> usageByProductId.containsKey(product.getId()))
+                .map(product -> {
+                    ProductUsageStatsEntity usage = usageByProductId.get(product.getId());
+                    return new ProductUsageStat(usage.getPaymentCount(), usage.getLastPaymentDate(), product);
+                })
+                .toList();
     }
 
     public List<ProductUsageStat> findUnusedProducts(Integer gatewayAccountId) {
@@ -125,24 +242,190 @@ public class ProductDao extends JpaDao<ProductEntity> {
         boolean shouldFilterGatewayAccount = gatewayAccountId != null;
 
         String conditionalFilter = shouldFilterGatewayAccount ?
-                "AND product.gateway_account_id = ?1 " :
+                "AND product.gatewayAccountId = :gatewayAccountId " :
                 "";
 
-        String query = "SELECT product.* FROM products product " +
-                "LEFT JOIN payments payment ON product.id = payment.product_id " +
-                "WHERE payment.product_id IS NULL " +
-                conditionalFilter;
+        String query = "SELECT product FROM ProductEntity product " +
+                "WHERE NOT EXISTS (SELECT stats FROM ProductUsageStatsEntity stats " +
+                "WHERE stats.productId = product.id AND stats.paymentCount > 0) " +
+                conditionalFilter +
+                "ORDER BY product.id";
 
-        var queryBuilder = entityManager.get()
-                .createNativeQuery(query, ProductEntity.class);
+        TypedQuery<ProductEntity> queryBuilder = withMetadataBatchFetch(entityManager.get()
+                .createQuery(query, ProductEntity.class));
 
         if (shouldFilterGatewayAccount) {
-            queryBuilder = queryBuilder.setParameter(1, gatewayAccountId);
+            queryBuilder.setParameter("gatewayAccountId", gatewayAccountId);
         }
-        
+
         return queryBuilder
-                .getResultStream()
-                .map(product -> new ProductUsageStat(0L, null, (ProductEntity) product))
+                .getResultList()
+                .stream()
+                .map(product -> new ProductUsageStat(0L, null, product))
+                .toList();
+    }
+
+    /*
+    The bulk operations below change at most batchSize products of a gateway account in one statement and return the
+    paths of the products changed, so callers can invalidate what they cached about them. Products already changed no
+    longer match, so callers repeat them until fewer than batchSize products are returned.
+     */
+    public List<ProductPath> disableBatchByGatewayAccountId(Integer gatewayAccountId, int batchSize) {
+        String query = "UPDATE products SET status = 'INACTIVE', version = version + 1 " +
+                "WHERE id IN (SELECT id FROM products WHERE gateway_account_id = ?1 AND status = 'ACTIVE' ORDER BY id LIMIT ?2) " +
+                "RETURNING id, external_id, service_name_path, product_name_path";
+
+        return toProductPaths(entityManager.get().createNativeQuery(query)
+                .setParameter(1, gatewayAccountId)
+                .setParameter(2, batchSize)
+                .getResultList());
+    }
+
+    public List<ProductPath> deleteBatchByGatewayAccountId(Integer gatewayAccountId, int batchSize) {
+        String query = "DELETE FROM products " +
+                "WHERE id IN (SELECT id FROM products WHERE gateway_account_id = ?1 ORDER BY id LIMIT ?2) " +
+                "RETURNING id, external_id, service_name_path, product_name_path";
+
+        return toProductPaths(entityManager.get().createNativeQuery(query)
+                .setParameter(1, gatewayAccountId)
+                .setParameter(2, batchSize)
+                .getResultList());
+    }
+
+    public List<ProductPath> updatePayApiTokenBatchByGatewayAccountId(Integer gatewayAccountId, String payApiToken, int batchSize) {
+        String query = "UPDATE products SET pay_api_token = ?3, version = version + 1 " +
+                "WHERE id IN (SELECT id FROM products WHERE gateway_account_id = ?1 AND pay_api_token <> ?3 ORDER BY id LIMIT ?2) " +
+                "RETURNING id, external_id, service_name_path, product_name_path";
+
+        return toProductPaths(entityManager.get().createNativeQuery(query)
+                .setParameter(1, gatewayAccountId)
+                .setParameter(2, batchSize)
+                .setParameter(3, payApiToken)
+                .getResultList());
+    }
+
+    private static List<ProductPath> toProductPaths(List<?> rows) {
+        return rows.stream()
+                .map(row -> (Object[]) row)
+                .map(row -> new ProductPath(((Number) row[0]).intValue(), (String) row[1], (String) row[2], (String) row[3]))
                 .toList();
     }
+
+    /*
+    Reads the next page of up to pageSize products of a gateway account with their usage, ordered by id and starting
+    after the product with id afterId. Each page is read in its own short transaction, so a caller exporting every
+    product page by page does not hold a connection or transaction open while it writes the rows out.
+     */
+    public List<ProductExportRow> findExportPage(Integer gatewayAccountId, int afterId, int pageSize) {
+        Connection connection = entityManager.get().unwrap(Connection.class);
+        try (PreparedStatement statement = connection.prepareStatement(EXPORT_PRODUCTS_AND_USAGE)) {
+            statement.setInt(1, gatewayAccountId);
+            statement.setInt(2, afterId);
+            statement.setInt(3, pageSize);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                List<ProductExportRow> rows = new ArrayList<>();
+                while (resultSet.next()) {
+                    rows.add(toProductExportRow(resultSet));
+                }
+                return rows;
+            }
+        } catch (SQLException e) {
+            throw new PersistenceException("Failed to export products", e);
+        }
+    }
+
+    private static ProductExportRow toProductExportRow(ResultSet resultSet) throws SQLException {
+        return new ProductExportRow(
+                resultSet.getInt(1),
+                resultSet.getString(2),
+                resultSet.getString(3),
+                resultSet.getString(4),
+                resultSet.getObject(5, Long.class),
+                resultSet.getString(6),
+                resultSet.getString(7),
+                resultSet.getString(8),
+                resultSet.getString(9),
+                resultSet.getString(10),
+                resultSet.getBoolean(11),
+                resultSet.getString(12),
+                toUtcDateTime(resultSet.getTimestamp(13)),
+                resultSet.getLong(14),
+                toUtcDateTime(resultSet.getTimestamp(15)),
+                resultSet.getString(16));
+    }
+
+    private static ZonedDateTime toUtcDateTime(Timestamp timestamp) {
+        return timestamp == null ? null : timestamp.toInstant().atZone(ZoneOffset.UTC);
+    }
+
+    /*
+    Inserts products and their metadata in JDBC batches of INSERT_BATCH_SIZE rows. Persisting the entities one at a time
+    cannot be batched, because every insert has to return its identity id before the next one. Metadata rows look up
+    their product by external id instead. A product whose product path is already taken, including by an earlier
+    product in the list, is skipped. Any other conflict, such as an external id already taken, fails the insert instead
+    of being skipped as if it were a taken path. Returns whether each product was inserted, in the order given.
+     */
+    public boolean[] insertAll(List<ProductEntity> productEntities) {
+        boolean[] inserted = new boolean[productEntities.size()];
+        Connection connection = entityManager.get().unwrap(Connection.class);
+        try (PreparedStatement insertProduct = connection.prepareStatement(INSERT_PRODUCT);
+             PreparedStatement insertProductMetadata = connection.prepareStatement(INSERT_PRODUCT_METADATA)) {
+            for (int from = 0; from < productEntities.size(); from += INSERT_BATCH_SIZE) {
+                List<ProductEntity> batch = productEntities.subList(from, Math.min(from + INSERT_BATCH_SIZE, productEntities.size()));
+                for (ProductEntity productEntity : batch) {
+                    setProductParameters(insertProduct, productEntity);
+                    insertProduct.addBatch();
+                }
+                int[] insertedRows = insertProduct.executeBatch();
+
+                for (int i = 0; i < batch.size(); i++) {
+                    inserted[from + i] = insertedRows[i] > 0;
+                    if (inserted[from + i] && batch.get(i).getMetadataEntityList() != null) {
+                        for (ProductMetadataEntity productMetadataEntity : batch.get(i).getMetadataEntityList()) {
+                            insertProductMetadata.setString(1, productMetadataEntity.getMetadataKey());
+                            insertProductMetadata.setString(2, productMetadataEntity.getMetadataValue());
+                            insertProductMetadata.setString(3, batch.get(i).getExternalId());
+                            insertProductMetadata.addBatch();
+                        }
+                    }
+                }
+                insertProductMetadata.executeBatch();
+            }
+        } catch (SQLException e) {
+            throw new PersistenceException("Failed to insert products", e);
+        }
+        return inserted;
+    }
+
+    private static void setProductParameters(PreparedStatement statement, ProductEntity productEntity) throws SQLException {
+        statement.setString(1, productEntity.getExternalId());
+        statement.setString(2, productEntity.getName());
+        statement.setString(3, productEntity.getDescription());
+        statement.setString(4, productEntity.getPayApiToken());
+        statement.setObject(5, productEntity.getPrice(), Types.BIGINT);
+        statement.setString(6, productEntity.getStatus().name());
+        statement.setTimestamp(7, Timestamp.from(productEntity.getDateCreated().toInstant()));
+        statement.setObject(8, productEntity.getGatewayAccountId(), Types.INTEGER);
+        statement.setString(9, productEntity.getType().name());
+        statement.setString(10, productEntity.getReturnUrl());
+        statement.setString(11, productEntity.getServiceNamePath());
+        statement.setString(12, productEntity.getProductNamePath());
+        statement.setBoolean(13, Boolean.TRUE.equals(productEntity.getReferenceEnabled()));
+        statement.setString(14, productEntity.getReferenceLabel());
+        statement.setString(15, productEntity.getReferenceHint());
+        statement.setString(16, productEntity.getAmountHint());
+        statement.setString(17, supportedLanguageConverter.convertToDatabaseColumn(productEntity.getLanguage()));
+        statement.setBoolean(18, productEntity.isRequireCaptcha());
+    }
+
+    /*
+    ProductEntity.toProduct() reads the lazily loaded metadata of every product. Batch fetching loads the metadata of all
+    products returned by a query in one extra query, instead of one query per product. IN batching is used because it
+    still works with setMaxResults, unlike a join fetch.
+     */
+    private static <T> TypedQuery<T> withMetadataBatchFetch(TypedQuery<T> query) {
+        return query
+                .setHint(QueryHints.BATCH, "product.metadataEntityList")
+                .setHint(QueryHints.BATCH_TYPE, BatchFetchType.IN);
+    }
 }
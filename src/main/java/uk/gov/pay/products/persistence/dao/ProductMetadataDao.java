@@ -17,7 +17,8 @@ public class ProductMetadataDao extends JpaDao<ProductMetadataEntity> {
 
     public List<ProductMetadataEntity> findByProductsExternalId(String productExternalId) {
         String query = "SELECT metadata FROM ProductMetadataEntity metadata " +
-                "WHERE metadata.productEntity.externalId = :productExternalId ";
+                "JOIN metadata.productEntity product " +
+                "WHERE product.externalId = :productExternalId ";
 
         return entityManager.get()
                 .createQuery(query, ProductMetadataEntity.class)
@@ -25,9 +26,14 @@ public class ProductMetadataDao extends JpaDao<ProductMetadataEntity> {
                 .getResultList();
     }
 
+    /*
+    Looks the product up by its unique external id and then the metadata by product_id and lower(metadata_key), which
+    products_metadata_product_id_lower_metadata_key_idx covers.
+     */
     public Optional<ProductMetadataEntity> findByProductsExternalIdAndKey(String productExternalId, String key) {
         String query = "SELECT metadata FROM ProductMetadataEntity metadata " +
-                "WHERE metadata.productEntity.externalId = :productExternalId " +
+                "JOIN metadata.productEntity product " +
+                "WHERE product.externalId = :productExternalId " +
                 "AND lower(metadata.metadataKey) = :key";
         return entityManager.get()
                 .createQuery(query, ProductMetadataEntity.class)
@@ -38,7 +44,8 @@ public class ProductMetadataDao extends JpaDao<ProductMetadataEntity> {
 
     public void deleteForProductExternalId(String productExternalId) {
         String query = "delete FROM ProductMetadataEntity metadata " +
-                "WHERE metadata.productEntity.externalId = :productExternalId ";
+                "WHERE metadata.productEntity.id IN " +
+                "(SELECT product.id FROM ProductEntity product WHERE product.externalId = :productExternalId)";
 
         entityManager.get()
                 .createQuery(query, ProductMetadataEntity.class)
@@ -0,0 +1,78 @@
+package uk.gov.pay.products.persistence.dao;
+
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import uk.gov.pay.products.persistence.entity.ProductUsageStatsEntity;
+
+import jakarta.persistence.EntityManager;
+import java.sql.Timestamp;
+import java.time.ZonedDateTime;
+import java.util.Optional;
+
+public class ProductUsageStatsDao extends JpaDao<ProductUsageStatsEntity> {
+
+    @Inject
+    public ProductUsageStatsDao(Provider<EntityManager> entityManager) {
+        super(entityManager);
+    }
+
+    public Optional<ProductUsageStatsEntity> findByProductId(Integer productId) {
+        String query = "SELECT stats FROM ProductUsageStatsEntity stats " +
+                "WHERE stats.productId = :productId";
+
+        return entityManager.get()
+                .createQuery(query, ProductUsageStatsEntity.class)
+                .setParameter("productId", productId)
+                .getResultList().stream().findFirst();
+    }
+
+    /*
+    Records a payment created in the current transaction as a delta row, which is only visible to
+    foldDeltas once the payment commits. Payment creation transactions only ever insert, so they never wait for each
+    other's lock on the stats row of a busy product.
+     */
+    public void recordPayment(Integer productId, ZonedDateTime paymentDateCreated) {
+        entityManager.get().createNativeQuery("INSERT INTO product_usage_deltas (product_id, payment_count, last_payment_date) " +
+                        "VALUES (?1, 1, ?2)")
+                .setParameter(1, productId)
+                .setParameter(2, Timestamp.from(paymentDateCreated.toInstant()))
+                .executeUpdate();
+    }
+
+    /*
+    Folds up to maxDeltas delta rows into product_usage_stats and deletes them in the same transaction, so every delta
+    is counted exactly once. Only one instance folds at a time: returns 0 without folding anything if another instance
+    holds the fold lock. The last payment date of a product is cleared once none of its payments are left, which is
+    only right because payments are always deleted oldest first.
+     */
+    public int foldDeltas(int maxDeltas) {
+        Boolean locked = (Boolean) entityManager.get()
+                .createNativeQuery("SELECT pg_try_advisory_xact_lock(hashtext('product_usage_deltas'))")
+                .getSingleResult();
+        if (!locked) {
+            return 0;
+        }
+
+        String query = "WITH folded_deltas AS (" +
+                "DELETE FROM product_usage_deltas WHERE id IN " +
+                "(SELECT id FROM product_usage_deltas ORDER BY id LIMIT ?1 FOR UPDATE SKIP LOCKED) " +
+                "RETURNING product_id, payment_count, last_payment_date), " +
+                "deltas_by_product AS (" +
+                "SELECT product_id, SUM(payment_count) AS payment_count, MAX(last_payment_date) AS last_payment_date " +
+                "FROM folded_deltas GROUP BY product_id), " +
+                "updated_stats AS (" +
+                "INSERT INTO product_usage_stats (product_id, payment_count, last_payment_date) " +
+                "SELECT product_id, payment_count, last_payment_date FROM deltas_by_product ORDER BY product_id " +
+                "ON CONFLICT (product_id) DO UPDATE SET " +
+                "payment_count = product_usage_stats.payment_count + EXCLUDED.payment_count, " +
+                "last_payment_date = CASE WHEN product_usage_stats.payment_count + EXCLUDED.payment_count > 0 " +
+                "THEN GREATEST(product_usage_stats.last_payment_date, EXCLUDED.last_payment_date) END " +
+                "RETURNING product_id) " +
+                "SELECT COUNT(1) FROM folded_deltas";
+
+        Number numberOfFoldedDeltas = (Number) entityManager.get().createNativeQuery(query)
+                .setParameter(1, maxDeltas)
+                .getSingleResult();
+        return numberOfFoldedDeltas.intValue();
+    }
+}
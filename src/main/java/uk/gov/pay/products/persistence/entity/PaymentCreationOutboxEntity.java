@@ -0,0 +1,65 @@
+package uk.gov.pay.products.persistence.entity;
+
+import jakarta.persistence.Cacheable;
+import jakarta.persistence.Column;
+import jakarta.persistence.Convert;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Table;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+
+/**
+ * A payment that has been saved but not yet created in public API. Rows are claimed with native updates, so they are
+ * never cached.
+ */
+@Entity
+@Table(name = "payment_creation_outbox")
+@Cacheable(false)
+public class PaymentCreationOutboxEntity extends AbstractEntity {
+
+    @Column(name = "payment_external_id")
+    private String paymentExternalId;
+
+    @Column(name = "price_override")
+    private Long priceOverride;
+
+    @Column(name = "attempts")
+    private Integer attempts = 0;
+
+    @Column(name = "claimed_until")
+    @Convert(converter = UTCDateTimeConverter.class)
+    private ZonedDateTime claimedUntil;
+
+    @Column(name = "date_created")
+    @Convert(converter = UTCDateTimeConverter.class)
+    private ZonedDateTime dateCreated = ZonedDateTime.now(ZoneId.of("UTC"));
+
+    public PaymentCreationOutboxEntity() {
+        //for jpa
+    }
+
+    public PaymentCreationOutboxEntity(String paymentExternalId, Long priceOverride) {
+        this.paymentExternalId = paymentExternalId;
+        this.priceOverride = priceOverride;
+    }
+
+    public String getPaymentExternalId() {
+        return paymentExternalId;
+    }
+
+    public Long getPriceOverride() {
+        return priceOverride;
+    }
+
+    public Integer getAttempts() {
+        return attempts;
+    }
+
+    public ZonedDateTime getClaimedUntil() {
+        return claimedUntil;
+    }
+
+    public ZonedDateTime getDateCreated() {
+        return dateCreated;
+    }
+}
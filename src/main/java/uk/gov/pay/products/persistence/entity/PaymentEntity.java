@@ -3,7 +3,6 @@ package uk.gov.pay.products.persistence.entity;
 import uk.gov.pay.products.model.Payment;
 import uk.gov.pay.products.util.PaymentStatus;
 
-import jakarta.persistence.CascadeType;
 import jakarta.persistence.Column;
 import jakarta.persistence.Convert;
 import jakarta.persistence.Entity;
@@ -36,7 +35,7 @@ public class PaymentEntity extends AbstractEntity {
     @Convert(converter = UTCDateTimeConverter.class)
     private ZonedDateTime dateCreated = ZonedDateTime.now(ZoneId.of("UTC"));
 
-    @ManyToOne(cascade = CascadeType.MERGE)
+    @ManyToOne
     @JoinColumn(name = "product_id", updatable = false)
     private ProductEntity product;
 
@@ -49,6 +48,16 @@ public class PaymentEntity extends AbstractEntity {
 
     @Column(name = "reference_number")
     private String referenceNumber;
+
+    @Column(name = "govuk_status")
+    private String govukStatus;
+
+    @Column(name = "govuk_status_checked_at")
+    @Convert(converter = UTCDateTimeConverter.class)
+    private ZonedDateTime govukStatusCheckedAt;
+
+    @Column(name = "govuk_status_finished")
+    private boolean govukStatusFinished;
     
     @Transient
     private int errorStatusCode;
@@ -132,6 +141,7 @@ public class PaymentEntity extends AbstractEntity {
                 this.getReferenceNumber()
         );
         payment.setDateCreated(this.dateCreated);
+        payment.setGovukStatus(this.govukStatus);
         return payment;
     }
 
@@ -164,6 +174,36 @@ public class PaymentEntity extends AbstractEntity {
         this.referenceNumber = referenceNumber;
     }
 
+    /**
+     * The govuk status of the payment last reported by public API, or null if it has not been checked yet
+     */
+    public String getGovukStatus() {
+        return govukStatus;
+    }
+
+    public void setGovukStatus(String govukStatus) {
+        this.govukStatus = govukStatus;
+    }
+
+    public ZonedDateTime getGovukStatusCheckedAt() {
+        return govukStatusCheckedAt;
+    }
+
+    public void setGovukStatusCheckedAt(ZonedDateTime govukStatusCheckedAt) {
+        this.govukStatusCheckedAt = govukStatusCheckedAt;
+    }
+
+    /**
+     * Whether public API has reported the payment as finished, after which its govuk status never changes
+     */
+    public boolean isGovukStatusFinished() {
+        return govukStatusFinished;
+    }
+
+    public void setGovukStatusFinished(boolean govukStatusFinished) {
+        this.govukStatusFinished = govukStatusFinished;
+    }
+
     public void setErrorCode(String code) {
         this.errorCode = code;
     }
@@ -0,0 +1,46 @@
+package uk.gov.pay.products.persistence.entity;
+
+import jakarta.persistence.Cacheable;
+import jakarta.persistence.Column;
+import jakarta.persistence.Convert;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import java.time.ZonedDateTime;
+
+/**
+ * Running payment count and last payment date of a product. Rows are only ever written with native upserts and
+ * updates, so they are never cached.
+ */
+@Entity
+@Table(name = "product_usage_stats")
+@Cacheable(false)
+public class ProductUsageStatsEntity {
+
+    @Id
+    @Column(name = "product_id")
+    private Integer productId;
+
+    @Column(name = "payment_count")
+    private Long paymentCount;
+
+    @Column(name = "last_payment_date")
+    @Convert(converter = UTCDateTimeConverter.class)
+    private ZonedDateTime lastPaymentDate;
+
+    public ProductUsageStatsEntity() {
+        //for jpa
+    }
+
+    public Integer getProductId() {
+        return productId;
+    }
+
+    public Long getPaymentCount() {
+        return paymentCount;
+    }
+
+    public ZonedDateTime getLastPaymentDate() {
+        return lastPaymentDate;
+    }
+}
@@ -37,7 +37,7 @@ public class HealthCheckResource {
     @Produces(APPLICATION_JSON)
     @Operation(
             tags = "Other",
-            summary = "Healthcheck endpoint for products. Check database, deadlocks and ping",
+            summary = "Healthcheck endpoint for products. Check database, deadlocks, ping and payments partitions, and report the public API circuit breaker state",
             responses = {
                     @ApiResponse(responseCode = "200", content = @Content(schema = @Schema(example = "{" +
                             "    \"database\": {" +
@@ -51,6 +51,14 @@ public class HealthCheckResource {
                             "    \"deadlocks\": {" +
                             "        \"healthy\": true," +
                             "        \"message\": \"Healthy\"" +
+                            "    }," +
+                            "    \"paymentPartitions\": {" +
+                            "        \"healthy\": true," +
+                            "        \"message\": \"Healthy\"" +
+                            "    }," +
+                            "    \"publicApiCircuitBreaker\": {" +
+                            "        \"healthy\": true," +
+                            "        \"message\": \"Circuit breaker is CLOSED\"" +
                             "    }" +
                             "}")), description = "OK"),
                     @ApiResponse(responseCode = "503", description = "Service unavailable. If any healthchecks fail")
@@ -14,16 +14,24 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import uk.gov.pay.products.model.Payment;
+import uk.gov.pay.products.model.PaymentPage;
+import uk.gov.pay.products.model.PaymentPageCursor;
 import uk.gov.pay.products.service.PaymentFactory;
+import uk.gov.pay.products.util.PaymentStatus;
 import uk.gov.pay.products.validations.PaymentRequestValidator;
 
 import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.GET;
+import jakarta.ws.rs.HeaderParam;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.PathParam;
 import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.UriInfo;
+import java.time.ZonedDateTime;
 import java.util.List;
 
 import static jakarta.ws.rs.core.MediaType.APPLICATION_JSON;
@@ -31,6 +39,7 @@ import static jakarta.ws.rs.core.Response.Status.CREATED;
 import static jakarta.ws.rs.core.Response.Status.NOT_FOUND;
 import static jakarta.ws.rs.core.Response.Status.OK;
 import static net.logstash.logback.argument.StructuredArguments.kv;
+import static uk.gov.pay.products.validations.PaymentRequestValidator.MAX_PAYMENTS_PAGE_SIZE;
 import static uk.gov.service.payments.logging.LoggingKeys.PAYMENT_EXTERNAL_ID;
 
 @Path("/")
@@ -38,6 +47,7 @@ import static uk.gov.service.payments.logging.LoggingKeys.PAYMENT_EXTERNAL_ID;
 public class PaymentResource {
 
     private static final Logger logger = LoggerFactory.getLogger(PaymentResource.class);
+    private static final int DEFAULT_PAYMENTS_PAGE_SIZE = 100;
 
     private final PaymentFactory paymentFactory;
     private final PaymentRequestValidator requestValidator;
@@ -97,11 +107,19 @@ public class PaymentResource {
             summary = "Creates new payment for a given product",
             responses = {
                     @ApiResponse(responseCode = "201", description = "OK", content = @Content(schema = @Schema(implementation = Payment.class))),
-                    @ApiResponse(responseCode = "400", description = "For invalid payload"),
+                    @ApiResponse(responseCode = "400", description = "For invalid payload or Idempotency-Key header"),
+                    @ApiResponse(responseCode = "409", description = "Idempotency-Key already used for a different price or reference, " +
+                            "or its payment is still being created"),
+                    @ApiResponse(responseCode = "429", description = "Too many payments created for the product or its gateway account. " +
+                            "The Retry-After header says how many seconds to wait before trying again"),
             }
     )
     public Response createPayment(@Parameter(example = "uier837y735n837475y3847534")
                                   @PathParam("productExternalId") String productExternalId,
+                                  @Parameter(description = "Unique key for the request. A repeat of a request with the same key for the same product " +
+                                          "returns the payment created for the first request instead of creating another one.",
+                                          example = "2f1e8d2c-5b0a-4d8e-9c1f-6a7b3e4d5c6f")
+                                  @HeaderParam("Idempotency-Key") String idempotencyKey,
                                   @RequestBody(content = @Content(schemaProperties =
                                           {
                                                   @SchemaProperty(
@@ -111,10 +129,12 @@ public class PaymentResource {
                                           }))
                                           JsonNode payload) {
         return requestValidator.validatePriceOverrideRequest(payload)
+                .or(() -> requestValidator.validateIdempotencyKey(idempotencyKey))
                 .map(errors -> Response.status(Response.Status.BAD_REQUEST).entity(errors).build())
                 .orElseGet(() -> {
                     Payment payment = paymentFactory.paymentCreator()
-                            .doCreate(productExternalId, extractAmountIfAvailable(payload), extractReferenceIfAvailable(payload));
+                            .doCreate(productExternalId, extractAmountIfAvailable(payload), extractReferenceIfAvailable(payload),
+                                    idempotencyKey);
                     return Response.status(CREATED).entity(payment).build();
                 });
     }
@@ -141,12 +161,44 @@ public class PaymentResource {
     @Operation(
             summary = "Find list of payments that belongs to the specified product external ID.",
             responses = {
-                    @ApiResponse(responseCode = "200", description = "OK", content = @Content(array = @ArraySchema(schema = @Schema(implementation = Payment.class)))),
-                    @ApiResponse(responseCode = "404", description = "Not found"),
+                    @ApiResponse(responseCode = "200", description = "OK. When paginated, newest payments are returned first and a Link header with rel=\"next\" is returned if there are more payments",
+                            content = @Content(array = @ArraySchema(schema = @Schema(implementation = Payment.class)))),
+                    @ApiResponse(responseCode = "400", description = "Invalid request params"),
+                    @ApiResponse(responseCode = "404", description = "Not found. Only returned when not paginated"),
             }
     )
-    public Response findPaymentsByProductExternalId(@Parameter(example = "uier837y735n837475y3847534") @PathParam("productExternalId") String productExternalId) {
-        List<Payment> payments = paymentFactory.paymentFinder().findByProductExternalId(productExternalId);
-        return payments.size() > 0 ? Response.status(OK).entity(payments).build() : Response.status(NOT_FOUND).build();
+    public Response findPaymentsByProductExternalId(@Parameter(example = "uier837y735n837475y3847534") @PathParam("productExternalId") String productExternalId,
+                                                    @Parameter(example = "SUBMITTED", schema = @Schema(implementation = PaymentStatus.class)) @QueryParam("status") String status,
+                                                    @Parameter(description = "Only return payments created at or after this time", example = "2024-01-01T00:00:00Z") @QueryParam("fromDate") String fromDate,
+                                                    @Parameter(description = "Only return payments created before this time", example = "2024-02-01T00:00:00Z") @QueryParam("toDate") String toDate,
+                                                    @Parameter(description = "Cursor from the next link of the previous page") @QueryParam("after") String after,
+                                                    @Parameter(description = "Maximum number of payments to return, up to " + MAX_PAYMENTS_PAGE_SIZE, example = "100") @QueryParam("limit") Integer limit,
+                                                    @Context UriInfo uriInfo) {
+        if (status == null && fromDate == null && toDate == null && after == null && limit == null) {
+            List<Payment> payments = paymentFactory.paymentFinder().findByProductExternalId(productExternalId);
+            return payments.size() > 0 ? Response.status(OK).entity(payments).build() : Response.status(NOT_FOUND).build();
+        }
+
+        return requestValidator.validateSearchParams(status, fromDate, toDate, after, limit)
+                .map(errors -> Response.status(Response.Status.BAD_REQUEST).entity(errors).build())
+                .orElseGet(() -> {
+                    int pageSize = limit != null ? limit : DEFAULT_PAYMENTS_PAGE_SIZE;
+                    PaymentPage paymentPage = paymentFactory.paymentFinder().findPageByProductExternalId(
+                            productExternalId,
+                            status != null ? PaymentStatus.valueOf(status) : null,
+                            fromDate != null ? ZonedDateTime.parse(fromDate) : null,
+                            toDate != null ? ZonedDateTime.parse(toDate) : null,
+                            PaymentPageCursor.parse(after).orElse(null),
+                            pageSize);
+
+                    Response.ResponseBuilder responseBuilder = Response.status(OK).entity(paymentPage.getPayments());
+                    paymentPage.getNextCursor().ifPresent(nextCursor -> responseBuilder.link(
+                            uriInfo.getRequestUriBuilder()
+                                    .replaceQueryParam("after", nextCursor.toString())
+                                    .replaceQueryParam("limit", pageSize)
+                                    .build(),
+                            "next"));
+                    return responseBuilder.build();
+                });
     }
 }
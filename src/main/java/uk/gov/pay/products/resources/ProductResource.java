@@ -13,10 +13,14 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import uk.gov.pay.products.model.Product;
+import uk.gov.pay.products.model.ProductPage;
 import uk.gov.pay.products.model.ProductUpdateRequest;
 import uk.gov.pay.products.model.ProductUsageStat;
+import uk.gov.pay.products.model.product.BulkCreateProductResult;
 import uk.gov.pay.products.model.product.CreateProductRequest;
+import uk.gov.pay.products.model.product.ProductExportFormat;
 import uk.gov.pay.products.service.ProductFactory;
+import uk.gov.pay.products.util.Errors;
 import uk.gov.pay.products.util.ProductType;
 import uk.gov.pay.products.validations.ProductRequestValidator;
 import uk.gov.service.payments.commons.model.jsonpatch.JsonPatchRequest;
@@ -25,13 +29,22 @@ import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.DELETE;
 import jakarta.ws.rs.GET;
 import jakarta.ws.rs.POST;
+import jakarta.ws.rs.PUT;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.PathParam;
 import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.Response.Status;
+import jakarta.ws.rs.core.UriInfo;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
@@ -43,12 +56,16 @@ import static jakarta.ws.rs.core.Response.Status.OK;
 import static net.logstash.logback.argument.StructuredArguments.kv;
 import static uk.gov.pay.products.model.Product.FIELD_GATEWAY_ACCOUNT_ID;
 import static uk.gov.pay.products.model.Product.FIELD_NAME;
+import static uk.gov.pay.products.model.Product.FIELD_PAY_API_TOKEN;
 import static uk.gov.pay.products.model.Product.FIELD_TYPE;
+import static uk.gov.pay.products.validations.ProductRequestValidator.MAX_PRODUCTS_PAGE_SIZE;
 import static uk.gov.service.payments.logging.LoggingKeys.GATEWAY_ACCOUNT_ID;
 
 @Path("/")
 public class ProductResource {
     private static final Logger logger = LoggerFactory.getLogger(ProductResource.class);
+    private static final int DEFAULT_PRODUCTS_PAGE_SIZE = 100;
+    private static final String AFFECTED_PRODUCTS = "affected_products";
 
     private final ProductRequestValidator requestValidator;
     private final ProductFactory productFactory;
@@ -96,6 +113,52 @@ public class ProductResource {
                 });
     }
 
+    @POST
+    @Path("/v1/api/products/bulk")
+    @Produces(APPLICATION_JSON)
+    @Consumes(APPLICATION_JSON)
+    @Operation(
+            tags = {"Products"},
+            summary = "Creates up to 10000 products in one request. Each product is validated and created independently " +
+                    "and has its own result, in the order the products were sent.",
+            operationId = "createProducts",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "OK",
+                            content = @Content(array = @ArraySchema(schema = @Schema(implementation = BulkCreateProductResult.class)))),
+                    @ApiResponse(responseCode = "400", description = "Payload is not a list of between 1 and 10000 products")
+            }
+    )
+    public Response createProducts(@RequestBody(content = @Content(array = @ArraySchema(schema = @Schema(implementation = CreateProductRequest.class))))
+                                           JsonNode payload) {
+        Optional<Errors> errors = requestValidator.validateBulkCreateRequest(payload);
+        if (errors.isPresent()) {
+            return Response.status(Status.BAD_REQUEST).entity(errors.get()).build();
+        }
+        logger.info("Create products in bulk POST request", kv("number_of_products", payload.size()));
+
+        List<Optional<Errors>> productErrors = StreamSupport.stream(payload.spliterator(), false)
+                .map(requestValidator::validateCreateRequest)
+                .collect(Collectors.toList());
+        List<Product> validProducts = new ArrayList<>();
+        for (int i = 0; i < productErrors.size(); i++) {
+            if (productErrors.get(i).isEmpty()) {
+                validProducts.add(Product.from(payload.get(i)));
+            }
+        }
+
+        Iterator<Optional<Product>> createdProducts = validProducts.isEmpty()
+                ? Collections.emptyIterator()
+                : productFactory.productCreator().doCreateAll(validProducts).iterator();
+        List<BulkCreateProductResult> results = productErrors.stream()
+                .map(productError -> productError
+                        .map(BulkCreateProductResult::invalid)
+                        .orElseGet(() -> createdProducts.next()
+                                .map(BulkCreateProductResult::created)
+                                .orElseGet(BulkCreateProductResult::conflict)))
+                .collect(Collectors.toList());
+        return Response.status(OK).entity(results).build();
+    }
+
     @GET
     @Path("/v1/api/products/{productExternalId}")
     @Produces(APPLICATION_JSON)
@@ -280,6 +343,98 @@ public class ProductResource {
         return success ? Response.status(NO_CONTENT).build() : Response.status(NOT_FOUND).build();
     }
 
+    @GET
+    @Path("/v1/api/gateway-account/{gatewayAccountId}/products/export")
+    @Produces({"application/x-ndjson", "text/csv", APPLICATION_JSON})
+    @Operation(
+            tags = {"Products"},
+            summary = "Exports all products of a gateway account with their payment count and last payment date. " +
+                    "The export is streamed as NDJSON (one product per line) or CSV.",
+            operationId = "exportProductsByGatewayAccountId",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "OK"),
+                    @ApiResponse(responseCode = "400", description = "Invalid format")
+            }
+    )
+    public Response exportProductsByGatewayAccountId(@Parameter(example = "1") @PathParam("gatewayAccountId") Integer gatewayAccountId,
+                                                     @Parameter(description = "ndjson (default) or csv", example = "csv")
+                                                     @QueryParam("format") String format) {
+        Optional<ProductExportFormat> exportFormat = format == null ? Optional.of(ProductExportFormat.NDJSON) : ProductExportFormat.from(format);
+        if (exportFormat.isEmpty()) {
+            return Response.status(Status.BAD_REQUEST)
+                    .type(APPLICATION_JSON)
+                    .entity(Errors.from("Query param [format] must be ndjson or csv"))
+                    .build();
+        }
+
+        logger.info("Exporting all products of gateway account", kv(GATEWAY_ACCOUNT_ID, gatewayAccountId), kv("format", exportFormat.get().getFileExtension()));
+        return Response.status(OK)
+                .type(exportFormat.get().getMediaType())
+                .header(HttpHeaders.CONTENT_DISPOSITION, format("attachment; filename=\"products-%s.%s\"", gatewayAccountId, exportFormat.get().getFileExtension()))
+                .entity(productFactory.productExporter().export(gatewayAccountId, exportFormat.get()))
+                .build();
+    }
+
+    @PATCH
+    @Path("/v1/api/gateway-account/{gatewayAccountId}/products/disable")
+    @Produces(APPLICATION_JSON)
+    @Operation(
+            tags = {"Products"},
+            summary = "Disables all active products of a gateway account",
+            operationId = "disableProductsByGatewayAccountId",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "OK, with the number of products disabled")
+            }
+    )
+    public Response disableProductsByGatewayAccountId(@Parameter(example = "1") @PathParam("gatewayAccountId") Integer gatewayAccountId) {
+        logger.info("Disabling all products of gateway account", kv(GATEWAY_ACCOUNT_ID, gatewayAccountId));
+        int numberOfProducts = productFactory.productFinder().disableByGatewayAccountId(gatewayAccountId);
+        return Response.status(OK).entity(Map.of(AFFECTED_PRODUCTS, numberOfProducts)).build();
+    }
+
+    @DELETE
+    @Path("/v1/api/gateway-account/{gatewayAccountId}/products")
+    @Produces(APPLICATION_JSON)
+    @Operation(
+            tags = {"Products"},
+            summary = "Deletes all products of a gateway account",
+            operationId = "deleteProductsByGatewayAccountId",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "OK, with the number of products deleted")
+            }
+    )
+    public Response deleteProductsByGatewayAccountId(@Parameter(example = "1") @PathParam("gatewayAccountId") Integer gatewayAccountId) {
+        logger.info("Deleting all products of gateway account", kv(GATEWAY_ACCOUNT_ID, gatewayAccountId));
+        int numberOfProducts = productFactory.productFinder().deleteByGatewayAccountId(gatewayAccountId);
+        return Response.status(OK).entity(Map.of(AFFECTED_PRODUCTS, numberOfProducts)).build();
+    }
+
+    @PUT
+    @Path("/v1/api/gateway-account/{gatewayAccountId}/products/pay-api-token")
+    @Produces(APPLICATION_JSON)
+    @Consumes(APPLICATION_JSON)
+    @Operation(
+            tags = {"Products"},
+            summary = "Replaces the Pay API token of all products of a gateway account",
+            operationId = "updatePayApiTokenByGatewayAccountId",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "OK, with the number of products updated"),
+                    @ApiResponse(responseCode = "400", description = "For invalid payload")
+            }
+    )
+    public Response updatePayApiTokenByGatewayAccountId(@Parameter(example = "1") @PathParam("gatewayAccountId") Integer gatewayAccountId,
+                                                        @RequestBody(content = @Content(schema = @Schema(example = "{\"pay_api_token\": \"api_test_5meusgv5ufclsbvde78mdf35bfdhnhm1307euq94kcf0lcqcqrovbjovib\"}")))
+                                                                JsonNode payload) {
+        logger.info("Replacing the Pay API token of all products of gateway account", kv(GATEWAY_ACCOUNT_ID, gatewayAccountId));
+        return requestValidator.validatePayApiTokenUpdateRequest(payload)
+                .map(errors -> Response.status(Status.BAD_REQUEST).entity(errors).build())
+                .orElseGet(() -> {
+                    int numberOfProducts = productFactory.productFinder()
+                            .updatePayApiTokenByGatewayAccountId(gatewayAccountId, payload.get(FIELD_PAY_API_TOKEN).asText());
+                    return Response.status(OK).entity(Map.of(AFFECTED_PRODUCTS, numberOfProducts)).build();
+                });
+    }
+
     @GET
     @Path("/v1/api/gateway-account/{gatewayAccountId}/products")
     @Produces(APPLICATION_JSON)
@@ -287,20 +442,31 @@ public class ProductResource {
             tags = {"Products"},
             summary = "Find products by gateway account ID and type",
             responses = {
-                    @ApiResponse(responseCode = "200", description = "OK", content = @Content(array = @ArraySchema(schema = @Schema(implementation = Product.class)))),
+                    @ApiResponse(responseCode = "200", description = "OK. When paginated, a Link header with rel=\"next\" is returned if there are more products",
+                            content = @Content(array = @ArraySchema(schema = @Schema(implementation = Product.class)))),
                     @ApiResponse(responseCode = "400", description = "Invalid request params")
             }
     )
     public Response findProductsByGatewayAccountId(@Parameter(example = "1") @PathParam("gatewayAccountId") Integer gatewayAccountId,
-                                                   @Parameter(example = "DEMO", schema = @Schema(implementation = ProductType.class)) @QueryParam("type") String type) {
+                                                   @Parameter(example = "DEMO", schema = @Schema(implementation = ProductType.class)) @QueryParam("type") String type,
+                                                   @Parameter(description = "Cursor from the next link of the previous page. Results are paginated when this or limit is set", example = "1234") @QueryParam("after") Integer after,
+                                                   @Parameter(description = "Maximum number of products to return, up to " + MAX_PRODUCTS_PAGE_SIZE, example = "100") @QueryParam("limit") Integer limit,
+                                                   @Context UriInfo uriInfo) {
+        Optional<Errors> errors = Optional.ofNullable(type)
+                .flatMap(requestValidator::validateProductType)
+                .or(() -> requestValidator.validatePagination(after, limit));
+        if (errors.isPresent()) {
+            return Response.status(Response.Status.BAD_REQUEST).entity(errors.get()).build();
+        }
+
+        if (after != null || limit != null) {
+            return findProductPageByGatewayAccountId(gatewayAccountId, type, after, limit, uriInfo);
+        }
+
         if (type != null) {
-            return requestValidator.validateProductType(type)
-                    .map(errors -> Response.status(Response.Status.BAD_REQUEST).entity(errors).build())
-                    .orElseGet(() -> {
-                        logger.info("Searching for products with gatewayAccountId and type - [ {}, {} ]", gatewayAccountId, type);
-                        List<Product> products = productFactory.productFinder().findByGatewayAccountIdAndType(gatewayAccountId, ProductType.valueOf(type));
-                        return Response.status(OK).entity(products).build();
-                    });
+            logger.info("Searching for products with gatewayAccountId and type - [ {}, {} ]", gatewayAccountId, type);
+            List<Product> products = productFactory.productFinder().findByGatewayAccountIdAndType(gatewayAccountId, ProductType.valueOf(type));
+            return Response.status(OK).entity(products).build();
         }
 
         logger.info("Searching for products with gatewayAccountId - [ {} ]", gatewayAccountId);
@@ -308,6 +474,26 @@ public class ProductResource {
         return Response.status(OK).entity(products).build();
     }
 
+    private Response findProductPageByGatewayAccountId(Integer gatewayAccountId, String type, Integer after, Integer limit, UriInfo uriInfo) {
+        int pageSize = limit != null ? limit : DEFAULT_PRODUCTS_PAGE_SIZE;
+        logger.info("Searching for page of products with gatewayAccountId, type, after and limit - [ {}, {}, {}, {} ]",
+                gatewayAccountId, type, after, pageSize);
+        ProductPage productPage = productFactory.productFinder().findPageByGatewayAccountIdAndType(
+                gatewayAccountId,
+                type != null ? ProductType.valueOf(type) : null,
+                after != null ? after : 0,
+                pageSize);
+
+        Response.ResponseBuilder responseBuilder = Response.status(OK).entity(productPage.getProducts());
+        productPage.getNextAfterId().ifPresent(nextAfterId -> responseBuilder.link(
+                uriInfo.getRequestUriBuilder()
+                        .replaceQueryParam("after", nextAfterId)
+                        .replaceQueryParam("limit", pageSize)
+                        .build(),
+                "next"));
+        return responseBuilder.build();
+    }
+
     @GET
     @Path("/v1/api/products")
     @Produces(APPLICATION_JSON)
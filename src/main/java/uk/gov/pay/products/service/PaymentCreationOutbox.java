@@ -0,0 +1,127 @@
+package uk.gov.pay.products.service;
+
+import uk.gov.pay.products.config.PaymentCreationOutboxConfig;
+import uk.gov.pay.products.persistence.dao.PaymentCreationOutboxDao;
+import uk.gov.pay.products.persistence.entity.PaymentCreationOutboxEntity;
+import uk.gov.pay.products.persistence.entity.PaymentEntity;
+
+import jakarta.inject.Inject;
+import java.time.InstantSource;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static java.time.ZoneOffset.UTC;
+
+/**
+ * Payments waiting to be created in public API by the payment creation workers instead of on the request thread.
+ * <p>
+ * A payment is added to the outbox in the same transaction that saves it. Workers claim outbox rows for a limited time,
+ * so a payment whose worker dies is picked up again once the claim runs out, and remove the row in the transaction that
+ * saves the outcome. A payment whose worker dies after public API has created it is created again by the next worker,
+ * as public API takes no idempotency key, so payments are created in public API at least once. A request thread can wait a bounded time for its payment to be created; otherwise the caller
+ * polls for the payment.
+ */
+public class PaymentCreationOutbox {
+
+    private final PaymentCreationOutboxDao paymentCreationOutboxDao;
+    private final PaymentCreationOutboxConfig paymentCreationOutboxConfig;
+    private final InstantSource instantSource;
+    private final Map<String, CompletableFuture<PaymentEntity>> paymentsBeingWaitedFor = new ConcurrentHashMap<>();
+
+    @Inject
+    public PaymentCreationOutbox(PaymentCreationOutboxDao paymentCreationOutboxDao,
+                                 PaymentCreationOutboxConfig paymentCreationOutboxConfig, InstantSource instantSource) {
+        this.paymentCreationOutboxDao = paymentCreationOutboxDao;
+        this.paymentCreationOutboxConfig = paymentCreationOutboxConfig;
+        this.instantSource = instantSource;
+    }
+
+    public boolean isEnabled() {
+        return paymentCreationOutboxConfig.isEnabled();
+    }
+
+    /**
+     * Adds the payment to the outbox, in the transaction that saves it. A request thread that is going to wait for the
+     * payment starts waiting now, before the transaction commits, so a worker that finishes the payment straight after
+     * the commit still finds it waiting.
+     */
+    public void add(PaymentEntity paymentEntity, Long priceOverride) {
+        paymentCreationOutboxDao.persist(new PaymentCreationOutboxEntity(paymentEntity.getExternalId(), priceOverride));
+        if (paymentCreationOutboxConfig.getMaxWaitForPaymentCreation().toMilliseconds() > 0) {
+            paymentsBeingWaitedFor.put(paymentEntity.getExternalId(), new CompletableFuture<>());
+        }
+    }
+
+    /**
+     * Stops waiting for a payment whose transaction did not commit
+     */
+    public void stopWaiting(String paymentExternalId) {
+        paymentsBeingWaitedFor.remove(paymentExternalId);
+    }
+
+    public List<PaymentCreationOutboxEntity> claim() {
+        return paymentCreationOutboxDao.claim(instantSource.instant().atZone(UTC),
+                paymentCreationOutboxConfig.getClaimDuration().toJavaDuration(), paymentCreationOutboxConfig.getBatchSize());
+    }
+
+    public boolean hasAttemptsLeft(PaymentCreationOutboxEntity paymentCreationOutboxEntity) {
+        return paymentCreationOutboxEntity.getAttempts() <= paymentCreationOutboxConfig.getMaxAttempts();
+    }
+
+    public void remove(String paymentExternalId) {
+        paymentCreationOutboxDao.deleteByPaymentExternalId(paymentExternalId);
+    }
+
+    /**
+     * Hands the outcome to a request thread waiting for the payment, if there is one
+     */
+    public void complete(PaymentEntity paymentEntity) {
+        CompletableFuture<PaymentEntity> payment = paymentsBeingWaitedFor.remove(paymentEntity.getExternalId());
+        if (payment != null) {
+            payment.complete(paymentEntity);
+        }
+    }
+
+    /**
+     * Waits up to maxWaitForPaymentCreation for the payment to be created. A worker in this instance hands the outcome
+     * over as soon as it has saved it; one in another instance cannot, so every pollInterval the outbox is checked for
+     * the payment, whose row is removed in the transaction that saves the outcome.
+     *
+     * @return the payment with the outcome from public API if a worker in this instance created it, or empty if it was
+     * created by another instance or not finished in time, in which case the payment is to be read from the database
+     */
+    public Optional<PaymentEntity> awaitPaymentCreation(String paymentExternalId) {
+        CompletableFuture<PaymentEntity> payment = paymentsBeingWaitedFor.get(paymentExternalId);
+        if (payment == null) {
+            return Optional.empty();
+        }
+
+        long deadline = System.nanoTime() + paymentCreationOutboxConfig.getMaxWaitForPaymentCreation().toNanoseconds();
+        long pollIntervalNanos = paymentCreationOutboxConfig.getPollInterval().toNanoseconds();
+        try {
+            for (long remainingNanos = deadline - System.nanoTime(); remainingNanos > 0; remainingNanos = deadline - System.nanoTime()) {
+                try {
+                    return Optional.of(payment.get(Math.min(remainingNanos, pollIntervalNanos), TimeUnit.NANOSECONDS));
+                } catch (TimeoutException e) {
+                    if (!paymentCreationOutboxDao.existsByPaymentExternalId(paymentExternalId)) {
+                        return Optional.empty();
+                    }
+                }
+            }
+            return Optional.empty();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Optional.empty();
+        } catch (ExecutionException e) {
+            return Optional.empty();
+        } finally {
+            paymentsBeingWaitedFor.remove(paymentExternalId, payment);
+        }
+    }
+}
@@ -8,12 +8,16 @@ import uk.gov.pay.products.client.publicapi.PaymentResponse;
 import uk.gov.pay.products.client.publicapi.PublicApiRestClient;
 import uk.gov.pay.products.config.ProductsConfiguration;
 import uk.gov.pay.products.exception.BadPaymentRequestException;
+import uk.gov.pay.products.exception.IdempotencyKeyConflictException;
 import uk.gov.pay.products.exception.PaymentCreationException;
 import uk.gov.pay.products.exception.PaymentCreatorNotFoundException;
 import uk.gov.pay.products.exception.PublicApiResponseErrorException;
+import uk.gov.pay.products.exception.PublicApiUnavailableException;
 import uk.gov.pay.products.model.Payment;
 import uk.gov.pay.products.persistence.dao.PaymentDao;
 import uk.gov.pay.products.persistence.dao.ProductDao;
+import uk.gov.pay.products.persistence.dao.ProductUsageStatsDao;
+import uk.gov.pay.products.persistence.entity.PaymentCreationOutboxEntity;
 import uk.gov.pay.products.persistence.entity.PaymentEntity;
 import uk.gov.pay.products.persistence.entity.ProductEntity;
 import uk.gov.pay.products.service.transaction.NonTransactionalOperation;
@@ -25,10 +29,15 @@ import uk.gov.pay.products.util.ProductType;
 import uk.gov.service.payments.commons.model.Source;
 
 import jakarta.inject.Inject;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static java.lang.String.format;
 import static net.logstash.logback.argument.StructuredArguments.kv;
 import static org.apache.commons.lang3.StringUtils.isEmpty;
+import static org.eclipse.jetty.http.HttpStatus.INTERNAL_SERVER_ERROR_500;
+import static org.eclipse.jetty.http.HttpStatus.SERVICE_UNAVAILABLE_503;
+import static uk.gov.pay.products.exception.PublicApiUnavailableException.PUBLIC_API_UNAVAILABLE;
 import static uk.gov.pay.products.util.PublicAPIErrorCodes.CREATE_PAYMENT_CARD_NUMBER_IN_PAYMENT_LINK_REFERENCE_ERROR;
 import static uk.gov.pay.products.util.RandomIdGenerator.randomUserFriendlyReference;
 import static uk.gov.pay.products.util.RandomIdGenerator.randomUuid;
@@ -40,20 +49,36 @@ public class PaymentCreator {
 
     private final Provider<TransactionFlow> transactionFlowProvider;
     private final ProductDao productDao;
+    private final ProductCache productCache;
     private final PaymentDao paymentDao;
+    private final ProductUsageStatsDao productUsageStatsDao;
+    private final ReferenceNumberPool referenceNumberPool;
+    private final PaymentCreationOutbox paymentCreationOutbox;
+    private final PaymentIdempotencyKeys paymentIdempotencyKeys;
+    private final PaymentRateLimiter paymentRateLimiter;
     private final PublicApiRestClient publicApiRestClient;
     private final LinksDecorator linksDecorator;
     private final ProductsConfiguration productsConfiguration;
     private static final int MAX_NUMBER_OF_RETRY_FOR_UNIQUE_REF_NUMBER = 3;
+    private static final String NO_ERROR_CODE = "";
     private final PaymentFactory paymentFactory;
 
     @Inject
-    public PaymentCreator(Provider<TransactionFlow> transactionFlowProvider, ProductDao productDao, PaymentDao paymentDao,
-                          PublicApiRestClient publicApiRestClient, LinksDecorator linksDecorator,
-                          ProductsConfiguration productsConfiguration, PaymentFactory paymentFactory) {
+    public PaymentCreator(Provider<TransactionFlow> transactionFlowProvider, ProductDao productDao, ProductCache productCache,
+                          PaymentDao paymentDao, ProductUsageStatsDao productUsageStatsDao, ReferenceNumberPool referenceNumberPool,
+                          PaymentCreationOutbox paymentCreationOutbox, PaymentIdempotencyKeys paymentIdempotencyKeys,
+                          PaymentRateLimiter paymentRateLimiter, PublicApiRestClient publicApiRestClient,
+                          LinksDecorator linksDecorator, ProductsConfiguration productsConfiguration,
+                          PaymentFactory paymentFactory) {
         this.transactionFlowProvider = transactionFlowProvider;
         this.productDao = productDao;
+        this.productCache = productCache;
         this.paymentDao = paymentDao;
+        this.productUsageStatsDao = productUsageStatsDao;
+        this.referenceNumberPool = referenceNumberPool;
+        this.paymentCreationOutbox = paymentCreationOutbox;
+        this.paymentIdempotencyKeys = paymentIdempotencyKeys;
+        this.paymentRateLimiter = paymentRateLimiter;
         this.publicApiRestClient = publicApiRestClient;
         this.linksDecorator = linksDecorator;
         this.productsConfiguration = productsConfiguration;
@@ -61,17 +86,159 @@ public class PaymentCreator {
     }
 
     public Payment doCreate(String productExternalId, Long priceOverride, String reference) {
-        PaymentEntity paymentEntity = transactionFlowProvider.get()
-                .executeNext(beforePaymentCreation(productExternalId, reference))
-                .executeNext(paymentCreation(priceOverride))
-                .executeNext(afterPaymentCreation())
-                .complete().get(PaymentEntity.class);
+        return doCreate(productExternalId, priceOverride, reference, null);
+    }
 
-        if (paymentEntity.getStatus() == PaymentStatus.ERROR) {
-            if (CREATE_PAYMENT_CARD_NUMBER_IN_PAYMENT_LINK_REFERENCE_ERROR.equals(paymentEntity.getErrorCode())) {
-                paymentFactory.paymentUpdater().redactReferenceByExternalId(paymentEntity.getExternalId());
+    /**
+     * Creates a payment for the product. A request repeated with the same idempotency key for the same product gets
+     * the payment created for the first request without creating another payment or calling public API. The errors of
+     * failed payments are not stored, so a repeat of a request whose payment failed creates a new payment instead.
+     *
+     * @throws IdempotencyKeyConflictException if the key was used for a different price or reference, or its payment is
+     * still being created
+     */
+    public Payment doCreate(String productExternalId, Long priceOverride, String reference, String idempotencyKey) {
+        // the gateway account of a product never changes, so it can be read from the product cache
+        paymentRateLimiter.acquire(productExternalId, () -> productCache.findByExternalId(productExternalId, productDao::findByExternalId)
+                .map(ProductEntity::getGatewayAccountId));
+
+        if (idempotencyKey != null) {
+            Optional<Payment> idempotentPayment = findIdempotentPayment(productExternalId, idempotencyKey, priceOverride, reference);
+            if (idempotentPayment.isPresent()) {
+                return idempotentPayment.get();
+            }
+        }
+
+        try {
+            if (paymentCreationOutbox.isEnabled()) {
+                return doCreateThroughOutbox(productExternalId, priceOverride, reference, idempotencyKey);
+            }
+
+            PaymentEntity paymentEntity = transactionFlowProvider.get()
+                    .executeNext(beforePaymentCreation(productExternalId, reference, idempotencyKey, priceOverride))
+                    .executeNext(paymentCreation(priceOverride))
+                    .executeNext(afterPaymentCreation())
+                    .complete().get(PaymentEntity.class);
+
+            redactReferenceIfItContainsACardNumber(paymentEntity);
+            return toCreatedPayment(paymentEntity);
+        } catch (IdempotencyKeyClaimedException e) {
+            // a concurrent request with the same key saved its payment first, and that payment was not saved
+            return findIdempotentPayment(productExternalId, idempotencyKey, priceOverride, reference).orElseThrow(() -> e);
+        }
+    }
+
+    /*
+    A payment still CREATED is being created in public API by the request that claimed the key, so it has no next url
+    to return yet and the repeat is rejected for the caller to retry.
+     */
+    private Optional<Payment> findIdempotentPayment(String productExternalId, String idempotencyKey, Long priceOverride, String reference) {
+        Optional<PaymentEntity> paymentEntity = paymentIdempotencyKeys.findPaymentExternalId(productExternalId, idempotencyKey, priceOverride, reference)
+                .flatMap(paymentDao::findByExternalId);
+        if (paymentEntity.isEmpty()) {
+            return Optional.empty();
+        }
+        if (paymentEntity.get().getStatus() == PaymentStatus.ERROR) {
+            paymentIdempotencyKeys.release(productExternalId, idempotencyKey, paymentEntity.get().getExternalId());
+            return Optional.empty();
+        }
+        if (paymentEntity.get().getStatus() == PaymentStatus.CREATED) {
+            throw new IdempotencyKeyConflictException("A payment for the idempotency key is still being created");
+        }
+        logger.info("Returning payment already created with idempotency key for product external id {}", productExternalId,
+                kv(PAYMENT_EXTERNAL_ID, paymentEntity.get().getExternalId()));
+        return Optional.of(linksDecorator.decorate(paymentEntity.get().toPayment()));
+    }
+
+    /*
+    Saves the payment and its outbox row in one transaction, then waits a bounded time for a payment creation worker to
+    create it in public API. Unless a worker in this instance hands the outcome over, the payment is returned as it is in
+    the database, which is still CREATED if no worker has finished it in time, and the caller polls for it.
+     */
+    private Payment doCreateThroughOutbox(String productExternalId, Long priceOverride, String reference, String idempotencyKey) {
+        AtomicReference<PaymentEntity> outboxedPaymentEntity = new AtomicReference<>();
+        PaymentEntity paymentEntity;
+        try {
+            paymentEntity = transactionFlowProvider.get()
+                    .executeNext(beforePaymentCreation(productExternalId, reference, idempotencyKey, priceOverride, outboxedPaymentEntity))
+                    .complete().get(PaymentEntity.class);
+        } catch (RuntimeException e) {
+            // the outbox started waiting for the payment before its transaction was committed
+            if (outboxedPaymentEntity.get() != null) {
+                paymentCreationOutbox.stopWaiting(outboxedPaymentEntity.get().getExternalId());
             }
+            throw e;
+        }
+
+        PaymentEntity createdPaymentEntity = paymentCreationOutbox.awaitPaymentCreation(paymentEntity.getExternalId())
+                .or(() -> paymentDao.findByExternalId(paymentEntity.getExternalId()))
+                .orElse(paymentEntity);
+
+        if (createdPaymentEntity.getStatus() == PaymentStatus.ERROR && createdPaymentEntity.getErrorCode() == null) {
+            createdPaymentEntity.setErrorStatusCode(INTERNAL_SERVER_ERROR_500);
+            createdPaymentEntity.setErrorCode(NO_ERROR_CODE);
+        }
+        return toCreatedPayment(createdPaymentEntity);
+    }
+
+    /**
+     * Creates the claimed payments in the payment creation outbox in public API, one after the other. A payment that
+     * fails for any reason other than an error response from public API stays in the outbox and is tried again once
+     * its claim runs out, until it has no attempts left.
+     */
+    public void createOutboxedPayments() {
+        try {
+            for (PaymentCreationOutboxEntity outboxEntity : paymentCreationOutbox.claim()) {
+                createOutboxedPayment(outboxEntity);
+            }
+        } catch (Exception e) {
+            logger.error("Failed to claim payments from the payment creation outbox", e);
+        }
+    }
 
+    private void createOutboxedPayment(PaymentCreationOutboxEntity outboxEntity) {
+        String paymentExternalId = outboxEntity.getPaymentExternalId();
+        try {
+            Optional<PaymentEntity> outboxedPaymentEntity = paymentDao.findByExternalId(paymentExternalId);
+            if (outboxedPaymentEntity.isEmpty()) {
+                paymentCreationOutbox.remove(paymentExternalId);
+                return;
+            }
+
+            PaymentEntity paymentEntity = outboxedPaymentEntity.get();
+            if (!paymentCreationOutbox.hasAttemptsLeft(outboxEntity)) {
+                logger.error(format("Giving up creating payment %s after %s attempts", paymentExternalId, outboxEntity.getAttempts() - 1),
+                        kv("payment_external_id", paymentExternalId));
+                paymentEntity.setStatus(PaymentStatus.ERROR);
+                paymentEntity.setErrorStatusCode(INTERNAL_SERVER_ERROR_500);
+                paymentEntity.setErrorCode(NO_ERROR_CODE);
+            }
+
+            TransactionFlow transactionFlow = transactionFlowProvider.get()
+                    .executeNext(outboxedPayment(paymentEntity));
+            if (paymentEntity.getStatus() == PaymentStatus.CREATED) {
+                transactionFlow.executeNext(paymentCreation(outboxEntity.getPriceOverride()));
+            }
+            paymentEntity = transactionFlow
+                    .executeNext(afterOutboxedPaymentCreation())
+                    .complete().get(PaymentEntity.class);
+
+            redactReferenceIfItContainsACardNumber(paymentEntity);
+            paymentCreationOutbox.complete(paymentEntity);
+        } catch (Exception e) {
+            logger.error(format("Failed to create payment %s from the payment creation outbox", paymentExternalId), e);
+        }
+    }
+
+    private void redactReferenceIfItContainsACardNumber(PaymentEntity paymentEntity) {
+        if (paymentEntity.getStatus() == PaymentStatus.ERROR &&
+                CREATE_PAYMENT_CARD_NUMBER_IN_PAYMENT_LINK_REFERENCE_ERROR.equals(paymentEntity.getErrorCode())) {
+            paymentFactory.paymentUpdater().redactReferenceByExternalId(paymentEntity.getExternalId());
+        }
+    }
+
+    private Payment toCreatedPayment(PaymentEntity paymentEntity) {
+        if (paymentEntity.getStatus() == PaymentStatus.ERROR) {
             throw new PaymentCreationException(paymentEntity.getProductEntity().getExternalId(),
                     paymentEntity.getErrorStatusCode(),
                     paymentEntity.getErrorCode(),
@@ -80,35 +247,63 @@ public class PaymentCreator {
         return linksDecorator.decorate(paymentEntity.toPayment());
     }
 
-    private TransactionalOperation<TransactionContext, PaymentEntity> beforePaymentCreation(String productExternalId, String userDefinedReference) {
+    private TransactionalOperation<TransactionContext, PaymentEntity> beforePaymentCreation(String productExternalId, String userDefinedReference,
+                                                                                           String idempotencyKey, Long priceOverride,
+                                                                                           AtomicReference<PaymentEntity> outboxedPaymentEntity) {
+        return context -> {
+            PaymentEntity paymentEntity = beforePaymentCreation(productExternalId, userDefinedReference, idempotencyKey, priceOverride).execute(context);
+            outboxedPaymentEntity.set(paymentEntity);
+            paymentCreationOutbox.add(paymentEntity, priceOverride);
+            return paymentEntity;
+        };
+    }
+
+    private TransactionalOperation<TransactionContext, PaymentEntity> beforePaymentCreation(String productExternalId, String userDefinedReference,
+                                                                                           String idempotencyKey, Long priceOverride) {
         return context -> {
             logger.info("Creating a new payment for product external id {}", productExternalId);
+            // read from the database rather than the product cache, so a payment is never created for a product that
+            // has just been disabled or deleted, or with a pay API token that has just been replaced
             ProductEntity productEntity = productDao.findByExternalId(productExternalId)
                     .orElseThrow(() -> new PaymentCreatorNotFoundException(productExternalId));
+            PaymentEntity paymentEntity = setupPaymentEntity(productEntity);
             if (productEntity.getReferenceEnabled()) {
                 if (isEmpty(userDefinedReference)) {
                     throw new BadPaymentRequestException("User defined reference is enabled but missing");
                 }
-                return mergePaymentEntityWithoutReferenceCheck(setupPaymentEntity(productEntity, userDefinedReference));
+                paymentEntity.setReferenceNumber(userDefinedReference);
+                mergePaymentEntityWithoutReferenceCheck(paymentEntity);
+            } else {
+                mergePaymentEntityWithReferenceNumberCheck(paymentEntity);
             }
 
-            PaymentEntity paymentEntity = setupPaymentEntity(productEntity, randomUserFriendlyReference());
-
-            return mergePaymentEntityWithReferenceNumberCheck(paymentEntity);
+            // rolls the payment back if a concurrent request has claimed the key in the meantime
+            if (idempotencyKey != null &&
+                    !paymentIdempotencyKeys.claim(productExternalId, idempotencyKey, paymentEntity.getExternalId(), priceOverride, userDefinedReference)) {
+                throw new IdempotencyKeyClaimedException(productExternalId);
+            }
+            return paymentEntity;
         };
     }
 
     private PaymentEntity mergePaymentEntityWithoutReferenceCheck(PaymentEntity paymentEntity) {
-        paymentDao.persist(paymentEntity);
+        persistPaymentEntity(paymentEntity);
         return paymentEntity;
     }
 
     private PaymentEntity mergePaymentEntityWithReferenceNumberCheck(PaymentEntity paymentEntity) {
+        Optional<String> pooledReference = referenceNumberPool.take(paymentEntity.getGatewayAccountId());
+        if (pooledReference.isPresent()) {
+            paymentEntity.setReferenceNumber(pooledReference.get());
+            persistPaymentEntity(paymentEntity);
+            return paymentEntity;
+        }
+
         for (int i = 0; i < MAX_NUMBER_OF_RETRY_FOR_UNIQUE_REF_NUMBER; i++) {
             String reference = randomUserFriendlyReference();
-            if (paymentDao.findByGatewayAccountIdAndReferenceNumber(paymentEntity.getGatewayAccountId(), reference).isEmpty()) {
+            if (paymentDao.reserveReferenceNumber(paymentEntity.getGatewayAccountId(), reference)) {
                 paymentEntity.setReferenceNumber(reference);
-                paymentDao.persist(paymentEntity);
+                persistPaymentEntity(paymentEntity);
                 return paymentEntity;
             }
         }
@@ -119,6 +314,11 @@ public class PaymentCreator {
         throw runtimeException;
     }
 
+    private void persistPaymentEntity(PaymentEntity paymentEntity) {
+        paymentDao.persist(paymentEntity);
+        productUsageStatsDao.recordPayment(paymentEntity.getProductEntity().getId(), paymentEntity.getDateCreated());
+    }
+
     private NonTransactionalOperation<TransactionContext, PaymentEntity> paymentCreation(Long priceOverride) {
         return context -> {
             PaymentEntity paymentEntity = context.get(PaymentEntity.class);
@@ -157,6 +357,17 @@ public class PaymentCreator {
                 paymentEntity.setErrorStatusCode(e.getErrorStatus());
                 paymentEntity.setErrorCode(e.getCode());
                 paymentEntity.setErrorDescription(e.getDescription());
+            } catch (PublicApiUnavailableException e) {
+                if (paymentCreationOutbox.isEnabled()) {
+                    // left in the outbox, to be created once public API is available again
+                    throw e;
+                }
+                logger.warn("Payment creation for product external id {} failed fast as public API is unavailable: {}",
+                        paymentEntity.getProductEntity().getExternalId(), e.getMessage());
+                paymentEntity.setStatus(PaymentStatus.ERROR);
+                paymentEntity.setErrorStatusCode(SERVICE_UNAVAILABLE_503);
+                paymentEntity.setErrorCode(PUBLIC_API_UNAVAILABLE);
+                paymentEntity.setErrorDescription(e.getMessage());
             }
 
             return paymentEntity;
@@ -173,6 +384,18 @@ public class PaymentCreator {
         };
     }
 
+    private NonTransactionalOperation<TransactionContext, PaymentEntity> outboxedPayment(PaymentEntity paymentEntity) {
+        return context -> paymentEntity;
+    }
+
+    private TransactionalOperation<TransactionContext, PaymentEntity> afterOutboxedPaymentCreation() {
+        return context -> {
+            PaymentEntity paymentEntity = afterPaymentCreation().execute(context);
+            paymentCreationOutbox.remove(paymentEntity.getExternalId());
+            return paymentEntity;
+        };
+    }
+
     private String getNextUrl(PaymentResponse paymentResponse) {
         if ((paymentResponse.getLinks() != null) &&
                 (paymentResponse.getLinks().getNextUrl() != null)) {
@@ -181,13 +404,18 @@ public class PaymentCreator {
         return "";
     }
 
-    private PaymentEntity setupPaymentEntity(ProductEntity productEntity, String referenceToBeUsed) {
+    private PaymentEntity setupPaymentEntity(ProductEntity productEntity) {
         PaymentEntity paymentEntity = new PaymentEntity();
         paymentEntity.setExternalId(randomUuid());
         paymentEntity.setProductEntity(productEntity);
         paymentEntity.setStatus(PaymentStatus.CREATED);
         paymentEntity.setGatewayAccountId(productEntity.getGatewayAccountId());
-        paymentEntity.setReferenceNumber(referenceToBeUsed);
         return paymentEntity;
     }
+
+    private static class IdempotencyKeyClaimedException extends RuntimeException {
+        IdempotencyKeyClaimedException(String productExternalId) {
+            super(format("Idempotency key for product external id %s has already been claimed", productExternalId));
+        }
+    }
 }
@@ -1,14 +1,18 @@
 package uk.gov.pay.products.service;
 
 import io.prometheus.client.Counter;
+import io.prometheus.client.Gauge;
 import io.prometheus.client.Histogram;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import uk.gov.pay.products.config.ExpungeHistoricalDataConfig;
+import uk.gov.pay.products.persistence.dao.DatabaseActivityDao;
 import uk.gov.pay.products.persistence.dao.PaymentDao;
 
 import jakarta.inject.Inject;
+import java.time.Instant;
 import java.time.InstantSource;
+import java.time.ZonedDateTime;
 import java.time.temporal.ChronoUnit;
 
 import static java.lang.String.format;
@@ -18,9 +22,11 @@ import static net.logstash.logback.argument.StructuredArguments.kv;
 public class PaymentDeleter {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(PaymentDeleter.class);
-    
+
     private ExpungeHistoricalDataConfig expungeHistoricalDataConfig;
     private PaymentDao paymentDao;
+    private DatabaseActivityDao databaseActivityDao;
+    private PaymentPartitionManager paymentPartitionManager;
     private InstantSource instantSource;
 
     private static final Counter noOfPaymentsDeletedMetric = Counter.build()
@@ -34,16 +40,37 @@ public class PaymentDeleter {
             .unit("seconds")
             .register();
 
+    private static final Histogram chunkDuration = Histogram.build()
+            .name("expunge_historical_data_job_chunk_duration_seconds")
+            .help("Duration of deleting one chunk of payments in seconds")
+            .unit("seconds")
+            .register();
+
+    private static final Counter pausesMetric = Counter.build()
+            .name("expunge_historical_data_job_pauses")
+            .help("Number of times the expunge historical data job paused because the database was busy")
+            .labelNames("reason")
+            .register();
+
+    private static final Gauge noOfPaymentsToDeleteMetric = Gauge.build()
+            .name("expunge_historical_data_job_no_of_payments_to_delete")
+            .help("Number of payments the last dry run of the expunge historical data job would have deleted")
+            .register();
+
     @Inject
-    public PaymentDeleter(ExpungeHistoricalDataConfig expungeHistoricalDataConfig, PaymentDao paymentDao, InstantSource instantSource) {
+    public PaymentDeleter(ExpungeHistoricalDataConfig expungeHistoricalDataConfig, PaymentDao paymentDao,
+                          DatabaseActivityDao databaseActivityDao, PaymentPartitionManager paymentPartitionManager,
+                          InstantSource instantSource) {
         this.expungeHistoricalDataConfig = expungeHistoricalDataConfig;
         this.paymentDao = paymentDao;
+        this.databaseActivityDao = databaseActivityDao;
+        this.paymentPartitionManager = paymentPartitionManager;
         this.instantSource = instantSource;
     }
 
     public void deletePayments() {
         Histogram.Timer responseTimeTimer = duration.startTimer();
-        
+
         try {
             if (!expungeHistoricalDataConfig.isExpungeHistoricalDataEnabled()) {
                 LOGGER.info("Expunging of historical data is not enabled.");
@@ -51,13 +78,126 @@ public class PaymentDeleter {
             }
 
             var maxDate = instantSource.instant().minus(expungeHistoricalDataConfig.getExpungeDataOlderThanDays(), ChronoUnit.DAYS).atZone(UTC);
-            int numberOfDeletedPayments = paymentDao.deletePayments(maxDate, expungeHistoricalDataConfig.getNumberOfPaymentsToExpunge());
+
+            if (expungeHistoricalDataConfig.isDryRun()) {
+                estimatePaymentsToDelete(maxDate);
+                return;
+            }
+
+            int numberOfDeletedPayments = 0;
+            if (expungeHistoricalDataConfig.isDropExpiredPartitions()) {
+                numberOfDeletedPayments += paymentPartitionManager.dropExpiredMonthlyPartitions(maxDate);
+                noOfPaymentsDeletedMetric.inc(numberOfDeletedPayments);
+            }
+
+            numberOfDeletedPayments += expungeHistoricalDataConfig.isExpungeInChunks() ?
+                    deletePaymentsInChunks(maxDate) :
+                    deleteChunk(maxDate, expungeHistoricalDataConfig.getNumberOfPaymentsToExpunge());
+            // a day earlier, so no payment that may still be kept was given one of these reference numbers
+            int numberOfDeletedReferenceNumbers = paymentDao.deletePooledReferenceNumbers(maxDate.minusDays(1),
+                    expungeHistoricalDataConfig.getNumberOfPaymentsToExpunge());
             LOGGER.info(format("%s payments were deleted.", numberOfDeletedPayments),
-                    kv("no_of_payments_deleted", numberOfDeletedPayments));
+                    kv("no_of_payments_deleted", numberOfDeletedPayments),
+                    kv("no_of_pooled_reference_numbers_deleted", numberOfDeletedReferenceNumbers));
+        } finally {
+            responseTimeTimer.observeDuration();
+        }
+    }
+
+    /*
+    Deletes payments in chunks of chunkSize, each in its own short transaction, until numberOfPaymentsToExpunge
+    payments have been deleted, there are none left to delete or maxRunDuration has passed. While replicas are lagging
+    or other sessions are waiting for locks no chunk is deleted, so the job gives way to live traffic.
+     */
+    private int deletePaymentsInChunks(ZonedDateTime maxDate) {
+        Instant deadline = instantSource.instant().plus(expungeHistoricalDataConfig.getMaxRunDuration().toJavaDuration());
+        int remainingNumberOfPayments = expungeHistoricalDataConfig.getNumberOfPaymentsToExpunge();
+        int numberOfDeletedPayments = 0;
+
+        while (remainingNumberOfPayments > 0 && instantSource.instant().isBefore(deadline)) {
+            if (isDatabaseBusy()) {
+                if (!pause(expungeHistoricalDataConfig.getPauseWhenDatabaseBusy().toMilliseconds())) {
+                    break;
+                }
+                continue;
+            }
+
+            int chunkSize = Math.min(expungeHistoricalDataConfig.getChunkSize(), remainingNumberOfPayments);
+            int numberOfPaymentsDeletedInChunk = deleteChunk(maxDate, chunkSize);
+            numberOfDeletedPayments += numberOfPaymentsDeletedInChunk;
+            remainingNumberOfPayments -= numberOfPaymentsDeletedInChunk;
 
+            if (numberOfPaymentsDeletedInChunk < chunkSize) {
+                break;
+            }
+            if (remainingNumberOfPayments > 0 && !pause(expungeHistoricalDataConfig.getPauseBetweenChunks().toMilliseconds())) {
+                break;
+            }
+        }
+
+        return numberOfDeletedPayments;
+    }
+
+    private int deleteChunk(ZonedDateTime maxDate, int chunkSize) {
+        Histogram.Timer chunkTimer = chunkDuration.startTimer();
+        try {
+            int numberOfDeletedPayments = paymentDao.deletePayments(maxDate, chunkSize);
             noOfPaymentsDeletedMetric.inc(numberOfDeletedPayments);
+            return numberOfDeletedPayments;
         } finally {
-            responseTimeTimer.observeDuration();
+            chunkTimer.observeDuration();
+        }
+    }
+
+    private void estimatePaymentsToDelete(ZonedDateTime maxDate) {
+        int numberOfPaymentsToDelete = paymentDao.countPaymentsCreatedBefore(maxDate, expungeHistoricalDataConfig.getNumberOfPaymentsToExpunge());
+        int numberOfChunks = expungeHistoricalDataConfig.isExpungeInChunks() ?
+                (numberOfPaymentsToDelete + expungeHistoricalDataConfig.getChunkSize() - 1) / expungeHistoricalDataConfig.getChunkSize() :
+                Math.min(numberOfPaymentsToDelete, 1);
+        LOGGER.info(format("Dry run: %s payments would be deleted in %s chunks.", numberOfPaymentsToDelete, numberOfChunks),
+                kv("no_of_payments_to_delete", numberOfPaymentsToDelete),
+                kv("no_of_chunks", numberOfChunks));
+
+        noOfPaymentsToDeleteMetric.set(numberOfPaymentsToDelete);
+
+        if (expungeHistoricalDataConfig.isDropExpiredPartitions()) {
+            var expiredPartitions = paymentPartitionManager.findExpiredMonthlyPartitions(maxDate);
+            LOGGER.info(format("Dry run: %s payments partitions would be dropped.", expiredPartitions.size()),
+                    kv("payments_partition_months", expiredPartitions.toString()));
+        }
+    }
+
+    private boolean isDatabaseBusy() {
+        long replicationLagMillis = databaseActivityDao.findMaxReplicationLag().toMillis();
+        if (replicationLagMillis > expungeHistoricalDataConfig.getMaxReplicationLag().toMilliseconds()) {
+            LOGGER.info(format("Pausing expunging of historical data as replication lag is %s ms.", replicationLagMillis),
+                    kv("replication_lag_ms", replicationLagMillis));
+            pausesMetric.labels("replication_lag").inc();
+            return true;
+        }
+
+        long sessionsWaitingForLocks = databaseActivityDao.countSessionsWaitingForLocks();
+        if (sessionsWaitingForLocks > expungeHistoricalDataConfig.getMaxSessionsWaitingForLocks()) {
+            LOGGER.info(format("Pausing expunging of historical data as %s sessions are waiting for locks.", sessionsWaitingForLocks),
+                    kv("sessions_waiting_for_locks", sessionsWaitingForLocks));
+            pausesMetric.labels("lock_waits").inc();
+            return true;
+        }
+
+        return false;
+    }
+
+    private boolean pause(long millis) {
+        if (millis <= 0) {
+            return true;
+        }
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.warn("Expunging of historical data was interrupted.");
+            return false;
         }
     }
 }
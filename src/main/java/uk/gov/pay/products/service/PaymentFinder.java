@@ -5,16 +5,35 @@ import com.google.inject.persist.Transactional;
 import org.slf4j.LoggerFactory;
 import uk.gov.pay.products.client.publicapi.PaymentResponse;
 import uk.gov.pay.products.client.publicapi.PublicApiRestClient;
+import uk.gov.pay.products.client.publicapi.model.PaymentState;
+import uk.gov.pay.products.config.PaymentStatusLookupConfig;
+import uk.gov.pay.products.config.PaymentStatusReconcilerConfig;
 import uk.gov.pay.products.exception.PublicApiResponseErrorException;
+import uk.gov.pay.products.exception.PublicApiUnavailableException;
 import uk.gov.pay.products.model.Payment;
+import uk.gov.pay.products.model.PaymentPage;
+import uk.gov.pay.products.model.PaymentPageCursor;
 import uk.gov.pay.products.persistence.dao.PaymentDao;
 import uk.gov.pay.products.persistence.entity.PaymentEntity;
+import uk.gov.pay.products.util.PaymentStatus;
 
+import java.time.InstantSource;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
 import static java.lang.String.format;
+import static java.time.ZoneOffset.UTC;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 import static uk.gov.pay.products.util.PaymentStatus.SUBMITTED;
 
 public class PaymentFinder {
@@ -22,25 +41,52 @@ public class PaymentFinder {
     private final PaymentDao paymentDao;
     private final LinksDecorator linksDecorator;
     private final PublicApiRestClient publicApiRestClient;
+    private final PaymentStatusLookupConfig paymentStatusLookupConfig;
+    private final PaymentStatusReconcilerConfig paymentStatusReconcilerConfig;
+    private final InstantSource instantSource;
     private static final org.slf4j.Logger logger = LoggerFactory.getLogger(PaymentFinder.class);
 
     @Inject
-    public PaymentFinder(PaymentDao paymentDao, LinksDecorator linksDecorator, PublicApiRestClient publicApiRestClient) {
+    public PaymentFinder(PaymentDao paymentDao, LinksDecorator linksDecorator, PublicApiRestClient publicApiRestClient,
+                         PaymentStatusLookupConfig paymentStatusLookupConfig,
+                         PaymentStatusReconcilerConfig paymentStatusReconcilerConfig, InstantSource instantSource) {
         this.paymentDao = paymentDao;
         this.linksDecorator = linksDecorator;
         this.publicApiRestClient = publicApiRestClient;
+        this.paymentStatusLookupConfig = paymentStatusLookupConfig;
+        this.paymentStatusReconcilerConfig = paymentStatusReconcilerConfig;
+        this.instantSource = instantSource;
     }
 
     public List<Payment> findByProductExternalId(String productExternalId) {
-        return findPaymentEntitiesByProductExternalId(productExternalId)
+        return queryGovUKPaymentStatuses(findPaymentEntitiesByProductExternalId(productExternalId))
                 .stream()
-                .map(paymentEntity -> {
-                    Payment payment = queryGovUKPaymentStatus(paymentEntity);
-                    return linksDecorator.decorate(payment);
-                })
+                .map(linksDecorator::decorate)
                 .collect(Collectors.toList());
     }
 
+    public PaymentPage findPageByProductExternalId(String productExternalId, PaymentStatus status,
+                                                   ZonedDateTime fromDate, ZonedDateTime toDate,
+                                                   PaymentPageCursor before, int limit) {
+        // fetch one extra row to find out whether there is a next page without a separate count query
+        List<PaymentEntity> paymentEntities =
+                findPaymentEntitiesByProductExternalId(productExternalId, status, fromDate, toDate, before, limit + 1);
+        boolean hasNextPage = paymentEntities.size() > limit;
+        List<PaymentEntity> pageEntities = hasNextPage ? paymentEntities.subList(0, limit) : paymentEntities;
+
+        List<Payment> payments = queryGovUKPaymentStatuses(pageEntities)
+                .stream()
+                .map(linksDecorator::decorate)
+                .collect(Collectors.toList());
+
+        PaymentPageCursor nextCursor = null;
+        if (hasNextPage) {
+            PaymentEntity lastPaymentEntity = pageEntities.get(limit - 1);
+            nextCursor = new PaymentPageCursor(lastPaymentEntity.getDateCreated(), lastPaymentEntity.getId());
+        }
+        return new PaymentPage(payments, nextCursor);
+    }
+
     public Optional<Payment> findByExternalId(String paymentExternalId) {
         return findPaymentEntity(paymentExternalId).map(paymentEntity -> {
             Payment payment = queryGovUKPaymentStatus(paymentEntity);
@@ -59,17 +105,32 @@ public class PaymentFinder {
     }
     
     @Transactional
+    public List<PaymentEntity> findPaymentEntitiesByProductExternalId(String productExternalId, PaymentStatus status,
+                                                                      ZonedDateTime fromDate, ZonedDateTime toDate,
+                                                                      PaymentPageCursor before, int maxResults) {
+        return paymentDao.findByProductExternalIdBefore(productExternalId, status, fromDate, toDate, before, maxResults);
+    }
+
+    /*
+    The payment is read in its own transaction, so no connection is held while public API is queried, and a finished
+    govuk status is then stored in a transaction of its own.
+     */
     public Optional<Payment> findByGatewayAccountIdAndReferenceNumber(Integer gatewayAccountId, String referenceNumber) {
-        return paymentDao.findByGatewayAccountIdAndReferenceNumber(gatewayAccountId, referenceNumber)
+        return findPaymentEntity(gatewayAccountId, referenceNumber)
                 .map(paymentEntity -> {
                     Payment payment = queryGovUKPaymentStatus(paymentEntity);
                     return linksDecorator.decorate(payment);
                 });
     }
 
+    @Transactional
+    public Optional<PaymentEntity> findPaymentEntity(Integer gatewayAccountId, String referenceNumber) {
+        return paymentDao.findByGatewayAccountIdAndReferenceNumber(gatewayAccountId, referenceNumber);
+    }
+
     private Payment queryGovUKPaymentStatus(PaymentEntity paymentEntity) {
         Payment payment = paymentEntity.toPayment();
-        if (payment.getStatus() == SUBMITTED) {
+        if (needsGovUKPaymentStatusLookup(paymentEntity)) {
             try {
                 Optional<PaymentResponse> paymentResponseOptional =
                         publicApiRestClient.getPayment(paymentEntity.getProductEntity().getPayApiToken(),
@@ -79,12 +140,120 @@ public class PaymentFinder {
                     PaymentResponse paymentResponse = paymentResponseOptional.get();
                     String status = paymentResponse.getState().getStatus();
                     payment.setGovukStatus(status);
+                    recordFinishedGovUKPaymentStatus(paymentEntity, paymentResponse.getState());
                 }
-            } catch (PublicApiResponseErrorException ex) {
+            } catch (PublicApiResponseErrorException | PublicApiUnavailableException ex) {
                 logger.error(format("Error while trying to query publicapi with %s: %s",paymentEntity.getExternalId(), ex.getMessage()));
             }
         }
         return payment;
 
     }
+
+    /*
+    Looks up the statuses of the SUBMITTED payments not yet known to be finished in public API concurrently, at most maxConcurrentLookups at a time,
+    and waits no longer than maxLookupDuration for all of them. Payments whose lookup fails or is not finished by then
+    are returned without a govuk status. Statuses are only set on this thread, once the waiting is over.
+     */
+    private List<Payment> queryGovUKPaymentStatuses(List<PaymentEntity> paymentEntities) {
+        long deadline = System.nanoTime() + paymentStatusLookupConfig.getMaxLookupDuration().toNanoseconds();
+        Semaphore lookupPermits = new Semaphore(paymentStatusLookupConfig.getMaxConcurrentLookups());
+
+        List<CompletableFuture<Optional<PaymentResponse>>> lookups = new ArrayList<>(paymentEntities.size());
+        for (PaymentEntity paymentEntity : paymentEntities) {
+            lookups.add(needsGovUKPaymentStatusLookup(paymentEntity) ? lookUpGovUKPayment(paymentEntity, lookupPermits, deadline) : null);
+        }
+        awaitLookups(lookups, deadline);
+
+        List<Payment> payments = new ArrayList<>(paymentEntities.size());
+        for (int i = 0; i < paymentEntities.size(); i++) {
+            PaymentEntity paymentEntity = paymentEntities.get(i);
+            Payment payment = paymentEntity.toPayment();
+            CompletableFuture<Optional<PaymentResponse>> lookup = lookups.get(i);
+            if (lookup != null) {
+                govUKPaymentState(paymentEntity, lookup).ifPresent(paymentState -> {
+                    payment.setGovukStatus(paymentState.getStatus());
+                    recordFinishedGovUKPaymentStatus(paymentEntity, paymentState);
+                });
+            }
+            payments.add(payment);
+        }
+        return payments;
+    }
+
+    private CompletableFuture<Optional<PaymentResponse>> lookUpGovUKPayment(PaymentEntity paymentEntity, Semaphore lookupPermits, long deadline) {
+        try {
+            if (!lookupPermits.tryAcquire(deadline - System.nanoTime(), NANOSECONDS)) {
+                return CompletableFuture.failedFuture(new TimeoutException());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(e);
+        }
+
+        try {
+            return publicApiRestClient.getPaymentAsync(paymentEntity.getProductEntity().getPayApiToken(), paymentEntity.getGovukPaymentId())
+                    .whenComplete((paymentResponse, throwable) -> lookupPermits.release());
+        } catch (RuntimeException e) {
+            lookupPermits.release();
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private void awaitLookups(List<CompletableFuture<Optional<PaymentResponse>>> lookups, long deadline) {
+        CompletableFuture<?>[] startedLookups = lookups.stream()
+                .filter(Objects::nonNull)
+                .toArray(CompletableFuture[]::new);
+        try {
+            CompletableFuture.allOf(startedLookups).get(deadline - System.nanoTime(), NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            // payments whose lookup failed or is still running are returned without a govuk status
+        }
+    }
+
+    private Optional<PaymentState> govUKPaymentState(PaymentEntity paymentEntity, CompletableFuture<Optional<PaymentResponse>> lookup) {
+        if (!lookup.isDone()) {
+            lookup.cancel(false);
+            logger.warn(format("Timed out querying publicapi with %s", paymentEntity.getExternalId()));
+            return Optional.empty();
+        }
+        try {
+            return lookup.join().map(PaymentResponse::getState);
+        } catch (CompletionException | CancellationException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof TimeoutException) {
+                logger.warn(format("Timed out querying publicapi with %s", paymentEntity.getExternalId()));
+            } else {
+                logger.error(format("Error while trying to query publicapi with %s: %s", paymentEntity.getExternalId(), cause.getMessage()));
+            }
+            return Optional.empty();
+        }
+    }
+
+    /*
+    While the payment status reconciler is enabled it keeps the stored govuk statuses up to date, so they are returned
+    as they are instead of being looked up.
+     */
+    private boolean needsGovUKPaymentStatusLookup(PaymentEntity paymentEntity) {
+        return !paymentStatusReconcilerConfig.isEnabled()
+                && paymentEntity.getStatus() == SUBMITTED
+                && !paymentEntity.isGovukStatusFinished();
+    }
+
+    /*
+    A finished payment never changes status again, so its status is stored and later reads do not go to public API.
+     */
+    private void recordFinishedGovUKPaymentStatus(PaymentEntity paymentEntity, PaymentState paymentState) {
+        if (!paymentState.isFinished()) {
+            return;
+        }
+        try {
+            paymentDao.updateGovukStatus(paymentEntity.getExternalId(), paymentState.getStatus(), true,
+                    ZonedDateTime.ofInstant(instantSource.instant(), UTC));
+        } catch (Exception e) {
+            logger.error(format("Error while trying to store govuk status of %s: %s", paymentEntity.getExternalId(), e.getMessage()));
+        }
+    }
 }
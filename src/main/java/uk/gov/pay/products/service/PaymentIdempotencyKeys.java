@@ -0,0 +1,107 @@
+package uk.gov.pay.products.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.gov.pay.products.config.PaymentIdempotencyKeyConfig;
+import uk.gov.pay.products.exception.IdempotencyKeyConflictException;
+import uk.gov.pay.products.persistence.dao.PaymentIdempotencyKeyDao;
+
+import jakarta.inject.Inject;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.InstantSource;
+import java.time.ZonedDateTime;
+import java.util.HexFormat;
+import java.util.Optional;
+
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.time.ZoneOffset.UTC;
+import static net.logstash.logback.argument.StructuredArguments.kv;
+
+/**
+ * Idempotency keys sent with payment creation requests, so a request retried with the same key gets the payment
+ * created for the first one instead of creating another payment in public API.
+ * <p>
+ * A key is claimed in the same transaction that saves its payment and is kept for keyTtl, together with a fingerprint
+ * of the price and reference requested, so a repeat asking for a different payment is rejected rather than given the
+ * first one. Expired keys are deleted in the background.
+ */
+public class PaymentIdempotencyKeys {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PaymentIdempotencyKeys.class);
+
+    private final PaymentIdempotencyKeyDao paymentIdempotencyKeyDao;
+    private final PaymentIdempotencyKeyConfig paymentIdempotencyKeyConfig;
+    private final InstantSource instantSource;
+
+    @Inject
+    public PaymentIdempotencyKeys(PaymentIdempotencyKeyDao paymentIdempotencyKeyDao,
+                                  PaymentIdempotencyKeyConfig paymentIdempotencyKeyConfig, InstantSource instantSource) {
+        this.paymentIdempotencyKeyDao = paymentIdempotencyKeyDao;
+        this.paymentIdempotencyKeyConfig = paymentIdempotencyKeyConfig;
+        this.instantSource = instantSource;
+    }
+
+    /**
+     * @return the payment the key maps to, if any
+     * @throws IdempotencyKeyConflictException if the key was claimed by a request with a different price or reference
+     */
+    public Optional<String> findPaymentExternalId(String productExternalId, String idempotencyKey, Long priceOverride, String reference) {
+        return paymentIdempotencyKeyDao.findClaimedKey(productExternalId, idempotencyKey, now())
+                .map(claimedKey -> {
+                    if (claimedKey.getRequestFingerprint() != null &&
+                            !claimedKey.getRequestFingerprint().equals(requestFingerprint(priceOverride, reference))) {
+                        throw new IdempotencyKeyConflictException(
+                                "Idempotency key has already been used for a payment with a different price or reference");
+                    }
+                    return claimedKey.getPaymentExternalId();
+                });
+    }
+
+    /**
+     * @return false if the key is already mapped to another payment
+     */
+    public boolean claim(String productExternalId, String idempotencyKey, String paymentExternalId, Long priceOverride, String reference) {
+        ZonedDateTime now = now();
+        return paymentIdempotencyKeyDao.claim(productExternalId, idempotencyKey, paymentExternalId,
+                requestFingerprint(priceOverride, reference), now, now.plus(paymentIdempotencyKeyConfig.getKeyTtl().toJavaDuration()));
+    }
+
+    /**
+     * Frees the key for a retry to create a new payment with
+     */
+    public void release(String productExternalId, String idempotencyKey, String paymentExternalId) {
+        paymentIdempotencyKeyDao.release(productExternalId, idempotencyKey, paymentExternalId);
+    }
+
+    public void deleteExpired() {
+        try {
+            int numberOfDeletedKeys = paymentIdempotencyKeyDao.deleteExpired(now());
+            if (numberOfDeletedKeys > 0) {
+                LOGGER.info(format("Deleted %s expired payment idempotency keys.", numberOfDeletedKeys),
+                        kv("no_of_idempotency_keys_deleted", numberOfDeletedKeys));
+            }
+        } catch (Exception e) {
+            LOGGER.error("Failed to delete expired payment idempotency keys", e);
+        }
+    }
+
+    /*
+    A hash of the request rather than the request itself, as a reference may hold a card number. Lengths are hashed
+    with the values so no two different requests hash the same input.
+     */
+    static String requestFingerprint(Long priceOverride, String reference) {
+        String request = (priceOverride == null ? "-" : priceOverride.toString()) + ":" +
+                (reference == null ? "-" : reference.length() + ":" + reference);
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(request.getBytes(UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private ZonedDateTime now() {
+        return instantSource.instant().atZone(UTC);
+    }
+}
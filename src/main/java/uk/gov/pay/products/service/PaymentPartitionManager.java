@@ -0,0 +1,110 @@
+package uk.gov.pay.products.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.gov.pay.products.config.PaymentPartitionConfig;
+import uk.gov.pay.products.persistence.dao.PaymentPartitionDao;
+
+import jakarta.inject.Inject;
+import java.time.InstantSource;
+import java.time.YearMonth;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static java.lang.String.format;
+import static java.time.ZoneOffset.UTC;
+import static net.logstash.logback.argument.StructuredArguments.kv;
+
+/**
+ * Keeps the monthly partitions of the payments table ahead of the current month, so a payment always has a partition
+ * to go into, and drops whole partitions once every payment in them is older than the expunge cut-off date. Partitions
+ * are always created, because the payments table has no default partition to fall back on.
+ */
+public class PaymentPartitionManager {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PaymentPartitionManager.class);
+
+    private final PaymentPartitionDao paymentPartitionDao;
+    private final PaymentPartitionConfig paymentPartitionConfig;
+    private final InstantSource instantSource;
+
+    @Inject
+    public PaymentPartitionManager(PaymentPartitionDao paymentPartitionDao, PaymentPartitionConfig paymentPartitionConfig,
+                                   InstantSource instantSource) {
+        this.paymentPartitionDao = paymentPartitionDao;
+        this.paymentPartitionConfig = paymentPartitionConfig;
+        this.instantSource = instantSource;
+    }
+
+    /*
+    Creates the partitions missing for the months ahead, and fails if this month or any of the months ahead still has
+    no partition. Runs before the application starts serving, so an instance never starts without somewhere to put the
+    payments it creates. Creating a partition can fail because another instance is creating it at the same time, so
+    only the partitions that exist afterwards are checked.
+     */
+    public void ensureMonthlyPartitions() {
+        createMonthlyPartitions();
+        List<YearMonth> monthsWithoutPartition = findMonthsWithoutPartition(paymentPartitionConfig.getMonthsToCreateAhead());
+        if (!monthsWithoutPartition.isEmpty()) {
+            throw new IllegalStateException(format("No payments partition for %s", monthsWithoutPartition));
+        }
+    }
+
+    public void createMonthlyPartitions() {
+        try {
+            YearMonth currentMonth = YearMonth.from(instantSource.instant().atZone(UTC));
+            List<YearMonth> existingPartitions = paymentPartitionDao.findMonthlyPartitions();
+            for (int i = 1; i <= paymentPartitionConfig.getMonthsToCreateAhead(); i++) {
+                YearMonth month = currentMonth.plusMonths(i);
+                if (!existingPartitions.contains(month)) {
+                    paymentPartitionDao.createMonthlyPartition(month);
+                    LOGGER.info(format("Created payments partition for %s.", month),
+                            kv("payments_partition_month", month.toString()));
+                }
+            }
+        } catch (Exception e) {
+            LOGGER.error("Failed to create payments partitions", e);
+        }
+    }
+
+    /*
+    Finds which of this month and next month have no partition for their payments.
+     */
+    public List<YearMonth> findMonthsWithoutPartition() {
+        return findMonthsWithoutPartition(1);
+    }
+
+    /*
+    Finds which of this month and the given number of months ahead have no partition for their payments. Payments
+    before the first monthly partition go into payments_legacy.
+     */
+    public List<YearMonth> findMonthsWithoutPartition(int monthsAhead) {
+        YearMonth currentMonth = YearMonth.from(instantSource.instant().atZone(UTC));
+        List<YearMonth> existingPartitions = paymentPartitionDao.findMonthlyPartitions();
+        return Stream.iterate(currentMonth, month -> month.plusMonths(1))
+                .limit(monthsAhead + 1L)
+                .filter(month -> !existingPartitions.contains(month))
+                .filter(month -> existingPartitions.isEmpty() || month.isAfter(existingPartitions.getFirst()))
+                .toList();
+    }
+
+    public List<YearMonth> findExpiredMonthlyPartitions(ZonedDateTime maxDate) {
+        YearMonth lastExpiredMonth = YearMonth.from(maxDate.withZoneSameInstant(UTC)).minusMonths(1);
+        return paymentPartitionDao.findMonthlyPartitions().stream()
+                .filter(month -> !month.isAfter(lastExpiredMonth))
+                .toList();
+    }
+
+    public int dropExpiredMonthlyPartitions(ZonedDateTime maxDate) {
+        int numberOfDroppedPayments = 0;
+        for (YearMonth month : findExpiredMonthlyPartitions(maxDate)) {
+            int numberOfPaymentsInPartition = paymentPartitionDao.dropMonthlyPartition(month);
+            LOGGER.info(format("Dropped payments partition for %s with %s payments.", month, numberOfPaymentsInPartition),
+                    kv("payments_partition_month", month.toString()),
+                    kv("no_of_payments_deleted", numberOfPaymentsInPartition));
+            numberOfDroppedPayments += numberOfPaymentsInPartition;
+        }
+        return numberOfDroppedPayments;
+    }
+}
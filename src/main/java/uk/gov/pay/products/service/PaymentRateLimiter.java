@@ -0,0 +1,182 @@
+package uk.gov.pay.products.service;
+
+import io.prometheus.client.Counter;
+import io.prometheus.client.Gauge;
+import uk.gov.pay.products.config.PaymentRateLimitConfig;
+import uk.gov.pay.products.exception.PaymentRateLimitExceededException;
+
+import jakarta.inject.Inject;
+import java.time.Instant;
+import java.time.InstantSource;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static java.lang.String.format;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Limits how fast payments can be created for each product and for each gateway account, so a single runaway
+ * integration cannot flood the database and public API with payment creation requests.
+ * <p>
+ * Every product and gateway account has a token bucket that refills at requestsPerSecond and holds up to burst
+ * requests. Buckets live in concurrent maps and take tokens with a single compare-and-set, so requests for different
+ * products never wait for each other. A bucket that has been idle for idleBucketExpiry is full again, so it is
+ * dropped and created afresh when it is next needed.
+ */
+public class PaymentRateLimiter {
+
+    private static final String PRODUCT = "product";
+    private static final String GATEWAY_ACCOUNT = "gateway_account";
+
+    private static final Counter rejectedRequestsMetric = Counter.build()
+            .name("payment_rate_limiter_rejected_requests")
+            .help("Number of payment creation requests rejected for going over the rate limit, by limit")
+            .labelNames("limit")
+            .register();
+
+    private static final Gauge bucketsMetric = Gauge.build()
+            .name("payment_rate_limiter_buckets")
+            .help("Number of token buckets held by the payment rate limiter, by limit")
+            .labelNames("limit")
+            .register();
+
+    private final PaymentRateLimitConfig paymentRateLimitConfig;
+    private final InstantSource instantSource;
+    private final Map<String, TokenBucket> productBuckets = new ConcurrentHashMap<>();
+    private final Map<Integer, TokenBucket> gatewayAccountBuckets = new ConcurrentHashMap<>();
+
+    @Inject
+    public PaymentRateLimiter(PaymentRateLimitConfig paymentRateLimitConfig, InstantSource instantSource) {
+        this.paymentRateLimitConfig = paymentRateLimitConfig;
+        this.instantSource = instantSource;
+        registerBucketsMetric(PRODUCT, productBuckets);
+        registerBucketsMetric(GATEWAY_ACCOUNT, gatewayAccountBuckets);
+    }
+
+    public boolean isEnabled() {
+        return paymentRateLimitConfig.isEnabled();
+    }
+
+    /**
+     * Takes a token for the product and one for its gateway account, or neither. The product's bucket is checked before
+     * the gateway account of the product is looked up, so requests for a product over its limit never reach the
+     * database. A product token taken for a request the gateway account's bucket rejects is given back.
+     *
+     * @param gatewayAccountIdOfProduct looks up the gateway account of the product, empty if there is no such product
+     * @throws PaymentRateLimitExceededException if either bucket is empty
+     */
+    public void acquire(String productExternalId, Supplier<Optional<Integer>> gatewayAccountIdOfProduct) {
+        if (!isEnabled()) {
+            return;
+        }
+        TokenBucket productBucket = productBuckets.computeIfAbsent(productExternalId, key -> new TokenBucket(
+                paymentRateLimitConfig.getRequestsPerSecondPerProduct(), paymentRateLimitConfig.getBurstPerProduct()));
+        rejectIfOverProductLimit(productExternalId, productBucket.retryAfter(nanos(instantSource.instant())));
+
+        Optional<Integer> gatewayAccountId = gatewayAccountIdOfProduct.get();
+
+        long now = nanos(instantSource.instant());
+        rejectIfOverProductLimit(productExternalId, productBucket.tryAcquire(now));
+        if (gatewayAccountId.isEmpty()) {
+            return;
+        }
+
+        long gatewayAccountRetryAfterNanos = gatewayAccountBuckets
+                .computeIfAbsent(gatewayAccountId.get(), key -> new TokenBucket(
+                        paymentRateLimitConfig.getRequestsPerSecondPerGatewayAccount(), paymentRateLimitConfig.getBurstPerGatewayAccount()))
+                .tryAcquire(now);
+        if (gatewayAccountRetryAfterNanos > 0) {
+            productBucket.release();
+            rejectedRequestsMetric.labels(GATEWAY_ACCOUNT).inc();
+            throw new PaymentRateLimitExceededException(
+                    format("Too many payments created for gateway account %s, try again later", gatewayAccountId.get()),
+                    toRetryAfterSeconds(gatewayAccountRetryAfterNanos));
+        }
+    }
+
+    private static void rejectIfOverProductLimit(String productExternalId, long productRetryAfterNanos) {
+        if (productRetryAfterNanos > 0) {
+            rejectedRequestsMetric.labels(PRODUCT).inc();
+            throw new PaymentRateLimitExceededException(
+                    format("Too many payments created for product %s, try again later", productExternalId),
+                    toRetryAfterSeconds(productRetryAfterNanos));
+        }
+    }
+
+    public void evictIdleBuckets() {
+        long idleSince = nanos(instantSource.instant()) - paymentRateLimitConfig.getIdleBucketExpiry().toNanoseconds();
+        productBuckets.values().removeIf(bucket -> bucket.isIdleSince(idleSince));
+        gatewayAccountBuckets.values().removeIf(bucket -> bucket.isIdleSince(idleSince));
+    }
+
+    private static long nanos(Instant instant) {
+        return SECONDS.toNanos(instant.getEpochSecond()) + instant.getNano();
+    }
+
+    private static long toRetryAfterSeconds(long retryAfterNanos) {
+        return Math.max((retryAfterNanos + SECONDS.toNanos(1) - 1) / SECONDS.toNanos(1), 1);
+    }
+
+    private static void registerBucketsMetric(String limit, Map<?, TokenBucket> buckets) {
+        bucketsMetric.setChild(new Gauge.Child() {
+            @Override
+            public double get() {
+                return buckets.size();
+            }
+        }, limit);
+    }
+
+    /*
+    A token bucket kept as the time at which it will be full again (the generic cell rate algorithm). Taking a token
+    pushes that time on by one refill interval, unless it would go more than burst intervals past now.
+     */
+    static class TokenBucket {
+
+        private final long refillIntervalNanos;
+        private final long burstNanos;
+        private final AtomicLong fullAtNanos = new AtomicLong(Long.MIN_VALUE);
+
+        TokenBucket(int requestsPerSecond, int burst) {
+            this.refillIntervalNanos = SECONDS.toNanos(1) / requestsPerSecond;
+            this.burstNanos = refillIntervalNanos * burst;
+        }
+
+        /**
+         * @return 0 if a token was taken, otherwise how long until one will be available in nanoseconds
+         */
+        long tryAcquire(long now) {
+            while (true) {
+                long fullAt = fullAtNanos.get();
+                long newFullAt = Math.max(fullAt, now) + refillIntervalNanos;
+                long retryAfter = newFullAt - now - burstNanos;
+                if (retryAfter > 0) {
+                    return retryAfter;
+                }
+                if (fullAtNanos.compareAndSet(fullAt, newFullAt)) {
+                    return 0;
+                }
+            }
+        }
+
+        /**
+         * @return 0 if a token is available without taking it, otherwise how long until one will be in nanoseconds
+         */
+        long retryAfter(long now) {
+            return Math.max(Math.max(fullAtNanos.get(), now) + refillIntervalNanos - now - burstNanos, 0);
+        }
+
+        /*
+        Gives back a token taken by tryAcquire, so the bucket is full again one refill interval sooner.
+         */
+        void release() {
+            fullAtNanos.addAndGet(-refillIntervalNanos);
+        }
+
+        boolean isIdleSince(long nanos) {
+            return fullAtNanos.get() <= nanos;
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package uk.gov.pay.products.service;
+
+import io.prometheus.client.Counter;
+import io.prometheus.client.Gauge;
+import io.prometheus.client.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.gov.pay.products.client.publicapi.PaymentResponse;
+import uk.gov.pay.products.client.publicapi.PublicApiRestClient;
+import uk.gov.pay.products.client.publicapi.model.PaymentState;
+import uk.gov.pay.products.config.PaymentStatusReconcilerConfig;
+import uk.gov.pay.products.persistence.dao.PaymentDao;
+import uk.gov.pay.products.persistence.entity.PaymentEntity;
+
+import jakarta.inject.Inject;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.InstantSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+import static java.lang.String.format;
+import static java.time.ZoneOffset.UTC;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static net.logstash.logback.argument.StructuredArguments.kv;
+
+/**
+ * Keeps the stored govuk status of SUBMITTED payments up to date in the background, so reading payments never has to
+ * wait for public API.
+ * <p>
+ * Each run claims due payments in batches, oldest first, and looks up their statuses in public API with at most
+ * maxConcurrentLookupsPerApiToken lookups at a time per API token, so no single service is flooded with requests.
+ * A payment is checked less often the older it gets, and never again once public API reports it as finished.
+ */
+public class PaymentStatusReconciler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PaymentStatusReconciler.class);
+
+    private static final Counter paymentsCheckedMetric = Counter.build()
+            .name("payment_status_reconciler_payments_checked")
+            .help("Number of payments whose govuk status the reconciler checked, by outcome")
+            .labelNames("outcome")
+            .register();
+
+    private static final Histogram runDuration = Histogram.build()
+            .name("payment_status_reconciler_run_duration_seconds")
+            .help("Duration of one run of the payment status reconciler in seconds")
+            .unit("seconds")
+            .register();
+
+    private static final Histogram reconciliationLag = Histogram.build()
+            .name("payment_status_reconciler_lag_seconds")
+            .help("Time from the creation of a payment until the reconciler stored its finished govuk status in seconds")
+            .unit("seconds")
+            .buckets(10, 30, 60, 300, 900, 1800, 3600, 7200, 21600, 86400)
+            .register();
+
+    private static final Gauge oldestDuePaymentAge = Gauge.build()
+            .name("payment_status_reconciler_oldest_due_payment_age_seconds")
+            .help("Age of the oldest payment due to be checked at the start of the last run of the reconciler in seconds")
+            .register();
+
+    private final PaymentDao paymentDao;
+    private final PublicApiRestClient publicApiRestClient;
+    private final PaymentStatusReconcilerConfig paymentStatusReconcilerConfig;
+    private final InstantSource instantSource;
+
+    @Inject
+    public PaymentStatusReconciler(PaymentDao paymentDao, PublicApiRestClient publicApiRestClient,
+                                   PaymentStatusReconcilerConfig paymentStatusReconcilerConfig, InstantSource instantSource) {
+        this.paymentDao = paymentDao;
+        this.publicApiRestClient = publicApiRestClient;
+        this.paymentStatusReconcilerConfig = paymentStatusReconcilerConfig;
+        this.instantSource = instantSource;
+    }
+
+    public boolean isEnabled() {
+        return paymentStatusReconcilerConfig.isEnabled();
+    }
+
+    public void reconcile() {
+        if (!isEnabled()) {
+            return;
+        }
+        Histogram.Timer runTimer = runDuration.startTimer();
+        try {
+            Instant deadline = instantSource.instant().plus(paymentStatusReconcilerConfig.getMaxRunDuration().toJavaDuration());
+            int numberOfCheckedPayments = 0;
+            boolean firstBatch = true;
+
+            while (instantSource.instant().isBefore(deadline)) {
+                List<PaymentEntity> payments = claimDuePayments();
+                if (firstBatch) {
+                    oldestDuePaymentAge.set(payments.isEmpty() ? 0 : secondsSinceCreation(payments.get(0)));
+                    firstBatch = false;
+                }
+                if (payments.isEmpty()) {
+                    break;
+                }
+                checkGovukStatuses(payments, deadline);
+                numberOfCheckedPayments += payments.size();
+                if (payments.size() < paymentStatusReconcilerConfig.getBatchSize()) {
+                    break;
+                }
+            }
+
+            if (numberOfCheckedPayments > 0) {
+                LOGGER.info(format("Checked govuk statuses of %s payments.", numberOfCheckedPayments),
+                        kv("no_of_payments_checked", numberOfCheckedPayments));
+            }
+        } catch (Exception e) {
+            LOGGER.error("Failed to reconcile payment statuses", e);
+        } finally {
+            runTimer.observeDuration();
+        }
+    }
+
+    private List<PaymentEntity> claimDuePayments() {
+        Instant now = instantSource.instant();
+        return paymentDao.claimForGovukStatusCheck(now.atZone(UTC),
+                now.minus(paymentStatusReconcilerConfig.getMaxPaymentAge().toJavaDuration()).atZone(UTC),
+                paymentStatusReconcilerConfig.getRecheckAgeDivisor(),
+                paymentStatusReconcilerConfig.getMinRecheckInterval().toJavaDuration(),
+                paymentStatusReconcilerConfig.getMaxRecheckInterval().toJavaDuration(),
+                paymentStatusReconcilerConfig.getBatchSize());
+    }
+
+    /*
+    Looks up the payments of each API token one after the other in up to maxConcurrentLookupsPerApiToken lanes, and
+    waits until the deadline at most. Statuses are only stored on this thread, once the waiting is over.
+     */
+    private void checkGovukStatuses(List<PaymentEntity> payments, Instant deadline) {
+        Map<String, CompletableFuture<Optional<PaymentResponse>>> lookups = new ConcurrentHashMap<>();
+        List<CompletableFuture<Void>> lanes = new ArrayList<>();
+        payments.stream()
+                .collect(Collectors.groupingBy(payment -> payment.getProductEntity().getPayApiToken()))
+                .values()
+                .forEach(paymentsOfApiToken -> {
+                    Queue<PaymentEntity> queue = new ConcurrentLinkedQueue<>(paymentsOfApiToken);
+                    int numberOfLanes = Math.min(paymentStatusReconcilerConfig.getMaxConcurrentLookupsPerApiToken(), paymentsOfApiToken.size());
+                    for (int i = 0; i < numberOfLanes; i++) {
+                        lanes.add(lookUpGovUKPayments(queue, lookups, deadline));
+                    }
+                });
+        awaitLookups(lanes, deadline);
+
+        for (PaymentEntity payment : payments) {
+            recordGovukStatus(payment, lookups.get(payment.getExternalId()));
+        }
+    }
+
+    private CompletableFuture<Void> lookUpGovUKPayments(Queue<PaymentEntity> payments,
+                                                        Map<String, CompletableFuture<Optional<PaymentResponse>>> lookups,
+                                                        Instant deadline) {
+        PaymentEntity payment = payments.poll();
+        if (payment == null || !instantSource.instant().isBefore(deadline)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<Optional<PaymentResponse>> lookup = lookUpGovUKPayment(payment);
+        lookups.put(payment.getExternalId(), lookup);
+        return lookup.<Void>handle((paymentResponse, throwable) -> null)
+                .thenCompose(ignored -> lookUpGovUKPayments(payments, lookups, deadline));
+    }
+
+    private CompletableFuture<Optional<PaymentResponse>> lookUpGovUKPayment(PaymentEntity payment) {
+        try {
+            return publicApiRestClient.getPaymentAsync(payment.getProductEntity().getPayApiToken(), payment.getGovukPaymentId());
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private void awaitLookups(List<CompletableFuture<Void>> lanes, Instant deadline) {
+        try {
+            long remainingMillis = Math.max(Duration.between(instantSource.instant(), deadline).toMillis(), 0);
+            CompletableFuture.allOf(lanes.toArray(CompletableFuture[]::new)).get(remainingMillis, MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            // payments whose lookup failed or is still running are checked again once they are due
+        }
+    }
+
+    private void recordGovukStatus(PaymentEntity payment, CompletableFuture<Optional<PaymentResponse>> lookup) {
+        if (lookup == null) {
+            paymentsCheckedMetric.labels("skipped").inc();
+            return;
+        }
+        if (!lookup.isDone()) {
+            lookup.cancel(false);
+            paymentsCheckedMetric.labels("timeout").inc();
+            return;
+        }
+        try {
+            Optional<PaymentState> paymentState = lookup.join().map(PaymentResponse::getState);
+            if (paymentState.isEmpty()) {
+                paymentsCheckedMetric.labels("not_found").inc();
+                return;
+            }
+            boolean finished = paymentState.get().isFinished();
+            paymentDao.updateGovukStatus(payment.getExternalId(), paymentState.get().getStatus(), finished,
+                    instantSource.instant().atZone(UTC));
+            paymentsCheckedMetric.labels(finished ? "finished" : "unfinished").inc();
+            if (finished) {
+                reconciliationLag.observe(secondsSinceCreation(payment));
+            }
+        } catch (CompletionException e) {
+            paymentsCheckedMetric.labels("error").inc();
+            LOGGER.warn(format("Error while trying to query publicapi with %s: %s", payment.getExternalId(), e.getCause().getMessage()));
+        } catch (Exception e) {
+            paymentsCheckedMetric.labels("error").inc();
+            LOGGER.error(format("Error while trying to store govuk status of %s: %s", payment.getExternalId(), e.getMessage()));
+        }
+    }
+
+    private long secondsSinceCreation(PaymentEntity payment) {
+        return Math.max(Duration.between(payment.getDateCreated().toInstant(), instantSource.instant()).toSeconds(), 0);
+    }
+}
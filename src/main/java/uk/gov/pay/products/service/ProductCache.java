@@ -0,0 +1,66 @@
+package uk.gov.pay.products.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.prometheus.client.cache.caffeine.CacheMetricsCollector;
+import uk.gov.pay.products.config.ProductCacheConfig;
+import uk.gov.pay.products.persistence.entity.ProductEntity;
+
+import jakarta.inject.Inject;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Bounded read-through cache of products keyed by product external id.
+ * <p>
+ * Cached entities are detached from any persistence context and are shared between requests, so they must be treated
+ * as read-only. Anything that changes a product must call {@link #invalidate(String)} for its external id once the
+ * change has committed.
+ * <p>
+ * Invalidation only reaches the cache of the instance that made the change, so other instances can serve a product as it
+ * was for up to expireAfterWrite. The cache is only used to show products and to find the gateway account to rate limit
+ * payment creation by, never to create payments for them.
+ */
+public class ProductCache {
+
+    private static final CacheMetricsCollector cacheMetrics = new CacheMetricsCollector().register();
+
+    private final Cache<String, ProductEntity> products;
+
+    @Inject
+    public ProductCache(ProductCacheConfig productCacheConfig) {
+        if (productCacheConfig.isEnabled()) {
+            this.products = Caffeine.newBuilder()
+                    .maximumSize(productCacheConfig.getMaximumSize())
+                    .expireAfterWrite(productCacheConfig.getExpireAfterWrite().toJavaDuration())
+                    .recordStats()
+                    .build();
+            cacheMetrics.addCache("products", products);
+        } else {
+            this.products = null;
+        }
+    }
+
+    public Optional<ProductEntity> findByExternalId(String externalId, Function<String, Optional<ProductEntity>> loader) {
+        if (products == null) {
+            return loader.apply(externalId);
+        }
+        return Optional.ofNullable(products.get(externalId, key -> loader.apply(key)
+                .map(ProductCache::withMetadataLoaded)
+                .orElse(null)));
+    }
+
+    public void invalidate(String externalId) {
+        if (products != null) {
+            products.invalidate(externalId);
+        }
+    }
+
+    private static ProductEntity withMetadataLoaded(ProductEntity productEntity) {
+        // metadata is lazily loaded, so make sure it is read before the entity is shared between threads
+        if (productEntity.getMetadataEntityList() != null) {
+            productEntity.getMetadataEntityList().size();
+        }
+        return productEntity;
+    }
+}
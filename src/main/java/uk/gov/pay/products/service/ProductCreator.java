@@ -13,6 +13,7 @@ import uk.gov.service.payments.commons.model.jsonpatch.JsonPatchOp;
 import uk.gov.service.payments.commons.model.jsonpatch.JsonPatchRequest;
 
 import jakarta.ws.rs.BadRequestException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
@@ -25,26 +26,75 @@ public class ProductCreator {
     private final ProductDao productDao;
     private final ProductMetadataDao productMetadataDao;
     private final LinksDecorator linksDecorator;
+    private final ProductCache productCache;
+    private final ProductPathIndex productPathIndex;
 
     @Inject
-    public ProductCreator(ProductDao productDao, ProductMetadataDao productMetadataDao, LinksDecorator linksDecorator) {
+    public ProductCreator(ProductDao productDao, ProductMetadataDao productMetadataDao, LinksDecorator linksDecorator,
+                          ProductCache productCache, ProductPathIndex productPathIndex) {
         this.productDao = productDao;
         this.productMetadataDao = productMetadataDao;
         this.linksDecorator = linksDecorator;
+        this.productCache = productCache;
+        this.productPathIndex = productPathIndex;
     }
 
-    @Transactional
+    /*
+    Products are removed from the product cache and the product path index only once the @Transactional methods that
+    change them have committed, so a concurrent lookup cannot cache a product as it was before the change.
+     */
     public Product doCreate(Product product) {
+        ProductEntity productEntity = create(product);
+        productPathIndex.remove(productEntity.getServiceNamePath(), productEntity.getProductNamePath());
+
+        return linksDecorator.decorate(productEntity.toProduct());
+    }
+
+    @Transactional
+    ProductEntity create(Product product) {
         ProductEntity productEntity = ProductEntity.from(product);
         productEntity.setExternalId(randomUuid());
 
         productDao.persist(productEntity);
+        return productEntity;
+    }
 
-        return linksDecorator.decorate(productEntity.toProduct());
+    /**
+     * Creates all the products in one transaction. Returns the created products in the order given, with an empty
+     * result for any product skipped because its product path is already taken.
+     */
+    public List<Optional<Product>> doCreateAll(List<Product> products) {
+        List<ProductEntity> productEntities = products.stream()
+                .map(product -> {
+                    ProductEntity productEntity = ProductEntity.from(product);
+                    productEntity.setExternalId(randomUuid());
+                    return productEntity;
+                })
+                .toList();
+
+        boolean[] inserted = productDao.insertAll(productEntities);
+
+        List<Optional<Product>> createdProducts = new ArrayList<>(productEntities.size());
+        for (int i = 0; i < productEntities.size(); i++) {
+            ProductEntity productEntity = productEntities.get(i);
+            if (inserted[i]) {
+                productPathIndex.remove(productEntity.getServiceNamePath(), productEntity.getProductNamePath());
+                createdProducts.add(Optional.of(linksDecorator.decorate(productEntity.toProduct())));
+            } else {
+                createdProducts.add(Optional.empty());
+            }
+        }
+        return createdProducts;
     }
 
-    @Transactional
     public Optional<Product> doUpdateByGatewayAccountId(Integer gatewayAccountId, String productExternalId, ProductUpdateRequest productUpdateRequest) {
+        Optional<Product> product = updateByGatewayAccountId(gatewayAccountId, productExternalId, productUpdateRequest);
+        productCache.invalidate(productExternalId);
+        return product;
+    }
+
+    @Transactional
+    Optional<Product> updateByGatewayAccountId(Integer gatewayAccountId, String productExternalId, ProductUpdateRequest productUpdateRequest) {
 
         Optional<ProductEntity> productEntityUpdated = productDao
                 .findByGatewayAccountIdAndExternalId(gatewayAccountId, productExternalId)
@@ -75,8 +125,14 @@ public class ProductCreator {
         return productEntityUpdated.map(productEntity -> linksDecorator.decorate(productEntity.toProduct()));
     }
 
-    @Transactional
     public Product update(Integer gatewayAccountId, String productExternalId, List<JsonPatchRequest> patchRequests) {
+        Product product = patch(gatewayAccountId, productExternalId, patchRequests);
+        productCache.invalidate(productExternalId);
+        return product;
+    }
+
+    @Transactional
+    Product patch(Integer gatewayAccountId, String productExternalId, List<JsonPatchRequest> patchRequests) {
         return productDao.findByGatewayAccountIdAndExternalId(gatewayAccountId, productExternalId).map(productEntity -> {
             patchRequests.forEach(patchRequest -> {
                 if (JsonPatchOp.REPLACE == patchRequest.getOp()) {
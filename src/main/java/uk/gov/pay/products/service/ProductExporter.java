@@ -0,0 +1,147 @@
+package uk.gov.pay.products.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.google.inject.Inject;
+import uk.gov.pay.products.model.product.ProductExportFormat;
+import uk.gov.pay.products.model.product.ProductExportRow;
+import uk.gov.pay.products.persistence.dao.ProductDao;
+
+import jakarta.ws.rs.core.StreamingOutput;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.time.ZonedDateTime;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static uk.gov.service.payments.commons.model.CommonDateTimeFormatters.ISO_INSTANT_MILLISECOND_PRECISION;
+
+/**
+ * Exports the products of a gateway account with their usage as NDJSON (one JSON object per line) or CSV.
+ * <p>
+ * Products are read in pages of EXPORT_PAGE_SIZE, each in its own short transaction, and every page is written to the
+ * response before the next one is read. An export of any size only holds one page in memory, and a slow client never
+ * holds a database connection or transaction open while its response is written.
+ */
+public class ProductExporter {
+
+    private static final List<String> COLUMNS = List.of("external_id", "name", "description", "price", "status", "type",
+            "language", "service_name_path", "product_name_path", "reference_enabled", "reference_label", "date_created",
+            "payment_count", "last_payment_date", "metadata");
+
+    private static final int EXPORT_PAGE_SIZE = 500;
+
+    private static final JsonFactory jsonFactory = new JsonFactory().setRootValueSeparator(null);
+
+    private final ProductDao productDao;
+
+    @Inject
+    public ProductExporter(ProductDao productDao) {
+        this.productDao = productDao;
+    }
+
+    public StreamingOutput export(Integer gatewayAccountId, ProductExportFormat format) {
+        return outputStream -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, UTF_8));
+            switch (format) {
+                case NDJSON -> writeNdjson(gatewayAccountId, writer);
+                case CSV -> writeCsv(gatewayAccountId, writer);
+            }
+            writer.flush();
+        };
+    }
+
+    private void writeNdjson(Integer gatewayAccountId, Writer writer) throws IOException {
+        JsonGenerator generator = jsonFactory.createGenerator(writer);
+        exportProductsAndUsage(gatewayAccountId, row -> {
+            generator.writeStartObject();
+            generator.writeStringField("external_id", row.getExternalId());
+            generator.writeStringField("name", row.getName());
+            generator.writeStringField("description", row.getDescription());
+            if (row.getPrice() == null) {
+                generator.writeNullField("price");
+            } else {
+                generator.writeNumberField("price", row.getPrice());
+            }
+            generator.writeStringField("status", row.getStatus());
+            generator.writeStringField("type", row.getType());
+            generator.writeStringField("language", row.getLanguage());
+            generator.writeStringField("service_name_path", row.getServiceNamePath());
+            generator.writeStringField("product_name_path", row.getProductNamePath());
+            generator.writeBooleanField("reference_enabled", row.isReferenceEnabled());
+            generator.writeStringField("reference_label", row.getReferenceLabel());
+            generator.writeStringField("date_created", format(row.getDateCreated()));
+            generator.writeNumberField("payment_count", row.getPaymentCount());
+            generator.writeStringField("last_payment_date", format(row.getLastPaymentDate()));
+            generator.writeFieldName("metadata");
+            generator.writeRawValue(row.getMetadataJson() == null ? "{}" : row.getMetadataJson());
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        });
+        generator.flush();
+    }
+
+    private void writeCsv(Integer gatewayAccountId, Writer writer) throws IOException {
+        writeCsvLine(writer, COLUMNS);
+        exportProductsAndUsage(gatewayAccountId, row -> writeCsvLine(writer, List.of(
+                nullToEmpty(row.getExternalId()),
+                nullToEmpty(row.getName()),
+                nullToEmpty(row.getDescription()),
+                row.getPrice() == null ? "" : row.getPrice().toString(),
+                nullToEmpty(row.getStatus()),
+                nullToEmpty(row.getType()),
+                nullToEmpty(row.getLanguage()),
+                nullToEmpty(row.getServiceNamePath()),
+                nullToEmpty(row.getProductNamePath()),
+                Boolean.toString(row.isReferenceEnabled()),
+                nullToEmpty(row.getReferenceLabel()),
+                nullToEmpty(format(row.getDateCreated())),
+                Long.toString(row.getPaymentCount()),
+                nullToEmpty(format(row.getLastPaymentDate())),
+                nullToEmpty(row.getMetadataJson()))));
+    }
+
+    private void exportProductsAndUsage(Integer gatewayAccountId, RowWriter rowWriter) throws IOException {
+        List<ProductExportRow> page;
+        int afterId = 0;
+        do {
+            page = productDao.findExportPage(gatewayAccountId, afterId, EXPORT_PAGE_SIZE);
+            for (ProductExportRow row : page) {
+                rowWriter.write(row);
+                afterId = row.getId();
+            }
+        } while (page.size() == EXPORT_PAGE_SIZE);
+    }
+
+    private static void writeCsvLine(Writer writer, List<String> values) throws IOException {
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writer.write(escapeCsv(values.get(i)));
+        }
+        writer.write("\r\n");
+    }
+
+    private static String escapeCsv(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private static String nullToEmpty(String value) {
+        return value == null ? "" : value;
+    }
+
+    private static String format(ZonedDateTime dateTime) {
+        return dateTime == null ? null : ISO_INSTANT_MILLISECOND_PRECISION.format(dateTime);
+    }
+
+    @FunctionalInterface
+    private interface RowWriter {
+        void write(ProductExportRow row) throws IOException;
+    }
+}
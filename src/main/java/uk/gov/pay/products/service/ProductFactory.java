@@ -4,4 +4,6 @@ public interface ProductFactory {
     ProductCreator productCreator();
 
     ProductFinder productFinder();
+
+    ProductExporter productExporter();
 }
@@ -3,6 +3,8 @@ package uk.gov.pay.products.service;
 import com.google.inject.Inject;
 import com.google.inject.persist.Transactional;
 import uk.gov.pay.products.model.Product;
+import uk.gov.pay.products.model.ProductPage;
+import uk.gov.pay.products.model.ProductPath;
 import uk.gov.pay.products.model.ProductUsageStat;
 import uk.gov.pay.products.persistence.dao.ProductDao;
 import uk.gov.pay.products.persistence.entity.ProductEntity;
@@ -11,21 +13,29 @@ import uk.gov.pay.products.util.ProductType;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 public class ProductFinder {
+    private static final int BULK_UPDATE_BATCH_SIZE = 500;
+
     private final ProductDao productDao;
     private final LinksDecorator linksDecorator;
+    private final ProductCache productCache;
+    private final ProductPathIndex productPathIndex;
 
     @Inject
-    public ProductFinder(ProductDao productDao, LinksDecorator linksDecorator) {
+    public ProductFinder(ProductDao productDao, LinksDecorator linksDecorator, ProductCache productCache,
+                         ProductPathIndex productPathIndex) {
         this.productDao = productDao;
         this.linksDecorator = linksDecorator;
+        this.productCache = productCache;
+        this.productPathIndex = productPathIndex;
     }
 
     @Transactional
     public Optional<Product> findByExternalId(String externalId) {
-        return productDao.findByExternalId(externalId)
+        return productCache.findByExternalId(externalId, productDao::findByExternalId)
                 .map(ProductEntity::toProduct)
                 .map(linksDecorator::decorate);
     }
@@ -37,9 +47,41 @@ public class ProductFinder {
                 .map(linksDecorator::decorate);
     }
 
+    /*
+    The single product changes below are committed by the @Transactional methods they call before the product is
+    removed from the product cache and the product path index. Removing it inside the transaction would let a concurrent
+    lookup load the product as it was before the change and cache it again.
+     */
     @Deprecated
-    @Transactional
     public Optional<Product> disableByExternalId(String externalId) {
+        Optional<Product> product = disable(externalId);
+        productCache.invalidate(externalId);
+        return product;
+    }
+
+    public Optional<Product> updatePayApiTokenByExternalId(String externalId, String payApiToken) {
+        Optional<Product> product = updatePayApiToken(externalId, payApiToken);
+        productCache.invalidate(externalId);
+        return product;
+    }
+
+    public Boolean deleteByExternalId(String externalId) {
+        return removeFromProductCacheAndPathIndex(delete(externalId));
+    }
+
+    @Deprecated
+    public Optional<Product> disableByGatewayAccountIdAndExternalId(Integer gatewayAccountId, String externalId) {
+        Optional<Product> product = disable(gatewayAccountId, externalId);
+        productCache.invalidate(externalId);
+        return product;
+    }
+
+    public Boolean deleteByGatewayAccountIdAndExternalId(Integer gatewayAccountId, String externalId) {
+        return removeFromProductCacheAndPathIndex(delete(gatewayAccountId, externalId));
+    }
+
+    @Transactional
+    Optional<Product> disable(String externalId) {
         return productDao.findByExternalId(externalId)
                 .map(productEntity -> {
                     productEntity.setStatus(ProductStatus.INACTIVE);
@@ -49,7 +91,7 @@ public class ProductFinder {
     }
 
     @Transactional
-    public Optional<Product> updatePayApiTokenByExternalId(String externalId, String payApiToken) {
+    Optional<Product> updatePayApiToken(String externalId, String payApiToken) {
         return productDao.findByExternalId(externalId)
                 .map(productEntity -> {
                     productEntity.setPayApiToken(payApiToken);
@@ -60,18 +102,16 @@ public class ProductFinder {
     }
 
     @Transactional
-    public Boolean deleteByExternalId(String externalId) {
+    Optional<ProductEntity> delete(String externalId) {
         return productDao.findByExternalId(externalId)
                 .map(productEntity -> {
                     productDao.remove(productEntity);
-                    return true;
-                })
-                .orElse(false);
+                    return productEntity;
+                });
     }
 
-    @Deprecated
     @Transactional
-    public Optional<Product> disableByGatewayAccountIdAndExternalId(Integer gatewayAccountId, String externalId) {
+    Optional<Product> disable(Integer gatewayAccountId, String externalId) {
         return productDao.findByGatewayAccountIdAndExternalId(gatewayAccountId, externalId)
                 .map(productEntity -> {
                     productEntity.setStatus(ProductStatus.INACTIVE);
@@ -81,13 +121,53 @@ public class ProductFinder {
     }
 
     @Transactional
-    public Boolean deleteByGatewayAccountIdAndExternalId(Integer gatewayAccountId, String externalId) {
+    Optional<ProductEntity> delete(Integer gatewayAccountId, String externalId) {
         return productDao.findByGatewayAccountIdAndExternalId(gatewayAccountId, externalId)
                 .map(productEntity -> {
                     productDao.remove(productEntity);
-                    return true;
-                })
-                .orElse(false);
+                    return productEntity;
+                });
+    }
+
+    private boolean removeFromProductCacheAndPathIndex(Optional<ProductEntity> deletedProductEntity) {
+        deletedProductEntity.ifPresent(productEntity -> {
+            productCache.invalidate(productEntity.getExternalId());
+            productPathIndex.remove(productEntity.getServiceNamePath(), productEntity.getProductNamePath());
+        });
+        return deletedProductEntity.isPresent();
+    }
+
+    /*
+    The gateway account operations below are not transactional: every batch of BULK_UPDATE_BATCH_SIZE products is
+    committed on its own, so retiring a large account does not hold locks on all its products in one transaction.
+    They return the number of products changed.
+     */
+    public int disableByGatewayAccountId(Integer gatewayAccountId) {
+        return inBatches(() -> productDao.disableBatchByGatewayAccountId(gatewayAccountId, BULK_UPDATE_BATCH_SIZE), false);
+    }
+
+    public int deleteByGatewayAccountId(Integer gatewayAccountId) {
+        return inBatches(() -> productDao.deleteBatchByGatewayAccountId(gatewayAccountId, BULK_UPDATE_BATCH_SIZE), true);
+    }
+
+    public int updatePayApiTokenByGatewayAccountId(Integer gatewayAccountId, String payApiToken) {
+        return inBatches(() -> productDao.updatePayApiTokenBatchByGatewayAccountId(gatewayAccountId, payApiToken, BULK_UPDATE_BATCH_SIZE), false);
+    }
+
+    private int inBatches(Supplier<List<ProductPath>> batchOperation, boolean removeFromProductPathIndex) {
+        int numberOfProducts = 0;
+        List<ProductPath> batch;
+        do {
+            batch = batchOperation.get();
+            batch.forEach(productPath -> {
+                productCache.invalidate(productPath.getProductExternalId());
+                if (removeFromProductPathIndex) {
+                    productPathIndex.remove(productPath.getServiceNamePath(), productPath.getProductNamePath());
+                }
+            });
+            numberOfProducts += batch.size();
+        } while (batch.size() == BULK_UPDATE_BATCH_SIZE);
+        return numberOfProducts;
     }
 
     @Transactional
@@ -108,13 +188,53 @@ public class ProductFinder {
                 .collect(Collectors.toUnmodifiableList());
     }
 
+    @Transactional
+    public ProductPage findPageByGatewayAccountIdAndType(Integer gatewayAccountId, ProductType type, Integer afterId, int limit) {
+        // fetch one extra row to find out whether there is a next page without a separate count query
+        List<ProductEntity> productEntities = productDao.findByGatewayAccountIdAndTypeAfterId(gatewayAccountId, type, afterId, limit + 1);
+        boolean hasNextPage = productEntities.size() > limit;
+        List<ProductEntity> pageEntities = hasNextPage ? productEntities.subList(0, limit) : productEntities;
+
+        List<Product> products = pageEntities
+                .stream()
+                .map(ProductEntity::toProduct)
+                .map(linksDecorator::decorate)
+                .collect(Collectors.toUnmodifiableList());
+        Integer nextAfterId = hasNextPage ? pageEntities.get(limit - 1).getId() : null;
+        return new ProductPage(products, nextAfterId);
+    }
+
     @Transactional
     public Optional<Product> findByProductPath(String serviceNamePath, String productNamePath) {
-        return productDao.findByProductPath(serviceNamePath, productNamePath)
+        return findProductEntityByProductPath(serviceNamePath, productNamePath)
                 .map(ProductEntity::toProduct)
                 .map(linksDecorator::decorate);
     }
 
+    private Optional<ProductEntity> findProductEntityByProductPath(String serviceNamePath, String productNamePath) {
+        if (!productPathIndex.isEnabled() || serviceNamePath == null || productNamePath == null) {
+            return productDao.findByProductPath(serviceNamePath, productNamePath);
+        }
+
+        Optional<ProductEntity> indexedProductEntity = productPathIndex.findExternalId(serviceNamePath, productNamePath)
+                .flatMap(externalId -> productCache.findByExternalId(externalId, productDao::findByExternalId))
+                .filter(productEntity -> serviceNamePath.equals(productEntity.getServiceNamePath())
+                        && productNamePath.equals(productEntity.getProductNamePath()));
+        if (indexedProductEntity.isPresent()) {
+            return indexedProductEntity;
+        }
+
+        if (productPathIndex.isKnownMissing(serviceNamePath, productNamePath)) {
+            return Optional.empty();
+        }
+
+        Optional<ProductEntity> productEntity = productDao.findByProductPath(serviceNamePath, productNamePath);
+        productEntity.ifPresentOrElse(
+                entity -> productPathIndex.put(serviceNamePath, productNamePath, entity.getExternalId()),
+                () -> productPathIndex.recordMissing(serviceNamePath, productNamePath));
+        return productEntity;
+    }
+
     @Transactional
     public List<ProductUsageStat> findProductsAndUsage(Integer gatewayAccountId) {
         return productDao.findProductsAndUsage(gatewayAccountId)
@@ -0,0 +1,133 @@
+package uk.gov.pay.products.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.gov.pay.products.config.ProductPathIndexConfig;
+import uk.gov.pay.products.model.ProductPath;
+import uk.gov.pay.products.persistence.dao.ProductDao;
+
+import jakarta.inject.Inject;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.InstantSource;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.lang.String.format;
+import static net.logstash.logback.argument.StructuredArguments.kv;
+
+/**
+ * In-memory index of friendly URL paths (service name path, product name path) to product external ids.
+ * <p>
+ * The index is loaded in full on the first {@link #refresh()} and then refreshed incrementally using the highest
+ * product id seen so far as a cursor. Product ids are assigned on insert but only become visible on commit, so a product
+ * that commits after one with a higher id is missed by the incremental refresh. The whole index is therefore reloaded
+ * every fullRefreshInterval, which also drops products deleted through other instances. Until then a missed product is
+ * found by falling back to the database.
+ * <p>
+ * Paths that were looked up and not found in the database are remembered so repeated lookups of invalid paths do not
+ * reach the database. A product path never changes once a product is created, so an indexed entry only goes stale when
+ * its product is deleted, which callers detect when resolving the product.
+ */
+public class ProductPathIndex {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProductPathIndex.class);
+
+    static final int REFRESH_BATCH_SIZE = 5000;
+
+    private final ProductDao productDao;
+    private final InstantSource instantSource;
+    private final boolean enabled;
+    private final Duration fullRefreshInterval;
+    private final Cache<List<String>, Boolean> missingPaths;
+    private volatile Map<List<String>, String> externalIdsByPath = new ConcurrentHashMap<>();
+    private volatile int lastIndexedProductId = 0;
+    private volatile Instant lastFullRefresh;
+
+    @Inject
+    public ProductPathIndex(ProductDao productDao, ProductPathIndexConfig productPathIndexConfig, InstantSource instantSource) {
+        this.productDao = productDao;
+        this.instantSource = instantSource;
+        this.enabled = productPathIndexConfig.isEnabled();
+        this.fullRefreshInterval = enabled ? productPathIndexConfig.getFullRefreshInterval().toJavaDuration() : null;
+        this.missingPaths = enabled ? Caffeine.newBuilder()
+                .maximumSize(productPathIndexConfig.getMaximumMissingPaths())
+                .expireAfterWrite(productPathIndexConfig.getExpireMissingPathsAfter().toJavaDuration())
+                .build() : null;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void refresh() {
+        try {
+            Instant now = instantSource.instant();
+            boolean fullRefresh = lastFullRefresh == null || !now.isBefore(lastFullRefresh.plus(fullRefreshInterval));
+            Map<List<String>, String> index = fullRefresh ? new ConcurrentHashMap<>() : externalIdsByPath;
+            int indexedProductId = fullRefresh ? 0 : lastIndexedProductId;
+
+            int numberOfPathsIndexed = 0;
+            List<ProductPath> productPaths;
+            do {
+                productPaths = productDao.findProductPathsWithIdGreaterThan(indexedProductId, REFRESH_BATCH_SIZE);
+                productPaths.forEach(productPath -> put(index, productPath.getServiceNamePath(), productPath.getProductNamePath(),
+                        productPath.getProductExternalId()));
+                if (!productPaths.isEmpty()) {
+                    indexedProductId = productPaths.get(productPaths.size() - 1).getProductId();
+                }
+                numberOfPathsIndexed += productPaths.size();
+            } while (productPaths.size() == REFRESH_BATCH_SIZE);
+
+            if (fullRefresh) {
+                externalIdsByPath = index;
+                lastFullRefresh = now;
+                LOGGER.info(format("Reloaded product path index with %s product paths.", numberOfPathsIndexed),
+                        kv("product_path_index_size", index.size()));
+            } else if (numberOfPathsIndexed > 0) {
+                LOGGER.info(format("Indexed %s new product paths.", numberOfPathsIndexed),
+                        kv("no_of_product_paths_indexed", numberOfPathsIndexed),
+                        kv("product_path_index_size", index.size()));
+            }
+            lastIndexedProductId = indexedProductId;
+        } catch (Exception e) {
+            LOGGER.error("Failed to refresh product path index", e);
+        }
+    }
+
+    public Optional<String> findExternalId(String serviceNamePath, String productNamePath) {
+        return Optional.ofNullable(externalIdsByPath.get(List.of(serviceNamePath, productNamePath)));
+    }
+
+    public boolean isKnownMissing(String serviceNamePath, String productNamePath) {
+        return missingPaths.getIfPresent(List.of(serviceNamePath, productNamePath)) != null;
+    }
+
+    public void put(String serviceNamePath, String productNamePath, String externalId) {
+        put(externalIdsByPath, serviceNamePath, productNamePath, externalId);
+    }
+
+    private void put(Map<List<String>, String> index, String serviceNamePath, String productNamePath, String externalId) {
+        List<String> path = List.of(serviceNamePath, productNamePath);
+        index.put(path, externalId);
+        missingPaths.invalidate(path);
+    }
+
+    public void recordMissing(String serviceNamePath, String productNamePath) {
+        List<String> path = List.of(serviceNamePath, productNamePath);
+        externalIdsByPath.remove(path);
+        missingPaths.put(path, Boolean.TRUE);
+    }
+
+    public void remove(String serviceNamePath, String productNamePath) {
+        if (enabled && serviceNamePath != null && productNamePath != null) {
+            List<String> path = List.of(serviceNamePath, productNamePath);
+            externalIdsByPath.remove(path);
+            missingPaths.invalidate(path);
+        }
+    }
+}
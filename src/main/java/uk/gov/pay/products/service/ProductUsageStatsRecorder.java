@@ -0,0 +1,40 @@
+package uk.gov.pay.products.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.gov.pay.products.persistence.dao.ProductUsageStatsDao;
+
+import jakarta.inject.Inject;
+
+/**
+ * Keeps the payment count and last payment date of each product in product_usage_stats.
+ * <p>
+ * Every payment creation and deletion adds a delta row for its product in its own transaction, so a delta exists
+ * exactly when its payments do. {@link #fold()} adds the deltas to product_usage_stats every foldInterval and deletes
+ * them in the same transaction. Only one instance folds at a time, so the stats rows are only ever written by one
+ * transaction and are never recounted from payments.
+ */
+public class ProductUsageStatsRecorder {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProductUsageStatsRecorder.class);
+
+    static final int FOLD_BATCH_SIZE = 1000;
+
+    private final ProductUsageStatsDao productUsageStatsDao;
+
+    @Inject
+    public ProductUsageStatsRecorder(ProductUsageStatsDao productUsageStatsDao) {
+        this.productUsageStatsDao = productUsageStatsDao;
+    }
+
+    public void fold() {
+        try {
+            int numberOfFoldedDeltas;
+            do {
+                numberOfFoldedDeltas = productUsageStatsDao.foldDeltas(FOLD_BATCH_SIZE);
+            } while (numberOfFoldedDeltas == FOLD_BATCH_SIZE);
+        } catch (Exception e) {
+            LOGGER.error("Failed to fold payments into product usage stats", e);
+        }
+    }
+}
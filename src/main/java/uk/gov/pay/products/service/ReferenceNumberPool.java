@@ -0,0 +1,169 @@
+package uk.gov.pay.products.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.gov.pay.products.config.ReferenceNumberPoolConfig;
+import uk.gov.pay.products.persistence.dao.PaymentDao;
+
+import jakarta.inject.Inject;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.InstantSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static java.lang.String.format;
+import static uk.gov.pay.products.util.RandomIdGenerator.randomUserFriendlyReference;
+
+/**
+ * In-memory pools of system generated reference numbers that have already been reserved in the database, one pool per
+ * busy gateway account.
+ * <p>
+ * Taking a reference number never waits for the database. The payment rate of a gateway account is tracked from the
+ * first time a reference number is requested for it. Once it has created at least minimumPaymentsPerWindow payments in
+ * one paymentRateWindow, {@link #refill()} tops up its pool in the background with one query. Other accounts reserve
+ * their reference numbers while creating the payment instead.
+ * <p>
+ * The reference numbers left in a pool are released when its account slows down or expires from the pools, and when
+ * the application stops. Those left behind by an instance that stopped abruptly are deleted by the expunge job.
+ */
+public class ReferenceNumberPool {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReferenceNumberPool.class);
+
+    private final PaymentDao paymentDao;
+    private final InstantSource instantSource;
+    private final int referenceNumbersPerGatewayAccount;
+    private final int minimumPaymentsPerWindow;
+    private final Duration paymentRateWindow;
+    private final Cache<Integer, GatewayAccountPool> poolsByGatewayAccountId;
+
+    @Inject
+    public ReferenceNumberPool(PaymentDao paymentDao, ReferenceNumberPoolConfig referenceNumberPoolConfig, InstantSource instantSource) {
+        this.paymentDao = paymentDao;
+        this.instantSource = instantSource;
+        this.referenceNumbersPerGatewayAccount = referenceNumberPoolConfig.getReferenceNumbersPerGatewayAccount();
+        this.minimumPaymentsPerWindow = referenceNumberPoolConfig.getMinimumPaymentsPerWindow();
+        if (referenceNumberPoolConfig.isEnabled()) {
+            this.paymentRateWindow = referenceNumberPoolConfig.getPaymentRateWindow().toJavaDuration();
+            this.poolsByGatewayAccountId = Caffeine.newBuilder()
+                    .maximumSize(referenceNumberPoolConfig.getMaximumGatewayAccounts())
+                    .expireAfterAccess(referenceNumberPoolConfig.getExpireIdleGatewayAccountsAfter().toJavaDuration())
+                    .<Integer, GatewayAccountPool>removalListener((gatewayAccountId, pool, cause) -> {
+                        if (gatewayAccountId != null && pool != null) {
+                            release(gatewayAccountId, pool);
+                        }
+                    })
+                    .build();
+        } else {
+            this.paymentRateWindow = null;
+            this.poolsByGatewayAccountId = null;
+        }
+    }
+
+    public boolean isEnabled() {
+        return poolsByGatewayAccountId != null;
+    }
+
+    public Optional<String> take(Integer gatewayAccountId) {
+        if (poolsByGatewayAccountId == null) {
+            return Optional.empty();
+        }
+        GatewayAccountPool pool = poolsByGatewayAccountId.get(gatewayAccountId, key -> new GatewayAccountPool(instantSource.instant()));
+        pool.paymentsInWindow.incrementAndGet();
+        return Optional.ofNullable(pool.referenceNumbers.poll());
+    }
+
+    public void refill() {
+        if (poolsByGatewayAccountId == null) {
+            return;
+        }
+        poolsByGatewayAccountId.cleanUp();
+        Instant now = instantSource.instant();
+        poolsByGatewayAccountId.asMap().forEach((gatewayAccountId, pool) -> {
+            if (pool.isBusy(now, paymentRateWindow, minimumPaymentsPerWindow)) {
+                topUp(gatewayAccountId, pool);
+            } else {
+                release(gatewayAccountId, pool);
+            }
+        });
+    }
+
+    /*
+    Releases every reference number left in the pools, so they are not left reserved when the application stops.
+     */
+    public void releaseAll() {
+        if (poolsByGatewayAccountId == null) {
+            return;
+        }
+        poolsByGatewayAccountId.asMap().forEach(this::release);
+    }
+
+    private void topUp(Integer gatewayAccountId, GatewayAccountPool pool) {
+        int numberOfMissingReferenceNumbers = referenceNumbersPerGatewayAccount - pool.referenceNumbers.size();
+        if (numberOfMissingReferenceNumbers <= 0) {
+            return;
+        }
+        try {
+            List<String> candidates = Stream.generate(() -> randomUserFriendlyReference())
+                    .limit(numberOfMissingReferenceNumbers)
+                    .toList();
+            pool.referenceNumbers.addAll(paymentDao.reserveReferenceNumbers(gatewayAccountId, candidates));
+        } catch (Exception e) {
+            LOGGER.error("Failed to refill reference number pool", e);
+        }
+        // the account may have expired from the pools while they were being reserved, and its pool already released
+        if (poolsByGatewayAccountId.asMap().get(gatewayAccountId) != pool) {
+            release(gatewayAccountId, pool);
+        }
+    }
+
+    private void release(Integer gatewayAccountId, GatewayAccountPool pool) {
+        List<String> referenceNumbers = pool.drain();
+        if (referenceNumbers.isEmpty()) {
+            return;
+        }
+        try {
+            paymentDao.releaseReferenceNumbers(gatewayAccountId, referenceNumbers);
+        } catch (Exception e) {
+            LOGGER.error(format("Failed to release %s pooled reference numbers", referenceNumbers.size()), e);
+        }
+    }
+
+    private static class GatewayAccountPool {
+        private final Queue<String> referenceNumbers = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger paymentsInWindow = new AtomicInteger();
+        // only read and written by refill
+        private Instant windowStart;
+        private boolean busy;
+
+        GatewayAccountPool(Instant windowStart) {
+            this.windowStart = windowStart;
+        }
+
+        boolean isBusy(Instant now, Duration paymentRateWindow, int minimumPaymentsPerWindow) {
+            if (Duration.between(windowStart, now).compareTo(paymentRateWindow) >= 0) {
+                busy = paymentsInWindow.getAndSet(0) >= minimumPaymentsPerWindow;
+                windowStart = now;
+            }
+            return busy;
+        }
+
+        // polled one at a time, so a reference number is either taken for a payment or released, never both
+        List<String> drain() {
+            List<String> drained = new ArrayList<>();
+            String referenceNumber;
+            while ((referenceNumber = referenceNumbers.poll()) != null) {
+                drained.add(referenceNumber);
+            }
+            return drained;
+        }
+    }
+}
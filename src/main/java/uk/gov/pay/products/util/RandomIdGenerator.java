@@ -1,9 +1,6 @@
 package uk.gov.pay.products.util;
 
 import java.security.SecureRandom;
-import java.util.UUID;
-
-import static java.util.stream.IntStream.range;
 
 public class RandomIdGenerator {
 
@@ -13,14 +10,34 @@ public class RandomIdGenerator {
      */
     private static final String RANDOM_SOURCE_SET_1 = "ABCSDEFGHJKLMNPQRSTUVWXYZ";
     private static final String RANDOM_SOURCE_SET_2 = "23456789";
-    private static final String RANDOM_SOURCE_UNION = RANDOM_SOURCE_SET_1.concat(RANDOM_SOURCE_SET_2);
+    private static final char[] RANDOM_SOURCE_DIGITS = RANDOM_SOURCE_SET_2.toCharArray();
+    private static final char[] RANDOM_SOURCE_UNION = RANDOM_SOURCE_SET_1.concat(RANDOM_SOURCE_SET_2).toCharArray();
+    private static final int USER_FRIENDLY_REFERENCE_LENGTH = 10;
+    private static final long USER_FRIENDLY_REFERENCE_COMBINATIONS = userFriendlyReferenceCombinations();
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
 
     public static Integer randomInt() {
         return RANDOM.nextInt(Integer.MAX_VALUE);
     }
 
+    /**
+     * Random (version 4) UUID as 32 lower case hex digits without dashes, encoded straight from two random longs
+     *
+     * @return a random UUID of the format xxxxxxxxxxxx4xxxyxxxxxxxxxxxxxxx
+     */
     public static String randomUuid() {
-        return UUID.randomUUID().toString().replace("-", "").toLowerCase();
+        long mostSignificantBits = (RANDOM.nextLong() & 0xffffffffffff0fffL) | 0x0000000000004000L;
+        long leastSignificantBits = (RANDOM.nextLong() & 0x3fffffffffffffffL) | 0x8000000000000000L;
+
+        char[] uuid = new char[32];
+        for (int i = 15; i >= 0; i--) {
+            uuid[i] = HEX_DIGITS[(int) (mostSignificantBits & 0xf)];
+            mostSignificantBits >>>= 4;
+            uuid[i + 16] = HEX_DIGITS[(int) (leastSignificantBits & 0xf)];
+            leastSignificantBits >>>= 4;
+        }
+        return new String(uuid);
     }
 
     /**
@@ -28,20 +45,32 @@ public class RandomIdGenerator {
      * Uses sets of upper case alphabets and numbers (excluding `0`, `1`, `I` and `O`) with biased on digits on every 3rd and 7th character.
      * <p>
      * probability set (33 ^ 8) * (8 ^ 2) = 1.4464931e+14 (in the range of 10 - 100^ trillion)
+     * <p>
+     * A single random number below that is drawn and written out one character at a time in mixed radix, so every
+     * reference is still equally likely.
      *
      * @return a user friendly reference of the format XXXXXXXXXX
      */
     public static String randomUserFriendlyReference() {
-        SecureRandom random = new SecureRandom();
-        StringBuilder sb = new StringBuilder();
-        range(0, 10)
-                .forEach(i -> {
-                    if (i % 4 == 2) {
-                        sb.append(RANDOM_SOURCE_SET_2.charAt(random.nextInt(RANDOM_SOURCE_SET_2.length())));
-                    } else {
-                        sb.append(RANDOM_SOURCE_UNION.charAt(random.nextInt(RANDOM_SOURCE_UNION.length())));
-                    }
-                });
-        return sb.toString();
+        long value = RANDOM.nextLong(USER_FRIENDLY_REFERENCE_COMBINATIONS);
+        char[] reference = new char[USER_FRIENDLY_REFERENCE_LENGTH];
+        for (int i = 0; i < USER_FRIENDLY_REFERENCE_LENGTH; i++) {
+            char[] source = sourceForPosition(i);
+            reference[i] = source[(int) (value % source.length)];
+            value /= source.length;
+        }
+        return new String(reference);
+    }
+
+    private static char[] sourceForPosition(int position) {
+        return position % 4 == 2 ? RANDOM_SOURCE_DIGITS : RANDOM_SOURCE_UNION;
+    }
+
+    private static long userFriendlyReferenceCombinations() {
+        long combinations = 1;
+        for (int i = 0; i < USER_FRIENDLY_REFERENCE_LENGTH; i++) {
+            combinations *= sourceForPosition(i).length;
+        }
+        return combinations;
     }
 }
@@ -1,17 +1,31 @@
 package uk.gov.pay.products.validations;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import uk.gov.pay.products.model.PaymentPageCursor;
 import uk.gov.pay.products.util.Errors;
+import uk.gov.pay.products.util.PaymentStatus;
 
 import jakarta.inject.Inject;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Optional;
 
 import static com.google.common.collect.Lists.newArrayList;
+import static java.lang.String.format;
 
 public class PaymentRequestValidator {
 
+    public static final int MAX_PAYMENTS_PAGE_SIZE = 500;
+    public static final int MAX_IDEMPOTENCY_KEY_LENGTH = 255;
+    private static final String HEADER_IDEMPOTENCY_KEY = "Idempotency-Key";
     private static final String FIELD_PRICE = "price";
+    private static final String QUERY_PARAM_STATUS = "status";
+    private static final String QUERY_PARAM_FROM_DATE = "fromDate";
+    private static final String QUERY_PARAM_TO_DATE = "toDate";
+    private static final String QUERY_PARAM_AFTER = "after";
+    private static final String QUERY_PARAM_LIMIT = "limit";
 
     private final RequestValidations requestValidations;
 
@@ -39,4 +53,42 @@ public class PaymentRequestValidator {
         errors = requestValidations.checkIsBelowMaxAmount(payload, FIELD_PRICE);
         return errors.map(Errors::from);
     }
+
+    public Optional<Errors> validateIdempotencyKey(String idempotencyKey) {
+        if (idempotencyKey != null && (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH)) {
+            return Optional.of(Errors.from(format("Header [%s] must be between 1 and %s characters and not blank",
+                    HEADER_IDEMPOTENCY_KEY, MAX_IDEMPOTENCY_KEY_LENGTH)));
+        }
+        return Optional.empty();
+    }
+
+    public Optional<Errors> validateSearchParams(String status, String fromDate, String toDate, String after, Integer limit) {
+        List<String> errors = newArrayList();
+        if (status != null) {
+            requestValidations.checkIsValidEnumValue(status, EnumSet.allOf(PaymentStatus.class), QUERY_PARAM_STATUS)
+                    .ifPresent(errors::addAll);
+        }
+        if (fromDate != null && !isValidDateTime(fromDate)) {
+            errors.add(format("Query param [%s] must be an ISO-8601 date time", QUERY_PARAM_FROM_DATE));
+        }
+        if (toDate != null && !isValidDateTime(toDate)) {
+            errors.add(format("Query param [%s] must be an ISO-8601 date time", QUERY_PARAM_TO_DATE));
+        }
+        if (after != null && PaymentPageCursor.parse(after).isEmpty()) {
+            errors.add(format("Query param [%s] must be a cursor from a next link", QUERY_PARAM_AFTER));
+        }
+        if (limit != null && (limit < 1 || limit > MAX_PAYMENTS_PAGE_SIZE)) {
+            errors.add(format("Query param [%s] must be between 1 and %s", QUERY_PARAM_LIMIT, MAX_PAYMENTS_PAGE_SIZE));
+        }
+        return errors.isEmpty() ? Optional.empty() : Optional.of(Errors.from(errors));
+    }
+
+    private static boolean isValidDateTime(String dateTime) {
+        try {
+            ZonedDateTime.parse(dateTime);
+            return true;
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
 }
@@ -11,12 +11,14 @@ import uk.gov.service.payments.commons.model.SupportedLanguage;
 import uk.gov.service.payments.commons.model.jsonpatch.JsonPatchOp;
 import uk.gov.service.payments.commons.model.jsonpatch.JsonPatchRequest;
 
+import java.util.ArrayList;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.function.Consumer;
 
+import static java.lang.String.format;
 import static uk.gov.pay.products.model.Product.FIELD_GATEWAY_ACCOUNT_ID;
 import static uk.gov.pay.products.model.Product.FIELD_LANGUAGE;
 import static uk.gov.pay.products.model.Product.FIELD_NAME;
@@ -34,6 +36,11 @@ import static uk.gov.pay.products.util.ProductType.AGENT_INITIATED_MOTO;
 
 public class ProductRequestValidator {
 
+    public static final int MAX_PRODUCTS_PAGE_SIZE = 500;
+    public static final int MAX_BULK_CREATE_PRODUCTS = 10000;
+    private static final String QUERY_PARAM_AFTER = "after";
+    private static final String QUERY_PARAM_LIMIT = "limit";
+
     private final RequestValidations requestValidations;
     private final boolean returnUrlMustBeSecure;
     private final ProductsMetadataRequestValidator metadataRequestValidator;
@@ -100,6 +107,17 @@ public class ProductRequestValidator {
         return errors.map(Errors::from);
     }
 
+    /**
+     * Checks the request is a list of products of an accepted size. Each product is checked with
+     * {@link #validateCreateRequest(JsonNode)}, so one invalid product does not fail the others.
+     */
+    public Optional<Errors> validateBulkCreateRequest(JsonNode payload) {
+        if (payload == null || !payload.isArray() || payload.isEmpty() || payload.size() > MAX_BULK_CREATE_PRODUCTS) {
+            return Optional.of(Errors.from(format("Request must be a list of between 1 and %s products", MAX_BULK_CREATE_PRODUCTS)));
+        }
+        return Optional.empty();
+    }
+
     public Optional<Errors> validateUpdateRequest(JsonNode payload) {
         Optional<List<String>> errors = requestValidations.checkIfExistsOrEmpty(
                 payload,
@@ -116,6 +134,10 @@ public class ProductRequestValidator {
         return errors.map(Errors::from);
     }
     
+    public Optional<Errors> validatePayApiTokenUpdateRequest(JsonNode payload) {
+        return requestValidations.checkIfExistsOrEmpty(payload, FIELD_PAY_API_TOKEN).map(Errors::from);
+    }
+
     public void validateJsonPatch(JsonNode payload) {
         patchRequestValidator.validate(payload);
     }
@@ -129,4 +151,15 @@ public class ProductRequestValidator {
         return errors.map(Errors::from);
     }
 
+    public Optional<Errors> validatePagination(Integer after, Integer limit) {
+        List<String> errors = new ArrayList<>();
+        if (after != null && after < 0) {
+            errors.add(format("Query param [%s] must be 0 or more", QUERY_PARAM_AFTER));
+        }
+        if (limit != null && (limit < 1 || limit > MAX_PRODUCTS_PAGE_SIZE)) {
+            errors.add(format("Query param [%s] must be between 1 and %s", QUERY_PARAM_LIMIT, MAX_PRODUCTS_PAGE_SIZE));
+        }
+        return errors.isEmpty() ? Optional.empty() : Optional.of(Errors.from(errors));
+    }
+
 }
@@ -0,0 +1,5 @@
+--liquibase formatted sql
+
+--changeset uk.gov.pay:index_products_gateway_account_id_status_type_id runInTransaction:false
+CREATE INDEX CONCURRENTLY products_gateway_account_id_status_type_id_idx ON products(gateway_account_id, status, type, id);
+-- rollback drop index concurrently products_gateway_account_id_status_type_id_idx
@@ -0,0 +1,18 @@
+--liquibase formatted sql
+
+--changeset uk.gov.pay:add_product_usage_stats_table
+CREATE TABLE product_usage_stats (
+    product_id INTEGER PRIMARY KEY,
+    payment_count BIGINT NOT NULL DEFAULT 0,
+    last_payment_date TIMESTAMP WITH TIME ZONE
+);
+--rollback drop table product_usage_stats;
+
+--changeset uk.gov.pay:add_fk_product_usage_stats_products
+ALTER TABLE product_usage_stats ADD CONSTRAINT fk_product_usage_stats_products FOREIGN KEY (product_id) REFERENCES products (id) ON DELETE CASCADE;
+--rollback alter table product_usage_stats drop constraint fk_product_usage_stats_products;
+
+--changeset uk.gov.pay:populate_product_usage_stats
+INSERT INTO product_usage_stats (product_id, payment_count, last_payment_date)
+SELECT product_id, COUNT(1), MAX(date_created) FROM payments GROUP BY product_id;
+--rollback delete from product_usage_stats;
@@ -0,0 +1,5 @@
+--liquibase formatted sql
+
+--changeset uk.gov.pay:index_payments_date_created runInTransaction:false
+CREATE INDEX CONCURRENTLY payments_date_created_idx ON payments(date_created);
+-- rollback drop index concurrently payments_date_created_idx
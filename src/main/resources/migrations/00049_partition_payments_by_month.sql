@@ -0,0 +1,122 @@
+--liquibase formatted sql
+
+--changeset uk.gov.pay:index_govuk_payment_id_payments runInTransaction:false
+CREATE INDEX CONCURRENTLY payments_govuk_payment_id_idx ON payments(govuk_payment_id);
+-- rollback drop index concurrently payments_govuk_payment_id_idx
+
+--changeset uk.gov.pay:index_id_date_created_payments runInTransaction:false
+-- becomes the primary key of the payments that stay in payments_legacy, so attaching it needs no index build
+CREATE UNIQUE INDEX CONCURRENTLY payments_id_date_created_idx ON payments(id, date_created);
+-- rollback drop index concurrently payments_id_date_created_idx
+
+--changeset uk.gov.pay:add_table-payment_external_ids splitStatements:false
+-- a partitioned table can only enforce unique keys that include date_created, so external ids are kept unique across
+-- partitions by this table. Its rows are added and removed with their payments by triggers, and with whole partitions
+-- by PaymentPartitionDao.
+CREATE TABLE payment_external_ids (
+    external_id VARCHAR(32) PRIMARY KEY
+);
+
+CREATE FUNCTION add_payment_external_id() RETURNS TRIGGER AS $$
+BEGIN
+    INSERT INTO payment_external_ids (external_id) VALUES (NEW.external_id);
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE FUNCTION remove_payment_external_id() RETURNS TRIGGER AS $$
+BEGIN
+    DELETE FROM payment_external_ids WHERE external_id = OLD.external_id;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER payments_add_external_id AFTER INSERT ON payments
+    FOR EACH ROW EXECUTE FUNCTION add_payment_external_id();
+CREATE TRIGGER payments_remove_external_id AFTER DELETE ON payments
+    FOR EACH ROW EXECUTE FUNCTION remove_payment_external_id();
+--rollback DROP TRIGGER payments_add_external_id ON payments;
+--rollback DROP TRIGGER payments_remove_external_id ON payments;
+--rollback DROP FUNCTION add_payment_external_id;
+--rollback DROP FUNCTION remove_payment_external_id;
+--rollback DROP TABLE payment_external_ids;
+
+--changeset uk.gov.pay:populate_payment_external_ids
+INSERT INTO payment_external_ids (external_id)
+SELECT external_id FROM payments
+ON CONFLICT (external_id) DO NOTHING;
+--rollback delete from payment_external_ids;
+
+--changeset uk.gov.pay:add_check-payments_date_created_before_next_month splitStatements:false
+-- existing payments stay in payments_legacy, which covers everything before next month, so nothing is copied.
+-- the check is added without scanning the table and validated on its own, without blocking payments being created,
+-- so attaching payments_legacy can rely on it instead of scanning the table under an exclusive lock.
+DO $$
+BEGIN
+    EXECUTE format('ALTER TABLE payments ADD CONSTRAINT payments_legacy_date_created_check CHECK (date_created < %L) NOT VALID',
+        (date_trunc('month', now() AT TIME ZONE 'UTC') + INTERVAL '1 month') AT TIME ZONE 'UTC');
+END $$;
+--rollback ALTER TABLE payments DROP CONSTRAINT payments_legacy_date_created_check;
+
+--changeset uk.gov.pay:validate_check-payments_date_created_before_next_month
+ALTER TABLE payments VALIDATE CONSTRAINT payments_legacy_date_created_check;
+--rollback select 1;
+
+--changeset uk.gov.pay:partition_payments_by_month_date_created splitStatements:false
+ALTER TABLE payments RENAME TO payments_legacy;
+ALTER TABLE payments_legacy DROP CONSTRAINT payments_pkey;
+ALTER TABLE payments_legacy ADD CONSTRAINT payments_legacy_pkey PRIMARY KEY USING INDEX payments_id_date_created_idx;
+ALTER INDEX payment_external_idx RENAME TO payments_legacy_external_id_idx;
+ALTER INDEX payments_govuk_payment_id_idx RENAME TO payments_legacy_govuk_payment_id_idx;
+ALTER INDEX payments_product_id_date_created_idx RENAME TO payments_legacy_product_id_date_created_idx;
+ALTER INDEX payments_date_created_idx RENAME TO payments_legacy_date_created_idx;
+
+-- every index of the partitioned table matches one already on payments_legacy, so attaching it builds none
+CREATE TABLE payments (LIKE payments_legacy INCLUDING DEFAULTS) PARTITION BY RANGE (date_created);
+ALTER SEQUENCE payments_id_seq OWNED BY payments.id;
+ALTER TABLE payments ADD CONSTRAINT payments_pkey PRIMARY KEY (id, date_created);
+ALTER TABLE payments ADD CONSTRAINT fk_payments_products FOREIGN KEY (product_id) REFERENCES products (id) ON DELETE CASCADE;
+CREATE INDEX payments_external_id_idx ON payments(external_id);
+CREATE INDEX payments_govuk_payment_id_idx ON payments(govuk_payment_id);
+CREATE INDEX payments_product_id_date_created_idx ON payments(product_id, date_created);
+CREATE INDEX payments_date_created_idx ON payments(date_created);
+
+-- the triggers of the partitioned table are copied to payments_legacy when it is attached
+DROP TRIGGER payments_add_external_id ON payments_legacy;
+DROP TRIGGER payments_remove_external_id ON payments_legacy;
+CREATE TRIGGER payments_add_external_id AFTER INSERT ON payments
+    FOR EACH ROW EXECUTE FUNCTION add_payment_external_id();
+CREATE TRIGGER payments_remove_external_id AFTER DELETE ON payments
+    FOR EACH ROW EXECUTE FUNCTION remove_payment_external_id();
+
+-- monthly partitions payments_pYYYYMM are created from the end of payments_legacy onwards and kept ahead by the
+-- application. There is no default partition, as partitions could then not be detached concurrently.
+DO $$
+DECLARE
+    legacy_end TIMESTAMP WITH TIME ZONE;
+    partition_month TIMESTAMP;
+BEGIN
+    SELECT (regexp_match(pg_get_constraintdef(oid), '''([^'']+)'''))[1]::TIMESTAMP WITH TIME ZONE INTO legacy_end
+    FROM pg_constraint
+    WHERE conrelid = 'payments_legacy'::regclass AND conname = 'payments_legacy_date_created_check';
+
+    EXECUTE format('ALTER TABLE payments ATTACH PARTITION payments_legacy FOR VALUES FROM (MINVALUE) TO (%L)', legacy_end);
+    FOR i IN 0..2 LOOP
+        partition_month := (legacy_end AT TIME ZONE 'UTC') + make_interval(months => i);
+        EXECUTE format('CREATE TABLE payments_p%s PARTITION OF payments FOR VALUES FROM (%L) TO (%L)',
+            to_char(partition_month, 'YYYYMM'), partition_month AT TIME ZONE 'UTC', (partition_month + INTERVAL '1 month') AT TIME ZONE 'UTC');
+    END LOOP;
+END $$;
+--rollback ALTER TABLE payments DETACH PARTITION payments_legacy;
+--rollback ALTER SEQUENCE payments_id_seq OWNED BY payments_legacy.id;
+--rollback DROP TABLE payments CASCADE;
+--rollback ALTER TABLE payments_legacy RENAME TO payments;
+--rollback CREATE TRIGGER payments_add_external_id AFTER INSERT ON payments FOR EACH ROW EXECUTE FUNCTION add_payment_external_id();
+--rollback CREATE TRIGGER payments_remove_external_id AFTER DELETE ON payments FOR EACH ROW EXECUTE FUNCTION remove_payment_external_id();
+--rollback ALTER TABLE payments DROP CONSTRAINT payments_legacy_pkey;
+--rollback ALTER TABLE payments ADD CONSTRAINT payments_pkey PRIMARY KEY (id);
+--rollback CREATE UNIQUE INDEX payments_id_date_created_idx ON payments(id, date_created);
+--rollback ALTER INDEX payments_legacy_external_id_idx RENAME TO payment_external_idx;
+--rollback ALTER INDEX payments_legacy_govuk_payment_id_idx RENAME TO payments_govuk_payment_id_idx;
+--rollback ALTER INDEX payments_legacy_product_id_date_created_idx RENAME TO payments_product_id_date_created_idx;
+--rollback ALTER INDEX payments_legacy_date_created_idx RENAME TO payments_date_created_idx;
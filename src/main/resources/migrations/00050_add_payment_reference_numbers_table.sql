@@ -0,0 +1,16 @@
+--liquibase formatted sql
+
+--changeset uk.gov.pay:add_payment_reference_numbers_table
+CREATE TABLE payment_reference_numbers (
+    gateway_account_id BIGINT NOT NULL,
+    reference_number VARCHAR(255) NOT NULL,
+    PRIMARY KEY (gateway_account_id, reference_number)
+);
+--rollback drop table payment_reference_numbers;
+
+--changeset uk.gov.pay:populate_payment_reference_numbers
+INSERT INTO payment_reference_numbers (gateway_account_id, reference_number)
+SELECT DISTINCT payments.gateway_account_id, payments.reference_number
+FROM payments JOIN products ON products.id = payments.product_id
+WHERE NOT products.reference_enabled;
+--rollback delete from payment_reference_numbers;
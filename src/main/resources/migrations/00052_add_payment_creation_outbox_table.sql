@@ -0,0 +1,13 @@
+--liquibase formatted sql
+
+--changeset uk.gov.pay:add_table-payment_creation_outbox
+CREATE TABLE payment_creation_outbox (
+    id SERIAL PRIMARY KEY,
+    payment_external_id VARCHAR(32) NOT NULL UNIQUE,
+    price_override BIGINT,
+    attempts INTEGER DEFAULT 0 NOT NULL,
+    claimed_until TIMESTAMP WITH TIME ZONE,
+    date_created TIMESTAMP WITH TIME ZONE DEFAULT (now() AT TIME ZONE 'utc') NOT NULL,
+    version INTEGER DEFAULT 0 NOT NULL
+);
+--rollback drop table payment_creation_outbox;
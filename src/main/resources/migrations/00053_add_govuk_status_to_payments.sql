@@ -0,0 +1,7 @@
+--liquibase formatted sql
+
+--changeset uk.gov.pay:add_columns_govuk_status_govuk_status_checked_at_to_payments
+ALTER TABLE payments ADD COLUMN govuk_status VARCHAR(50);
+ALTER TABLE payments ADD COLUMN govuk_status_checked_at TIMESTAMP WITH TIME ZONE;
+--rollback alter table payments drop column govuk_status;
+--rollback alter table payments drop column govuk_status_checked_at;
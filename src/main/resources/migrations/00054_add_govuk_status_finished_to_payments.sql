@@ -0,0 +1,6 @@
+--liquibase formatted sql
+
+--changeset uk.gov.pay:add_column_govuk_status_finished_to_payments
+ALTER TABLE payments ADD COLUMN govuk_status_finished BOOLEAN NOT NULL DEFAULT false;
+UPDATE payments SET govuk_status_finished = true WHERE govuk_status IS NOT NULL;
+--rollback alter table payments drop column govuk_status_finished;
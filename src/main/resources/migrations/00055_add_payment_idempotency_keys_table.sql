@@ -0,0 +1,16 @@
+--liquibase formatted sql
+
+--changeset uk.gov.pay:add_table-payment_idempotency_keys
+CREATE TABLE payment_idempotency_keys (
+    product_external_id VARCHAR(32) NOT NULL,
+    idempotency_key VARCHAR(255) NOT NULL,
+    payment_external_id VARCHAR(32) NOT NULL,
+    date_created TIMESTAMP WITH TIME ZONE DEFAULT (now() AT TIME ZONE 'utc') NOT NULL,
+    expiry_date TIMESTAMP WITH TIME ZONE NOT NULL,
+    PRIMARY KEY (product_external_id, idempotency_key)
+);
+--rollback drop table payment_idempotency_keys;
+
+--changeset uk.gov.pay:add_index-payment_idempotency_keys_expiry_date
+CREATE INDEX payment_idempotency_keys_expiry_date_idx ON payment_idempotency_keys(expiry_date);
+--rollback drop index payment_idempotency_keys_expiry_date_idx;
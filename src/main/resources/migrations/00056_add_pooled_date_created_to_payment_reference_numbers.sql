@@ -0,0 +1,11 @@
+--liquibase formatted sql
+
+--changeset uk.gov.pay:add_columns_pooled_date_created_to_payment_reference_numbers
+ALTER TABLE payment_reference_numbers ADD COLUMN pooled BOOLEAN NOT NULL DEFAULT false;
+ALTER TABLE payment_reference_numbers ADD COLUMN date_created TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT (now() AT TIME ZONE 'utc');
+--rollback alter table payment_reference_numbers drop column pooled;
+--rollback alter table payment_reference_numbers drop column date_created;
+
+--changeset uk.gov.pay:index_date_created_pooled_payment_reference_numbers runInTransaction:false
+CREATE INDEX CONCURRENTLY payment_reference_numbers_pooled_date_created_idx ON payment_reference_numbers(date_created) WHERE pooled;
+-- rollback drop index concurrently payment_reference_numbers_pooled_date_created_idx
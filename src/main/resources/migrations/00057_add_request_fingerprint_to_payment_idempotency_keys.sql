@@ -0,0 +1,6 @@
+--liquibase formatted sql
+
+--changeset uk.gov.pay:add_column-payment_idempotency_keys_request_fingerprint
+-- keys claimed before this column existed have no fingerprint and are not compared with the requests that repeat them
+ALTER TABLE payment_idempotency_keys ADD COLUMN request_fingerprint VARCHAR(64);
+--rollback ALTER TABLE payment_idempotency_keys DROP COLUMN request_fingerprint;
@@ -0,0 +1,15 @@
+--liquibase formatted sql
+
+--changeset uk.gov.pay:add_product_usage_deltas_table
+-- payments created and deleted are added here in their own transactions, and folded into product_usage_stats by one job
+CREATE TABLE product_usage_deltas (
+    id BIGSERIAL PRIMARY KEY,
+    product_id INTEGER NOT NULL,
+    payment_count INTEGER NOT NULL,
+    last_payment_date TIMESTAMP WITH TIME ZONE
+);
+--rollback drop table product_usage_deltas;
+
+--changeset uk.gov.pay:add_fk_product_usage_deltas_products
+ALTER TABLE product_usage_deltas ADD CONSTRAINT fk_product_usage_deltas_products FOREIGN KEY (product_id) REFERENCES products (id) ON DELETE CASCADE;
+--rollback alter table product_usage_deltas drop constraint fk_product_usage_deltas_products;
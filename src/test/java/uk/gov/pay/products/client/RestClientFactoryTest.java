@@ -1,6 +1,11 @@
 package uk.gov.pay.products.client;
 
 import io.dropwizard.util.Duration;
+import io.prometheus.client.CollectorRegistry;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.glassfish.jersey.apache.connector.ApacheClientProperties;
+import org.glassfish.jersey.apache.connector.ApacheConnectorProvider;
+import org.glassfish.jersey.client.ClientConfig;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -12,6 +17,7 @@ import javax.net.ssl.SSLContext;
 import jakarta.ws.rs.client.Client;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.core.IsNot.not;
 import static org.mockito.Mockito.when;
@@ -27,13 +33,19 @@ public class RestClientFactoryTest {
     public void setUp() {
         when(clientConfiguration.getConnectTimeout()).thenReturn(FIFTY_SECONDS);
         when(clientConfiguration.getReadTimeout()).thenReturn(FIFTY_SECONDS);
+        when(clientConfiguration.getMaxConnections()).thenReturn(100);
+        when(clientConfiguration.getMaxConnectionsPerRoute()).thenReturn(50);
+        when(clientConfiguration.getConnectionRequestTimeout()).thenReturn(Duration.seconds(5));
+        when(clientConfiguration.getConnectionTimeToLive()).thenReturn(Duration.minutes(15));
+        when(clientConfiguration.getIdleConnectionTimeout()).thenReturn(Duration.seconds(30));
+        when(clientConfiguration.getValidateAfterInactivity()).thenReturn(Duration.seconds(2));
     }
 
     @Test
     public void jerseyClient_shouldUseSSLWhenSecureInternalCommunicationIsOn() {
         when(clientConfiguration.isDisabledSecureConnection()).thenReturn(false);
 
-        Client client = RestClientFactory.buildClient(clientConfiguration);
+        Client client = RestClientFactory.buildClient("test", clientConfiguration);
 
         SSLContext sslContext = client.getSslContext();
         assertThat(sslContext.getProtocol(), is("TLSv1.2"));
@@ -43,7 +55,7 @@ public class RestClientFactoryTest {
     public void jerseyClient_shouldNotUseSSLWhenSecureInternalCommunicationIsOff() {
         when(clientConfiguration.isDisabledSecureConnection()).thenReturn(true);
 
-        Client client = RestClientFactory.buildClient(clientConfiguration);
+        Client client = RestClientFactory.buildClient("test", clientConfiguration);
 
         assertThat(client.getSslContext().getProtocol(), is(not("TLSv1.2")));
     }
@@ -53,7 +65,7 @@ public class RestClientFactoryTest {
         Duration connectTimeout = Duration.seconds(10L);
         when(clientConfiguration.getConnectTimeout()).thenReturn(connectTimeout);
 
-        Client client = RestClientFactory.buildClient(clientConfiguration);
+        Client client = RestClientFactory.buildClient("test", clientConfiguration);
 
         assertThat(client.getConfiguration().getProperty("jersey.config.client.connectTimeout"),
                 is(Math.toIntExact(connectTimeout.getUnit().toMillis(connectTimeout.getQuantity()))));
@@ -64,9 +76,45 @@ public class RestClientFactoryTest {
         Duration readTimeout = Duration.seconds(15L);
         when(clientConfiguration.getReadTimeout()).thenReturn(readTimeout);
 
-        Client client = RestClientFactory.buildClient(clientConfiguration);
+        Client client = RestClientFactory.buildClient("test", clientConfiguration);
 
         assertThat(client.getConfiguration().getProperty("jersey.config.client.readTimeout"),
                 is(Math.toIntExact(readTimeout.getUnit().toMillis(readTimeout.getQuantity()))));
     }
+
+    @Test
+    public void jerseyClient_shouldUsePooledApacheConnector() {
+        Client client = RestClientFactory.buildClient("test", clientConfiguration);
+
+        assertThat(((ClientConfig) client.getConfiguration()).getConnectorProvider(), is(instanceOf(ApacheConnectorProvider.class)));
+    }
+
+    @Test
+    public void jerseyClient_shouldSizeConnectionPoolFromConfiguration() {
+        when(clientConfiguration.getMaxConnections()).thenReturn(20);
+        when(clientConfiguration.getMaxConnectionsPerRoute()).thenReturn(5);
+
+        Client client = RestClientFactory.buildClient("test", clientConfiguration);
+
+        PoolingHttpClientConnectionManager connectionManager = (PoolingHttpClientConnectionManager)
+                client.getConfiguration().getProperty(ApacheClientProperties.CONNECTION_MANAGER);
+        assertThat(connectionManager.getMaxTotal(), is(20));
+        assertThat(connectionManager.getDefaultMaxPerRoute(), is(5));
+        assertThat(connectionManager.getValidateAfterInactivity(), is(2000));
+    }
+
+    @Test
+    public void jerseyClient_shouldReportConnectionMetricsOfEachClientSeparately() {
+        RestClientFactory.buildClient("first", clientConfiguration);
+        when(clientConfiguration.getMaxConnections()).thenReturn(20);
+        RestClientFactory.buildClient("second", clientConfiguration);
+
+        assertThat(connectionsMetric("first", "max"), is(100.0));
+        assertThat(connectionsMetric("second", "max"), is(20.0));
+    }
+
+    private static Double connectionsMetric(String clientName, String state) {
+        return CollectorRegistry.defaultRegistry.getSampleValue("rest_client_connections",
+                new String[]{"client", "state"}, new String[]{clientName, state});
+    }
 }
@@ -0,0 +1,110 @@
+package uk.gov.pay.products.client.publicapi;
+
+import org.junit.Test;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertThrows;
+
+public class PaymentLookupCoalescerTest {
+
+    private final PaymentLookupCoalescer paymentLookupCoalescer = new PaymentLookupCoalescer();
+
+    @Test
+    public void shouldShareOneCall_betweenConcurrentLookupsOfTheSamePayment() {
+        AtomicInteger numberOfCalls = new AtomicInteger();
+        CompletableFuture<Optional<PaymentResponse>> publicApiCall = new CompletableFuture<>();
+        PaymentResponse paymentResponse = new PaymentResponse();
+
+        CompletableFuture<Optional<PaymentResponse>> firstLookup = paymentLookupCoalescer.lookUpAsync("api-token", "payment-id",
+                () -> { numberOfCalls.incrementAndGet(); return publicApiCall; });
+        CompletableFuture<Optional<PaymentResponse>> secondLookup = paymentLookupCoalescer.lookUpAsync("api-token", "payment-id",
+                () -> { numberOfCalls.incrementAndGet(); return new CompletableFuture<>(); });
+        publicApiCall.complete(Optional.of(paymentResponse));
+
+        assertThat(numberOfCalls.get(), is(1));
+        assertThat(firstLookup.join().get(), is(sameInstance(paymentResponse)));
+        assertThat(secondLookup.join().get(), is(sameInstance(paymentResponse)));
+    }
+
+    @Test
+    public void shouldCallPublicApiAgain_onceTheCallInFlightCompleted() {
+        AtomicInteger numberOfCalls = new AtomicInteger();
+
+        paymentLookupCoalescer.lookUpAsync("api-token", "payment-id",
+                () -> { numberOfCalls.incrementAndGet(); return CompletableFuture.completedFuture(Optional.empty()); }).join();
+        paymentLookupCoalescer.lookUpAsync("api-token", "payment-id",
+                () -> { numberOfCalls.incrementAndGet(); return CompletableFuture.completedFuture(Optional.empty()); }).join();
+
+        assertThat(numberOfCalls.get(), is(2));
+    }
+
+    @Test
+    public void shouldNotShareCalls_betweenLookupsOfDifferentPaymentsOrWithDifferentApiTokens() {
+        AtomicInteger numberOfCalls = new AtomicInteger();
+
+        paymentLookupCoalescer.lookUpAsync("api-token", "payment-id", () -> { numberOfCalls.incrementAndGet(); return new CompletableFuture<>(); });
+        paymentLookupCoalescer.lookUpAsync("api-token", "another-payment-id", () -> { numberOfCalls.incrementAndGet(); return new CompletableFuture<>(); });
+        paymentLookupCoalescer.lookUpAsync("another-api-token", "payment-id", () -> { numberOfCalls.incrementAndGet(); return new CompletableFuture<>(); });
+
+        assertThat(numberOfCalls.get(), is(3));
+    }
+
+    @Test
+    public void shouldNotCancelTheSharedCall_whenOneLookupIsCancelled() {
+        CompletableFuture<Optional<PaymentResponse>> publicApiCall = new CompletableFuture<>();
+        CompletableFuture<Optional<PaymentResponse>> firstLookup = paymentLookupCoalescer.lookUpAsync("api-token", "payment-id", () -> publicApiCall);
+        CompletableFuture<Optional<PaymentResponse>> secondLookup = paymentLookupCoalescer.lookUpAsync("api-token", "payment-id", CompletableFuture::new);
+
+        firstLookup.cancel(false);
+        publicApiCall.complete(Optional.empty());
+
+        assertThat(publicApiCall.isCancelled(), is(false));
+        assertThat(secondLookup.join(), is(Optional.empty()));
+    }
+
+    @Test
+    public void shouldGiveTheErrorOfTheSharedCallToEveryLookup() throws Exception {
+        CountDownLatch callStarted = new CountDownLatch(1);
+        CountDownLatch callMayFinish = new CountDownLatch(1);
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        try {
+            Future<Optional<PaymentResponse>> firstLookup = executorService.submit(() -> paymentLookupCoalescer.lookUp("api-token", "payment-id", () -> {
+                callStarted.countDown();
+                awaitUninterruptibly(callMayFinish);
+                throw new IllegalStateException("public API returned 500");
+            }));
+            callStarted.await(5, SECONDS);
+
+            CompletableFuture<Optional<PaymentResponse>> secondLookup = paymentLookupCoalescer.lookUpAsync("api-token", "payment-id", CompletableFuture::new);
+            callMayFinish.countDown();
+
+            CompletionException exception = assertThrows(CompletionException.class, secondLookup::join);
+            assertThat(exception.getCause(), instanceOf(IllegalStateException.class));
+            Exception firstLookupException = assertThrows(Exception.class, () -> firstLookup.get(5, SECONDS));
+            assertThat(firstLookupException.getCause(), instanceOf(IllegalStateException.class));
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        try {
+            latch.await(5, SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
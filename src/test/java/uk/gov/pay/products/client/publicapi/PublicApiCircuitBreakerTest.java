@@ -0,0 +1,104 @@
+package uk.gov.pay.products.client.publicapi;
+
+import io.dropwizard.util.Duration;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import uk.gov.pay.products.config.PublicApiCircuitBreakerConfig;
+import uk.gov.pay.products.exception.PublicApiResponseErrorException;
+import uk.gov.pay.products.exception.PublicApiUnavailableException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class PublicApiCircuitBreakerTest {
+
+    @Mock
+    private PublicApiCircuitBreakerConfig config;
+
+    private PublicApiCircuitBreaker publicApiCircuitBreaker;
+
+    @Before
+    public void setup() {
+        when(config.getFailureRateThreshold()).thenReturn(50);
+        when(config.getSlowCallRateThreshold()).thenReturn(100);
+        when(config.getSlowCallDurationThreshold()).thenReturn(Duration.seconds(10));
+        when(config.getSlidingWindowSize()).thenReturn(4);
+        when(config.getMinimumNumberOfCalls()).thenReturn(4);
+        when(config.getWaitDurationInOpenState()).thenReturn(Duration.minutes(1));
+        when(config.getPermittedNumberOfCallsInHalfOpenState()).thenReturn(1);
+        when(config.getMaxConcurrentCalls()).thenReturn(1);
+        when(config.getMaxWaitForConcurrentCall()).thenReturn(Duration.milliseconds(0));
+        publicApiCircuitBreaker = new PublicApiCircuitBreaker(config);
+    }
+
+    @Test
+    public void shouldFailFast_onceTooManyCallsFailed() {
+        for (int i = 0; i < 4; i++) {
+            assertThrows(PublicApiResponseErrorException.class,
+                    () -> publicApiCircuitBreaker.call(() -> { throw aPublicApiResponseErrorException(500); }));
+        }
+
+        AtomicInteger numberOfCalls = new AtomicInteger();
+        assertThrows(PublicApiUnavailableException.class,
+                () -> publicApiCircuitBreaker.call(numberOfCalls::incrementAndGet));
+
+        assertThat(publicApiCircuitBreaker.getState(), is(CircuitBreaker.State.OPEN));
+        assertThat(numberOfCalls.get(), is(0));
+    }
+
+    @Test
+    public void shouldNotCountClientErrorsAsFailures() {
+        for (int i = 0; i < 4; i++) {
+            assertThrows(PublicApiResponseErrorException.class,
+                    () -> publicApiCircuitBreaker.call(() -> { throw aPublicApiResponseErrorException(400); }));
+        }
+
+        assertThat(publicApiCircuitBreaker.call(() -> "a payment"), is("a payment"));
+        assertThat(publicApiCircuitBreaker.getState(), is(CircuitBreaker.State.CLOSED));
+    }
+
+    @Test
+    public void shouldFailFast_whenMaxConcurrentCallsAreInProgress() {
+        CompletableFuture<String> callInProgress = new CompletableFuture<>();
+        publicApiCircuitBreaker.callAsync(() -> callInProgress);
+
+        PublicApiUnavailableException exception = assertThrows(PublicApiUnavailableException.class,
+                () -> publicApiCircuitBreaker.call(() -> "a payment"));
+
+        assertThat(exception.getCause(), instanceOf(BulkheadFullException.class));
+        callInProgress.complete("a payment");
+        assertThat(publicApiCircuitBreaker.call(() -> "another payment"), is("another payment"));
+    }
+
+    @Test
+    public void shouldCompleteAsyncCallsExceptionallyWithPublicApiUnavailable_onceTooManyCallsFailed() {
+        for (int i = 0; i < 4; i++) {
+            publicApiCircuitBreaker.callAsync(() -> CompletableFuture.failedFuture(new RuntimeException("connection refused")));
+        }
+
+        CompletableFuture<String> result = publicApiCircuitBreaker.callAsync(() -> CompletableFuture.completedFuture("a payment"));
+
+        CompletionException exception = assertThrows(CompletionException.class, result::join);
+        assertThat(exception.getCause(), instanceOf(PublicApiUnavailableException.class));
+    }
+
+    private static PublicApiResponseErrorException aPublicApiResponseErrorException(int status) {
+        PublicApiResponseErrorException exception = mock(PublicApiResponseErrorException.class);
+        when(exception.getErrorStatus()).thenReturn(status);
+        return exception;
+    }
+}
@@ -3,9 +3,12 @@ package uk.gov.pay.products.client.publicapi;
 import com.github.tomakehurst.wiremock.junit.WireMockRule;
 import io.dropwizard.util.Duration;
 import org.apache.hc.core5.http.HttpStatus;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.glassfish.jersey.apache.connector.ApacheClientProperties;
 import org.junit.ClassRule;
 import org.junit.Test;
 import uk.gov.pay.products.client.RestClientFactory;
+import uk.gov.pay.products.config.PublicApiCircuitBreakerConfig;
 import uk.gov.pay.products.config.RestClientConfiguration;
 import uk.gov.pay.products.exception.PublicApiResponseErrorException;
 import uk.gov.pay.products.stubs.publicapi.PublicApiStub;
@@ -16,12 +19,15 @@ import jakarta.json.JsonObject;
 import jakarta.ws.rs.client.Client;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletionException;
 
 import static junit.framework.TestCase.assertTrue;
 import static org.apache.hc.core5.http.HttpStatus.SC_BAD_REQUEST;
+import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -46,8 +52,15 @@ public class PublicApiRestClientTest {
         restClientConfiguration = mock(RestClientConfiguration.class);
         when(restClientConfiguration.getConnectTimeout()).thenReturn(FIFTY_SECONDS);
         when(restClientConfiguration.getReadTimeout()).thenReturn(FIFTY_SECONDS);
-        client =  RestClientFactory.buildClient(restClientConfiguration);
-        publicApiRestClient = new PublicApiRestClient(client, "http://localhost:" + PUBLIC_API_PORT);
+        when(restClientConfiguration.getMaxConnections()).thenReturn(10);
+        when(restClientConfiguration.getMaxConnectionsPerRoute()).thenReturn(10);
+        when(restClientConfiguration.getConnectionRequestTimeout()).thenReturn(FIFTY_SECONDS);
+        when(restClientConfiguration.getConnectionTimeToLive()).thenReturn(Duration.minutes(15));
+        when(restClientConfiguration.getIdleConnectionTimeout()).thenReturn(Duration.seconds(30));
+        when(restClientConfiguration.getValidateAfterInactivity()).thenReturn(Duration.seconds(2));
+        client =  RestClientFactory.buildClient("publicapi", restClientConfiguration);
+        publicApiRestClient = new PublicApiRestClient(client, "http://localhost:" + PUBLIC_API_PORT,
+                new PublicApiCircuitBreaker(new PublicApiCircuitBreakerConfig()));
     }
 
     @Test
@@ -128,6 +141,57 @@ public class PublicApiRestClientTest {
         }
     }
 
+    @Test
+    public void createPaymentAsync_shouldCreateANewPayment() {
+        String paymentId = "hu20sqlact5260q2nanm0q8u93";
+        long amount = 2000;
+        String reference = "a-reference";
+        String description = "A Service Description";
+        String returnUrl = "http://return.url";
+        String nextUrl = "http://next.url";
+        String apiToken = "api-token";
+        SupportedLanguage language = SupportedLanguage.ENGLISH;
+        Map<String, String> metadata = Map.of("key", "value");
+
+        JsonObject expectedPaymentRequestPayload = createPaymentRequestPayload(
+                amount, reference, description, returnUrl, language.toString(), false, metadata);
+        JsonObject paymentResponsePayload = PublicApiStub.createPaymentResponsePayload(
+                paymentId, amount, reference, description, returnUrl, nextUrl, language.toString(),
+                metadata);
+
+        setupResponseToCreatePaymentRequest(apiToken, expectedPaymentRequestPayload, paymentResponsePayload);
+
+        PaymentRequest paymentRequest = new PaymentRequest(amount, reference, description, returnUrl, language, false, metadata, CARD_PAYMENT_LINK);
+        PaymentResponse actualPaymentResponse = publicApiRestClient.createPaymentAsync(apiToken, paymentRequest).join();
+
+        assertThat(actualPaymentResponse, hasAllPaymentProperties(paymentResponsePayload));
+    }
+
+    @Test
+    public void createPaymentAsync_shouldCompleteExceptionallyWhenBadRequest() {
+        long amount = 2000;
+        String reference = "a-reference";
+        String description = "A Service Description";
+        String returnUrl = "http://return.url";
+        String apiToken = "api-token";
+        SupportedLanguage language = SupportedLanguage.ENGLISH;
+
+        JsonObject expectedPaymentRequestPayload = createPaymentRequestPayload(amount, reference, description, returnUrl, language.toString(), false, null);
+        JsonObject errorPayload = PublicApiStub.createErrorPayload("a-field", "a-code", "A description");
+
+        setupResponseToCreatePaymentRequest(apiToken, expectedPaymentRequestPayload, errorPayload, SC_BAD_REQUEST);
+
+        PaymentRequest paymentRequest = new PaymentRequest(amount, reference, description, returnUrl, language, false, Map.of(), CARD_PAYMENT_LINK);
+
+        CompletionException completionException = assertThrows(CompletionException.class,
+                () -> publicApiRestClient.createPaymentAsync(apiToken, paymentRequest).join());
+        assertThat(completionException.getCause(), instanceOf(PublicApiResponseErrorException.class));
+        PublicApiResponseErrorException exception = (PublicApiResponseErrorException) completionException.getCause();
+        assertThat(exception.getErrorStatus(), is(400));
+        assertThat(exception.getCode(), is(errorPayload.getString("code")));
+        assertThat(exception.getDescription(), is(errorPayload.getString("description")));
+    }
+
     @Test
     public void findPayment_shouldFindAPayment() {
         long amount = 2000;
@@ -160,6 +224,22 @@ public class PublicApiRestClientTest {
         assertFalse(actualPaymentResponse.isPresent());
     }
 
+    @Test
+    public void findPayment_shouldReturnConnectionToThePool_whenPaymentIsNotFound() {
+        String paymentId = "hu20sqlact5260q2nanm0q8u93";
+        String apiToken = "api-token";
+
+        setupResponseToGetPaymentRequest(paymentId, HttpStatus.SC_NOT_FOUND);
+
+        // more lookups than there are connections in the pool, which would wait for a connection if one were leaked
+        for (int i = 0; i <= restClientConfiguration.getMaxConnections(); i++) {
+            assertFalse(publicApiRestClient.getPayment(apiToken, paymentId).isPresent());
+        }
+        PoolingHttpClientConnectionManager connectionManager = (PoolingHttpClientConnectionManager)
+                client.getConfiguration().getProperty(ApacheClientProperties.CONNECTION_MANAGER);
+        assertThat(connectionManager.getTotalStats().getLeased(), is(0));
+    }
+
     @Test
     public void findPayment_shouldThrowAnException() {
         String paymentId = "hu20sqlact5260q2nanm0q8u93";
@@ -178,4 +258,36 @@ public class PublicApiRestClientTest {
             assertThat(exception.getDescription(), is(errorPayload.getString("description")));
         }
     }
+
+    @Test
+    public void findPaymentAsync_shouldFindAPayment() {
+        long amount = 2000;
+        String paymentId = "hu20sqlact5260q2nanm0q8u93";
+        String reference = "a-reference";
+        String description = "A Service Description";
+        String returnUrl = "http://return.url";
+        String nextUrl = "http://next.url";
+        String apiToken = "api-token";
+        SupportedLanguage language = SupportedLanguage.WELSH;
+
+        JsonObject paymentResponsePayload = PublicApiStub.createPaymentResponsePayload(
+                paymentId, amount, reference, description, returnUrl, nextUrl, language.toString(), null);
+
+        setupResponseToGetPaymentRequest(paymentId, paymentResponsePayload);
+
+        Optional<PaymentResponse> actualPaymentResponse = publicApiRestClient.getPaymentAsync(apiToken, paymentId).join();
+        assertTrue(actualPaymentResponse.isPresent());
+        assertThat(actualPaymentResponse.get(), hasAllPaymentProperties(paymentResponsePayload));
+    }
+
+    @Test
+    public void findPaymentAsync_shouldNotFindAPayment() {
+        String paymentId = "hu20sqlact5260q2nanm0q8u93";
+        String apiToken = "api-token";
+
+        setupResponseToGetPaymentRequest(paymentId, HttpStatus.SC_NOT_FOUND);
+
+        Optional<PaymentResponse> actualPaymentResponse = publicApiRestClient.getPaymentAsync(apiToken, paymentId).join();
+        assertFalse(actualPaymentResponse.isPresent());
+    }
 }
@@ -3,6 +3,7 @@ package uk.gov.pay.products.extension;
 import com.github.tomakehurst.wiremock.WireMockServer;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
+import io.dropwizard.testing.ConfigOverride;
 import io.dropwizard.testing.junit5.DropwizardAppExtension;
 import io.restassured.specification.RequestSpecification;
 import org.jdbi.v3.core.Jdbi;
@@ -22,6 +23,8 @@ import uk.gov.pay.products.utils.DatabaseTestHelper;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.stream.Stream;
 
 import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
 import static io.dropwizard.testing.ConfigOverride.config;
@@ -43,15 +46,20 @@ public class ProductsAppWithPostgresExtension implements BeforeEachCallback, Bef
     private static final Jdbi jdbi;
     private static final DatabaseTestHelper databaseTestHelper;
 
-    public ProductsAppWithPostgresExtension() {
+    /**
+     * @param configOverrides overrides of test-it-config.yaml, for tests of features it disables
+     */
+    public ProductsAppWithPostgresExtension(ConfigOverride... configOverrides) {
         publicApi.start();
         this.dropwizardAppExtension = new DropwizardAppExtension<>(
                 ProductsApplication.class,
                 resourceFilePath("config/test-it-config.yaml"),
-                config("database.url", postgresContainer.getJdbcUrl()),
-                config("database.user", DB_USERNAME),
-                config("database.password", DB_PASSWORD),
-                config("publicApiUrl", "http://localhost:" + publicApi.port())
+                Stream.concat(Stream.of(
+                        config("database.url", postgresContainer.getJdbcUrl()),
+                        config("database.user", DB_USERNAME),
+                        config("database.password", DB_PASSWORD),
+                        config("publicApiUrl", "http://localhost:" + publicApi.port())
+                ), Arrays.stream(configOverrides)).toArray(ConfigOverride[]::new)
         );
 
         try {
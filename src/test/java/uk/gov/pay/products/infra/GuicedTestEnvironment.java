@@ -1,23 +1,26 @@
 package uk.gov.pay.products.infra;
 
+import com.codahale.metrics.MetricRegistry;
 import com.google.inject.AbstractModule;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
 import com.google.inject.Singleton;
 import com.google.inject.persist.PersistService;
 import com.google.inject.persist.jpa.JpaPersistModule;
+import io.dropwizard.db.DataSourceFactory;
+import io.dropwizard.db.ManagedDataSource;
 import uk.gov.pay.products.persistence.dao.ProductDao;
 
 public class GuicedTestEnvironment {
 
     private final Injector injector;
 
-    private GuicedTestEnvironment(JpaPersistModule persistModule) {
-        injector = Guice.createInjector(new DataAccessModule(),persistModule);
+    private GuicedTestEnvironment(JpaPersistModule persistModule, DataSourceFactory dataSourceFactory) {
+        injector = Guice.createInjector(new DataAccessModule(dataSourceFactory),persistModule);
     }
 
-    public static GuicedTestEnvironment from(JpaPersistModule persistModule) {
-        return new GuicedTestEnvironment(persistModule);
+    public static GuicedTestEnvironment from(JpaPersistModule persistModule, DataSourceFactory dataSourceFactory) {
+        return new GuicedTestEnvironment(persistModule, dataSourceFactory);
     }
 
     public GuicedTestEnvironment start() {
@@ -36,8 +39,16 @@ public class GuicedTestEnvironment {
 
     class DataAccessModule extends AbstractModule {
 
+        private final DataSourceFactory dataSourceFactory;
+
+        DataAccessModule(DataSourceFactory dataSourceFactory) {
+            this.dataSourceFactory = dataSourceFactory;
+        }
+
         @Override
         protected void configure() {
+            bind(DataSourceFactory.class).toInstance(dataSourceFactory);
+            bind(ManagedDataSource.class).toInstance(dataSourceFactory.build(new MetricRegistry(), "products-test"));
             bind(ProductDao.class).in(Singleton.class);
         }
     }
@@ -1,6 +1,7 @@
 package uk.gov.pay.products.persistence.dao;
 
 import com.google.inject.persist.jpa.JpaPersistModule;
+import io.dropwizard.db.DataSourceFactory;
 import liquibase.Liquibase;
 import liquibase.database.jvm.JdbcConnection;
 import liquibase.resource.ClassLoaderResourceAccessor;
@@ -47,7 +48,12 @@ public class DaoTestBase {
             migrator.update("");
         }
 
-        env = GuicedTestEnvironment.from(jpaModule).start();
+        DataSourceFactory dataSourceFactory = new DataSourceFactory();
+        dataSourceFactory.setUrl(postgres.getConnectionUrl());
+        dataSourceFactory.setUser(postgres.getUsername());
+        dataSourceFactory.setPassword(postgres.getPassword());
+
+        env = GuicedTestEnvironment.from(jpaModule, dataSourceFactory).start();
     }
 
     @AfterClass
@@ -0,0 +1,100 @@
+package uk.gov.pay.products.persistence.dao;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import uk.gov.pay.products.persistence.entity.PaymentCreationOutboxEntity;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.List;
+
+import static java.time.ZoneOffset.UTC;
+import static java.time.temporal.ChronoUnit.SECONDS;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static uk.gov.pay.products.util.RandomIdGenerator.randomUuid;
+
+public class PaymentCreationOutboxDaoIT extends DaoTestBase {
+
+    private static final Duration CLAIM_DURATION = Duration.ofSeconds(30);
+
+    private PaymentCreationOutboxDao paymentCreationOutboxDao;
+
+    @Before
+    public void before() {
+        paymentCreationOutboxDao = env.getInstance(PaymentCreationOutboxDao.class);
+    }
+
+    @After
+    public void after() {
+        databaseHelper.truncateAllData();
+    }
+
+    @Test
+    public void shouldClaimOldestPaymentsFirst_andNotClaimThemAgainUntilTheirClaimRunsOut() {
+        String firstPaymentExternalId = randomUuid();
+        String secondPaymentExternalId = randomUuid();
+        String thirdPaymentExternalId = randomUuid();
+        paymentCreationOutboxDao.persist(new PaymentCreationOutboxEntity(firstPaymentExternalId, 150L));
+        paymentCreationOutboxDao.persist(new PaymentCreationOutboxEntity(secondPaymentExternalId, null));
+        paymentCreationOutboxDao.persist(new PaymentCreationOutboxEntity(thirdPaymentExternalId, null));
+        ZonedDateTime now = ZonedDateTime.now(UTC);
+
+        List<PaymentCreationOutboxEntity> firstClaim = paymentCreationOutboxDao.claim(now, CLAIM_DURATION, 2);
+        List<PaymentCreationOutboxEntity> secondClaim = paymentCreationOutboxDao.claim(now, CLAIM_DURATION, 2);
+        List<PaymentCreationOutboxEntity> claimAfterClaimsRunOut = paymentCreationOutboxDao.claim(now.plusSeconds(61), CLAIM_DURATION, 2);
+
+        assertThat(firstClaim.stream().map(PaymentCreationOutboxEntity::getPaymentExternalId).toList(),
+                contains(firstPaymentExternalId, secondPaymentExternalId));
+        assertThat(firstClaim.get(0).getPriceOverride(), is(150L));
+        assertThat(firstClaim.get(0).getAttempts(), is(1));
+        assertThat(secondClaim.stream().map(PaymentCreationOutboxEntity::getPaymentExternalId).toList(),
+                contains(thirdPaymentExternalId));
+        assertThat(claimAfterClaimsRunOut.stream().map(PaymentCreationOutboxEntity::getPaymentExternalId).toList(),
+                contains(firstPaymentExternalId, secondPaymentExternalId));
+        assertThat(claimAfterClaimsRunOut.get(0).getAttempts(), is(2));
+    }
+
+    @Test
+    public void shouldClaimEachPaymentOfABatchForOneMoreClaimDurationThanThePaymentBeforeIt() {
+        String firstPaymentExternalId = randomUuid();
+        String secondPaymentExternalId = randomUuid();
+        paymentCreationOutboxDao.persist(new PaymentCreationOutboxEntity(firstPaymentExternalId, null));
+        paymentCreationOutboxDao.persist(new PaymentCreationOutboxEntity(secondPaymentExternalId, null));
+        ZonedDateTime now = ZonedDateTime.now(UTC).truncatedTo(SECONDS);
+
+        List<PaymentCreationOutboxEntity> claim = paymentCreationOutboxDao.claim(now, CLAIM_DURATION, 2);
+        List<PaymentCreationOutboxEntity> claimAfterFirstClaimRunsOut = paymentCreationOutboxDao.claim(now.plusSeconds(31), CLAIM_DURATION, 2);
+
+        assertThat(claim.get(0).getClaimedUntil().toInstant(), is(now.plusSeconds(30).toInstant()));
+        assertThat(claim.get(1).getClaimedUntil().toInstant(), is(now.plusSeconds(60).toInstant()));
+        assertThat(claimAfterFirstClaimRunsOut.stream().map(PaymentCreationOutboxEntity::getPaymentExternalId).toList(),
+                contains(firstPaymentExternalId));
+    }
+
+    @Test
+    public void shouldOnlyFindPaymentsStillInTheOutbox() {
+        String paymentExternalId = randomUuid();
+        paymentCreationOutboxDao.persist(new PaymentCreationOutboxEntity(paymentExternalId, null));
+
+        assertThat(paymentCreationOutboxDao.existsByPaymentExternalId(paymentExternalId), is(true));
+
+        paymentCreationOutboxDao.deleteByPaymentExternalId(paymentExternalId);
+
+        assertThat(paymentCreationOutboxDao.existsByPaymentExternalId(paymentExternalId), is(false));
+    }
+
+    @Test
+    public void shouldDeleteOutboxRowOfPayment() {
+        String paymentExternalId = randomUuid();
+        paymentCreationOutboxDao.persist(new PaymentCreationOutboxEntity(paymentExternalId, null));
+
+        assertThat(paymentCreationOutboxDao.deleteByPaymentExternalId(paymentExternalId), is(1));
+
+        ZonedDateTime now = ZonedDateTime.now(UTC);
+        assertThat(paymentCreationOutboxDao.claim(now, CLAIM_DURATION, 10), is(empty()));
+    }
+}
@@ -9,20 +9,27 @@ import uk.gov.pay.products.persistence.entity.PaymentEntity;
 import uk.gov.pay.products.persistence.entity.ProductEntity;
 import uk.gov.pay.products.util.PaymentStatus;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.time.ZonedDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static java.time.ZoneOffset.UTC;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static uk.gov.pay.products.util.PaymentStatus.CREATED;
 import static uk.gov.pay.products.util.PaymentStatus.ERROR;
+import static uk.gov.pay.products.util.PaymentStatus.SUBMITTED;
 import static uk.gov.pay.products.util.RandomIdGenerator.randomInt;
+import static uk.gov.pay.products.util.RandomIdGenerator.randomUserFriendlyReference;
 import static uk.gov.pay.products.util.RandomIdGenerator.randomUuid;
 import static uk.gov.pay.products.utils.TestHelpers.createPaymentEntity;
 
@@ -82,6 +89,44 @@ public class PaymentDaoIT extends DaoTestBase {
         assertNotNull(paymentEntity.get().getDateCreated());
     }
 
+    @Test
+    public void shouldStoreGovukStatusOfPayment() {
+        PaymentEntity payment = addPaymentToDB(createPaymentEntity(productEntity, SUBMITTED, "MH2KJY5KPX", randomInt()));
+        ZonedDateTime checkedAt = ZonedDateTime.parse("2024-03-01T10:15:30.123Z");
+
+        paymentDao.updateGovukStatus(payment.getExternalId(), "success", true, checkedAt);
+
+        Optional<PaymentEntity> paymentEntity = paymentDao.findByExternalId(payment.getExternalId());
+        assertThat(paymentEntity.get().getGovukStatus(), is("success"));
+        assertThat(paymentEntity.get().isGovukStatusFinished(), is(true));
+        assertThat(paymentEntity.get().getGovukStatusCheckedAt().toInstant(), is(checkedAt.toInstant()));
+        assertThat(paymentEntity.get().toPayment().getGovUkStatus(), is("success"));
+    }
+
+    @Test
+    public void shouldClaimOnlyDuePaymentsForGovukStatusCheck_includingNeverCheckedOldPayments_oldestFirst() {
+        ZonedDateTime now = ZonedDateTime.parse("2022-03-03T10:15:30Z");
+        PaymentEntity olderPayment = addPaymentToDB(aSubmittedPaymentEntity(now.minusHours(2)));
+        PaymentEntity newerPayment = addPaymentToDB(aSubmittedPaymentEntity(now.minusHours(1)));
+        PaymentEntity recentlyCheckedPayment = addPaymentToDB(aSubmittedPaymentEntity(now.minusHours(1)));
+        paymentDao.updateGovukStatus(recentlyCheckedPayment.getExternalId(), "started", false, now.minusMinutes(1));
+        PaymentEntity finishedPayment = addPaymentToDB(aSubmittedPaymentEntity(now.minusHours(1)));
+        paymentDao.updateGovukStatus(finishedPayment.getExternalId(), "success", true, now.minusHours(1));
+        PaymentEntity neverCheckedOldPayment = addPaymentToDB(aSubmittedPaymentEntity(now.minusDays(10)));
+        PaymentEntity checkedOldPayment = addPaymentToDB(aSubmittedPaymentEntity(now.minusDays(10)));
+        paymentDao.updateGovukStatus(checkedOldPayment.getExternalId(), "started", false, now.minusDays(9));
+        addPaymentToDB(createPaymentEntity(productEntity, now, 0));
+
+        List<PaymentEntity> claimedPayments = paymentDao.claimForGovukStatusCheck(now, now.minusDays(7), 10,
+                Duration.ofSeconds(30), Duration.ofHours(6), 10);
+
+        assertThat(claimedPayments.stream().map(PaymentEntity::getExternalId).toList(),
+                is(List.of(neverCheckedOldPayment.getExternalId(), olderPayment.getExternalId(), newerPayment.getExternalId())));
+        assertThat(claimedPayments.get(0).getGovukStatusCheckedAt().toInstant(), is(now.toInstant()));
+        assertThat(paymentDao.claimForGovukStatusCheck(now, now.minusDays(7), 10,
+                Duration.ofSeconds(30), Duration.ofHours(6), 10).isEmpty(), is(true));
+    }
+
     @Test
     public void shouldSucceed_whenSavingAValidPayment() {
         String externalId = randomUuid();
@@ -168,9 +213,93 @@ public class PaymentDaoIT extends DaoTestBase {
         assertThat(paymentDao.findByExternalId(payment4.getExternalId()).isPresent(), is(false));
     }
     
+    @Test
+    public void shouldReserveReferenceNumberOnlyOncePerGatewayAccount() {
+        Integer gatewayAccountId = randomInt();
+
+        assertTrue(paymentDao.reserveReferenceNumber(gatewayAccountId, "MH2KJY5KPW"));
+        assertFalse(paymentDao.reserveReferenceNumber(gatewayAccountId, "MH2KJY5KPW"));
+        assertTrue(paymentDao.reserveReferenceNumber(gatewayAccountId + 1, "MH2KJY5KPW"));
+        assertTrue(paymentDao.reserveReferenceNumber(gatewayAccountId, "MH2KJY5KPX"));
+    }
+
+    @Test
+    public void shouldReserveOnlyFreeReferenceNumbers_whenReservingInBulk() {
+        Integer gatewayAccountId = randomInt();
+        paymentDao.reserveReferenceNumber(gatewayAccountId, "MH2KJY5KPW");
+
+        List<String> reservedReferenceNumbers = paymentDao.reserveReferenceNumbers(gatewayAccountId,
+                List.of("MH2KJY5KPW", "MH2KJY5KPX", "MH2KJY5KPY", "MH2KJY5KPY"));
+
+        assertThat(reservedReferenceNumbers, containsInAnyOrder("MH2KJY5KPX", "MH2KJY5KPY"));
+    }
+
+    @Test
+    public void shouldCountPaymentsCreatedBefore_upToMaxNumberOfPayments() {
+        ZonedDateTime maxDate = ZonedDateTime.ofInstant(Instant.parse("2022-03-03T10:15:30Z"), UTC);
+        addPaymentToDB(createPaymentEntity(productEntity, maxDate, -1));
+        addPaymentToDB(createPaymentEntity(productEntity, maxDate, 1));
+        addPaymentToDB(createPaymentEntity(productEntity, maxDate, 2));
+        addPaymentToDB(createPaymentEntity(productEntity, maxDate, 3));
+
+        assertThat(paymentDao.countPaymentsCreatedBefore(maxDate, 10), is(3));
+        assertThat(paymentDao.countPaymentsCreatedBefore(maxDate, 2), is(2));
+        assertThat(paymentDao.findByProductExternalId(productEntity.getExternalId()).size(), is(4));
+    }
+
+    @Test
+    public void shouldTakeDeletedPaymentsOffProductUsageStats() {
+        ZonedDateTime maxDate = ZonedDateTime.ofInstant(Instant.parse("2022-03-03T10:15:30Z"), UTC);
+        addPaymentToDB(createPaymentEntity(productEntity, maxDate, -1));
+        addPaymentToDB(createPaymentEntity(productEntity, maxDate, 2));
+        addPaymentToDB(createPaymentEntity(productEntity, maxDate, 3));
+
+        paymentDao.deletePayments(maxDate, 10);
+        env.getInstance(ProductUsageStatsDao.class).foldDeltas(1000);
+
+        Map<String, Object> productUsageStats = databaseHelper.findProductUsageStats(productEntity.getId()).orElseThrow();
+        assertThat(productUsageStats.get("payment_count"), is(1L));
+        assertThat(productUsageStats.get("last_payment_date"), is(notNullValue()));
+    }
+
+    @Test
+    public void shouldClearLastPaymentDate_whenAllPaymentsOfProductAreDeleted() {
+        ZonedDateTime maxDate = ZonedDateTime.ofInstant(Instant.parse("2022-03-03T10:15:30Z"), UTC);
+        addPaymentToDB(createPaymentEntity(productEntity, maxDate, 1));
+        addPaymentToDB(createPaymentEntity(productEntity, maxDate, 2));
+
+        paymentDao.deletePayments(maxDate, 10);
+        env.getInstance(ProductUsageStatsDao.class).foldDeltas(1000);
+
+        Map<String, Object> productUsageStats = databaseHelper.findProductUsageStats(productEntity.getId()).orElseThrow();
+        assertThat(productUsageStats.get("payment_count"), is(0L));
+        assertThat(productUsageStats.get("last_payment_date"), is(nullValue()));
+    }
+
+    @Test
+    public void shouldReleaseReferenceNumbersOfDeletedPayments() {
+        ZonedDateTime maxDate = ZonedDateTime.ofInstant(Instant.parse("2022-03-03T10:15:30Z"), UTC);
+        PaymentEntity paymentEntity = addPaymentToDB(createPaymentEntity(productEntity, maxDate, 1));
+        paymentDao.reserveReferenceNumber(paymentEntity.getGatewayAccountId(), paymentEntity.getReferenceNumber());
+
+        paymentDao.deletePayments(maxDate, 10);
+
+        assertTrue(paymentDao.reserveReferenceNumber(paymentEntity.getGatewayAccountId(), paymentEntity.getReferenceNumber()));
+    }
+
     @Test
     public void shouldDeleteZeroPayments() {
         int numberOfPaymentsDeleted = paymentDao.deletePayments(ZonedDateTime.now(), 10);
         assertThat(numberOfPaymentsDeleted, is(0));
     }
+
+    private PaymentEntity aSubmittedPaymentEntity(ZonedDateTime dateCreated) {
+        return PaymentEntityFixture.aPaymentEntity()
+                .withStatus(SUBMITTED)
+                .withProduct(productEntity)
+                .withReferenceNumber(randomUserFriendlyReference())
+                .withGatewayAccountId(randomInt())
+                .withDateCreated(dateCreated)
+                .build();
+    }
 }
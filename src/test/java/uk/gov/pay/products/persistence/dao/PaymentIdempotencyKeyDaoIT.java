@@ -0,0 +1,94 @@
+package uk.gov.pay.products.persistence.dao;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import uk.gov.pay.products.persistence.dao.PaymentIdempotencyKeyDao.ClaimedIdempotencyKey;
+
+import java.time.ZonedDateTime;
+import java.util.Optional;
+
+import static java.time.ZoneOffset.UTC;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static uk.gov.pay.products.util.RandomIdGenerator.randomUuid;
+
+public class PaymentIdempotencyKeyDaoIT extends DaoTestBase {
+
+    private static final String PRODUCT_EXTERNAL_ID = "product-external-id";
+    private static final String IDEMPOTENCY_KEY = "idempotency-key";
+    private static final String REQUEST_FINGERPRINT = "request-fingerprint";
+
+    private PaymentIdempotencyKeyDao paymentIdempotencyKeyDao;
+
+    @Before
+    public void before() {
+        paymentIdempotencyKeyDao = env.getInstance(PaymentIdempotencyKeyDao.class);
+    }
+
+    @After
+    public void after() {
+        databaseHelper.truncateAllData();
+    }
+
+    @Test
+    public void shouldNotClaimKeyAgain_untilItHasExpired() {
+        String paymentExternalId = randomUuid();
+        String retriedPaymentExternalId = randomUuid();
+        ZonedDateTime now = ZonedDateTime.now(UTC);
+
+        assertThat(paymentIdempotencyKeyDao.claim(PRODUCT_EXTERNAL_ID, IDEMPOTENCY_KEY, paymentExternalId, REQUEST_FINGERPRINT, now, now.plusHours(24)), is(true));
+        assertThat(paymentIdempotencyKeyDao.claim(PRODUCT_EXTERNAL_ID, IDEMPOTENCY_KEY, retriedPaymentExternalId, REQUEST_FINGERPRINT, now.plusHours(1), now.plusHours(25)), is(false));
+        assertThat(findPaymentExternalId(PRODUCT_EXTERNAL_ID, IDEMPOTENCY_KEY, now.plusHours(1)), is(Optional.of(paymentExternalId)));
+
+        assertThat(findPaymentExternalId(PRODUCT_EXTERNAL_ID, IDEMPOTENCY_KEY, now.plusHours(24)), is(Optional.empty()));
+        assertThat(paymentIdempotencyKeyDao.claim(PRODUCT_EXTERNAL_ID, IDEMPOTENCY_KEY, retriedPaymentExternalId, REQUEST_FINGERPRINT, now.plusHours(24), now.plusHours(48)), is(true));
+        assertThat(findPaymentExternalId(PRODUCT_EXTERNAL_ID, IDEMPOTENCY_KEY, now.plusHours(24)), is(Optional.of(retriedPaymentExternalId)));
+    }
+
+    @Test
+    public void shouldClaimSameKeyForDifferentProducts() {
+        ZonedDateTime now = ZonedDateTime.now(UTC);
+
+        assertThat(paymentIdempotencyKeyDao.claim(PRODUCT_EXTERNAL_ID, IDEMPOTENCY_KEY, randomUuid(), REQUEST_FINGERPRINT, now, now.plusHours(24)), is(true));
+        assertThat(paymentIdempotencyKeyDao.claim("another-product-external-id", IDEMPOTENCY_KEY, randomUuid(), REQUEST_FINGERPRINT, now, now.plusHours(24)), is(true));
+    }
+
+    @Test
+    public void shouldReleaseKey_onlyForThePaymentItMapsTo() {
+        String paymentExternalId = randomUuid();
+        ZonedDateTime now = ZonedDateTime.now(UTC);
+        paymentIdempotencyKeyDao.claim(PRODUCT_EXTERNAL_ID, IDEMPOTENCY_KEY, paymentExternalId, REQUEST_FINGERPRINT, now, now.plusHours(24));
+
+        assertThat(paymentIdempotencyKeyDao.release(PRODUCT_EXTERNAL_ID, IDEMPOTENCY_KEY, randomUuid()), is(0));
+        assertThat(paymentIdempotencyKeyDao.release(PRODUCT_EXTERNAL_ID, IDEMPOTENCY_KEY, paymentExternalId), is(1));
+        assertThat(findPaymentExternalId(PRODUCT_EXTERNAL_ID, IDEMPOTENCY_KEY, now), is(Optional.empty()));
+    }
+
+    @Test
+    public void shouldDeleteExpiredKeysOnly() {
+        ZonedDateTime now = ZonedDateTime.now(UTC);
+        paymentIdempotencyKeyDao.claim(PRODUCT_EXTERNAL_ID, "expired-idempotency-key", randomUuid(), REQUEST_FINGERPRINT, now.minusHours(25), now.minusHours(1));
+        paymentIdempotencyKeyDao.claim(PRODUCT_EXTERNAL_ID, IDEMPOTENCY_KEY, randomUuid(), REQUEST_FINGERPRINT, now, now.plusHours(24));
+
+        assertThat(paymentIdempotencyKeyDao.deleteExpired(now), is(1));
+        assertThat(findPaymentExternalId(PRODUCT_EXTERNAL_ID, IDEMPOTENCY_KEY, now).isPresent(), is(true));
+    }
+
+    @Test
+    public void shouldFindFingerprintOfTheRequestThatClaimedTheKey() {
+        String paymentExternalId = randomUuid();
+        ZonedDateTime now = ZonedDateTime.now(UTC);
+        paymentIdempotencyKeyDao.claim(PRODUCT_EXTERNAL_ID, IDEMPOTENCY_KEY, paymentExternalId, REQUEST_FINGERPRINT, now, now.plusHours(24));
+
+        ClaimedIdempotencyKey claimedKey = paymentIdempotencyKeyDao.findClaimedKey(PRODUCT_EXTERNAL_ID, IDEMPOTENCY_KEY, now).orElseThrow();
+
+        assertThat(claimedKey.getPaymentExternalId(), is(paymentExternalId));
+        assertThat(claimedKey.getRequestFingerprint(), is(REQUEST_FINGERPRINT));
+    }
+
+    private Optional<String> findPaymentExternalId(String productExternalId, String idempotencyKey, ZonedDateTime now) {
+        return paymentIdempotencyKeyDao.findClaimedKey(productExternalId, idempotencyKey, now)
+                .map(ClaimedIdempotencyKey::getPaymentExternalId);
+    }
+}
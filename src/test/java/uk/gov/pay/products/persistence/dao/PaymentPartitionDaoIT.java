@@ -0,0 +1,151 @@
+package uk.gov.pay.products.persistence.dao;
+
+import org.jdbi.v3.core.statement.UnableToExecuteStatementException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import uk.gov.pay.products.fixtures.PaymentEntityFixture;
+import uk.gov.pay.products.fixtures.ProductEntityFixture;
+import uk.gov.pay.products.persistence.entity.PaymentEntity;
+import uk.gov.pay.products.persistence.entity.ProductEntity;
+
+import java.time.YearMonth;
+import java.time.ZonedDateTime;
+import java.util.Map;
+
+import static java.time.ZoneOffset.UTC;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.hasItems;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertThrows;
+import static uk.gov.pay.products.util.RandomIdGenerator.randomUuid;
+
+public class PaymentPartitionDaoIT extends DaoTestBase {
+
+    private PaymentPartitionDao paymentPartitionDao;
+    private PaymentDao paymentDao;
+    private ProductEntity productEntity;
+
+    @Before
+    public void before() {
+        paymentPartitionDao = env.getInstance(PaymentPartitionDao.class);
+        paymentDao = env.getInstance(PaymentDao.class);
+        ProductDao productDao = env.getInstance(ProductDao.class);
+        productEntity = productDao.merge(ProductEntityFixture.aProductEntity()
+                .withExternalId(randomUuid())
+                .build());
+    }
+
+    @After
+    public void after() {
+        databaseHelper.truncateAllData();
+    }
+
+    @Test
+    public void shouldFindMonthlyPartitionsCreatedByMigrationAndOnDemand() {
+        YearMonth nextMonth = YearMonth.now(UTC).plusMonths(1);
+        YearMonth month = YearMonth.now(UTC).plusMonths(24);
+
+        paymentPartitionDao.createMonthlyPartition(month);
+        paymentPartitionDao.createMonthlyPartition(month);
+
+        assertThat(paymentPartitionDao.findMonthlyPartitions(), hasItems(nextMonth, month));
+
+        paymentPartitionDao.dropMonthlyPartition(month);
+
+        assertThat(paymentPartitionDao.findMonthlyPartitions(), not(hasItem(month)));
+    }
+
+    @Test
+    public void shouldDropMonthlyPartition_andTakeItsPaymentsOffProductUsageStats() {
+        YearMonth month = YearMonth.now(UTC).plusMonths(25);
+        paymentPartitionDao.createMonthlyPartition(month);
+        PaymentEntity paymentInPartition = addPaymentToDB(aPaymentCreatedAt(month.atDay(15).atStartOfDay(UTC)));
+        PaymentEntity paymentInOtherPartition = addPaymentToDB(aPaymentCreatedAt(ZonedDateTime.now(UTC).minusDays(1)));
+
+        int numberOfDroppedPayments = paymentPartitionDao.dropMonthlyPartition(month);
+
+        assertThat(numberOfDroppedPayments, is(1));
+        assertThat(paymentDao.findByExternalId(paymentInPartition.getExternalId()).isPresent(), is(false));
+        assertThat(paymentDao.findByExternalId(paymentInOtherPartition.getExternalId()).isPresent(), is(true));
+        env.getInstance(ProductUsageStatsDao.class).foldDeltas(1000);
+        Map<String, Object> productUsageStats = databaseHelper.findProductUsageStats(productEntity.getId()).orElseThrow();
+        assertThat(productUsageStats.get("payment_count"), is(1L));
+    }
+
+    @Test
+    public void shouldReleaseExternalIdsOfDroppedPayments() {
+        YearMonth month = YearMonth.now(UTC).plusMonths(26);
+        paymentPartitionDao.createMonthlyPartition(month);
+        String externalId = randomUuid();
+        addPaymentToDB(aPaymentCreatedAt(month.atDay(15).atStartOfDay(UTC), externalId));
+
+        paymentPartitionDao.dropMonthlyPartition(month);
+
+        addPaymentToDB(aPaymentCreatedAt(ZonedDateTime.now(UTC), externalId));
+        assertThat(paymentDao.findByExternalId(externalId).isPresent(), is(true));
+    }
+
+    @Test
+    public void shouldReleaseReferenceNumbersOfDroppedPayments() {
+        YearMonth month = YearMonth.now(UTC).plusMonths(29);
+        paymentPartitionDao.createMonthlyPartition(month);
+        PaymentEntity paymentEntity = addPaymentToDB(aPaymentCreatedAt(month.atDay(15).atStartOfDay(UTC)));
+        paymentDao.reserveReferenceNumber(paymentEntity.getGatewayAccountId(), paymentEntity.getReferenceNumber());
+
+        paymentPartitionDao.dropMonthlyPartition(month);
+
+        assertThat(paymentDao.reserveReferenceNumber(paymentEntity.getGatewayAccountId(), paymentEntity.getReferenceNumber()), is(true));
+    }
+
+    @Test
+    public void shouldDropMonthlyPartition_thatWasDetachedButNotDropped() {
+        YearMonth month = YearMonth.now(UTC).plusMonths(27);
+        paymentPartitionDao.createMonthlyPartition(month);
+        addPaymentToDB(aPaymentCreatedAt(month.atDay(15).atStartOfDay(UTC)));
+        paymentPartitionDao.detachMonthlyPartition(month);
+
+        assertThat(paymentPartitionDao.findMonthlyPartitions(), hasItem(month));
+
+        int numberOfDroppedPayments = paymentPartitionDao.dropMonthlyPartition(month);
+
+        assertThat(numberOfDroppedPayments, is(1));
+        assertThat(paymentPartitionDao.findMonthlyPartitions(), not(hasItem(month)));
+    }
+
+    @Test
+    public void shouldRejectPayment_whenExternalIdIsTakenByAPaymentInAnotherPartition() {
+        YearMonth month = YearMonth.now(UTC).plusMonths(28);
+        paymentPartitionDao.createMonthlyPartition(month);
+        String externalId = randomUuid();
+        addPaymentToDB(aPaymentCreatedAt(ZonedDateTime.now(UTC), externalId));
+
+        assertThrows(UnableToExecuteStatementException.class,
+                () -> addPaymentToDB(aPaymentCreatedAt(month.atDay(15).atStartOfDay(UTC), externalId)));
+    }
+
+    @Test
+    public void shouldReleaseExternalIdOfDeletedPayment() {
+        String externalId = randomUuid();
+        addPaymentToDB(aPaymentCreatedAt(ZonedDateTime.now(UTC), externalId));
+
+        paymentDao.deletePayments(ZonedDateTime.now(UTC).plusDays(1), 10);
+
+        addPaymentToDB(aPaymentCreatedAt(ZonedDateTime.now(UTC), externalId));
+        assertThat(paymentDao.findByExternalId(externalId).isPresent(), is(true));
+    }
+
+    private PaymentEntity aPaymentCreatedAt(ZonedDateTime dateCreated) {
+        return aPaymentCreatedAt(dateCreated, randomUuid());
+    }
+
+    private PaymentEntity aPaymentCreatedAt(ZonedDateTime dateCreated, String externalId) {
+        return PaymentEntityFixture.aPaymentEntity()
+                .withExternalId(externalId)
+                .withProduct(productEntity)
+                .withDateCreated(dateCreated)
+                .build();
+    }
+}
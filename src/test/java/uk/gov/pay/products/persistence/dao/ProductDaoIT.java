@@ -1,5 +1,11 @@
 package uk.gov.pay.products.persistence.dao;
 
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceException;
+import org.eclipse.persistence.jpa.JpaHelper;
+import org.eclipse.persistence.sessions.SessionEvent;
+import org.eclipse.persistence.sessions.SessionEventAdapter;
+import org.eclipse.persistence.sessions.server.ServerSession;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.BeforeClass;
@@ -8,21 +14,27 @@ import uk.gov.pay.products.fixtures.ProductEntityFixture;
 import uk.gov.pay.products.fixtures.ProductMetadataEntityFixture;
 import uk.gov.pay.products.matchers.ProductMatcher;
 import uk.gov.pay.products.model.Product;
+import uk.gov.pay.products.model.ProductPath;
 import uk.gov.pay.products.model.ProductUsageStat;
+import uk.gov.pay.products.model.product.ProductExportRow;
 import uk.gov.pay.products.persistence.entity.ProductEntity;
 import uk.gov.pay.products.persistence.entity.ProductMetadataEntity;
 import uk.gov.pay.products.util.ProductStatus;
 import uk.gov.pay.products.util.ProductType;
 
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.apache.commons.lang3.RandomStringUtils.randomAlphanumeric;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.assertTrue;
 import static uk.gov.pay.products.util.RandomIdGenerator.randomInt;
 import static uk.gov.pay.products.util.RandomIdGenerator.randomUuid;
@@ -362,4 +374,183 @@ public class ProductDaoIT extends DaoTestBase {
         assertThat(filteredUsageStats.get(0).getPaymentCount(), is(0L));
         assertThat(filteredUsageStats.get(0).getProduct().getExternalId(), is(secondUnusedProductEntity.getExternalId()));
     }
+
+    @Test
+    public void findByGatewayAccountId_shouldLoadMetadataOfAllProductsInOneQuery() {
+        Integer gatewayAccountId = randomInt();
+        for (int i = 0; i < 5; i++) {
+            Product product = ProductEntityFixture.aProductEntity()
+                    .withGatewayAccountId(gatewayAccountId)
+                    .build()
+                    .toProduct();
+            databaseHelper.addProduct(product);
+            databaseHelper.addMetadata(product.getExternalId(), "key" + i, "value" + i);
+        }
+
+        AtomicInteger numberOfQueries = new AtomicInteger();
+        SessionEventAdapter queryCounter = new SessionEventAdapter() {
+            @Override
+            public void postExecuteCall(SessionEvent event) {
+                numberOfQueries.incrementAndGet();
+            }
+        };
+        ServerSession serverSession = JpaHelper.getServerSession(env.getInstance(EntityManagerFactory.class));
+        serverSession.getEventManager().addListener(queryCounter);
+        try {
+            List<Product> products = productDao.findByGatewayAccountId(gatewayAccountId)
+                    .stream()
+                    .map(ProductEntity::toProduct)
+                    .toList();
+
+            assertThat(products.size(), is(5));
+            products.forEach(product -> assertThat(product.getMetadata().size(), is(1)));
+            // one query for the products and one batch query for the metadata of all of them
+            assertThat(numberOfQueries.get(), is(2));
+        } finally {
+            serverSession.getEventManager().removeListener(queryCounter);
+        }
+    }
+
+    @Test
+    public void insertAll_shouldInsertProductsWithTheirMetadata_andSkipProductsWhoseProductPathIsTaken() {
+        Integer gatewayAccountId = randomInt();
+        ProductEntity productWithMetadata = ProductEntityFixture.aProductEntity()
+                .withGatewayAccountId(gatewayAccountId)
+                .withType(ProductType.ADHOC)
+                .withProductPath("service-name-path", "product-name-path")
+                .withMetadata(List.of(ProductMetadataEntityFixture.aProductMetadataEntity()
+                        .withMetadataKey("key1")
+                        .withMetadataValue("value1")
+                        .build()))
+                .build();
+        ProductEntity productWithoutProductPath = ProductEntityFixture.aProductEntity()
+                .withGatewayAccountId(gatewayAccountId)
+                .build();
+        ProductEntity productWithTakenProductPath = ProductEntityFixture.aProductEntity()
+                .withGatewayAccountId(gatewayAccountId)
+                .withType(ProductType.ADHOC)
+                .withProductPath("service-name-path", "product-name-path")
+                .build();
+
+        boolean[] inserted = productDao.insertAll(List.of(productWithMetadata, productWithoutProductPath, productWithTakenProductPath));
+
+        assertThat(inserted[0], is(true));
+        assertThat(inserted[1], is(true));
+        assertThat(inserted[2], is(false));
+        assertThat(productDao.findByGatewayAccountId(gatewayAccountId).size(), is(2));
+        assertThat(productDao.findByExternalId(productWithMetadata.getExternalId()).get().toProduct().getMetadata().get(0).getValue(), is("value1"));
+        assertThat(productDao.findByExternalId(productWithoutProductPath.getExternalId()).get().toProduct(),
+                ProductMatcher.isSame(productWithoutProductPath.toProduct()));
+        assertFalse(productDao.findByExternalId(productWithTakenProductPath.getExternalId()).isPresent());
+    }
+
+    @Test
+    public void insertAll_shouldFail_whenExternalIdIsTaken() {
+        ProductEntity existingProduct = ProductEntityFixture.aProductEntity()
+                .withGatewayAccountId(randomInt())
+                .build();
+        databaseHelper.addProduct(existingProduct.toProduct());
+        ProductEntity productWithTakenExternalId = ProductEntityFixture.aProductEntity()
+                .withExternalId(existingProduct.getExternalId())
+                .withGatewayAccountId(randomInt())
+                .build();
+
+        assertThrows(PersistenceException.class, () -> productDao.insertAll(List.of(productWithTakenExternalId)));
+    }
+
+    @Test
+    public void disableBatchByGatewayAccountId_shouldDisableActiveProductsOfTheGatewayAccount_upToTheBatchSize() {
+        Integer gatewayAccountId = randomInt();
+        for (int i = 0; i < 3; i++) {
+            databaseHelper.addProduct(ProductEntityFixture.aProductEntity().withGatewayAccountId(gatewayAccountId).build().toProduct());
+        }
+        Product productOfAnotherGatewayAccount = ProductEntityFixture.aProductEntity().withGatewayAccountId(gatewayAccountId + 1).build().toProduct();
+        databaseHelper.addProduct(productOfAnotherGatewayAccount);
+
+        assertThat(productDao.disableBatchByGatewayAccountId(gatewayAccountId, 2).size(), is(2));
+        assertThat(productDao.disableBatchByGatewayAccountId(gatewayAccountId, 2).size(), is(1));
+        assertThat(productDao.disableBatchByGatewayAccountId(gatewayAccountId, 2).size(), is(0));
+
+        assertThat(productDao.findByGatewayAccountId(gatewayAccountId).size(), is(0));
+        assertThat(productDao.findByExternalId(productOfAnotherGatewayAccount.getExternalId()).get().getStatus(), is(ProductStatus.ACTIVE));
+    }
+
+    @Test
+    public void deleteBatchByGatewayAccountId_shouldDeleteProductsOfTheGatewayAccount_andReturnTheirPaths() {
+        Integer gatewayAccountId = randomInt();
+        Product product = ProductEntityFixture.aProductEntity()
+                .withGatewayAccountId(gatewayAccountId)
+                .withProductPath("service-name-path", "product-name-path")
+                .build()
+                .toProduct();
+        databaseHelper.addProduct(product);
+        databaseHelper.addMetadata(product.getExternalId(), "key1", "value1");
+
+        List<ProductPath> deletedProducts = productDao.deleteBatchByGatewayAccountId(gatewayAccountId, 10);
+
+        assertThat(deletedProducts.size(), is(1));
+        assertThat(deletedProducts.get(0).getProductExternalId(), is(product.getExternalId()));
+        assertThat(deletedProducts.get(0).getServiceNamePath(), is("service-name-path"));
+        assertThat(deletedProducts.get(0).getProductNamePath(), is("product-name-path"));
+        assertFalse(productDao.findByExternalId(product.getExternalId()).isPresent());
+    }
+
+    @Test
+    public void updatePayApiTokenBatchByGatewayAccountId_shouldOnlyUpdateProductsWithAnotherToken() {
+        Integer gatewayAccountId = randomInt();
+        Product product = ProductEntityFixture.aProductEntity().withGatewayAccountId(gatewayAccountId).withApiToken("old-token").build().toProduct();
+        Product productWithNewToken = ProductEntityFixture.aProductEntity().withGatewayAccountId(gatewayAccountId).withApiToken("new-token").build().toProduct();
+        databaseHelper.addProduct(product);
+        databaseHelper.addProduct(productWithNewToken);
+
+        List<ProductPath> updatedProducts = productDao.updatePayApiTokenBatchByGatewayAccountId(gatewayAccountId, "new-token", 10);
+
+        assertThat(updatedProducts.size(), is(1));
+        assertThat(updatedProducts.get(0).getProductExternalId(), is(product.getExternalId()));
+        assertThat(productDao.findByExternalId(product.getExternalId()).get().getPayApiToken(), is("new-token"));
+    }
+
+    @Test
+    public void findExportPage_shouldReadProductsOfTheGatewayAccount_withTheirUsageAndMetadata() {
+        Integer gatewayAccountId = randomInt();
+        Product usedProduct = ProductEntityFixture.aProductEntity().withGatewayAccountId(gatewayAccountId).withName("used").build().toProduct();
+        Product unusedProduct = ProductEntityFixture.aProductEntity().withGatewayAccountId(gatewayAccountId).withName("unused").build().toProduct();
+        databaseHelper.addProduct(usedProduct);
+        databaseHelper.addProduct(unusedProduct);
+        databaseHelper.addProduct(ProductEntityFixture.aProductEntity().withGatewayAccountId(gatewayAccountId + 1).build().toProduct());
+        databaseHelper.addMetadata(usedProduct.getExternalId(), "key1", "value1");
+        ZonedDateTime lastPaymentDate = ZonedDateTime.parse("2025-01-01T10:00:00Z");
+        ProductUsageStatsDao productUsageStatsDao = env.getInstance(ProductUsageStatsDao.class);
+        productUsageStatsDao.recordPayment(databaseHelper.findProductId(usedProduct.getExternalId()), lastPaymentDate);
+        productUsageStatsDao.foldDeltas(1000);
+
+        List<ProductExportRow> rows = productDao.findExportPage(gatewayAccountId, 0, 10);
+
+        assertThat(rows.size(), is(2));
+        assertThat(rows.get(0).getExternalId(), is(usedProduct.getExternalId()));
+        assertThat(rows.get(0).getPaymentCount(), is(1L));
+        assertThat(rows.get(0).getLastPaymentDate().toInstant(), is(lastPaymentDate.toInstant()));
+        assertThat(rows.get(0).getMetadataJson().replace(" ", ""), is("{\"key1\":\"value1\"}"));
+        assertThat(rows.get(1).getExternalId(), is(unusedProduct.getExternalId()));
+        assertThat(rows.get(1).getPaymentCount(), is(0L));
+        assertThat(rows.get(1).getLastPaymentDate(), is(nullValue()));
+        assertThat(rows.get(1).getMetadataJson(), is(nullValue()));
+    }
+
+    @Test
+    public void findExportPage_shouldReadPagesOfProductsAfterTheGivenId() {
+        Integer gatewayAccountId = randomInt();
+        List<String> externalIds = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Product product = ProductEntityFixture.aProductEntity().withGatewayAccountId(gatewayAccountId).build().toProduct();
+            databaseHelper.addProduct(product);
+            externalIds.add(product.getExternalId());
+        }
+
+        List<ProductExportRow> firstPage = productDao.findExportPage(gatewayAccountId, 0, 2);
+        List<ProductExportRow> secondPage = productDao.findExportPage(gatewayAccountId, firstPage.get(1).getId(), 2);
+
+        assertThat(firstPage.stream().map(ProductExportRow::getExternalId).toList(), is(externalIds.subList(0, 2)));
+        assertThat(secondPage.stream().map(ProductExportRow::getExternalId).toList(), is(externalIds.subList(2, 3)));
+    }
 }
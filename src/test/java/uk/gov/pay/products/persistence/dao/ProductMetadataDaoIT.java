@@ -55,6 +55,26 @@ public class ProductMetadataDaoIT extends DaoTestBase {
         assertThat(productMetadata.isPresent(), is(true));
     }
 
+    @Test
+    public void productMetadataDaoShouldReturnAMetadataEntity_whenKeyDiffersInCase() {
+        Optional<ProductMetadataEntity> productMetadata =
+                productMetadataDao.findByProductsExternalIdAndKey(productEntity.getExternalId(), "A KEY");
+        assertThat(productMetadata.isPresent(), is(true));
+        assertThat(productMetadata.get().getMetadataValue(), is("a value"));
+    }
+
+    @Test
+    public void productMetadataDaoShouldNotReturnAMetadataEntity_whenKeyBelongsToAnotherProduct() {
+        ProductEntity anotherProduct = ProductEntityFixture.aProductEntity()
+                .withExternalId(randomUuid())
+                .build();
+        productDao.persist(anotherProduct);
+
+        Optional<ProductMetadataEntity> productMetadata =
+                productMetadataDao.findByProductsExternalIdAndKey(anotherProduct.getExternalId(), productMetadataEntity.getMetadataKey());
+        assertThat(productMetadata.isPresent(), is(false));
+    }
+
     @Test
     public void productMetadataDaoShouldUpdateAMetadataEntity() {
         productMetadataEntity.setMetadataValue("new value");
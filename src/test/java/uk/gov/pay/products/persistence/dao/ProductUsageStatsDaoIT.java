@@ -0,0 +1,100 @@
+package uk.gov.pay.products.persistence.dao;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import uk.gov.pay.products.fixtures.ProductEntityFixture;
+import uk.gov.pay.products.persistence.entity.ProductEntity;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.Map;
+
+import static java.time.ZoneOffset.UTC;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static uk.gov.pay.products.util.RandomIdGenerator.randomUuid;
+import static uk.gov.pay.products.utils.TestHelpers.createPaymentEntity;
+
+public class ProductUsageStatsDaoIT extends DaoTestBase {
+
+    private static final ZonedDateTime DATE = ZonedDateTime.ofInstant(Instant.parse("2022-03-03T10:15:30Z"), UTC);
+
+    private ProductUsageStatsDao productUsageStatsDao;
+    private ProductDao productDao;
+    private PaymentDao paymentDao;
+
+    @Before
+    public void before() {
+        productUsageStatsDao = env.getInstance(ProductUsageStatsDao.class);
+        productDao = env.getInstance(ProductDao.class);
+        paymentDao = env.getInstance(PaymentDao.class);
+    }
+
+    @After
+    public void after() {
+        databaseHelper.truncateAllData();
+    }
+
+    @Test
+    public void shouldAddRecordedPaymentsToProductUsageStats_whenFolded() {
+        ProductEntity productEntity = addProduct();
+        productUsageStatsDao.recordPayment(productEntity.getId(), DATE.minusDays(1));
+        productUsageStatsDao.recordPayment(productEntity.getId(), DATE);
+
+        assertThat(productUsageStatsDao.foldDeltas(1000), is(2));
+        productUsageStatsDao.recordPayment(productEntity.getId(), DATE.minusDays(2));
+        assertThat(productUsageStatsDao.foldDeltas(1000), is(1));
+
+        Map<String, Object> productUsageStats = databaseHelper.findProductUsageStats(productEntity.getId()).orElseThrow();
+        assertThat(productUsageStats.get("payment_count"), is(3L));
+        assertThat(((Timestamp) productUsageStats.get("last_payment_date")).toInstant(), is(DATE.toInstant()));
+        assertThat(productUsageStatsDao.foldDeltas(1000), is(0));
+    }
+
+    @Test
+    public void shouldFoldUpToMaxDeltas() {
+        ProductEntity productEntity = addProduct();
+        for (int i = 0; i < 3; i++) {
+            productUsageStatsDao.recordPayment(productEntity.getId(), DATE);
+        }
+
+        assertThat(productUsageStatsDao.foldDeltas(2), is(2));
+        assertThat(databaseHelper.findProductUsageStats(productEntity.getId()).orElseThrow().get("payment_count"), is(2L));
+        assertThat(productUsageStatsDao.foldDeltas(2), is(1));
+        assertThat(databaseHelper.findProductUsageStats(productEntity.getId()).orElseThrow().get("payment_count"), is(3L));
+    }
+
+    @Test
+    public void shouldTakeDeletedPaymentsOffProductUsageStats_whenFoldedTogetherWithNewPayments() {
+        ProductEntity productEntity = addProduct();
+        addPaymentToDB(createPaymentEntity(productEntity, DATE, 1));
+        productUsageStatsDao.recordPayment(productEntity.getId(), DATE.plusDays(1));
+        paymentDao.deletePayments(DATE, 10);
+
+        productUsageStatsDao.foldDeltas(1000);
+
+        Map<String, Object> productUsageStats = databaseHelper.findProductUsageStats(productEntity.getId()).orElseThrow();
+        assertThat(productUsageStats.get("payment_count"), is(1L));
+        assertThat(((Timestamp) productUsageStats.get("last_payment_date")).toInstant(), is(DATE.plusDays(1).toInstant()));
+    }
+
+    @Test
+    public void shouldClearLastPaymentDate_whenNoPaymentsAreLeft() {
+        ProductEntity productEntity = addProduct();
+        addPaymentToDB(createPaymentEntity(productEntity, DATE, 1));
+        paymentDao.deletePayments(DATE, 10);
+
+        productUsageStatsDao.foldDeltas(1000);
+
+        Map<String, Object> productUsageStats = databaseHelper.findProductUsageStats(productEntity.getId()).orElseThrow();
+        assertThat(productUsageStats.get("payment_count"), is(0L));
+        assertThat(productUsageStats.get("last_payment_date"), is(nullValue()));
+    }
+
+    private ProductEntity addProduct() {
+        return productDao.merge(ProductEntityFixture.aProductEntity().withExternalId(randomUuid()).build());
+    }
+}
@@ -3,6 +3,7 @@ package uk.gov.pay.products.resources;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.dropwizard.testing.junit5.DropwizardExtensionsSupport;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.api.extension.RegisterExtension;
 import org.junit.jupiter.params.ParameterizedTest;
@@ -19,6 +20,7 @@ import java.util.Map;
 import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
 import static com.github.tomakehurst.wiremock.client.WireMock.matching;
 import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
 import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
 import static io.restassured.RestAssured.given;
 import static io.restassured.http.ContentType.JSON;
@@ -31,6 +33,7 @@ import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.nullValue;
 import static org.hamcrest.core.Is.is;
 import static uk.gov.pay.products.fixtures.ProductEntityFixture.aProductEntity;
+import static uk.gov.pay.products.stubs.publicapi.PublicApiStub.createPaymentResponsePayload;
 import static uk.gov.pay.products.util.PaymentStatus.ERROR;
 import static uk.gov.pay.products.util.PublicAPIErrorCodes.CREATE_PAYMENT_VALIDATION_ERROR;
 import static uk.gov.pay.products.util.RandomIdGenerator.randomUuid;
@@ -87,6 +90,58 @@ public class CreatePaymentResourceIT {
         assertThat(paymentEntity.getGovukPaymentId(), nullValue());
     }
     
+    @Test
+    void repeated_create_payment_with_same_idempotency_key_should_return_the_first_payment() {
+        app.publicApi.stubFor(post(urlPathEqualTo("/v1/payments"))
+                .withHeader(AUTHORIZATION, matching("Bearer " + productEntity.getPayApiToken()))
+                .willReturn(aResponse().withHeader(CONTENT_TYPE, APPLICATION_JSON)
+                        .withStatus(201)
+                        .withBody(createPaymentResponsePayload("govuk-payment-id", 2990, "a ref", productEntity.getName(),
+                                productEntity.getReturnUrl(), "http://next.url", "en", null).toString())));
+
+        String firstPaymentExternalId = createPaymentWithIdempotencyKey("an-idempotency-key");
+        String repeatedPaymentExternalId = createPaymentWithIdempotencyKey("an-idempotency-key");
+
+        assertThat(repeatedPaymentExternalId, is(firstPaymentExternalId));
+        assertThat(paymentDao.findByProductExternalId(productEntity.getExternalId()), hasSize(1));
+        app.publicApi.verify(1, postRequestedFor(urlPathEqualTo("/v1/payments")));
+    }
+
+    @Test
+    void repeated_create_payment_with_same_idempotency_key_and_different_price_should_be_rejected() {
+        app.publicApi.stubFor(post(urlPathEqualTo("/v1/payments"))
+                .withHeader(AUTHORIZATION, matching("Bearer " + productEntity.getPayApiToken()))
+                .willReturn(aResponse().withHeader(CONTENT_TYPE, APPLICATION_JSON)
+                        .withStatus(201)
+                        .withBody(createPaymentResponsePayload("govuk-payment-id", 2990, "a ref", productEntity.getName(),
+                                productEntity.getReturnUrl(), "http://next.url", "en", null).toString())));
+        createPaymentWithIdempotencyKey("an-idempotency-key");
+
+        given().port(app.getPort())
+                .contentType(JSON)
+                .accept(APPLICATION_JSON)
+                .header("Idempotency-Key", "an-idempotency-key")
+                .body(Map.of("reference_number", "a ref", "price", 3000))
+                .post(format("/v1/api/products/%s/payments", productEntity.getExternalId()))
+                .then()
+                .statusCode(409);
+
+        assertThat(paymentDao.findByProductExternalId(productEntity.getExternalId()), hasSize(1));
+        app.publicApi.verify(1, postRequestedFor(urlPathEqualTo("/v1/payments")));
+    }
+
+    private String createPaymentWithIdempotencyKey(String idempotencyKey) {
+        return given().port(app.getPort())
+                .contentType(JSON)
+                .accept(APPLICATION_JSON)
+                .header("Idempotency-Key", idempotencyKey)
+                .body(Map.of("reference_number", "a ref", "price", 2990))
+                .post(format("/v1/api/products/%s/payments", productEntity.getExternalId()))
+                .then()
+                .statusCode(201)
+                .extract().path("external_id");
+    }
+
     private void stubPublicApiCreatePaymentResponse(String description) throws Exception {
         Map<String, String> response = Map.of(
                 "field", "amount",
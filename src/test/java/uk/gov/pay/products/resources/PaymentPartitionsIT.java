@@ -0,0 +1,41 @@
+package uk.gov.pay.products.resources;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import uk.gov.pay.products.extension.ProductsAppWithPostgresExtension;
+import uk.gov.pay.products.persistence.dao.PaymentPartitionDao;
+
+import java.time.YearMonth;
+import java.util.stream.IntStream;
+
+import static io.dropwizard.testing.ConfigOverride.config;
+import static jakarta.ws.rs.core.MediaType.APPLICATION_JSON;
+import static java.time.ZoneOffset.UTC;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasItems;
+import static org.hamcrest.core.Is.is;
+
+public class PaymentPartitionsIT {
+
+    private static final int MONTHS_TO_CREATE_AHEAD = 6;
+
+    @RegisterExtension
+    public static ProductsAppWithPostgresExtension app = new ProductsAppWithPostgresExtension(
+            config("paymentPartitionConfig.monthsToCreateAhead", String.valueOf(MONTHS_TO_CREATE_AHEAD)));
+
+    @Test
+    void shouldCreatePartitionsForTheMonthsAhead_andReportThemHealthy() {
+        PaymentPartitionDao paymentPartitionDao = app.getInstanceFromGuiceContainer(PaymentPartitionDao.class);
+        YearMonth[] monthsAhead = IntStream.rangeClosed(1, MONTHS_TO_CREATE_AHEAD)
+                .mapToObj(i -> YearMonth.now(UTC).plusMonths(i))
+                .toArray(YearMonth[]::new);
+
+        // the partitions are created before the application starts
+        assertThat(paymentPartitionDao.findMonthlyPartitions(), hasItems(monthsAhead));
+        app.givenSetup()
+                .accept(APPLICATION_JSON)
+                .get("/healthcheck")
+                .then()
+                .body("paymentPartitions.healthy", is(true));
+    }
+}
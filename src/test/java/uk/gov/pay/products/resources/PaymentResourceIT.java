@@ -29,10 +29,12 @@ import static jakarta.ws.rs.core.Response.Status.OK;
 import static java.lang.String.format;
 import static org.apache.hc.core5.http.HttpStatus.SC_BAD_REQUEST;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.hasEntry;
 import static org.hamcrest.Matchers.hasItems;
 import static org.hamcrest.Matchers.hasKey;
 import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.nullValue;
 import static org.hamcrest.core.Is.is;
 import static org.hamcrest.text.MatchesPattern.matchesPattern;
 import static org.mockito.Mockito.atLeastOnce;
@@ -44,6 +46,7 @@ import static uk.gov.pay.products.stubs.publicapi.PublicApiStub.createErrorPaylo
 import static uk.gov.pay.products.stubs.publicapi.PublicApiStub.createPaymentResponsePayload;
 import static uk.gov.pay.products.stubs.publicapi.PublicApiStub.setupResponseToCreatePaymentRequest;
 import static uk.gov.pay.products.util.PaymentStatus.CREATED;
+import static uk.gov.pay.products.util.PaymentStatus.ERROR;
 import static uk.gov.pay.products.util.PublicAPIErrorCodes.ACCOUNT_NOT_LINKED_WITH_PSP;
 import static uk.gov.pay.products.util.PublicAPIErrorCodes.CREATE_PAYMENT_CARD_NUMBER_IN_PAYMENT_LINK_REFERENCE_ERROR;
 import static uk.gov.pay.products.util.RandomIdGenerator.randomInt;
@@ -504,6 +507,74 @@ public class PaymentResourceIT extends IntegrationTest {
                 .statusCode(404);
     }
 
+    @Test
+    public void findPaymentsOfAProductWithLimit_shouldReturnNewestPaymentsFirst_withNextLink() {
+        ProductEntity productEntity = addProductToDB(createProductEntity());
+        ZonedDateTime now = ZonedDateTime.now();
+        PaymentEntity oldestPayment = addPaymentToDB(createPaymentEntity(productEntity, now, 3));
+        PaymentEntity middlePayment = addPaymentToDB(createPaymentEntity(productEntity, now, 2));
+        PaymentEntity newestPayment = addPaymentToDB(createPaymentEntity(productEntity, now, 1));
+
+        String linkHeader = givenSetup()
+                .when()
+                .accept(APPLICATION_JSON)
+                .get(format("/v1/api/products/%s/payments?limit=2", productEntity.getExternalId()))
+                .then()
+                .statusCode(200)
+                .body("", hasSize(2))
+                .body("[0].external_id", is(newestPayment.getExternalId()))
+                .body("[1].external_id", is(middlePayment.getExternalId()))
+                .header("Link", containsString("rel=\"next\""))
+                .extract()
+                .header("Link");
+
+        String nextUrl = linkHeader.substring(linkHeader.indexOf('<') + 1, linkHeader.indexOf('>'));
+
+        givenSetup()
+                .when()
+                .accept(APPLICATION_JSON)
+                .get(nextUrl)
+                .then()
+                .statusCode(200)
+                .body("", hasSize(1))
+                .body("[0].external_id", is(oldestPayment.getExternalId()))
+                .header("Link", nullValue());
+    }
+
+    @Test
+    public void findPaymentsOfAProductWithFilters_shouldOnlyReturnMatchingPayments() {
+        ProductEntity productEntity = addProductToDB(createProductEntity());
+        ZonedDateTime now = ZonedDateTime.now();
+        addPaymentToDB(createPaymentEntity(productEntity, now, 10));
+        PaymentEntity matchingPayment = addPaymentToDB(createPaymentEntity(productEntity, now, 2));
+        PaymentEntity erroredPayment = createPaymentEntity(productEntity, now, 1);
+        erroredPayment.setStatus(ERROR);
+        addPaymentToDB(erroredPayment);
+
+        givenSetup()
+                .when()
+                .accept(APPLICATION_JSON)
+                .queryParam("status", "CREATED")
+                .queryParam("fromDate", now.minusDays(5).toInstant().toString())
+                .get(format("/v1/api/products/%s/payments", productEntity.getExternalId()))
+                .then()
+                .statusCode(200)
+                .body("", hasSize(1))
+                .body("[0].external_id", is(matchingPayment.getExternalId()))
+                .header("Link", nullValue());
+    }
+
+    @Test
+    public void findPaymentsOfAProduct_shouldReturn400_whenSearchParamsAreInvalid() {
+        givenSetup()
+                .when()
+                .accept(APPLICATION_JSON)
+                .get(format("/v1/api/products/%s/payments?toDate=yesterday&after=not-a-cursor", randomUuid()))
+                .then()
+                .statusCode(400)
+                .body("errors", hasSize(2));
+    }
+
     @Test
     public void shouldReturn404_whenSearchingByGatewayAccountIdAndReferenceNumber_andPaymentIsNonExistent() {
         givenSetup()
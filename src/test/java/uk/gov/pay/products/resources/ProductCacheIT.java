@@ -0,0 +1,108 @@
+package uk.gov.pay.products.resources;
+
+import io.restassured.response.ValidatableResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import uk.gov.pay.products.extension.ProductsAppWithPostgresExtension;
+import uk.gov.pay.products.persistence.dao.PaymentDao;
+import uk.gov.pay.products.persistence.dao.ProductDao;
+import uk.gov.pay.products.persistence.entity.PaymentEntity;
+import uk.gov.pay.products.persistence.entity.ProductEntity;
+
+import java.util.List;
+import java.util.Map;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
+import static io.dropwizard.testing.ConfigOverride.config;
+import static jakarta.ws.rs.core.HttpHeaders.AUTHORIZATION;
+import static jakarta.ws.rs.core.HttpHeaders.CONTENT_TYPE;
+import static jakarta.ws.rs.core.MediaType.APPLICATION_JSON;
+import static java.lang.String.format;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.core.Is.is;
+import static uk.gov.pay.products.fixtures.ProductEntityFixture.aProductEntity;
+import static uk.gov.pay.products.stubs.publicapi.PublicApiStub.createPaymentResponsePayload;
+import static uk.gov.pay.products.util.PaymentStatus.SUBMITTED;
+import static uk.gov.pay.products.util.RandomIdGenerator.randomInt;
+import static uk.gov.pay.products.util.RandomIdGenerator.randomUuid;
+
+public class ProductCacheIT {
+
+    @RegisterExtension
+    public static ProductsAppWithPostgresExtension app = new ProductsAppWithPostgresExtension(
+            config("productCacheConfig.enabled", "true"));
+
+    private ProductDao productDao;
+    private PaymentDao paymentDao;
+    private ProductEntity productEntity;
+
+    @BeforeEach
+    void setUp() {
+        productDao = app.getInstanceFromGuiceContainer(ProductDao.class);
+        paymentDao = app.getInstanceFromGuiceContainer(PaymentDao.class);
+        productEntity = aProductEntity()
+                .withExternalId(randomUuid())
+                .withGatewayAccountId(randomInt())
+                .withReferenceEnabled(true)
+                .build();
+        productDao.persist(productEntity);
+    }
+
+    @Test
+    void shouldNotServeACachedProduct_afterItHasBeenChanged() {
+        getProduct().body("status", is("ACTIVE"));
+
+        app.givenSetup()
+                .when()
+                .patch(format("/v1/api/products/%s/disable", productEntity.getExternalId()))
+                .then()
+                .statusCode(204);
+
+        getProduct().body("status", is("INACTIVE"));
+    }
+
+    @Test
+    void shouldCreateAPaymentWithTheLatestPayApiToken_whenTheProductIsCached() {
+        getProduct();
+
+        // as if the pay API token was replaced through another instance, which cannot invalidate this instance's cache
+        ProductEntity changedProductEntity = productDao.findByExternalId(productEntity.getExternalId()).orElseThrow();
+        changedProductEntity.setPayApiToken("replaced-pay-api-token");
+        productDao.merge(changedProductEntity);
+
+        app.publicApi.stubFor(post(urlPathEqualTo("/v1/payments"))
+                .withHeader(AUTHORIZATION, equalTo("Bearer replaced-pay-api-token"))
+                .willReturn(aResponse().withHeader(CONTENT_TYPE, APPLICATION_JSON)
+                        .withStatus(201)
+                        .withBody(createPaymentResponsePayload("govuk-payment-id", 2990, "a ref", productEntity.getName(),
+                                productEntity.getReturnUrl(), "http://next.url", "en", null).toString())));
+
+        app.givenSetup()
+                .accept(APPLICATION_JSON)
+                .body(Map.of("reference_number", "a ref", "price", 2990))
+                .post(format("/v1/api/products/%s/payments", productEntity.getExternalId()))
+                .then()
+                .statusCode(201);
+
+        app.publicApi.verify(1, postRequestedFor(urlPathEqualTo("/v1/payments"))
+                .withHeader(AUTHORIZATION, equalTo("Bearer replaced-pay-api-token")));
+        List<PaymentEntity> paymentEntities = paymentDao.findByProductExternalId(productEntity.getExternalId());
+        assertThat(paymentEntities, hasSize(1));
+        assertThat(paymentEntities.getFirst().getStatus(), is(SUBMITTED));
+        assertThat(paymentEntities.getFirst().getProductEntity().getId(), is(changedProductEntity.getId()));
+    }
+
+    private ValidatableResponse getProduct() {
+        return app.givenSetup()
+                .accept(APPLICATION_JSON)
+                .get(format("/v1/api/products/%s", productEntity.getExternalId()))
+                .then()
+                .statusCode(200);
+    }
+}
@@ -24,9 +24,12 @@ import static java.lang.String.format;
 import static java.util.Collections.singletonList;
 import static jakarta.ws.rs.core.MediaType.APPLICATION_JSON;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasEntry;
 import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.startsWith;
 import static org.hamcrest.core.Is.is;
 import static org.hamcrest.text.MatchesPattern.matchesPattern;
 import static uk.gov.pay.products.fixtures.PaymentEntityFixture.aPaymentEntity;
@@ -389,6 +392,72 @@ public class ProductResourceIT {
         }
     }
 
+    @Nested
+    class CreateProducts {
+        @Test
+        void shouldReturnAResultForEachProduct_whenCreatingProductsInBulk() {
+            Integer gatewayAccountId = randomInt();
+            String serviceNamePath = randomStringUtils.nextAlphanumeric(40);
+            String productNamePath = randomStringUtils.nextAlphanumeric(65);
+
+            Map<Object, Object> validProduct = Map.ofEntries(
+                    Map.entry(GATEWAY_ACCOUNT_ID, gatewayAccountId),
+                    Map.entry(PAY_API_TOKEN, randomUuid()),
+                    Map.entry(NAME, "Flashy new GOV Service"),
+                    Map.entry(PRICE, 1050),
+                    Map.entry(TYPE, ProductType.ADHOC.name()),
+                    Map.entry(SERVICE_NAME_PATH, serviceNamePath),
+                    Map.entry(PRODUCT_NAME_PATH, productNamePath),
+                    Map.entry(METADATA, Map.of("key1", "value1")),
+                    Map.entry(RETURN_URL, "https://return.url")
+            );
+            Map<Object, Object> productWithoutName = Map.of(
+                    GATEWAY_ACCOUNT_ID, gatewayAccountId,
+                    PAY_API_TOKEN, randomUuid(),
+                    PRICE, 1050,
+                    TYPE, ProductType.DEMO.name()
+            );
+
+            ValidatableResponse response = app.givenSetup()
+                    .contentType(APPLICATION_JSON)
+                    .accept(APPLICATION_JSON)
+                    .body(List.of(validProduct, productWithoutName, validProduct))
+                    .post("/v1/api/products/bulk")
+                    .then()
+                    .statusCode(200)
+                    .body("", hasSize(3))
+                    .body("[0].status", is(201))
+                    .body("[0].product." + NAME, is("Flashy new GOV Service"))
+                    .body("[0].product." + EXTERNAL_ID, matchesPattern("^[0-9a-z]{32}$"))
+                    .body("[0].product." + METADATA + ".key1", is("value1"))
+                    .body("[1].status", is(400))
+                    .body("[1].errors", is(List.of("Field [name] is required")))
+                    .body("[2].status", is(409));
+
+            String externalId = response.extract().path("[0].product." + EXTERNAL_ID);
+
+            app.givenSetup()
+                    .accept(APPLICATION_JSON)
+                    .get(format("/v1/api/products/%s", externalId))
+                    .then()
+                    .statusCode(200)
+                    .body(SERVICE_NAME_PATH, is(serviceNamePath))
+                    .body(METADATA + ".key1", is("value1"));
+        }
+
+        @Test
+        void shouldFail_whenPayloadIsNotAListOfProducts() {
+            app.givenSetup()
+                    .contentType(APPLICATION_JSON)
+                    .accept(APPLICATION_JSON)
+                    .body(List.of())
+                    .post("/v1/api/products/bulk")
+                    .then()
+                    .statusCode(400)
+                    .body("errors", is(List.of("Request must be a list of between 1 and 10000 products")));
+        }
+    }
+
     @Nested
     class FindProductByExternalId {
         @Test
@@ -1109,6 +1178,82 @@ public class ProductResourceIT {
         }
     }
 
+    @Nested
+    class BulkUpdateProductsByGatewayAccountId {
+        @Test
+        void shouldDisableAllProductsOfAGatewayAccount_andReturnTheNumberDisabled() {
+            int gatewayAccountId = randomInt();
+            Product product = ProductEntityFixture.aProductEntity().withGatewayAccountId(gatewayAccountId).build().toProduct();
+            app.getDatabaseTestHelper().addProduct(product);
+            app.getDatabaseTestHelper().addProduct(ProductEntityFixture.aProductEntity().withGatewayAccountId(gatewayAccountId).build().toProduct());
+
+            app.givenSetup()
+                    .accept(APPLICATION_JSON)
+                    .get(format("/v1/api/products/%s", product.getExternalId()))
+                    .then()
+                    .statusCode(200)
+                    .body("status", is("ACTIVE"));
+
+            app.givenSetup()
+                    .accept(APPLICATION_JSON)
+                    .patch(format("/v1/api/gateway-account/%s/products/disable", gatewayAccountId))
+                    .then()
+                    .statusCode(200)
+                    .body("affected_products", is(2));
+
+            app.givenSetup()
+                    .accept(APPLICATION_JSON)
+                    .get(format("/v1/api/products/%s", product.getExternalId()))
+                    .then()
+                    .statusCode(200)
+                    .body("status", is("INACTIVE"));
+        }
+
+        @Test
+        void shouldDeleteAllProductsOfAGatewayAccount_andReturnTheNumberDeleted() {
+            int gatewayAccountId = randomInt();
+            Product product = ProductEntityFixture.aProductEntity().withGatewayAccountId(gatewayAccountId).build().toProduct();
+            app.getDatabaseTestHelper().addProduct(product);
+
+            app.givenSetup()
+                    .accept(APPLICATION_JSON)
+                    .delete(format("/v1/api/gateway-account/%s/products", gatewayAccountId))
+                    .then()
+                    .statusCode(200)
+                    .body("affected_products", is(1));
+
+            app.givenSetup()
+                    .accept(APPLICATION_JSON)
+                    .get(format("/v1/api/products/%s", product.getExternalId()))
+                    .then()
+                    .statusCode(404);
+        }
+
+        @Test
+        void shouldReplaceThePayApiTokenOfAllProductsOfAGatewayAccount() {
+            int gatewayAccountId = randomInt();
+            app.getDatabaseTestHelper().addProduct(ProductEntityFixture.aProductEntity().withGatewayAccountId(gatewayAccountId).build().toProduct());
+
+            app.givenSetup()
+                    .contentType(APPLICATION_JSON)
+                    .accept(APPLICATION_JSON)
+                    .body(Map.of(PAY_API_TOKEN, "new-api-token"))
+                    .put(format("/v1/api/gateway-account/%s/products/pay-api-token", gatewayAccountId))
+                    .then()
+                    .statusCode(200)
+                    .body("affected_products", is(1));
+
+            app.givenSetup()
+                    .contentType(APPLICATION_JSON)
+                    .accept(APPLICATION_JSON)
+                    .body(Map.of())
+                    .put(format("/v1/api/gateway-account/%s/products/pay-api-token", gatewayAccountId))
+                    .then()
+                    .statusCode(400)
+                    .body("errors", is(List.of("Field [pay_api_token] is required")));
+        }
+    }
+
     @Nested
     class FindProductsByGatewayAccountId {
         @Test
@@ -1246,6 +1391,54 @@ public class ProductResourceIT {
                     .statusCode(200)
                     .body("", hasSize(0));
         }
+
+        @Test
+         void findProductsByGatewayAccountIdWithLimit_shouldReturnPagesLinkedByNextLink() {
+            int gatewayAccountId = randomInt();
+            List<Product> products = List.of(
+                    ProductEntityFixture.aProductEntity().withGatewayAccountId(gatewayAccountId).build().toProduct(),
+                    ProductEntityFixture.aProductEntity().withGatewayAccountId(gatewayAccountId).build().toProduct(),
+                    ProductEntityFixture.aProductEntity().withGatewayAccountId(gatewayAccountId).build().toProduct());
+            products.forEach(product -> app.getDatabaseTestHelper().addProduct(product));
+
+            String linkHeader = app.givenSetup()
+                    .when()
+                    .accept(APPLICATION_JSON)
+                    .get(format("/v1/api/gateway-account/%s/products?limit=2", gatewayAccountId))
+                    .then()
+                    .statusCode(200)
+                    .body("", hasSize(2))
+                    .body("[0].external_id", is(products.get(0).getExternalId()))
+                    .body("[1].external_id", is(products.get(1).getExternalId()))
+                    .header("Link", containsString("rel=\"next\""))
+                    .extract()
+                    .header("Link");
+
+            String nextUrl = linkHeader.substring(linkHeader.indexOf('<') + 1, linkHeader.indexOf('>'));
+            assertThat(nextUrl, containsString("limit=2"));
+
+            app.givenSetup()
+                    .when()
+                    .accept(APPLICATION_JSON)
+                    .get(nextUrl)
+                    .then()
+                    .statusCode(200)
+                    .body("", hasSize(1))
+                    .body("[0].external_id", is(products.get(2).getExternalId()))
+                    .header("Link", nullValue());
+        }
+
+        @Test
+         void findProductsByGatewayAccountIdWithLimit_shouldReturn400_whenLimitIsTooLarge() {
+            app.givenSetup()
+                    .when()
+                    .accept(APPLICATION_JSON)
+                    .get(format("/v1/api/gateway-account/%s/products?limit=501", randomInt()))
+                    .then()
+                    .statusCode(400)
+                    .body("errors", hasSize(1))
+                    .body("errors[0]", is("Query param [limit] must be between 1 and 500"));
+        }
     }
 
     @Nested
@@ -1385,4 +1578,65 @@ public class ProductResourceIT {
                     .body("[0].product.external_id", is(product.getExternalId()));
         }
     }
+
+    @Nested
+    class ExportProducts {
+        @Test
+        void shouldExportProductsOfGatewayAccount_asNdjsonByDefault() {
+            int gatewayAccountId = randomInt();
+            Product product = ProductEntityFixture.aProductEntity().withGatewayAccountId(gatewayAccountId).build().toProduct();
+            app.getDatabaseTestHelper().addProduct(product);
+            app.getDatabaseTestHelper().addMetadata(product.getExternalId(), "key1", "value1");
+            app.getDatabaseTestHelper().addProduct(ProductEntityFixture.aProductEntity().withGatewayAccountId(gatewayAccountId + 1).build().toProduct());
+
+            String body = app.givenSetup()
+                    .when()
+                    .get(format("/v1/api/gateway-account/%s/products/export", gatewayAccountId))
+                    .then()
+                    .statusCode(200)
+                    .contentType("application/x-ndjson")
+                    .header("Content-Disposition", is(format("attachment; filename=\"products-%s.ndjson\"", gatewayAccountId)))
+                    .extract().asString();
+
+            String[] lines = body.split("\n");
+            assertThat(lines.length, is(1));
+            assertThat(lines[0], containsString(format("\"external_id\":\"%s\"", product.getExternalId())));
+            assertThat(lines[0], containsString("\"payment_count\":0"));
+            assertThat(lines[0], containsString("\"key1\" : \"value1\""));
+        }
+
+        @Test
+        void shouldExportProductsOfGatewayAccount_asCsv() {
+            int gatewayAccountId = randomInt();
+            Product product = ProductEntityFixture.aProductEntity().withGatewayAccountId(gatewayAccountId).build().toProduct();
+            app.getDatabaseTestHelper().addProduct(product);
+
+            String body = app.givenSetup()
+                    .when()
+                    .queryParam("format", "csv")
+                    .get(format("/v1/api/gateway-account/%s/products/export", gatewayAccountId))
+                    .then()
+                    .statusCode(200)
+                    .contentType("text/csv")
+                    .extract().asString();
+
+            String[] lines = body.split("\r\n");
+            assertThat(lines.length, is(2));
+            assertThat(lines[0], is("external_id,name,description,price,status,type,language,service_name_path,product_name_path," +
+                    "reference_enabled,reference_label,date_created,payment_count,last_payment_date,metadata"));
+            assertThat(lines[1], startsWith(product.getExternalId() + ","));
+        }
+
+        @Test
+        void shouldReturn400_whenFormatIsNotSupported() {
+            app.givenSetup()
+                    .when()
+                    .queryParam("format", "xml")
+                    .get(format("/v1/api/gateway-account/%s/products/export", randomInt()))
+                    .then()
+                    .statusCode(400)
+                    .body("errors", hasSize(1))
+                    .body("errors[0]", is("Query param [format] must be ndjson or csv"));
+        }
+    }
 }
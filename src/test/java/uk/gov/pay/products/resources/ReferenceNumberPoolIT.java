@@ -0,0 +1,100 @@
+package uk.gov.pay.products.resources;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import uk.gov.pay.products.extension.ProductsAppWithPostgresExtension;
+import uk.gov.pay.products.model.Product;
+import uk.gov.pay.products.utils.DatabaseTestHelper;
+
+import java.util.List;
+import java.util.function.Predicate;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
+import static io.dropwizard.testing.ConfigOverride.config;
+import static jakarta.ws.rs.core.HttpHeaders.CONTENT_TYPE;
+import static jakarta.ws.rs.core.MediaType.APPLICATION_JSON;
+import static java.lang.String.format;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.core.Is.is;
+import static uk.gov.pay.products.fixtures.ProductEntityFixture.aProductEntity;
+import static uk.gov.pay.products.stubs.publicapi.PublicApiStub.createPaymentResponsePayload;
+import static uk.gov.pay.products.util.RandomIdGenerator.randomInt;
+import static uk.gov.pay.products.util.RandomIdGenerator.randomUuid;
+
+public class ReferenceNumberPoolIT {
+
+    private static final int REFERENCE_NUMBERS_PER_GATEWAY_ACCOUNT = 5;
+
+    @RegisterExtension
+    public static ProductsAppWithPostgresExtension app = new ProductsAppWithPostgresExtension(
+            config("referenceNumberPoolConfig.enabled", "true"),
+            config("referenceNumberPoolConfig.referenceNumbersPerGatewayAccount", String.valueOf(REFERENCE_NUMBERS_PER_GATEWAY_ACCOUNT)),
+            config("referenceNumberPoolConfig.minimumPaymentsPerWindow", "1"),
+            config("referenceNumberPoolConfig.paymentRateWindow", "1 second"),
+            config("referenceNumberPoolConfig.refillInterval", "50 milliseconds"));
+
+    private DatabaseTestHelper databaseHelper;
+    private Product product;
+
+    @BeforeEach
+    void setUp() {
+        databaseHelper = app.getDatabaseTestHelper();
+        product = aProductEntity()
+                .withExternalId(randomUuid())
+                .withGatewayAccountId(randomInt())
+                .withReferenceEnabled(false)
+                .build()
+                .toProduct();
+        databaseHelper.addProduct(product);
+
+        app.publicApi.stubFor(post(urlPathEqualTo("/v1/payments"))
+                .willReturn(aResponse().withHeader(CONTENT_TYPE, APPLICATION_JSON)
+                        .withStatus(201)
+                        .withBody(createPaymentResponsePayload("govuk-payment-id", product.getPrice(), "a ref", product.getName(),
+                                product.getReturnUrl(), "http://next.url", "en", null).toString())));
+    }
+
+    @Test
+    void shouldTakeReferenceNumbersFromThePool_andReleaseTheRest_whenTheGatewayAccountSlowsDown() throws InterruptedException {
+        createPayment();
+
+        // the pool is refilled by a scheduled job once the gateway account has made a payment in one payment rate window
+        List<String> pooledReferenceNumbers = awaitPooledReferenceNumbers(referenceNumbers -> referenceNumbers.size() == REFERENCE_NUMBERS_PER_GATEWAY_ACCOUNT);
+        assertThat(pooledReferenceNumbers, hasSize(REFERENCE_NUMBERS_PER_GATEWAY_ACCOUNT));
+
+        createPayment();
+
+        List<String> paymentReferenceNumbers = databaseHelper.getPaymentsByProductExternalId(product.getExternalId()).stream()
+                .map(payment -> (String) payment.get("reference_number"))
+                .toList();
+        String pooledPaymentReferenceNumber = paymentReferenceNumbers.stream()
+                .filter(pooledReferenceNumbers::contains)
+                .findFirst()
+                .orElseThrow();
+
+        // once a window passes without payments, only the reference number taken for the payment stays reserved
+        assertThat(awaitPooledReferenceNumbers(referenceNumbers -> referenceNumbers.equals(List.of(pooledPaymentReferenceNumber))),
+                is(List.of(pooledPaymentReferenceNumber)));
+    }
+
+    private void createPayment() {
+        app.givenSetup()
+                .accept(APPLICATION_JSON)
+                .post(format("/v1/api/products/%s/payments", product.getExternalId()))
+                .then()
+                .statusCode(201);
+    }
+
+    private List<String> awaitPooledReferenceNumbers(Predicate<List<String>> condition) throws InterruptedException {
+        List<String> pooledReferenceNumbers = databaseHelper.findPooledReferenceNumbers(product.getGatewayAccountId());
+        for (int attempt = 0; attempt < 100 && !condition.test(pooledReferenceNumbers); attempt++) {
+            Thread.sleep(100);
+            pooledReferenceNumbers = databaseHelper.findPooledReferenceNumbers(product.getGatewayAccountId());
+        }
+        return pooledReferenceNumbers;
+    }
+}
@@ -0,0 +1,90 @@
+package uk.gov.pay.products.service;
+
+import io.dropwizard.util.Duration;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import uk.gov.pay.products.config.PaymentCreationOutboxConfig;
+import uk.gov.pay.products.persistence.dao.PaymentCreationOutboxDao;
+import uk.gov.pay.products.persistence.entity.PaymentCreationOutboxEntity;
+import uk.gov.pay.products.persistence.entity.PaymentEntity;
+
+import java.time.InstantSource;
+import java.util.Optional;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class PaymentCreationOutboxTest {
+
+    private static final String PAYMENT_EXTERNAL_ID = "payment-external-id";
+
+    @Mock
+    private PaymentCreationOutboxDao paymentCreationOutboxDao;
+
+    @Mock
+    private PaymentCreationOutboxConfig paymentCreationOutboxConfig;
+
+    private PaymentCreationOutbox paymentCreationOutbox;
+    private PaymentEntity paymentEntity;
+
+    @Before
+    public void setUp() {
+        paymentCreationOutbox = new PaymentCreationOutbox(paymentCreationOutboxDao, paymentCreationOutboxConfig, InstantSource.system());
+        paymentEntity = new PaymentEntity();
+        paymentEntity.setExternalId(PAYMENT_EXTERNAL_ID);
+    }
+
+    @Test
+    public void shouldHandOverPayment_whenWorkerFinishesItBeforeTheRequestStartsWaiting() {
+        when(paymentCreationOutboxConfig.getMaxWaitForPaymentCreation()).thenReturn(Duration.seconds(10L));
+        when(paymentCreationOutboxConfig.getPollInterval()).thenReturn(Duration.milliseconds(100L));
+
+        paymentCreationOutbox.add(paymentEntity, null);
+        paymentCreationOutbox.complete(paymentEntity);
+
+        assertThat(paymentCreationOutbox.awaitPaymentCreation(PAYMENT_EXTERNAL_ID), is(Optional.of(paymentEntity)));
+        verify(paymentCreationOutboxDao).persist(any(PaymentCreationOutboxEntity.class));
+        verifyNoMoreInteractions(paymentCreationOutboxDao);
+    }
+
+    @Test
+    public void shouldStopWaiting_whenPaymentHasBeenCreatedByAnotherInstance() {
+        when(paymentCreationOutboxConfig.getMaxWaitForPaymentCreation()).thenReturn(Duration.seconds(10L));
+        when(paymentCreationOutboxConfig.getPollInterval()).thenReturn(Duration.milliseconds(10L));
+        when(paymentCreationOutboxDao.existsByPaymentExternalId(PAYMENT_EXTERNAL_ID)).thenReturn(true, false);
+
+        paymentCreationOutbox.add(paymentEntity, null);
+
+        assertThat(paymentCreationOutbox.awaitPaymentCreation(PAYMENT_EXTERNAL_ID), is(Optional.empty()));
+    }
+
+    @Test
+    public void shouldNotWait_whenWaitingIsDisabled() {
+        when(paymentCreationOutboxConfig.getMaxWaitForPaymentCreation()).thenReturn(Duration.seconds(0L));
+
+        paymentCreationOutbox.add(paymentEntity, null);
+        paymentCreationOutbox.complete(paymentEntity);
+
+        assertThat(paymentCreationOutbox.awaitPaymentCreation(PAYMENT_EXTERNAL_ID), is(Optional.empty()));
+        verify(paymentCreationOutboxDao).persist(any(PaymentCreationOutboxEntity.class));
+        verifyNoMoreInteractions(paymentCreationOutboxDao);
+    }
+
+    @Test
+    public void shouldNotWait_whenPaymentWasNotSaved() {
+        when(paymentCreationOutboxConfig.getMaxWaitForPaymentCreation()).thenReturn(Duration.seconds(10L));
+
+        paymentCreationOutbox.add(paymentEntity, null);
+        paymentCreationOutbox.stopWaiting(PAYMENT_EXTERNAL_ID);
+
+        assertThat(paymentCreationOutbox.awaitPaymentCreation(PAYMENT_EXTERNAL_ID), is(Optional.empty()));
+    }
+}
@@ -15,16 +15,22 @@ import uk.gov.pay.products.client.publicapi.PaymentResponse;
 import uk.gov.pay.products.client.publicapi.PublicApiRestClient;
 import uk.gov.pay.products.client.publicapi.model.Link;
 import uk.gov.pay.products.client.publicapi.model.Links;
+import uk.gov.pay.products.config.ProductCacheConfig;
 import uk.gov.pay.products.config.ProductsConfiguration;
 import uk.gov.pay.products.exception.BadPaymentRequestException;
+import uk.gov.pay.products.exception.IdempotencyKeyConflictException;
 import uk.gov.pay.products.exception.PaymentCreationException;
 import uk.gov.pay.products.exception.PaymentCreatorNotFoundException;
+import uk.gov.pay.products.exception.PaymentRateLimitExceededException;
 import uk.gov.pay.products.exception.PublicApiResponseErrorException;
+import uk.gov.pay.products.exception.PublicApiUnavailableException;
 import uk.gov.pay.products.matchers.PaymentEntityMatcher;
 import uk.gov.pay.products.matchers.PaymentRequestMatcher;
 import uk.gov.pay.products.model.Payment;
 import uk.gov.pay.products.persistence.dao.PaymentDao;
 import uk.gov.pay.products.persistence.dao.ProductDao;
+import uk.gov.pay.products.persistence.dao.ProductUsageStatsDao;
+import uk.gov.pay.products.persistence.entity.PaymentCreationOutboxEntity;
 import uk.gov.pay.products.persistence.entity.PaymentEntity;
 import uk.gov.pay.products.persistence.entity.ProductEntity;
 import uk.gov.pay.products.service.transaction.TransactionFlow;
@@ -34,24 +40,33 @@ import uk.gov.pay.products.util.RandomIdGenerator;
 import uk.gov.service.payments.commons.model.Source;
 import uk.gov.service.payments.commons.model.SupportedLanguage;
 
+import java.time.ZonedDateTime;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Supplier;
 
 import static java.lang.String.format;
 import static jakarta.ws.rs.core.Response.Status.BAD_REQUEST;
 import static jakarta.ws.rs.core.Response.Status.FORBIDDEN;
+import static jakarta.ws.rs.core.Response.Status.SERVICE_UNAVAILABLE;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 import static org.mockito.hamcrest.MockitoHamcrest.argThat;
+import static uk.gov.pay.products.util.PaymentStatus.CREATED;
 import static uk.gov.pay.products.util.PaymentStatus.ERROR;
 import static uk.gov.pay.products.util.PaymentStatus.SUBMITTED;
 import static uk.gov.pay.products.util.PublicAPIErrorCodes.CREATE_PAYMENT_CARD_NUMBER_IN_PAYMENT_LINK_REFERENCE_ERROR;
@@ -69,6 +84,21 @@ public class PaymentCreatorTest {
     @Mock
     private PaymentDao paymentDao;
 
+    @Mock
+    private ProductUsageStatsDao productUsageStatsDao;
+
+    @Mock
+    private ReferenceNumberPool referenceNumberPool;
+
+    @Mock
+    private PaymentCreationOutbox paymentCreationOutbox;
+
+    @Mock
+    private PaymentIdempotencyKeys paymentIdempotencyKeys;
+
+    @Mock
+    private PaymentRateLimiter paymentRateLimiter;
+
     @Mock
     private PublicApiRestClient publicApiRestClient;
 
@@ -91,7 +121,7 @@ public class PaymentCreatorTest {
     @Before
     public void setup() {
         LinksDecorator linksDecorator = new LinksDecorator(PRODUCT_URL, "https://products-ui.url", "https://products-ui.url/payments");
-        paymentCreator = new PaymentCreator(TransactionFlow::new, productDao, paymentDao, publicApiRestClient, linksDecorator, productsConfiguration, mockPaymentFactory);
+        paymentCreator = new PaymentCreator(TransactionFlow::new, productDao, new ProductCache(mock(ProductCacheConfig.class)), paymentDao, productUsageStatsDao, referenceNumberPool, paymentCreationOutbox, paymentIdempotencyKeys, paymentRateLimiter, publicApiRestClient, linksDecorator, productsConfiguration, mockPaymentFactory);
     }
 
     @After
@@ -146,6 +176,7 @@ public class PaymentCreatorTest {
         when(randomUuid()).thenReturn(paymentExernalId);
         mockedRandomIdGenerator.when(RandomIdGenerator::randomUserFriendlyReference).thenReturn(referenceNumber);
         when(productDao.findByExternalId(productExternalId)).thenReturn(Optional.of(productEntity));
+        when(paymentDao.reserveReferenceNumber(gatewayAccountId, referenceNumber)).thenReturn(true);
         when(publicApiRestClient.createPayment(argThat(is(productApiToken)), argThat(PaymentRequestMatcher.isSame(expectedPaymentRequest)))).thenReturn(paymentResponse);
         when(productsConfiguration.getProductsUiConfirmUrl()).thenReturn(productsUIConfirmUri);
 
@@ -173,6 +204,37 @@ public class PaymentCreatorTest {
                 SUBMITTED,
                 paymentAmount);
         verify(paymentDao).merge(argThat(PaymentEntityMatcher.isSame(expectedPaymentEntity)));
+        verify(productUsageStatsDao).recordPayment(eq(productId), any(ZonedDateTime.class));
+    }
+
+    @Test
+    public void shouldCreatePaymentWithReferenceFromPool_withoutReservingReferenceWhileCreatingPayment() {
+        int productId = 1;
+        String productExternalId = "product-external-id";
+        Integer gatewayAccountId = 1;
+        String pooledReferenceNumber = "PK3MX5GQ7T";
+
+        ProductEntity productEntity = createProductEntity(
+                productId,
+                100L,
+                productExternalId,
+                "name",
+                "https://return.url",
+                "api-token",
+                gatewayAccountId,
+                false,
+                SupportedLanguage.ENGLISH);
+        PaymentResponse paymentResponse = createPaymentResponse("payment-id", 100L, "http://next.url", "https://return.url");
+
+        when(productDao.findByExternalId(productExternalId)).thenReturn(Optional.of(productEntity));
+        when(referenceNumberPool.take(gatewayAccountId)).thenReturn(Optional.of(pooledReferenceNumber));
+        when(publicApiRestClient.createPayment(argThat(is("api-token")), any(PaymentRequest.class))).thenReturn(paymentResponse);
+
+        Payment payment = paymentCreator.doCreate(productExternalId, null, null);
+
+        assertThat(payment.getReferenceNumber(), is(pooledReferenceNumber));
+        verify(paymentDao, never()).reserveReferenceNumber(any(), any());
+        verify(paymentDao).persist(any(PaymentEntity.class));
     }
 
     @Test
@@ -218,6 +280,7 @@ public class PaymentCreatorTest {
 
 
         when(productDao.findByExternalId(productExternalId)).thenReturn(Optional.of(productEntity));
+        when(paymentDao.reserveReferenceNumber(gatewayAccountId, referenceNumber)).thenReturn(true);
         when(randomUuid()).thenReturn(paymentExternalId);
         mockedRandomIdGenerator.when(RandomIdGenerator::randomUserFriendlyReference).thenReturn(referenceNumber);
         when(productsConfiguration.getProductsUiConfirmUrl()).thenReturn(productReturnUrl);
@@ -359,6 +422,7 @@ public class PaymentCreatorTest {
 
 
         when(productDao.findByExternalId(productExternalId)).thenReturn(Optional.of(productEntity));
+        when(paymentDao.reserveReferenceNumber(gatewayAccountId, referenceNumber)).thenReturn(true);
         when(randomUuid()).thenReturn(paymentExternalId);
         mockedRandomIdGenerator.when(RandomIdGenerator::randomUserFriendlyReference).thenReturn(referenceNumber);
         when(productsConfiguration.getProductsUiConfirmUrl()).thenReturn(productReturnUrl);
@@ -447,6 +511,110 @@ public class PaymentCreatorTest {
         verify(paymentDao).merge(argThat(PaymentEntityMatcher.isSame(expectedPaymentEntity)));
     }
 
+    @Test
+    public void shouldReturnPaymentAlreadyCreatedForIdempotencyKey_withoutCreatingAnotherPayment() {
+        String productExternalId = "product-external-id";
+        ProductEntity productEntity = createProductEntity(1, 100L, productExternalId, "name", "https://return.url",
+                "api-token", 1, false, SupportedLanguage.ENGLISH);
+        PaymentEntity paymentEntity = createPaymentEntity("payment-id", "http://next.url", productEntity, SUBMITTED, 100L);
+        paymentEntity.setExternalId("payment-external-id");
+
+        when(paymentIdempotencyKeys.findPaymentExternalId(productExternalId, "idempotency-key", null, null)).thenReturn(Optional.of("payment-external-id"));
+        when(paymentDao.findByExternalId("payment-external-id")).thenReturn(Optional.of(paymentEntity));
+
+        Payment payment = paymentCreator.doCreate(productExternalId, null, null, "idempotency-key");
+
+        assertThat(payment.getExternalId(), is("payment-external-id"));
+        assertThat(payment.getStatus(), is(SUBMITTED));
+        verify(paymentDao, never()).persist(any(PaymentEntity.class));
+        verifyNoInteractions(publicApiRestClient);
+    }
+
+    @Test
+    public void shouldRejectRepeatedRequest_whenPaymentForIdempotencyKeyIsStillBeingCreated() {
+        String productExternalId = "product-external-id";
+        ProductEntity productEntity = createProductEntity(1, 100L, productExternalId, "name", "https://return.url",
+                "api-token", 1, false, SupportedLanguage.ENGLISH);
+        PaymentEntity paymentEntity = createPaymentEntity(null, null, productEntity, CREATED, null);
+        paymentEntity.setExternalId("payment-external-id");
+
+        when(paymentIdempotencyKeys.findPaymentExternalId(productExternalId, "idempotency-key", null, null)).thenReturn(Optional.of("payment-external-id"));
+        when(paymentDao.findByExternalId("payment-external-id")).thenReturn(Optional.of(paymentEntity));
+
+        assertThrows(IdempotencyKeyConflictException.class,
+                () -> paymentCreator.doCreate(productExternalId, null, null, "idempotency-key"));
+        verify(paymentDao, never()).persist(any(PaymentEntity.class));
+        verifyNoInteractions(publicApiRestClient);
+    }
+
+    @Test
+    public void shouldClaimIdempotencyKey_whenCreatingPayment() {
+        String productExternalId = "product-external-id";
+        ProductEntity productEntity = createProductEntity(1, 100L, productExternalId, "name", "https://return.url",
+                "api-token", 1, false, SupportedLanguage.ENGLISH);
+        PaymentResponse paymentResponse = createPaymentResponse("payment-id", 100L, "http://next.url", "https://return.url");
+
+        when(paymentIdempotencyKeys.findPaymentExternalId(productExternalId, "idempotency-key", null, null)).thenReturn(Optional.empty());
+        when(randomUuid()).thenReturn("payment-external-id");
+        when(productDao.findByExternalId(productExternalId)).thenReturn(Optional.of(productEntity));
+        when(referenceNumberPool.take(1)).thenReturn(Optional.of("PK3MX5GQ7T"));
+        when(paymentIdempotencyKeys.claim(productExternalId, "idempotency-key", "payment-external-id", null, null)).thenReturn(true);
+        when(publicApiRestClient.createPayment(argThat(is("api-token")), any(PaymentRequest.class))).thenReturn(paymentResponse);
+
+        Payment payment = paymentCreator.doCreate(productExternalId, null, null, "idempotency-key");
+
+        assertThat(payment.getExternalId(), is("payment-external-id"));
+        assertThat(payment.getStatus(), is(SUBMITTED));
+        verify(paymentIdempotencyKeys).claim(productExternalId, "idempotency-key", "payment-external-id");
+    }
+
+    @Test
+    public void shouldReturnPaymentOfConcurrentRequest_whenIdempotencyKeyIsClaimedWhileCreatingPayment() {
+        String productExternalId = "product-external-id";
+        ProductEntity productEntity = createProductEntity(1, 100L, productExternalId, "name", "https://return.url",
+                "api-token", 1, false, SupportedLanguage.ENGLISH);
+        PaymentEntity concurrentPaymentEntity = createPaymentEntity("payment-id", "http://next.url", productEntity, SUBMITTED, 100L);
+        concurrentPaymentEntity.setExternalId("concurrent-payment-external-id");
+
+        when(paymentIdempotencyKeys.findPaymentExternalId(productExternalId, "idempotency-key", null, null))
+                .thenReturn(Optional.empty())
+                .thenReturn(Optional.of("concurrent-payment-external-id"));
+        when(randomUuid()).thenReturn("payment-external-id");
+        when(productDao.findByExternalId(productExternalId)).thenReturn(Optional.of(productEntity));
+        when(referenceNumberPool.take(1)).thenReturn(Optional.of("PK3MX5GQ7T"));
+        when(paymentIdempotencyKeys.claim(productExternalId, "idempotency-key", "payment-external-id", null, null)).thenReturn(false);
+        when(paymentDao.findByExternalId("concurrent-payment-external-id")).thenReturn(Optional.of(concurrentPaymentEntity));
+
+        Payment payment = paymentCreator.doCreate(productExternalId, null, null, "idempotency-key");
+
+        assertThat(payment.getExternalId(), is("concurrent-payment-external-id"));
+        verifyNoInteractions(publicApiRestClient);
+    }
+
+    @Test
+    public void shouldCreateNewPayment_whenPaymentAlreadyCreatedForIdempotencyKeyFailed() {
+        String productExternalId = "product-external-id";
+        ProductEntity productEntity = createProductEntity(1, 100L, productExternalId, "name", "https://return.url",
+                "api-token", 1, false, SupportedLanguage.ENGLISH);
+        PaymentEntity failedPaymentEntity = createPaymentEntity(null, null, productEntity, ERROR, null);
+        failedPaymentEntity.setExternalId("failed-payment-external-id");
+        PaymentResponse paymentResponse = createPaymentResponse("payment-id", 100L, "http://next.url", "https://return.url");
+
+        when(paymentIdempotencyKeys.findPaymentExternalId(productExternalId, "idempotency-key", null, null)).thenReturn(Optional.of("failed-payment-external-id"));
+        when(paymentDao.findByExternalId("failed-payment-external-id")).thenReturn(Optional.of(failedPaymentEntity));
+        when(randomUuid()).thenReturn("payment-external-id");
+        when(productDao.findByExternalId(productExternalId)).thenReturn(Optional.of(productEntity));
+        when(referenceNumberPool.take(1)).thenReturn(Optional.of("PK3MX5GQ7T"));
+        when(paymentIdempotencyKeys.claim(productExternalId, "idempotency-key", "payment-external-id", null, null)).thenReturn(true);
+        when(publicApiRestClient.createPayment(argThat(is("api-token")), any(PaymentRequest.class))).thenReturn(paymentResponse);
+
+        Payment payment = paymentCreator.doCreate(productExternalId, null, null, "idempotency-key");
+
+        assertThat(payment.getExternalId(), is("payment-external-id"));
+        assertThat(payment.getStatus(), is(SUBMITTED));
+        verify(paymentIdempotencyKeys).release(productExternalId, "idempotency-key", "failed-payment-external-id");
+    }
+
     @Test
     public void shouldCreateAnErrorPayment_whenPublicApiCallFails() {
         int productId = 1;
@@ -483,6 +651,7 @@ public class PaymentCreatorTest {
                 CARD_PAYMENT_LINK);
 
         when(productDao.findByExternalId(productExternalId)).thenReturn(Optional.of(productEntity));
+        when(paymentDao.reserveReferenceNumber(gatewayAccountId, referenceNumber)).thenReturn(true);
         when(randomUuid()).thenReturn(paymentExternalId);
         mockedRandomIdGenerator.when(RandomIdGenerator::randomUserFriendlyReference).thenReturn(referenceNumber);
         when(productsConfiguration.getProductsUiConfirmUrl()).thenReturn(productsUIConfirmUri);
@@ -510,6 +679,50 @@ public class PaymentCreatorTest {
         verifyNoInteractions(mockPaymentUpdater);
     }
 
+    @Test
+    public void shouldCreateAnErrorPayment_withoutWaitingForPublicApi_whenPublicApiIsUnavailable() {
+        String productExternalId = "product-external-id";
+        String referenceNumber = createRandomReferenceNumber();
+        ProductEntity productEntity = createProductEntity(1, 100L, productExternalId, "name", "https://return.url",
+                "api-token", 1, false, SupportedLanguage.ENGLISH);
+
+        when(productDao.findByExternalId(productExternalId)).thenReturn(Optional.of(productEntity));
+        when(paymentDao.reserveReferenceNumber(1, referenceNumber)).thenReturn(true);
+        when(randomUuid()).thenReturn("random-external-id");
+        mockedRandomIdGenerator.when(RandomIdGenerator::randomUserFriendlyReference).thenReturn(referenceNumber);
+        when(productsConfiguration.getProductsUiConfirmUrl()).thenReturn("https://products-ui/payment-complete");
+        when(publicApiRestClient.createPayment(argThat(is("api-token")), any(PaymentRequest.class)))
+                .thenThrow(new PublicApiUnavailableException(new RuntimeException("CircuitBreaker 'publicapi' is OPEN")));
+
+        try {
+            paymentCreator.doCreate(productExternalId, null, null);
+            fail("Expected an PaymentCreationException to be thrown");
+        } catch (PaymentCreationException e) {
+            assertThat(e.getProductExternalId(), is(productExternalId));
+            assertThat(e.getErrorStatusCode(), is(SERVICE_UNAVAILABLE.getStatusCode()));
+            assertThat(e.getErrorCode(), is(PublicApiUnavailableException.PUBLIC_API_UNAVAILABLE));
+            verify(paymentDao).merge(argThat(PaymentEntityMatcher.isSame(
+                    createPaymentEntity(null, null, productEntity, ERROR, null))));
+        }
+    }
+
+    @Test
+    public void shouldNotCreateAPayment_whenTheRateLimitIsExceeded() {
+        String productExternalId = "product-external-id";
+        ProductEntity productEntity = createProductEntity(1, 100L, productExternalId, "name", "https://return.url",
+                "api-token", 1, false, SupportedLanguage.ENGLISH);
+
+        when(productDao.findByExternalId(productExternalId)).thenReturn(Optional.of(productEntity));
+        doAnswer(invocation -> {
+            Supplier<Optional<Integer>> gatewayAccountIdOfProduct = invocation.getArgument(1);
+            assertThat(gatewayAccountIdOfProduct.get(), is(Optional.of(1)));
+            throw new PaymentRateLimitExceededException("Too many payments created for gateway account 1, try again later", 1L);
+        }).when(paymentRateLimiter).acquire(eq(productExternalId), any());
+
+        assertThrows(PaymentRateLimitExceededException.class, () -> paymentCreator.doCreate(productExternalId, null, null));
+        verifyNoInteractions(paymentDao, publicApiRestClient);
+    }
+
     @Test
     public void shouldCreateAnErrorPayment_whenPublicApiReturnsErrorCodeForCardNumberInReference() {
         int productId = 1;
@@ -546,6 +759,7 @@ public class PaymentCreatorTest {
                 CARD_PAYMENT_LINK);
 
         when(productDao.findByExternalId(productExternalId)).thenReturn(Optional.of(productEntity));
+        when(paymentDao.reserveReferenceNumber(gatewayAccountId, referenceNumber)).thenReturn(true);
         when(randomUuid()).thenReturn(paymentExternalId);
         mockedRandomIdGenerator.when(RandomIdGenerator::randomUserFriendlyReference).thenReturn(referenceNumber);
         when(productsConfiguration.getProductsUiConfirmUrl()).thenReturn(productsUIConfirmUri);
@@ -625,7 +839,6 @@ public class PaymentCreatorTest {
         String productName = "name";
         String productReturnUrl = "https://return.url";
         String productApiToken = "api-token";
-        String paymentId = "abcd1234";
         Integer gatewayAccountId = 1;
         SupportedLanguage language = SupportedLanguage.WELSH;
 
@@ -640,22 +853,136 @@ public class PaymentCreatorTest {
                 false,
                 language);
 
-        PaymentEntity paymentEntity = createPaymentEntity(
-                paymentId,
-                randomUserFriendlyReference,
-                productEntity,
-                PaymentStatus.SUBMITTED,
-                productPrice);
-
         when(RandomIdGenerator.randomUserFriendlyReference()).thenReturn(randomUserFriendlyReference);
         when(productDao.findByExternalId(productExternalId)).thenReturn(Optional.of(productEntity));
-        when(paymentDao.findByGatewayAccountIdAndReferenceNumber(gatewayAccountId, randomUserFriendlyReference)).thenReturn(Optional.of(paymentEntity));
+        when(paymentDao.reserveReferenceNumber(gatewayAccountId, randomUserFriendlyReference)).thenReturn(false);
         try {
             paymentCreator.doCreate(productExternalId, null, null);
         } catch (RuntimeException ex) {
             assertThat(ex.getMessage(), is("Too many conflicts generating unique user friendly reference numbers for gateway account 1"));
         }
-        verify(paymentDao, times(3)).findByGatewayAccountIdAndReferenceNumber(gatewayAccountId, randomUserFriendlyReference);
+        verify(paymentDao, times(3)).reserveReferenceNumber(gatewayAccountId, randomUserFriendlyReference);
+        verify(paymentDao, never()).persist(any(PaymentEntity.class));
+    }
+
+    @Test
+    public void shouldAddPaymentToOutbox_andReturnPaymentCreatedByWorker_whenOutboxIsEnabled() {
+        String productExternalId = "product-external-id";
+        String paymentExternalId = "payment-external-id";
+        String referenceNumber = createRandomReferenceNumber();
+        Integer gatewayAccountId = 1;
+        ProductEntity productEntity = createProductEntity(1, 100L, productExternalId, "name", "https://return.url",
+                "api-token", gatewayAccountId, false, SupportedLanguage.ENGLISH);
+        PaymentEntity createdPaymentEntity = createPaymentEntity("payment-id", referenceNumber, "http://next.url", productEntity, SUBMITTED, 150L);
+        createdPaymentEntity.setExternalId(paymentExternalId);
+
+        when(paymentCreationOutbox.isEnabled()).thenReturn(true);
+        when(randomUuid()).thenReturn(paymentExternalId);
+        mockedRandomIdGenerator.when(RandomIdGenerator::randomUserFriendlyReference).thenReturn(referenceNumber);
+        when(productDao.findByExternalId(productExternalId)).thenReturn(Optional.of(productEntity));
+        when(paymentDao.reserveReferenceNumber(gatewayAccountId, referenceNumber)).thenReturn(true);
+        when(paymentCreationOutbox.awaitPaymentCreation(paymentExternalId)).thenReturn(Optional.of(createdPaymentEntity));
+
+        Payment payment = paymentCreator.doCreate(productExternalId, 150L, null);
+
+        assertThat(payment.getExternalId(), is(paymentExternalId));
+        assertThat(payment.getStatus(), is(SUBMITTED));
+        assertThat(payment.getNextUrl(), is("http://next.url"));
+        verify(paymentDao).persist(any(PaymentEntity.class));
+        verify(paymentCreationOutbox).add(any(PaymentEntity.class), eq(150L));
+        verifyNoInteractions(publicApiRestClient);
+    }
+
+    @Test
+    public void shouldReturnPaymentStillCreated_whenNoWorkerCreatesItInTime() {
+        String productExternalId = "product-external-id";
+        String paymentExternalId = "payment-external-id";
+        String referenceNumber = createRandomReferenceNumber();
+        Integer gatewayAccountId = 1;
+        ProductEntity productEntity = createProductEntity(1, 100L, productExternalId, "name", "https://return.url",
+                "api-token", gatewayAccountId, false, SupportedLanguage.ENGLISH);
+
+        when(paymentCreationOutbox.isEnabled()).thenReturn(true);
+        when(randomUuid()).thenReturn(paymentExternalId);
+        mockedRandomIdGenerator.when(RandomIdGenerator::randomUserFriendlyReference).thenReturn(referenceNumber);
+        when(productDao.findByExternalId(productExternalId)).thenReturn(Optional.of(productEntity));
+        when(paymentDao.reserveReferenceNumber(gatewayAccountId, referenceNumber)).thenReturn(true);
+        when(paymentCreationOutbox.awaitPaymentCreation(paymentExternalId)).thenReturn(Optional.empty());
+        when(paymentDao.findByExternalId(paymentExternalId)).thenReturn(Optional.empty());
+
+        Payment payment = paymentCreator.doCreate(productExternalId, null, null);
+
+        assertThat(payment.getExternalId(), is(paymentExternalId));
+        assertThat(payment.getStatus(), is(CREATED));
+        verifyNoInteractions(publicApiRestClient);
+    }
+
+    @Test
+    public void shouldCreateOutboxedPaymentInPublicApi_andRemoveItFromOutbox() {
+        String paymentExternalId = "payment-external-id";
+        String referenceNumber = createRandomReferenceNumber();
+        ProductEntity productEntity = createProductEntity(1, 100L, "product-external-id", "name", "https://return.url",
+                "api-token", 1, false, SupportedLanguage.ENGLISH);
+        PaymentEntity paymentEntity = createPaymentEntity(null, referenceNumber, null, productEntity, CREATED, null);
+        paymentEntity.setExternalId(paymentExternalId);
+        PaymentCreationOutboxEntity outboxEntity = new PaymentCreationOutboxEntity(paymentExternalId, 150L);
+        PaymentResponse paymentResponse = createPaymentResponse("payment-id", 150L, "http://next.url", "https://return.url");
+
+        when(paymentCreationOutbox.claim()).thenReturn(List.of(outboxEntity));
+        when(paymentCreationOutbox.hasAttemptsLeft(outboxEntity)).thenReturn(true);
+        when(paymentDao.findByExternalId(paymentExternalId)).thenReturn(Optional.of(paymentEntity));
+        when(publicApiRestClient.createPayment(argThat(is("api-token")), any(PaymentRequest.class))).thenReturn(paymentResponse);
+
+        paymentCreator.createOutboxedPayments();
+
+        PaymentEntity expectedPaymentEntity = createPaymentEntity("payment-id", referenceNumber, "http://next.url", productEntity, SUBMITTED, 150L);
+        verify(paymentDao).merge(argThat(PaymentEntityMatcher.isSame(expectedPaymentEntity)));
+        verify(paymentCreationOutbox).remove(paymentExternalId);
+        verify(paymentCreationOutbox).complete(paymentEntity);
+    }
+
+    @Test
+    public void shouldMarkOutboxedPaymentAsFailed_withoutCallingPublicApi_whenItHasNoAttemptsLeft() {
+        String paymentExternalId = "payment-external-id";
+        String referenceNumber = createRandomReferenceNumber();
+        ProductEntity productEntity = createProductEntity(1, 100L, "product-external-id", "name", "https://return.url",
+                "api-token", 1, false, SupportedLanguage.ENGLISH);
+        PaymentEntity paymentEntity = createPaymentEntity(null, referenceNumber, null, productEntity, CREATED, null);
+        paymentEntity.setExternalId(paymentExternalId);
+        PaymentCreationOutboxEntity outboxEntity = new PaymentCreationOutboxEntity(paymentExternalId, null);
+
+        when(paymentCreationOutbox.claim()).thenReturn(List.of(outboxEntity));
+        when(paymentCreationOutbox.hasAttemptsLeft(outboxEntity)).thenReturn(false);
+        when(paymentDao.findByExternalId(paymentExternalId)).thenReturn(Optional.of(paymentEntity));
+
+        paymentCreator.createOutboxedPayments();
+
+        assertThat(paymentEntity.getStatus(), is(ERROR));
+        verify(paymentDao).merge(paymentEntity);
+        verify(paymentCreationOutbox).remove(paymentExternalId);
+        verify(paymentCreationOutbox).complete(paymentEntity);
+        verifyNoInteractions(publicApiRestClient);
+    }
+
+    @Test
+    public void shouldLeaveOutboxedPaymentInOutbox_whenPublicApiCannotBeReached() {
+        String paymentExternalId = "payment-external-id";
+        ProductEntity productEntity = createProductEntity(1, 100L, "product-external-id", "name", "https://return.url",
+                "api-token", 1, false, SupportedLanguage.ENGLISH);
+        PaymentEntity paymentEntity = createPaymentEntity(null, createRandomReferenceNumber(), null, productEntity, CREATED, null);
+        paymentEntity.setExternalId(paymentExternalId);
+        PaymentCreationOutboxEntity outboxEntity = new PaymentCreationOutboxEntity(paymentExternalId, null);
+
+        when(paymentCreationOutbox.claim()).thenReturn(List.of(outboxEntity));
+        when(paymentCreationOutbox.hasAttemptsLeft(outboxEntity)).thenReturn(true);
+        when(paymentDao.findByExternalId(paymentExternalId)).thenReturn(Optional.of(paymentEntity));
+        when(publicApiRestClient.createPayment(argThat(is("api-token")), any(PaymentRequest.class))).thenThrow(new RuntimeException("connection refused"));
+
+        paymentCreator.createOutboxedPayments();
+
+        verify(paymentDao, never()).merge(any(PaymentEntity.class));
+        verify(paymentCreationOutbox, never()).remove(paymentExternalId);
+        verify(paymentCreationOutbox, never()).complete(any(PaymentEntity.class));
     }
 
     private ProductEntity createProductEntity(int id,
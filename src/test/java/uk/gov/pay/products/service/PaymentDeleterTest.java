@@ -11,10 +11,13 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.slf4j.LoggerFactory;
+import io.dropwizard.util.Duration;
 import uk.gov.pay.products.config.ExpungeHistoricalDataConfig;
+import uk.gov.pay.products.persistence.dao.DatabaseActivityDao;
 import uk.gov.pay.products.persistence.dao.PaymentDao;
 
 import java.time.Instant;
@@ -28,6 +31,9 @@ import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.core.Is.is;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
@@ -45,6 +51,12 @@ public class PaymentDeleterTest {
     @Mock
     private PaymentDao paymentDao;
 
+    @Mock
+    private DatabaseActivityDao databaseActivityDao;
+
+    @Mock
+    private PaymentPartitionManager paymentPartitionManager;
+
     private final InstantSource instantSource = InstantSource.fixed(Instant.parse("2022-03-03T10:15:30Z"));
 
     @Captor
@@ -61,7 +73,7 @@ public class PaymentDeleterTest {
         logger.addAppender(mockAppender);
         logger.setLevel(Level.INFO);
         
-        paymentDeleter = new PaymentDeleter(expungeHistoricalDataConfig, paymentDao, instantSource);
+        paymentDeleter = new PaymentDeleter(expungeHistoricalDataConfig, paymentDao, databaseActivityDao, paymentPartitionManager, instantSource);
     }
     
     @Test
@@ -90,6 +102,17 @@ public class PaymentDeleterTest {
         
         verify(paymentDao, times(1)).deletePayments(ZonedDateTime.now(instantSource.withZone(UTC)).minusDays(1), 3);
     }
+
+    @Test
+    public void shouldDeletePooledReferenceNumbersReservedADayBeforeMaxDate() {
+        when(expungeHistoricalDataConfig.isExpungeHistoricalDataEnabled()).thenReturn(true);
+        when(expungeHistoricalDataConfig.getExpungeDataOlderThanDays()).thenReturn(1);
+        when(expungeHistoricalDataConfig.getNumberOfPaymentsToExpunge()).thenReturn(3);
+
+        paymentDeleter.deletePayments();
+
+        verify(paymentDao).deletePooledReferenceNumbers(ZonedDateTime.now(instantSource.withZone(UTC)).minusDays(2), 3);
+    }
     
     @Test
     public void shouldNotDeletePaymentsIfNotEnabled() {
@@ -103,4 +126,111 @@ public class PaymentDeleterTest {
         Double noOfTxsRedactedMetric = collectorRegistry.getSampleValue("expunge_historical_data_job_no_of_payments_deleted_total");
         assertThat(noOfTxsRedactedMetric, is(initialNoOfPaymentsDeletedMetric));
     }
+
+    @Test
+    public void shouldDeletePaymentsInChunks_untilNoPaymentsAreLeftToDelete() {
+        givenExpungeInChunks(2, 10);
+        when(databaseActivityDao.findMaxReplicationLag()).thenReturn(java.time.Duration.ZERO);
+        when(paymentDao.deletePayments(any(), anyInt())).thenReturn(2, 2, 1);
+
+        paymentDeleter.deletePayments();
+
+        verify(paymentDao, times(3)).deletePayments(ZonedDateTime.now(instantSource.withZone(UTC)).minusDays(1), 2);
+        verifyLog(mockAppender, loggingEventArgumentCaptor, 1, "5 payments were deleted.");
+    }
+
+    @Test
+    public void shouldNotDeleteMorePaymentsThanNumberOfPaymentsToExpunge_whenDeletingInChunks() {
+        givenExpungeInChunks(2, 3);
+        when(databaseActivityDao.findMaxReplicationLag()).thenReturn(java.time.Duration.ZERO);
+        when(paymentDao.deletePayments(any(), anyInt())).thenReturn(2, 1);
+
+        paymentDeleter.deletePayments();
+
+        ZonedDateTime maxDate = ZonedDateTime.now(instantSource.withZone(UTC)).minusDays(1);
+        verify(paymentDao).deletePayments(maxDate, 2);
+        verify(paymentDao).deletePayments(maxDate, 1);
+        verify(paymentDao).deletePooledReferenceNumbers(maxDate.minusDays(1), 3);
+        verifyNoMoreInteractions(paymentDao);
+    }
+
+    @Test
+    public void shouldPauseDeletingChunks_whileReplicationLagIsTooHigh() {
+        Double initialPauses = Optional.ofNullable(collectorRegistry.getSampleValue("expunge_historical_data_job_pauses_total",
+                new String[]{"reason"}, new String[]{"replication_lag"})).orElse(0.0);
+        givenExpungeInChunks(2, 2);
+        when(expungeHistoricalDataConfig.getPauseWhenDatabaseBusy()).thenReturn(Duration.milliseconds(0));
+        when(databaseActivityDao.findMaxReplicationLag()).thenReturn(java.time.Duration.ofMinutes(1), java.time.Duration.ZERO);
+        when(paymentDao.deletePayments(any(), anyInt())).thenReturn(2);
+
+        paymentDeleter.deletePayments();
+
+        verify(paymentDao, times(1)).deletePayments(any(), anyInt());
+        Double pauses = collectorRegistry.getSampleValue("expunge_historical_data_job_pauses_total",
+                new String[]{"reason"}, new String[]{"replication_lag"});
+        assertThat(pauses, is(initialPauses + 1));
+    }
+
+    @Test
+    public void shouldStopDeletingChunks_whenMaxRunDurationHasPassed() {
+        InstantSource advancingInstantSource = mock(InstantSource.class);
+        Instant now = instantSource.instant();
+        when(advancingInstantSource.instant()).thenReturn(now, now, now, now.plusSeconds(120));
+        paymentDeleter = new PaymentDeleter(expungeHistoricalDataConfig, paymentDao, databaseActivityDao, paymentPartitionManager, advancingInstantSource);
+        givenExpungeInChunks(2, 10);
+        when(databaseActivityDao.findMaxReplicationLag()).thenReturn(java.time.Duration.ZERO);
+        when(paymentDao.deletePayments(any(), anyInt())).thenReturn(2);
+
+        paymentDeleter.deletePayments();
+
+        verify(paymentDao, times(1)).deletePayments(any(), anyInt());
+    }
+
+    @Test
+    public void shouldOnlyEstimateNumberOfPaymentsToDelete_whenDryRun() {
+        when(expungeHistoricalDataConfig.isExpungeHistoricalDataEnabled()).thenReturn(true);
+        when(expungeHistoricalDataConfig.getExpungeDataOlderThanDays()).thenReturn(1);
+        when(expungeHistoricalDataConfig.getNumberOfPaymentsToExpunge()).thenReturn(10);
+        when(expungeHistoricalDataConfig.isDryRun()).thenReturn(true);
+        when(expungeHistoricalDataConfig.isExpungeInChunks()).thenReturn(true);
+        when(expungeHistoricalDataConfig.getChunkSize()).thenReturn(2);
+        when(paymentDao.countPaymentsCreatedBefore(any(), anyInt())).thenReturn(3);
+
+        paymentDeleter.deletePayments();
+
+        verify(paymentDao).countPaymentsCreatedBefore(ZonedDateTime.now(instantSource.withZone(UTC)).minusDays(1), 10);
+        verify(paymentDao, never()).deletePayments(any(), anyInt());
+        verifyLog(mockAppender, loggingEventArgumentCaptor, 1, "Dry run: 3 payments would be deleted in 2 chunks.");
+        assertThat(collectorRegistry.getSampleValue("expunge_historical_data_job_no_of_payments_to_delete"), is(3.0));
+    }
+
+    @Test
+    public void shouldDropExpiredPartitions_beforeDeletingRemainingPayments() {
+        when(expungeHistoricalDataConfig.isExpungeHistoricalDataEnabled()).thenReturn(true);
+        when(expungeHistoricalDataConfig.getExpungeDataOlderThanDays()).thenReturn(1);
+        when(expungeHistoricalDataConfig.getNumberOfPaymentsToExpunge()).thenReturn(3);
+        when(expungeHistoricalDataConfig.isDropExpiredPartitions()).thenReturn(true);
+        ZonedDateTime maxDate = ZonedDateTime.now(instantSource.withZone(UTC)).minusDays(1);
+        when(paymentPartitionManager.dropExpiredMonthlyPartitions(maxDate)).thenReturn(100);
+        when(paymentDao.deletePayments(maxDate, 3)).thenReturn(2);
+
+        paymentDeleter.deletePayments();
+
+        InOrder inOrder = inOrder(paymentPartitionManager, paymentDao);
+        inOrder.verify(paymentPartitionManager).dropExpiredMonthlyPartitions(maxDate);
+        inOrder.verify(paymentDao).deletePayments(maxDate, 3);
+        verifyLog(mockAppender, loggingEventArgumentCaptor, 1, "102 payments were deleted.");
+    }
+
+    private void givenExpungeInChunks(int chunkSize, int numberOfPaymentsToExpunge) {
+        when(expungeHistoricalDataConfig.isExpungeHistoricalDataEnabled()).thenReturn(true);
+        when(expungeHistoricalDataConfig.getExpungeDataOlderThanDays()).thenReturn(1);
+        when(expungeHistoricalDataConfig.getNumberOfPaymentsToExpunge()).thenReturn(numberOfPaymentsToExpunge);
+        when(expungeHistoricalDataConfig.isExpungeInChunks()).thenReturn(true);
+        when(expungeHistoricalDataConfig.getChunkSize()).thenReturn(chunkSize);
+        when(expungeHistoricalDataConfig.getMaxRunDuration()).thenReturn(Duration.minutes(1));
+        when(expungeHistoricalDataConfig.getPauseBetweenChunks()).thenReturn(Duration.milliseconds(0));
+        when(expungeHistoricalDataConfig.getMaxReplicationLag()).thenReturn(Duration.seconds(30));
+        when(expungeHistoricalDataConfig.getMaxSessionsWaitingForLocks()).thenReturn(0);
+    }
 }
@@ -1,5 +1,6 @@
 package uk.gov.pay.products.service;
 
+import io.dropwizard.util.Duration;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -8,27 +9,46 @@ import org.mockito.junit.MockitoJUnitRunner;
 import uk.gov.pay.products.client.publicapi.PaymentResponse;
 import uk.gov.pay.products.client.publicapi.PublicApiRestClient;
 import uk.gov.pay.products.client.publicapi.model.PaymentState;
+import uk.gov.pay.products.config.PaymentStatusLookupConfig;
+import uk.gov.pay.products.config.PaymentStatusReconcilerConfig;
 import uk.gov.pay.products.fixtures.ProductEntityFixture;
 import uk.gov.pay.products.model.Payment;
+import uk.gov.pay.products.model.PaymentPage;
+import uk.gov.pay.products.model.PaymentPageCursor;
 import uk.gov.pay.products.persistence.dao.PaymentDao;
 import uk.gov.pay.products.persistence.entity.PaymentEntity;
 import uk.gov.pay.products.persistence.entity.ProductEntity;
 import uk.gov.pay.products.util.PaymentStatus;
 
+import java.time.Instant;
+import java.time.InstantSource;
+import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
+import static java.time.ZoneOffset.UTC;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.core.Is.is;
 import static org.hamcrest.core.IsNull.nullValue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
+import static uk.gov.pay.products.fixtures.PaymentEntityFixture.aPaymentEntity;
 import static uk.gov.pay.products.util.RandomIdGenerator.randomUuid;
 
 @RunWith(MockitoJUnitRunner.class)
 public class PaymentFinderTest {
 
+    private static final Instant NOW = Instant.parse("2022-03-03T10:15:30Z");
+
     @Mock
     private PaymentDao paymentDao;
 
@@ -40,7 +60,8 @@ public class PaymentFinderTest {
     @Before
     public void setup() {
         LinksDecorator linksDecorator = new LinksDecorator("http://localhost", "http://localhost/pay", "http://localhost/payments");
-        paymentFinder = new PaymentFinder(paymentDao, linksDecorator, publicApiRestClient);
+        paymentFinder = new PaymentFinder(paymentDao, linksDecorator, publicApiRestClient, new PaymentStatusLookupConfig(),
+                new PaymentStatusReconcilerConfig(), InstantSource.fixed(NOW));
     }
 
     @Test
@@ -91,8 +112,8 @@ public class PaymentFinderTest {
         paymentResponse.setState(new PaymentState("success", true, "a message", "a code"));
 
         when(paymentDao.findByProductExternalId(productExternalId)).thenReturn(paymentList);
-        when(publicApiRestClient.getPayment(productEntity.getPayApiToken(), paymentEntity_1.getGovukPaymentId()))
-                .thenReturn(Optional.of(paymentResponse));
+        when(publicApiRestClient.getPaymentAsync(productEntity.getPayApiToken(), paymentEntity_1.getGovukPaymentId()))
+                .thenReturn(CompletableFuture.completedFuture(Optional.of(paymentResponse)));
 
         List<Payment> expectedPaymentList = paymentFinder.findByProductExternalId(productExternalId);
 
@@ -141,6 +162,52 @@ public class PaymentFinderTest {
         assertThat(payment.getGovUkStatus(), is("submitted"));
     }
 
+    @Test
+    public void shouldStoreExternalStatus_whenPublicApiReportsPaymentAsFinished() {
+        ProductEntity productEntity = ProductEntityFixture.aProductEntity().build();
+        PaymentEntity paymentEntity = aSubmittedPaymentEntity(productEntity);
+        PaymentResponse paymentResponse = new PaymentResponse();
+        paymentResponse.setState(new PaymentState("success", true, "a message", "a code"));
+        when(paymentDao.findByExternalId(paymentEntity.getExternalId())).thenReturn(Optional.of(paymentEntity));
+        when(publicApiRestClient.getPayment(productEntity.getPayApiToken(), paymentEntity.getGovukPaymentId()))
+                .thenReturn(Optional.of(paymentResponse));
+
+        Optional<Payment> optionalPayment = paymentFinder.findByExternalId(paymentEntity.getExternalId());
+
+        assertThat(optionalPayment.get().getGovUkStatus(), is("success"));
+        verify(paymentDao).updateGovukStatus(paymentEntity.getExternalId(), "success", true, ZonedDateTime.ofInstant(NOW, UTC));
+    }
+
+    @Test
+    public void shouldNotStoreExternalStatus_whenPaymentIsNotFinishedInPublicApi() {
+        ProductEntity productEntity = ProductEntityFixture.aProductEntity().build();
+        PaymentEntity paymentEntity = aSubmittedPaymentEntity(productEntity);
+        PaymentResponse paymentResponse = new PaymentResponse();
+        paymentResponse.setState(new PaymentState("started", false, "a message", "a code"));
+        when(paymentDao.findByExternalId(paymentEntity.getExternalId())).thenReturn(Optional.of(paymentEntity));
+        when(publicApiRestClient.getPayment(productEntity.getPayApiToken(), paymentEntity.getGovukPaymentId()))
+                .thenReturn(Optional.of(paymentResponse));
+
+        Optional<Payment> optionalPayment = paymentFinder.findByExternalId(paymentEntity.getExternalId());
+
+        assertThat(optionalPayment.get().getGovUkStatus(), is("started"));
+        verify(paymentDao, never()).updateGovukStatus(any(), any(), anyBoolean(), any());
+    }
+
+    @Test
+    public void shouldReturnStoredExternalStatus_withoutQueryingPublicApi_whenPaymentIsFinished() {
+        ProductEntity productEntity = ProductEntityFixture.aProductEntity().build();
+        PaymentEntity finishedPaymentEntity = aSubmittedPaymentEntity(productEntity);
+        finishedPaymentEntity.setGovukStatus("cancelled");
+        finishedPaymentEntity.setGovukStatusFinished(true);
+        when(paymentDao.findByProductExternalId(productEntity.getExternalId())).thenReturn(List.of(finishedPaymentEntity));
+
+        List<Payment> payments = paymentFinder.findByProductExternalId(productEntity.getExternalId());
+
+        assertThat(payments.get(0).getGovUkStatus(), is("cancelled"));
+        verifyNoInteractions(publicApiRestClient);
+    }
+
     @Test
     public void shouldReturnPaymentWithNoExternalStatus_whenFoundByExternalIdAndStatusIsCreated() {
         String externalId = randomUuid();
@@ -176,4 +243,108 @@ public class PaymentFinderTest {
         Payment payment = optionalPayment.get();
         assertThat(payment.getGovUkStatus(), is(nullValue()));
     }
+
+    @Test
+    public void shouldReturnPageWithNextCursor_whenMorePaymentsExistForProduct() {
+        ProductEntity productEntity = ProductEntityFixture.aProductEntity().build();
+        ZonedDateTime dateCreated = ZonedDateTime.parse("2024-01-02T10:15:30.123456Z");
+        PaymentEntity newestPaymentEntity = aPaymentEntity().withProduct(productEntity).withDateCreated(dateCreated).build();
+        newestPaymentEntity.setId(2);
+        PaymentEntity olderPaymentEntity = aPaymentEntity().withProduct(productEntity).withDateCreated(dateCreated.minusDays(1)).build();
+        olderPaymentEntity.setId(1);
+        when(paymentDao.findByProductExternalIdBefore(productEntity.getExternalId(), PaymentStatus.CREATED, null, null, null, 2))
+                .thenReturn(List.of(newestPaymentEntity, olderPaymentEntity));
+
+        PaymentPage paymentPage = paymentFinder.findPageByProductExternalId(productEntity.getExternalId(), PaymentStatus.CREATED, null, null, null, 1);
+
+        assertThat(paymentPage.getPayments().size(), is(1));
+        assertThat(paymentPage.getPayments().get(0).getExternalId(), is(newestPaymentEntity.getExternalId()));
+        assertThat(paymentPage.getNextCursor().isPresent(), is(true));
+        assertThat(paymentPage.getNextCursor().get().toString(), is("2024-01-02T10:15:30.123456Z_2"));
+    }
+
+    @Test
+    public void shouldReturnPageWithoutNextCursor_whenLastPageOfPaymentsForProduct() {
+        ProductEntity productEntity = ProductEntityFixture.aProductEntity().build();
+        PaymentPageCursor before = PaymentPageCursor.parse("2024-01-02T10:15:30.123456Z_2").orElseThrow();
+        PaymentEntity paymentEntity = aPaymentEntity().withProduct(productEntity).build();
+        when(paymentDao.findByProductExternalIdBefore(productEntity.getExternalId(), null, null, null, before, 3))
+                .thenReturn(List.of(paymentEntity));
+
+        PaymentPage paymentPage = paymentFinder.findPageByProductExternalId(productEntity.getExternalId(), null, null, null, before, 2);
+
+        assertThat(paymentPage.getPayments().size(), is(1));
+        assertThat(paymentPage.getNextCursor().isPresent(), is(false));
+    }
+
+    @Test
+    public void shouldReturnStoredExternalStatus_withoutQueryingPublicApi_whenPaymentStatusReconcilerIsEnabled() {
+        ProductEntity productEntity = ProductEntityFixture.aProductEntity().build();
+        PaymentEntity paymentEntity = aSubmittedPaymentEntity(productEntity);
+        paymentEntity.setGovukStatus("started");
+        PaymentStatusReconcilerConfig paymentStatusReconcilerConfig = mock(PaymentStatusReconcilerConfig.class);
+        when(paymentStatusReconcilerConfig.isEnabled()).thenReturn(true);
+        paymentFinder = new PaymentFinder(paymentDao, new LinksDecorator("http://localhost", "http://localhost/pay", "http://localhost/payments"),
+                publicApiRestClient, new PaymentStatusLookupConfig(), paymentStatusReconcilerConfig, InstantSource.fixed(NOW));
+        when(paymentDao.findByExternalId(paymentEntity.getExternalId())).thenReturn(Optional.of(paymentEntity));
+
+        Optional<Payment> optionalPayment = paymentFinder.findByExternalId(paymentEntity.getExternalId());
+
+        assertThat(optionalPayment.get().getGovUkStatus(), is("started"));
+        verifyNoInteractions(publicApiRestClient);
+    }
+
+    @Test
+    public void shouldReturnPaymentsWithoutExternalStatus_whenTheirLookupDoesNotFinishInTime() {
+        ProductEntity productEntity = ProductEntityFixture.aProductEntity().build();
+        PaymentEntity answeredPaymentEntity = aSubmittedPaymentEntity(productEntity);
+        PaymentEntity unansweredPaymentEntity = aSubmittedPaymentEntity(productEntity);
+        PaymentResponse paymentResponse = new PaymentResponse();
+        paymentResponse.setState(new PaymentState("success", true, "a message", "a code"));
+        PaymentStatusLookupConfig paymentStatusLookupConfig = mock(PaymentStatusLookupConfig.class);
+        when(paymentStatusLookupConfig.getMaxConcurrentLookups()).thenReturn(10);
+        when(paymentStatusLookupConfig.getMaxLookupDuration()).thenReturn(Duration.milliseconds(100));
+        paymentFinder = new PaymentFinder(paymentDao, new LinksDecorator("http://localhost", "http://localhost/pay", "http://localhost/payments"),
+                publicApiRestClient, paymentStatusLookupConfig, new PaymentStatusReconcilerConfig(), InstantSource.fixed(NOW));
+
+        when(paymentDao.findByProductExternalId(productEntity.getExternalId())).thenReturn(List.of(answeredPaymentEntity, unansweredPaymentEntity));
+        when(publicApiRestClient.getPaymentAsync(productEntity.getPayApiToken(), answeredPaymentEntity.getGovukPaymentId()))
+                .thenReturn(CompletableFuture.completedFuture(Optional.of(paymentResponse)));
+        when(publicApiRestClient.getPaymentAsync(productEntity.getPayApiToken(), unansweredPaymentEntity.getGovukPaymentId()))
+                .thenReturn(new CompletableFuture<>());
+
+        List<Payment> payments = paymentFinder.findByProductExternalId(productEntity.getExternalId());
+
+        assertThat(payments.size(), is(2));
+        assertThat(payments.get(0).getGovUkStatus(), is("success"));
+        assertThat(payments.get(1).getGovUkStatus(), is(nullValue()));
+    }
+
+    @Test
+    public void shouldNotStartMoreLookupsThanMaxConcurrentLookups() {
+        ProductEntity productEntity = ProductEntityFixture.aProductEntity().build();
+        PaymentStatusLookupConfig paymentStatusLookupConfig = mock(PaymentStatusLookupConfig.class);
+        when(paymentStatusLookupConfig.getMaxConcurrentLookups()).thenReturn(2);
+        when(paymentStatusLookupConfig.getMaxLookupDuration()).thenReturn(Duration.milliseconds(100));
+        paymentFinder = new PaymentFinder(paymentDao, new LinksDecorator("http://localhost", "http://localhost/pay", "http://localhost/payments"),
+                publicApiRestClient, paymentStatusLookupConfig, new PaymentStatusReconcilerConfig(), InstantSource.fixed(NOW));
+
+        when(paymentDao.findByProductExternalId(productEntity.getExternalId())).thenReturn(List.of(
+                aSubmittedPaymentEntity(productEntity), aSubmittedPaymentEntity(productEntity), aSubmittedPaymentEntity(productEntity)));
+        when(publicApiRestClient.getPaymentAsync(any(), any())).thenAnswer(invocation -> new CompletableFuture<>());
+
+        List<Payment> payments = paymentFinder.findByProductExternalId(productEntity.getExternalId());
+
+        assertThat(payments.size(), is(3));
+        verify(publicApiRestClient, times(2)).getPaymentAsync(any(), any());
+    }
+
+    private PaymentEntity aSubmittedPaymentEntity(ProductEntity productEntity) {
+        PaymentEntity paymentEntity = new PaymentEntity();
+        paymentEntity.setExternalId(randomUuid());
+        paymentEntity.setProductEntity(productEntity);
+        paymentEntity.setStatus(PaymentStatus.SUBMITTED);
+        paymentEntity.setGovukPaymentId(randomUuid());
+        return paymentEntity;
+    }
 }
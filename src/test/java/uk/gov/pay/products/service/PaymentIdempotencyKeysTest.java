@@ -0,0 +1,83 @@
+package uk.gov.pay.products.service;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import uk.gov.pay.products.config.PaymentIdempotencyKeyConfig;
+import uk.gov.pay.products.exception.IdempotencyKeyConflictException;
+import uk.gov.pay.products.persistence.dao.PaymentIdempotencyKeyDao;
+import uk.gov.pay.products.persistence.dao.PaymentIdempotencyKeyDao.ClaimedIdempotencyKey;
+
+import java.time.Instant;
+import java.time.InstantSource;
+import java.time.ZonedDateTime;
+import java.util.Optional;
+
+import static java.time.ZoneOffset.UTC;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNot.not;
+import static org.junit.Assert.assertThrows;
+import static org.mockito.Mockito.when;
+import static uk.gov.pay.products.service.PaymentIdempotencyKeys.requestFingerprint;
+
+@RunWith(MockitoJUnitRunner.class)
+public class PaymentIdempotencyKeysTest {
+
+    private static final String PRODUCT_EXTERNAL_ID = "product-external-id";
+    private static final String IDEMPOTENCY_KEY = "idempotency-key";
+    private static final Instant NOW = Instant.parse("2022-03-03T10:15:30Z");
+
+    @Mock
+    private PaymentIdempotencyKeyDao paymentIdempotencyKeyDao;
+
+    @Mock
+    private PaymentIdempotencyKeyConfig paymentIdempotencyKeyConfig;
+
+    private PaymentIdempotencyKeys paymentIdempotencyKeys;
+
+    @Before
+    public void setUp() {
+        paymentIdempotencyKeys = new PaymentIdempotencyKeys(paymentIdempotencyKeyDao, paymentIdempotencyKeyConfig, InstantSource.fixed(NOW));
+    }
+
+    @Test
+    public void shouldFindPaymentOfKey_whenRepeatedRequestIsTheSame() {
+        givenKeyClaimedWith(requestFingerprint(150L, "a ref"));
+
+        assertThat(paymentIdempotencyKeys.findPaymentExternalId(PRODUCT_EXTERNAL_ID, IDEMPOTENCY_KEY, 150L, "a ref"),
+                is(Optional.of("payment-external-id")));
+    }
+
+    @Test
+    public void shouldRejectRepeatedRequest_whenItHasADifferentPriceOrReference() {
+        givenKeyClaimedWith(requestFingerprint(150L, "a ref"));
+
+        assertThrows(IdempotencyKeyConflictException.class,
+                () -> paymentIdempotencyKeys.findPaymentExternalId(PRODUCT_EXTERNAL_ID, IDEMPOTENCY_KEY, 200L, "a ref"));
+        assertThrows(IdempotencyKeyConflictException.class,
+                () -> paymentIdempotencyKeys.findPaymentExternalId(PRODUCT_EXTERNAL_ID, IDEMPOTENCY_KEY, 150L, "another ref"));
+    }
+
+    @Test
+    public void shouldFindPaymentOfKey_whenKeyWasClaimedWithoutFingerprint() {
+        givenKeyClaimedWith(null);
+
+        assertThat(paymentIdempotencyKeys.findPaymentExternalId(PRODUCT_EXTERNAL_ID, IDEMPOTENCY_KEY, 200L, null),
+                is(Optional.of("payment-external-id")));
+    }
+
+    @Test
+    public void shouldFingerprintMissingAndEmptyValuesDifferently() {
+        assertThat(requestFingerprint(null, null), is(not(requestFingerprint(null, ""))));
+        assertThat(requestFingerprint(null, "-"), is(not(requestFingerprint(null, null))));
+        assertThat(requestFingerprint(1L, "2:3"), is(not(requestFingerprint(12L, "3"))));
+    }
+
+    private void givenKeyClaimedWith(String requestFingerprint) {
+        when(paymentIdempotencyKeyDao.findClaimedKey(PRODUCT_EXTERNAL_ID, IDEMPOTENCY_KEY, ZonedDateTime.ofInstant(NOW, UTC)))
+                .thenReturn(Optional.of(new ClaimedIdempotencyKey("payment-external-id", requestFingerprint)));
+    }
+}
@@ -0,0 +1,123 @@
+package uk.gov.pay.products.service;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import uk.gov.pay.products.config.PaymentPartitionConfig;
+import uk.gov.pay.products.persistence.dao.PaymentPartitionDao;
+
+import java.time.Instant;
+import java.time.InstantSource;
+import java.time.YearMonth;
+import java.time.ZonedDateTime;
+import java.util.List;
+
+import static java.time.ZoneOffset.UTC;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class PaymentPartitionManagerTest {
+
+    @Mock
+    private PaymentPartitionDao paymentPartitionDao;
+
+    @Mock
+    private PaymentPartitionConfig paymentPartitionConfig;
+
+    private final InstantSource instantSource = InstantSource.fixed(Instant.parse("2022-03-03T10:15:30Z"));
+
+    private PaymentPartitionManager paymentPartitionManager;
+
+    @Before
+    public void setup() {
+        paymentPartitionManager = new PaymentPartitionManager(paymentPartitionDao, paymentPartitionConfig, instantSource);
+    }
+
+    @Test
+    public void shouldCreateOnlyMissingPartitionsForTheMonthsAhead() {
+        when(paymentPartitionConfig.getMonthsToCreateAhead()).thenReturn(3);
+        when(paymentPartitionDao.findMonthlyPartitions()).thenReturn(List.of(YearMonth.of(2022, 4), YearMonth.of(2022, 5)));
+
+        paymentPartitionManager.createMonthlyPartitions();
+
+        verify(paymentPartitionDao).createMonthlyPartition(YearMonth.of(2022, 6));
+        verify(paymentPartitionDao, never()).createMonthlyPartition(YearMonth.of(2022, 4));
+        verify(paymentPartitionDao, never()).createMonthlyPartition(YearMonth.of(2022, 5));
+        verify(paymentPartitionDao, never()).createMonthlyPartition(YearMonth.of(2022, 3));
+    }
+
+    @Test
+    public void shouldNotThrow_whenCreatingPartitionsFails() {
+        when(paymentPartitionDao.findMonthlyPartitions()).thenThrow(new RuntimeException("database unavailable"));
+
+        paymentPartitionManager.createMonthlyPartitions();
+
+        verify(paymentPartitionDao, never()).createMonthlyPartition(any());
+    }
+
+    @Test
+    public void shouldCreateMissingPartitions_andNotFail_whenEveryMonthAheadHasAPartition() {
+        when(paymentPartitionConfig.getMonthsToCreateAhead()).thenReturn(2);
+        when(paymentPartitionDao.findMonthlyPartitions()).thenReturn(
+                List.of(YearMonth.of(2022, 3), YearMonth.of(2022, 4)),
+                List.of(YearMonth.of(2022, 3), YearMonth.of(2022, 4), YearMonth.of(2022, 5)));
+
+        paymentPartitionManager.ensureMonthlyPartitions();
+
+        verify(paymentPartitionDao).createMonthlyPartition(YearMonth.of(2022, 5));
+    }
+
+    @Test
+    public void shouldFail_whenAMonthAheadHasNoPartitionAfterCreatingThem() {
+        when(paymentPartitionConfig.getMonthsToCreateAhead()).thenReturn(2);
+        when(paymentPartitionDao.findMonthlyPartitions()).thenReturn(List.of(YearMonth.of(2022, 3), YearMonth.of(2022, 4)));
+        doThrow(new RuntimeException("database unavailable")).when(paymentPartitionDao).createMonthlyPartition(YearMonth.of(2022, 5));
+
+        IllegalStateException exception = assertThrows(IllegalStateException.class, () -> paymentPartitionManager.ensureMonthlyPartitions());
+
+        assertThat(exception.getMessage(), is("No payments partition for [2022-05]"));
+    }
+
+    @Test
+    public void shouldDropOnlyPartitionsEndingBeforeMaxDate() {
+        when(paymentPartitionDao.findMonthlyPartitions())
+                .thenReturn(List.of(YearMonth.of(2015, 1), YearMonth.of(2015, 2), YearMonth.of(2015, 3)));
+        when(paymentPartitionDao.dropMonthlyPartition(YearMonth.of(2015, 1))).thenReturn(5);
+        when(paymentPartitionDao.dropMonthlyPartition(YearMonth.of(2015, 2))).thenReturn(7);
+
+        int numberOfDroppedPayments = paymentPartitionManager.dropExpiredMonthlyPartitions(ZonedDateTime.of(2015, 3, 1, 0, 0, 0, 0, UTC));
+
+        assertThat(numberOfDroppedPayments, is(12));
+        verify(paymentPartitionDao, never()).dropMonthlyPartition(YearMonth.of(2015, 3));
+    }
+
+    @Test
+    public void shouldFindNoMonthsWithoutPartition_whenThisMonthIsStillInTheLegacyPartition() {
+        when(paymentPartitionDao.findMonthlyPartitions()).thenReturn(List.of(YearMonth.of(2022, 4), YearMonth.of(2022, 5)));
+
+        assertThat(paymentPartitionManager.findMonthsWithoutPartition(), is(List.of()));
+    }
+
+    @Test
+    public void shouldFindNextMonthWithoutPartition_whenItHasNotBeenCreated() {
+        when(paymentPartitionDao.findMonthlyPartitions()).thenReturn(List.of(YearMonth.of(2022, 2), YearMonth.of(2022, 3)));
+
+        assertThat(paymentPartitionManager.findMonthsWithoutPartition(), is(List.of(YearMonth.of(2022, 4))));
+    }
+
+    @Test
+    public void shouldFindThisMonthAndNextMonthWithoutPartition_whenNoMonthlyPartitionsExist() {
+        when(paymentPartitionDao.findMonthlyPartitions()).thenReturn(List.of());
+
+        assertThat(paymentPartitionManager.findMonthsWithoutPartition(), is(List.of(YearMonth.of(2022, 3), YearMonth.of(2022, 4))));
+    }
+}
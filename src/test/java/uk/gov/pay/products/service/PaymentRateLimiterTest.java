@@ -0,0 +1,145 @@
+package uk.gov.pay.products.service;
+
+import io.dropwizard.util.Duration;
+import io.prometheus.client.CollectorRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import uk.gov.pay.products.config.PaymentRateLimitConfig;
+import uk.gov.pay.products.exception.PaymentRateLimitExceededException;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class PaymentRateLimiterTest {
+
+    private static final Instant NOW = Instant.parse("2022-03-03T10:15:30Z");
+
+    private final AtomicReference<Instant> now = new AtomicReference<>(NOW);
+    private final PaymentRateLimitConfig paymentRateLimitConfig = mock(PaymentRateLimitConfig.class);
+    private PaymentRateLimiter paymentRateLimiter;
+
+    @Before
+    public void setup() {
+        when(paymentRateLimitConfig.isEnabled()).thenReturn(true);
+        when(paymentRateLimitConfig.getRequestsPerSecondPerProduct()).thenReturn(1);
+        when(paymentRateLimitConfig.getBurstPerProduct()).thenReturn(2);
+        when(paymentRateLimitConfig.getRequestsPerSecondPerGatewayAccount()).thenReturn(2);
+        when(paymentRateLimitConfig.getBurstPerGatewayAccount()).thenReturn(3);
+        when(paymentRateLimitConfig.getIdleBucketExpiry()).thenReturn(Duration.minutes(10L));
+        paymentRateLimiter = new PaymentRateLimiter(paymentRateLimitConfig, now::get);
+    }
+
+    @Test
+    public void shouldLetABurstThrough_andThenRejectWithRetryAfter() {
+        paymentRateLimiter.acquire("product-1", gatewayAccount(1));
+        paymentRateLimiter.acquire("product-1", gatewayAccount(1));
+
+        PaymentRateLimitExceededException exception = assertThrows(PaymentRateLimitExceededException.class,
+                () -> paymentRateLimiter.acquire("product-1", gatewayAccount(1)));
+
+        assertThat(exception.getMessage(), is("Too many payments created for product product-1, try again later"));
+        assertThat(exception.getRetryAfterSeconds(), is(1L));
+    }
+
+    @Test
+    public void shouldRefillTheBucket_overTime() {
+        paymentRateLimiter.acquire("product-1", gatewayAccount(1));
+        paymentRateLimiter.acquire("product-1", gatewayAccount(1));
+        assertThrows(PaymentRateLimitExceededException.class, () -> paymentRateLimiter.acquire("product-1", gatewayAccount(1)));
+
+        now.set(NOW.plusSeconds(1));
+
+        paymentRateLimiter.acquire("product-1", gatewayAccount(1));
+        assertThrows(PaymentRateLimitExceededException.class, () -> paymentRateLimiter.acquire("product-1", gatewayAccount(1)));
+    }
+
+    @Test
+    public void shouldLimitEachProductSeparately_andTheirGatewayAccountTogether() {
+        paymentRateLimiter.acquire("product-1", gatewayAccount(1));
+        paymentRateLimiter.acquire("product-1", gatewayAccount(1));
+        paymentRateLimiter.acquire("product-2", gatewayAccount(1));
+
+        PaymentRateLimitExceededException exception = assertThrows(PaymentRateLimitExceededException.class,
+                () -> paymentRateLimiter.acquire("product-3", gatewayAccount(1)));
+        assertThat(exception.getMessage(), is("Too many payments created for gateway account 1, try again later"));
+
+        paymentRateLimiter.acquire("product-3", gatewayAccount(2));
+    }
+
+    @Test
+    public void shouldNotLookUpTheGatewayAccount_whenTheProductIsOverItsLimit() {
+        paymentRateLimiter.acquire("product-1", gatewayAccount(1));
+        paymentRateLimiter.acquire("product-1", gatewayAccount(1));
+
+        assertThrows(PaymentRateLimitExceededException.class, () -> paymentRateLimiter.acquire("product-1", () -> {
+            throw new AssertionError("gateway account looked up");
+        }));
+    }
+
+    @Test
+    public void shouldGiveTheProductTokenBack_whenTheGatewayAccountIsOverItsLimit() {
+        paymentRateLimiter.acquire("product-1", gatewayAccount(1));
+        paymentRateLimiter.acquire("product-2", gatewayAccount(1));
+        paymentRateLimiter.acquire("product-2", gatewayAccount(1));
+
+        for (int i = 0; i < 2; i++) {
+            PaymentRateLimitExceededException exception = assertThrows(PaymentRateLimitExceededException.class,
+                    () -> paymentRateLimiter.acquire("product-1", gatewayAccount(1)));
+            assertThat(exception.getMessage(), is("Too many payments created for gateway account 1, try again later"));
+        }
+
+        paymentRateLimiter.acquire("product-1", gatewayAccount(2));
+    }
+
+    @Test
+    public void shouldOnlyLimitTheProduct_whenThereIsNoSuchProduct() {
+        paymentRateLimiter.acquire("product-1", Optional::empty);
+        paymentRateLimiter.acquire("product-1", Optional::empty);
+
+        assertThrows(PaymentRateLimitExceededException.class, () -> paymentRateLimiter.acquire("product-1", Optional::empty));
+    }
+
+    @Test
+    public void shouldNotLimit_whenDisabled() {
+        when(paymentRateLimitConfig.isEnabled()).thenReturn(false);
+
+        for (int i = 0; i < 10; i++) {
+            paymentRateLimiter.acquire("product-1", gatewayAccount(1));
+        }
+    }
+
+    @Test
+    public void shouldEvictOnlyBucketsThatHaveBeenIdleForIdleBucketExpiry() {
+        paymentRateLimiter.acquire("product-1", gatewayAccount(1));
+        now.set(NOW.plusSeconds(300));
+        paymentRateLimiter.acquire("product-2", gatewayAccount(1));
+
+        now.set(NOW.plusSeconds(601));
+        paymentRateLimiter.evictIdleBuckets();
+
+        assertThat(numberOfBuckets("product"), is(1.0));
+        assertThat(numberOfBuckets("gateway_account"), is(1.0));
+
+        now.set(NOW.plusSeconds(901));
+        paymentRateLimiter.evictIdleBuckets();
+
+        assertThat(numberOfBuckets("product"), is(0.0));
+        assertThat(numberOfBuckets("gateway_account"), is(0.0));
+    }
+
+    private static Supplier<Optional<Integer>> gatewayAccount(int gatewayAccountId) {
+        return () -> Optional.of(gatewayAccountId);
+    }
+
+    private static Double numberOfBuckets(String limit) {
+        return CollectorRegistry.defaultRegistry.getSampleValue("payment_rate_limiter_buckets", new String[]{"limit"}, new String[]{limit});
+    }
+}
@@ -0,0 +1,160 @@
+package uk.gov.pay.products.service;
+
+import io.dropwizard.util.Duration;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import uk.gov.pay.products.client.publicapi.PaymentResponse;
+import uk.gov.pay.products.client.publicapi.PublicApiRestClient;
+import uk.gov.pay.products.client.publicapi.model.PaymentState;
+import uk.gov.pay.products.config.PaymentStatusReconcilerConfig;
+import uk.gov.pay.products.fixtures.ProductEntityFixture;
+import uk.gov.pay.products.persistence.dao.PaymentDao;
+import uk.gov.pay.products.persistence.entity.PaymentEntity;
+import uk.gov.pay.products.persistence.entity.ProductEntity;
+
+import java.time.Instant;
+import java.time.InstantSource;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static java.time.ZoneOffset.UTC;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static uk.gov.pay.products.fixtures.PaymentEntityFixture.aPaymentEntity;
+import static uk.gov.pay.products.util.PaymentStatus.SUBMITTED;
+
+@RunWith(MockitoJUnitRunner.class)
+public class PaymentStatusReconcilerTest {
+
+    private static final Instant NOW = Instant.parse("2022-03-03T10:15:30Z");
+
+    @Mock
+    private PaymentDao paymentDao;
+
+    @Mock
+    private PublicApiRestClient publicApiRestClient;
+
+    @Mock
+    private PaymentStatusReconcilerConfig paymentStatusReconcilerConfig;
+
+    private PaymentStatusReconciler paymentStatusReconciler;
+
+    @Before
+    public void setup() {
+        paymentStatusReconciler = new PaymentStatusReconciler(paymentDao, publicApiRestClient, paymentStatusReconcilerConfig,
+                InstantSource.fixed(NOW));
+    }
+
+    @Test
+    public void shouldDoNothing_whenDisabled() {
+        when(paymentStatusReconcilerConfig.isEnabled()).thenReturn(false);
+
+        paymentStatusReconciler.reconcile();
+
+        verifyNoInteractions(paymentDao, publicApiRestClient);
+    }
+
+    @Test
+    public void shouldStoreGovukStatusesReportedByPublicApi() {
+        givenReconcilerConfig(100, Duration.minutes(1));
+        when(paymentStatusReconcilerConfig.getMaxConcurrentLookupsPerApiToken()).thenReturn(2);
+        ProductEntity productEntity = ProductEntityFixture.aProductEntity().build();
+        PaymentEntity finishedPayment = aSubmittedPaymentEntity(productEntity);
+        PaymentEntity unfinishedPayment = aSubmittedPaymentEntity(productEntity);
+        when(paymentDao.claimForGovukStatusCheck(any(), any(), anyInt(), any(), any(), anyInt()))
+                .thenReturn(List.of(finishedPayment, unfinishedPayment));
+        when(publicApiRestClient.getPaymentAsync(productEntity.getPayApiToken(), finishedPayment.getGovukPaymentId()))
+                .thenReturn(CompletableFuture.completedFuture(Optional.of(aPaymentResponse("success", true))));
+        when(publicApiRestClient.getPaymentAsync(productEntity.getPayApiToken(), unfinishedPayment.getGovukPaymentId()))
+                .thenReturn(CompletableFuture.completedFuture(Optional.of(aPaymentResponse("started", false))));
+
+        paymentStatusReconciler.reconcile();
+
+        verify(paymentDao).updateGovukStatus(finishedPayment.getExternalId(), "success", true, NOW.atZone(UTC));
+        verify(paymentDao).updateGovukStatus(unfinishedPayment.getExternalId(), "started", false, NOW.atZone(UTC));
+    }
+
+    @Test
+    public void shouldRecheckOnlyPaymentsCreatedWithinMaxPaymentAge() {
+        givenReconcilerConfig(100, Duration.minutes(1));
+        when(paymentDao.claimForGovukStatusCheck(any(), any(), anyInt(), any(), any(), anyInt())).thenReturn(List.of());
+
+        paymentStatusReconciler.reconcile();
+
+        verify(paymentDao).claimForGovukStatusCheck(NOW.atZone(UTC), NOW.atZone(UTC).minusDays(7), 10,
+                java.time.Duration.ofSeconds(30), java.time.Duration.ofHours(6), 100);
+        verifyNoInteractions(publicApiRestClient);
+    }
+
+    @Test
+    public void shouldClaimAnotherBatch_whenTheLastBatchWasFull() {
+        givenReconcilerConfig(1, Duration.minutes(1));
+        when(paymentStatusReconcilerConfig.getMaxConcurrentLookupsPerApiToken()).thenReturn(2);
+        ProductEntity productEntity = ProductEntityFixture.aProductEntity().build();
+        PaymentEntity payment = aSubmittedPaymentEntity(productEntity);
+        when(paymentDao.claimForGovukStatusCheck(any(), any(), anyInt(), any(), any(), anyInt()))
+                .thenReturn(List.of(payment))
+                .thenReturn(List.of());
+        when(publicApiRestClient.getPaymentAsync(productEntity.getPayApiToken(), payment.getGovukPaymentId()))
+                .thenReturn(CompletableFuture.completedFuture(Optional.empty()));
+
+        paymentStatusReconciler.reconcile();
+
+        verify(paymentDao, times(2)).claimForGovukStatusCheck(any(), any(), anyInt(), any(), any(), anyInt());
+        verify(paymentDao, never()).updateGovukStatus(any(), any(), anyBoolean(), any());
+    }
+
+    @Test
+    public void shouldNotLookUpMoreThanMaxConcurrentLookupsPerApiTokenAtATime() {
+        givenReconcilerConfig(100, Duration.milliseconds(100));
+        when(paymentStatusReconcilerConfig.getMaxConcurrentLookupsPerApiToken()).thenReturn(1);
+        ProductEntity productEntity = ProductEntityFixture.aProductEntity().withApiToken("an-api-token").build();
+        ProductEntity otherProductEntity = ProductEntityFixture.aProductEntity().withApiToken("another-api-token").build();
+        when(paymentDao.claimForGovukStatusCheck(any(), any(), anyInt(), any(), any(), anyInt())).thenReturn(List.of(
+                aSubmittedPaymentEntity(productEntity), aSubmittedPaymentEntity(productEntity),
+                aSubmittedPaymentEntity(otherProductEntity)));
+        when(publicApiRestClient.getPaymentAsync(any(), any())).thenAnswer(invocation -> new CompletableFuture<>());
+
+        paymentStatusReconciler.reconcile();
+
+        verify(publicApiRestClient).getPaymentAsync(eq("an-api-token"), any());
+        verify(publicApiRestClient).getPaymentAsync(eq("another-api-token"), any());
+        verify(paymentDao, never()).updateGovukStatus(any(), any(), anyBoolean(), any());
+    }
+
+    private void givenReconcilerConfig(int batchSize, Duration maxRunDuration) {
+        when(paymentStatusReconcilerConfig.isEnabled()).thenReturn(true);
+        when(paymentStatusReconcilerConfig.getBatchSize()).thenReturn(batchSize);
+        when(paymentStatusReconcilerConfig.getMaxRunDuration()).thenReturn(maxRunDuration);
+        when(paymentStatusReconcilerConfig.getMaxPaymentAge()).thenReturn(Duration.days(7));
+        when(paymentStatusReconcilerConfig.getRecheckAgeDivisor()).thenReturn(10);
+        when(paymentStatusReconcilerConfig.getMinRecheckInterval()).thenReturn(Duration.seconds(30));
+        when(paymentStatusReconcilerConfig.getMaxRecheckInterval()).thenReturn(Duration.hours(6));
+    }
+
+    private PaymentEntity aSubmittedPaymentEntity(ProductEntity productEntity) {
+        return aPaymentEntity()
+                .withStatus(SUBMITTED)
+                .withProduct(productEntity)
+                .withDateCreated(ZonedDateTime.ofInstant(NOW, UTC).minusMinutes(5))
+                .build();
+    }
+
+    private PaymentResponse aPaymentResponse(String status, boolean finished) {
+        PaymentResponse paymentResponse = new PaymentResponse();
+        paymentResponse.setState(new PaymentState(status, finished, "a message", "a code"));
+        return paymentResponse;
+    }
+}
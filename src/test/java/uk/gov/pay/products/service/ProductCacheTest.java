@@ -0,0 +1,88 @@
+package uk.gov.pay.products.service;
+
+import io.dropwizard.util.Duration;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import uk.gov.pay.products.config.ProductCacheConfig;
+import uk.gov.pay.products.persistence.dao.ProductDao;
+import uk.gov.pay.products.persistence.entity.ProductEntity;
+
+import java.util.Optional;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static uk.gov.pay.products.fixtures.ProductEntityFixture.aProductEntity;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ProductCacheTest {
+
+    private static final String EXTERNAL_ID = "product-external-id";
+
+    @Mock
+    private ProductDao productDao;
+
+    @Test
+    public void shouldOnlyLoadProductOnce_whenCacheEnabled() {
+        ProductCache productCache = new ProductCache(enabledConfig());
+        ProductEntity productEntity = aProductEntity().withExternalId(EXTERNAL_ID).build();
+        when(productDao.findByExternalId(EXTERNAL_ID)).thenReturn(Optional.of(productEntity));
+
+        productCache.findByExternalId(EXTERNAL_ID, productDao::findByExternalId);
+        Optional<ProductEntity> cached = productCache.findByExternalId(EXTERNAL_ID, productDao::findByExternalId);
+
+        assertThat(cached.isPresent(), is(true));
+        assertThat(cached.get().getExternalId(), is(EXTERNAL_ID));
+        verify(productDao, times(1)).findByExternalId(EXTERNAL_ID);
+    }
+
+    @Test
+    public void shouldNotCacheMissingProduct() {
+        ProductCache productCache = new ProductCache(enabledConfig());
+        when(productDao.findByExternalId(EXTERNAL_ID)).thenReturn(Optional.empty());
+
+        productCache.findByExternalId(EXTERNAL_ID, productDao::findByExternalId);
+        Optional<ProductEntity> result = productCache.findByExternalId(EXTERNAL_ID, productDao::findByExternalId);
+
+        assertThat(result.isPresent(), is(false));
+        verify(productDao, times(2)).findByExternalId(EXTERNAL_ID);
+    }
+
+    @Test
+    public void shouldReloadProduct_whenInvalidated() {
+        ProductCache productCache = new ProductCache(enabledConfig());
+        ProductEntity productEntity = aProductEntity().withExternalId(EXTERNAL_ID).build();
+        when(productDao.findByExternalId(EXTERNAL_ID)).thenReturn(Optional.of(productEntity));
+
+        productCache.findByExternalId(EXTERNAL_ID, productDao::findByExternalId);
+        productCache.invalidate(EXTERNAL_ID);
+        productCache.findByExternalId(EXTERNAL_ID, productDao::findByExternalId);
+
+        verify(productDao, times(2)).findByExternalId(EXTERNAL_ID);
+    }
+
+    @Test
+    public void shouldAlwaysLoadProduct_whenCacheDisabled() {
+        ProductCache productCache = new ProductCache(mock(ProductCacheConfig.class));
+        ProductEntity productEntity = aProductEntity().withExternalId(EXTERNAL_ID).build();
+        when(productDao.findByExternalId(EXTERNAL_ID)).thenReturn(Optional.of(productEntity));
+
+        productCache.findByExternalId(EXTERNAL_ID, productDao::findByExternalId);
+        productCache.findByExternalId(EXTERNAL_ID, productDao::findByExternalId);
+
+        verify(productDao, times(2)).findByExternalId(EXTERNAL_ID);
+    }
+
+    private ProductCacheConfig enabledConfig() {
+        ProductCacheConfig productCacheConfig = mock(ProductCacheConfig.class);
+        when(productCacheConfig.isEnabled()).thenReturn(true);
+        when(productCacheConfig.getMaximumSize()).thenReturn(100L);
+        when(productCacheConfig.getExpireAfterWrite()).thenReturn(Duration.minutes(5));
+        return productCacheConfig;
+    }
+}
@@ -8,6 +8,8 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
+import uk.gov.pay.products.config.ProductCacheConfig;
+import uk.gov.pay.products.config.ProductPathIndexConfig;
 import uk.gov.pay.products.exception.ProductNotFoundException;
 import uk.gov.pay.products.model.Product;
 import uk.gov.pay.products.model.ProductMetadata;
@@ -19,6 +21,7 @@ import uk.gov.pay.products.util.ProductType;
 import uk.gov.service.payments.commons.model.SupportedLanguage;
 import uk.gov.service.payments.commons.model.jsonpatch.JsonPatchRequest;
 
+import java.time.InstantSource;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -34,6 +37,7 @@ import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static uk.gov.pay.products.fixtures.ProductEntityFixture.aProductEntity;
@@ -62,7 +66,8 @@ public class ProductCreatorTest {
     @Before
     public void setup() {
         LinksDecorator linksDecorator = new LinksDecorator("http://localhost", "http://localhost/pay", "http://localhost/payments");
-        productCreator = new ProductCreator(productDao, productMetadataDao, linksDecorator);
+        productCreator = new ProductCreator(productDao, productMetadataDao, linksDecorator, new ProductCache(mock(ProductCacheConfig.class)),
+                new ProductPathIndex(productDao, mock(ProductPathIndexConfig.class), InstantSource.system()));
         gatewayAccountId = randomInt();
         payApiToken = randomUuid();
     }
@@ -5,21 +5,31 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
+import uk.gov.pay.products.config.ProductCacheConfig;
+import uk.gov.pay.products.config.ProductPathIndexConfig;
 import uk.gov.pay.products.model.Product;
+import uk.gov.pay.products.model.ProductPage;
+import uk.gov.pay.products.model.ProductPath;
 import uk.gov.pay.products.persistence.dao.ProductDao;
 import uk.gov.pay.products.persistence.entity.ProductEntity;
 import uk.gov.pay.products.util.ProductStatus;
 import uk.gov.pay.products.util.ProductType;
 
+import java.time.InstantSource;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.IntStream;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static uk.gov.pay.products.fixtures.ProductEntityFixture.aProductEntity;
 
 @RunWith(MockitoJUnitRunner.class)
 public class ProductFinderTest {
@@ -32,7 +42,8 @@ public class ProductFinderTest {
     @Before
     public void setup() {
         LinksDecorator linksDecorator = new LinksDecorator("http://localhost", "http://localhost/pay", "http://localhost/payments");
-        productFinder = new ProductFinder(productDao, linksDecorator);
+        productFinder = new ProductFinder(productDao, linksDecorator, new ProductCache(mock(ProductCacheConfig.class)),
+                new ProductPathIndex(productDao, mock(ProductPathIndexConfig.class), InstantSource.system()));
     }
 
     @Test
@@ -272,6 +283,37 @@ public class ProductFinderTest {
         assertFalse(disabledProduct.isPresent());
     }
 
+    @Test
+    public void findPageByGatewayAccountIdAndType_shouldReturnNextAfterId_whenMoreProductsExist() {
+        Integer gatewayAccountId = 1;
+        ProductEntity firstProductEntity = aProductEntity().withGatewayAccountId(gatewayAccountId).build();
+        firstProductEntity.setId(10);
+        ProductEntity secondProductEntity = aProductEntity().withGatewayAccountId(gatewayAccountId).build();
+        secondProductEntity.setId(11);
+        when(productDao.findByGatewayAccountIdAndTypeAfterId(gatewayAccountId, ProductType.ADHOC, 0, 2))
+                .thenReturn(List.of(firstProductEntity, secondProductEntity));
+
+        ProductPage productPage = productFinder.findPageByGatewayAccountIdAndType(gatewayAccountId, ProductType.ADHOC, 0, 1);
+
+        assertThat(productPage.getProducts().size(), is(1));
+        assertThat(productPage.getProducts().get(0).getExternalId(), is(firstProductEntity.getExternalId()));
+        assertThat(productPage.getNextAfterId(), is(Optional.of(10)));
+    }
+
+    @Test
+    public void findPageByGatewayAccountIdAndType_shouldNotReturnNextAfterId_whenLastPage() {
+        Integer gatewayAccountId = 1;
+        ProductEntity productEntity = aProductEntity().withGatewayAccountId(gatewayAccountId).build();
+        productEntity.setId(10);
+        when(productDao.findByGatewayAccountIdAndTypeAfterId(gatewayAccountId, null, 5, 3))
+                .thenReturn(List.of(productEntity));
+
+        ProductPage productPage = productFinder.findPageByGatewayAccountIdAndType(gatewayAccountId, null, 5, 2);
+
+        assertThat(productPage.getProducts().size(), is(1));
+        assertThat(productPage.getNextAfterId(), is(Optional.empty()));
+    }
+
     @Test
     public void findByProductPath_shouldReturnProduct_whenFound() {
         String externalId = "1";
@@ -302,4 +344,26 @@ public class ProductFinderTest {
 
         assertFalse(productOptional.isPresent());
     }
+
+    @Test
+    public void deleteByGatewayAccountId_shouldDeleteInBatches_untilABatchIsNotFull() {
+        List<ProductPath> fullBatch = IntStream.range(0, 500)
+                .mapToObj(i -> new ProductPath(i, "external-id-" + i, null, null))
+                .toList();
+        when(productDao.deleteBatchByGatewayAccountId(1, 500))
+                .thenReturn(fullBatch)
+                .thenReturn(List.of(new ProductPath(500, "external-id-500", "service-name-path", "product-name-path")));
+
+        int numberOfProducts = productFinder.deleteByGatewayAccountId(1);
+
+        assertThat(numberOfProducts, is(501));
+        verify(productDao, times(2)).deleteBatchByGatewayAccountId(1, 500);
+    }
+
+    @Test
+    public void updatePayApiTokenByGatewayAccountId_shouldReturnZero_whenNoProductsNeedUpdating() {
+        when(productDao.updatePayApiTokenBatchByGatewayAccountId(1, "new-token", 500)).thenReturn(List.of());
+
+        assertThat(productFinder.updatePayApiTokenByGatewayAccountId(1, "new-token"), is(0));
+    }
 }
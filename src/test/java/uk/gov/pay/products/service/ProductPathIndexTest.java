@@ -0,0 +1,155 @@
+package uk.gov.pay.products.service;
+
+import io.dropwizard.util.Duration;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import uk.gov.pay.products.config.ProductCacheConfig;
+import uk.gov.pay.products.config.ProductPathIndexConfig;
+import uk.gov.pay.products.model.Product;
+import uk.gov.pay.products.model.ProductPath;
+import uk.gov.pay.products.persistence.dao.ProductDao;
+import uk.gov.pay.products.persistence.entity.ProductEntity;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static uk.gov.pay.products.fixtures.ProductEntityFixture.aProductEntity;
+import static uk.gov.pay.products.service.ProductPathIndex.REFRESH_BATCH_SIZE;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ProductPathIndexTest {
+
+    private static final String SERVICE_NAME_PATH = "service-name-path";
+    private static final String PRODUCT_NAME_PATH = "product-name-path";
+    private static final String EXTERNAL_ID = "product-external-id";
+
+    @Mock
+    private ProductDao productDao;
+
+    private final AtomicReference<Instant> now = new AtomicReference<>(Instant.parse("2022-03-03T10:15:30Z"));
+    private ProductPathIndex productPathIndex;
+    private ProductFinder productFinder;
+
+    @Before
+    public void setup() {
+        productPathIndex = new ProductPathIndex(productDao, enabledConfig(), now::get);
+        LinksDecorator linksDecorator = new LinksDecorator("http://localhost", "http://localhost/pay", "http://localhost/payments");
+        productFinder = new ProductFinder(productDao, linksDecorator, new ProductCache(mock(ProductCacheConfig.class)), productPathIndex);
+    }
+
+    @Test
+    public void shouldIndexProductPathsInBatches_whenRefreshed() {
+        List<ProductPath> firstBatch = IntStream.rangeClosed(1, REFRESH_BATCH_SIZE)
+                .mapToObj(id -> new ProductPath(id, "external-id-" + id, SERVICE_NAME_PATH, "product-" + id))
+                .collect(Collectors.toList());
+        List<ProductPath> secondBatch = List.of(new ProductPath(REFRESH_BATCH_SIZE + 1, EXTERNAL_ID, SERVICE_NAME_PATH, PRODUCT_NAME_PATH));
+        when(productDao.findProductPathsWithIdGreaterThan(0, REFRESH_BATCH_SIZE)).thenReturn(firstBatch);
+        when(productDao.findProductPathsWithIdGreaterThan(REFRESH_BATCH_SIZE, REFRESH_BATCH_SIZE)).thenReturn(secondBatch);
+        when(productDao.findProductPathsWithIdGreaterThan(REFRESH_BATCH_SIZE + 1, REFRESH_BATCH_SIZE)).thenReturn(List.of());
+
+        productPathIndex.refresh();
+        productPathIndex.refresh();
+
+        assertThat(productPathIndex.findExternalId(SERVICE_NAME_PATH, "product-1"), is(Optional.of("external-id-1")));
+        assertThat(productPathIndex.findExternalId(SERVICE_NAME_PATH, PRODUCT_NAME_PATH), is(Optional.of(EXTERNAL_ID)));
+        verify(productDao, times(1)).findProductPathsWithIdGreaterThan(0, REFRESH_BATCH_SIZE);
+        verify(productDao, times(1)).findProductPathsWithIdGreaterThan(REFRESH_BATCH_SIZE + 1, REFRESH_BATCH_SIZE);
+    }
+
+    @Test
+    public void shouldReloadTheWholeIndex_afterFullRefreshInterval() {
+        // product 2 commits after product 3, so the incremental refresh never sees it, and then product 1 is deleted
+        when(productDao.findProductPathsWithIdGreaterThan(0, REFRESH_BATCH_SIZE))
+                .thenReturn(List.of(new ProductPath(1, "external-id-1", SERVICE_NAME_PATH, "product-1")))
+                .thenReturn(List.of(
+                        new ProductPath(2, "external-id-2", SERVICE_NAME_PATH, "product-2"),
+                        new ProductPath(3, "external-id-3", SERVICE_NAME_PATH, "product-3")));
+        when(productDao.findProductPathsWithIdGreaterThan(1, REFRESH_BATCH_SIZE))
+                .thenReturn(List.of(new ProductPath(3, "external-id-3", SERVICE_NAME_PATH, "product-3")));
+
+        productPathIndex.refresh();
+        now.set(now.get().plusSeconds(30));
+        productPathIndex.refresh();
+
+        assertThat(productPathIndex.findExternalId(SERVICE_NAME_PATH, "product-2"), is(Optional.empty()));
+
+        now.set(now.get().plusSeconds(600));
+        productPathIndex.refresh();
+
+        assertThat(productPathIndex.findExternalId(SERVICE_NAME_PATH, "product-1"), is(Optional.empty()));
+        assertThat(productPathIndex.findExternalId(SERVICE_NAME_PATH, "product-2"), is(Optional.of("external-id-2")));
+        assertThat(productPathIndex.findExternalId(SERVICE_NAME_PATH, "product-3"), is(Optional.of("external-id-3")));
+    }
+
+    @Test
+    public void shouldResolveIndexedProductPathWithoutQueryingByPath() {
+        ProductEntity productEntity = aProductEntity()
+                .withExternalId(EXTERNAL_ID)
+                .withProductPath(SERVICE_NAME_PATH, PRODUCT_NAME_PATH)
+                .build();
+        productPathIndex.put(SERVICE_NAME_PATH, PRODUCT_NAME_PATH, EXTERNAL_ID);
+        when(productDao.findByExternalId(EXTERNAL_ID)).thenReturn(Optional.of(productEntity));
+
+        Optional<Product> product = productFinder.findByProductPath(SERVICE_NAME_PATH, PRODUCT_NAME_PATH);
+
+        assertTrue(product.isPresent());
+        assertThat(product.get().getExternalId(), is(EXTERNAL_ID));
+        verify(productDao, never()).findByProductPath(SERVICE_NAME_PATH, PRODUCT_NAME_PATH);
+    }
+
+    @Test
+    public void shouldRememberMissingProductPath() {
+        when(productDao.findByProductPath(SERVICE_NAME_PATH, PRODUCT_NAME_PATH)).thenReturn(Optional.empty());
+
+        assertFalse(productFinder.findByProductPath(SERVICE_NAME_PATH, PRODUCT_NAME_PATH).isPresent());
+        assertFalse(productFinder.findByProductPath(SERVICE_NAME_PATH, PRODUCT_NAME_PATH).isPresent());
+
+        verify(productDao, times(1)).findByProductPath(SERVICE_NAME_PATH, PRODUCT_NAME_PATH);
+    }
+
+    @Test
+    public void shouldForgetMissingProductPath_whenProductCreatedWithPath() {
+        productPathIndex.recordMissing(SERVICE_NAME_PATH, PRODUCT_NAME_PATH);
+
+        productPathIndex.remove(SERVICE_NAME_PATH, PRODUCT_NAME_PATH);
+
+        assertFalse(productPathIndex.isKnownMissing(SERVICE_NAME_PATH, PRODUCT_NAME_PATH));
+    }
+
+    @Test
+    public void shouldFallBackToDatabase_whenIndexedProductNoLongerExists() {
+        productPathIndex.put(SERVICE_NAME_PATH, PRODUCT_NAME_PATH, EXTERNAL_ID);
+        when(productDao.findByExternalId(EXTERNAL_ID)).thenReturn(Optional.empty());
+        when(productDao.findByProductPath(SERVICE_NAME_PATH, PRODUCT_NAME_PATH)).thenReturn(Optional.empty());
+
+        assertFalse(productFinder.findByProductPath(SERVICE_NAME_PATH, PRODUCT_NAME_PATH).isPresent());
+
+        assertThat(productPathIndex.findExternalId(SERVICE_NAME_PATH, PRODUCT_NAME_PATH), is(Optional.empty()));
+        assertTrue(productPathIndex.isKnownMissing(SERVICE_NAME_PATH, PRODUCT_NAME_PATH));
+    }
+
+    private ProductPathIndexConfig enabledConfig() {
+        ProductPathIndexConfig productPathIndexConfig = mock(ProductPathIndexConfig.class);
+        when(productPathIndexConfig.isEnabled()).thenReturn(true);
+        when(productPathIndexConfig.getFullRefreshInterval()).thenReturn(Duration.minutes(10));
+        when(productPathIndexConfig.getMaximumMissingPaths()).thenReturn(100L);
+        when(productPathIndexConfig.getExpireMissingPathsAfter()).thenReturn(Duration.minutes(10));
+        return productPathIndexConfig;
+    }
+}
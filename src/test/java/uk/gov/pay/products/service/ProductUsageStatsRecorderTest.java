@@ -0,0 +1,54 @@
+package uk.gov.pay.products.service;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import uk.gov.pay.products.persistence.dao.ProductUsageStatsDao;
+
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static uk.gov.pay.products.service.ProductUsageStatsRecorder.FOLD_BATCH_SIZE;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ProductUsageStatsRecorderTest {
+
+    @Mock
+    private ProductUsageStatsDao productUsageStatsDao;
+
+    private ProductUsageStatsRecorder productUsageStatsRecorder;
+
+    @Before
+    public void setup() {
+        productUsageStatsRecorder = new ProductUsageStatsRecorder(productUsageStatsDao);
+    }
+
+    @Test
+    public void shouldFoldDeltasInBatches_untilABatchIsNotFull() {
+        when(productUsageStatsDao.foldDeltas(FOLD_BATCH_SIZE)).thenReturn(FOLD_BATCH_SIZE, FOLD_BATCH_SIZE, 10);
+
+        productUsageStatsRecorder.fold();
+
+        verify(productUsageStatsDao, times(3)).foldDeltas(FOLD_BATCH_SIZE);
+    }
+
+    @Test
+    public void shouldStopFolding_whenAnotherInstanceIsFolding() {
+        when(productUsageStatsDao.foldDeltas(FOLD_BATCH_SIZE)).thenReturn(0);
+
+        productUsageStatsRecorder.fold();
+
+        verify(productUsageStatsDao).foldDeltas(FOLD_BATCH_SIZE);
+    }
+
+    @Test
+    public void shouldNotThrow_whenFoldingFails() {
+        when(productUsageStatsDao.foldDeltas(FOLD_BATCH_SIZE)).thenThrow(new RuntimeException("database unavailable"));
+
+        productUsageStatsRecorder.fold();
+
+        verify(productUsageStatsDao).foldDeltas(FOLD_BATCH_SIZE);
+    }
+}
@@ -0,0 +1,158 @@
+package uk.gov.pay.products.service;
+
+import io.dropwizard.util.Duration;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import uk.gov.pay.products.config.ReferenceNumberPoolConfig;
+import uk.gov.pay.products.persistence.dao.PaymentDao;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ReferenceNumberPoolTest {
+
+    private static final Integer GATEWAY_ACCOUNT_ID = 1;
+    private static final int MINIMUM_PAYMENTS_PER_WINDOW = 2;
+
+    @Mock
+    private PaymentDao paymentDao;
+
+    private final AtomicReference<Instant> now = new AtomicReference<>(Instant.parse("2022-03-03T10:15:30Z"));
+
+    @Test
+    public void shouldNotReserveReferenceNumbers_whenGatewayAccountIsNotBusy() {
+        ReferenceNumberPool referenceNumberPool = new ReferenceNumberPool(paymentDao, enabledConfig(3), now::get);
+        referenceNumberPool.take(GATEWAY_ACCOUNT_ID);
+        referenceNumberPool.refill();
+
+        nextWindow();
+        referenceNumberPool.refill();
+
+        assertThat(referenceNumberPool.take(GATEWAY_ACCOUNT_ID), is(Optional.empty()));
+        verify(paymentDao, never()).reserveReferenceNumbers(any(), any());
+    }
+
+    @Test
+    public void shouldReturnNothing_untilPoolOfBusyGatewayAccountIsRefilled() {
+        ReferenceNumberPool referenceNumberPool = new ReferenceNumberPool(paymentDao, enabledConfig(3), now::get);
+        when(paymentDao.reserveReferenceNumbers(eq(GATEWAY_ACCOUNT_ID), argThat(candidates -> candidates.size() == 3)))
+                .thenReturn(List.of("REF1", "REF2"));
+
+        assertThat(referenceNumberPool.take(GATEWAY_ACCOUNT_ID), is(Optional.empty()));
+        assertThat(referenceNumberPool.take(GATEWAY_ACCOUNT_ID), is(Optional.empty()));
+
+        nextWindow();
+        referenceNumberPool.refill();
+
+        assertThat(referenceNumberPool.take(GATEWAY_ACCOUNT_ID), is(Optional.of("REF1")));
+        assertThat(referenceNumberPool.take(GATEWAY_ACCOUNT_ID), is(Optional.of("REF2")));
+        assertThat(referenceNumberPool.take(GATEWAY_ACCOUNT_ID), is(Optional.empty()));
+    }
+
+    @Test
+    public void shouldOnlyReserveMissingReferenceNumbers_whenRefilled() {
+        ReferenceNumberPool referenceNumberPool = aPoolOfBusyGatewayAccount(3, List.of("REF1", "REF2", "REF3"));
+        when(paymentDao.reserveReferenceNumbers(eq(GATEWAY_ACCOUNT_ID), argThat(candidates -> candidates.size() == 1)))
+                .thenReturn(List.of("REF4"));
+
+        referenceNumberPool.take(GATEWAY_ACCOUNT_ID);
+        referenceNumberPool.refill();
+        referenceNumberPool.refill();
+
+        verify(paymentDao).reserveReferenceNumbers(eq(GATEWAY_ACCOUNT_ID), argThat(candidates -> candidates.size() == 1));
+    }
+
+    @Test
+    public void shouldReleaseReferenceNumbersLeftInPool_whenGatewayAccountSlowsDown() {
+        ReferenceNumberPool referenceNumberPool = aPoolOfBusyGatewayAccount(3, List.of("REF1", "REF2", "REF3"));
+        referenceNumberPool.take(GATEWAY_ACCOUNT_ID);
+
+        nextWindow();
+        referenceNumberPool.refill();
+
+        verify(paymentDao).releaseReferenceNumbers(GATEWAY_ACCOUNT_ID, List.of("REF2", "REF3"));
+        assertThat(referenceNumberPool.take(GATEWAY_ACCOUNT_ID), is(Optional.empty()));
+    }
+
+    @Test
+    public void shouldReleaseReferenceNumbersLeftInPools_whenReleasingAll() {
+        ReferenceNumberPool referenceNumberPool = aPoolOfBusyGatewayAccount(2, List.of("REF1", "REF2"));
+
+        referenceNumberPool.releaseAll();
+
+        verify(paymentDao).releaseReferenceNumbers(GATEWAY_ACCOUNT_ID, List.of("REF1", "REF2"));
+        assertThat(referenceNumberPool.take(GATEWAY_ACCOUNT_ID), is(Optional.empty()));
+    }
+
+    @Test
+    public void shouldNotReserveReferenceNumbers_whenDisabled() {
+        ReferenceNumberPool referenceNumberPool = new ReferenceNumberPool(paymentDao, mock(ReferenceNumberPoolConfig.class), now::get);
+
+        assertThat(referenceNumberPool.take(GATEWAY_ACCOUNT_ID), is(Optional.empty()));
+        referenceNumberPool.refill();
+        referenceNumberPool.releaseAll();
+
+        verifyNoInteractions(paymentDao);
+    }
+
+    @Test
+    public void shouldKeepRefillingOtherGatewayAccounts_whenReservingFails() {
+        ReferenceNumberPool referenceNumberPool = new ReferenceNumberPool(paymentDao, enabledConfig(1), now::get);
+        when(paymentDao.reserveReferenceNumbers(eq(GATEWAY_ACCOUNT_ID), any())).thenThrow(new RuntimeException("database unavailable"));
+        when(paymentDao.reserveReferenceNumbers(eq(2), any())).thenReturn(List.of("REF1"));
+        takeMinimumPaymentsPerWindow(referenceNumberPool, GATEWAY_ACCOUNT_ID);
+        takeMinimumPaymentsPerWindow(referenceNumberPool, 2);
+
+        nextWindow();
+        referenceNumberPool.refill();
+
+        assertThat(referenceNumberPool.take(2), is(Optional.of("REF1")));
+    }
+
+    private ReferenceNumberPool aPoolOfBusyGatewayAccount(int referenceNumbersPerGatewayAccount, List<String> referenceNumbers) {
+        ReferenceNumberPool referenceNumberPool = new ReferenceNumberPool(paymentDao, enabledConfig(referenceNumbersPerGatewayAccount), now::get);
+        when(paymentDao.reserveReferenceNumbers(eq(GATEWAY_ACCOUNT_ID), argThat(candidates -> candidates.size() == referenceNumbersPerGatewayAccount)))
+                .thenReturn(referenceNumbers);
+        takeMinimumPaymentsPerWindow(referenceNumberPool, GATEWAY_ACCOUNT_ID);
+        nextWindow();
+        referenceNumberPool.refill();
+        return referenceNumberPool;
+    }
+
+    private void takeMinimumPaymentsPerWindow(ReferenceNumberPool referenceNumberPool, Integer gatewayAccountId) {
+        for (int i = 0; i < MINIMUM_PAYMENTS_PER_WINDOW; i++) {
+            referenceNumberPool.take(gatewayAccountId);
+        }
+    }
+
+    private void nextWindow() {
+        now.set(now.get().plusSeconds(60));
+    }
+
+    private ReferenceNumberPoolConfig enabledConfig(int referenceNumbersPerGatewayAccount) {
+        ReferenceNumberPoolConfig referenceNumberPoolConfig = mock(ReferenceNumberPoolConfig.class);
+        when(referenceNumberPoolConfig.isEnabled()).thenReturn(true);
+        when(referenceNumberPoolConfig.getReferenceNumbersPerGatewayAccount()).thenReturn(referenceNumbersPerGatewayAccount);
+        when(referenceNumberPoolConfig.getMinimumPaymentsPerWindow()).thenReturn(MINIMUM_PAYMENTS_PER_WINDOW);
+        when(referenceNumberPoolConfig.getPaymentRateWindow()).thenReturn(Duration.minutes(1));
+        when(referenceNumberPoolConfig.getMaximumGatewayAccounts()).thenReturn(100L);
+        when(referenceNumberPoolConfig.getExpireIdleGatewayAccountsAfter()).thenReturn(Duration.minutes(10));
+        return referenceNumberPoolConfig;
+    }
+}
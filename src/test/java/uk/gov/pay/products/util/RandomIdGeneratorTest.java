@@ -2,6 +2,10 @@ package uk.gov.pay.products.util;
 
 import org.junit.Test;
 
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.core.Is.is;
 
@@ -16,4 +20,31 @@ public class RandomIdGeneratorTest {
         assertThat(reference.matches("(.*\\d){2}(.*)"),is(true));
     }
 
+    @Test
+    public void shouldOnlyUseDigitsOnThirdAndSeventhCharacterOfUserFriendlyReference() {
+        for (int i = 0; i < 10000; i++) {
+            String reference = RandomIdGenerator.randomUserFriendlyReference();
+            assertThat(reference, reference.matches("[A-HJ-NP-Z2-9]{2}[2-9][A-HJ-NP-Z2-9]{3}[2-9][A-HJ-NP-Z2-9]{3}"), is(true));
+        }
+    }
+
+    @Test
+    public void shouldUseEveryCharacterOfTheAlphabetInUserFriendlyReferences() {
+        Set<Character> characters = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            RandomIdGenerator.randomUserFriendlyReference().chars().forEach(c -> characters.add((char) c));
+        }
+        //24 letters (S appears twice in the source) and 8 digits
+        assertThat(characters.size(), is(32));
+    }
+
+    @Test
+    public void shouldGenerateARandomUuidWithoutDashes() {
+        String uuid = RandomIdGenerator.randomUuid();
+        assertThat(uuid.matches("[0-9a-f]{32}"), is(true));
+
+        UUID parsed = UUID.fromString(uuid.replaceFirst("(.{8})(.{4})(.{4})(.{4})(.{12})", "$1-$2-$3-$4-$5"));
+        assertThat(parsed.version(), is(4));
+        assertThat(parsed.variant(), is(2));
+    }
 }
@@ -74,7 +74,30 @@ public class DatabaseTestHelper {
                 .bind("gateway_account_id", gatewayAccountId)
                 .bind("reference_number", payment.getReferenceNumber())
                 .execute());
+        jdbi.withHandle(handle -> handle.createUpdate("INSERT INTO product_usage_stats " +
+                "(product_id, payment_count, last_payment_date) " +
+                "VALUES (:product_id, 1, :date_created) " +
+                "ON CONFLICT (product_id) DO UPDATE SET " +
+                "payment_count = product_usage_stats.payment_count + 1, " +
+                "last_payment_date = GREATEST(product_usage_stats.last_payment_date, EXCLUDED.last_payment_date)")
+                .bind("product_id", payment.getProductId())
+                .bind("date_created", payment.getDateCreated())
+                .execute());
+    }
 
+    public Optional<Map<String, Object>> findProductUsageStats(Integer productId) {
+        return jdbi.withHandle(handle -> handle.createQuery("SELECT * FROM product_usage_stats WHERE product_id = :product_id")
+                .bind("product_id", productId)
+                .mapToMap()
+                .findFirst());
+    }
+
+    public List<String> findPooledReferenceNumbers(Integer gatewayAccountId) {
+        return jdbi.withHandle(handle -> handle.createQuery("SELECT reference_number FROM payment_reference_numbers " +
+                        "WHERE gateway_account_id = :gateway_account_id AND pooled")
+                .bind("gateway_account_id", gatewayAccountId)
+                .mapTo(String.class)
+                .list());
     }
 
     public Integer findProductId(String externalId) {
@@ -136,5 +159,9 @@ public class DatabaseTestHelper {
     public void truncateAllData() {
         jdbi.withHandle(handle -> handle.execute("TRUNCATE TABLE products CASCADE"));
         jdbi.withHandle(handle -> handle.execute("TRUNCATE TABLE payments CASCADE"));
+        jdbi.withHandle(handle -> handle.execute("TRUNCATE TABLE payment_external_ids"));
+        jdbi.withHandle(handle -> handle.execute("TRUNCATE TABLE payment_reference_numbers"));
+        jdbi.withHandle(handle -> handle.execute("TRUNCATE TABLE payment_creation_outbox"));
+        jdbi.withHandle(handle -> handle.execute("TRUNCATE TABLE payment_idempotency_keys"));
     }
 }
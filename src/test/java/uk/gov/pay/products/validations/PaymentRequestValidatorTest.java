@@ -77,4 +77,36 @@ public class PaymentRequestValidatorTest {
         assertThat(errors.get().getErrors().size(), is(1));
         assertThat(errors.get().getErrors(), hasItem("Field [price] must be a number below 10000000"));
     }
+
+    @Test
+    public void shouldSuccess_onSearchPayments_ifSearchParamsAreValid() {
+        Optional<Errors> errors = requestValidator.validateSearchParams("SUBMITTED", "2024-01-01T00:00:00Z",
+                "2024-02-01T00:00:00+01:00", "2024-01-15T10:15:30.123456Z_42", 500);
+        assertFalse(errors.isPresent());
+    }
+
+    @Test
+    public void shouldError_onSearchPayments_ifSearchParamsAreInvalid() {
+        Optional<Errors> errors = requestValidator.validateSearchParams("PAID", "yesterday", null, "42", 0);
+        assertTrue(errors.isPresent());
+        assertThat(errors.get().getErrors(), hasItem("Field [status] must be one of [CREATED, SUBMITTED, ERROR]"));
+        assertThat(errors.get().getErrors(), hasItem("Query param [fromDate] must be an ISO-8601 date time"));
+        assertThat(errors.get().getErrors(), hasItem("Query param [after] must be a cursor from a next link"));
+        assertThat(errors.get().getErrors(), hasItem("Query param [limit] must be between 1 and 500"));
+    }
+
+    @Test
+    public void shouldSuccess_onCreatePayment_ifIdempotencyKeyIsMissingOrValid() {
+        assertFalse(requestValidator.validateIdempotencyKey(null).isPresent());
+        assertFalse(requestValidator.validateIdempotencyKey("2f1e8d2c-5b0a-4d8e-9c1f-6a7b3e4d5c6f").isPresent());
+    }
+
+    @Test
+    public void shouldError_onCreatePayment_ifIdempotencyKeyIsBlankOrTooLong() {
+        Optional<Errors> errors = requestValidator.validateIdempotencyKey(" ");
+        assertTrue(errors.isPresent());
+        assertThat(errors.get().getErrors(), hasItem("Header [Idempotency-Key] must be between 1 and 255 characters and not blank"));
+
+        assertTrue(requestValidator.validateIdempotencyKey("a".repeat(256)).isPresent());
+    }
 }
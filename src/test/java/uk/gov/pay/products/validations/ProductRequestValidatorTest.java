@@ -11,6 +11,7 @@ import uk.gov.pay.products.util.ProductType;
 import uk.gov.service.payments.commons.api.exception.ValidationException;
 
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
@@ -488,6 +489,32 @@ public class ProductRequestValidatorTest {
         assertThat(errors.get().getErrors().toString(), is("[Field [type] must be one of [DEMO, PROTOTYPE, ADHOC, AGENT_INITIATED_MOTO]]"));
     }
 
+    @Test
+    public void shouldPass_whenPaginationParamsAreValid() {
+        Optional<Errors> errors = productRequestValidator.validatePagination(0, 500);
+
+        assertThat(errors.isPresent(), is(false));
+    }
+
+    @Test
+    public void shouldError_whenPaginationParamsAreOutOfRange() {
+        Optional<Errors> errors = productRequestValidator.validatePagination(-1, 0);
+
+        assertThat(errors.isPresent(), is(true));
+        assertThat(errors.get().getErrors().toString(),
+                is("[Query param [after] must be 0 or more, Query param [limit] must be between 1 and 500]"));
+    }
+
+    @Test
+    public void shouldError_whenBulkCreateRequestIsNotANonEmptyList() {
+        Optional<Errors> notAList = productRequestValidator.validateBulkCreateRequest(objectMapper.valueToTree(Map.of(FIELD_NAME, "name")));
+        Optional<Errors> emptyList = productRequestValidator.validateBulkCreateRequest(objectMapper.valueToTree(List.of()));
+
+        assertThat(notAList.get().getErrors().toString(), is("[Request must be a list of between 1 and 10000 products]"));
+        assertThat(emptyList.get().getErrors().toString(), is("[Request must be a list of between 1 and 10000 products]"));
+        assertThat(productRequestValidator.validateBulkCreateRequest(objectMapper.valueToTree(List.of(Map.of()))).isPresent(), is(false));
+    }
+
     @Test
     public void shouldThrowWhenPatchRequestInvalid() {
         JsonNode request = objectMapper.valueToTree(